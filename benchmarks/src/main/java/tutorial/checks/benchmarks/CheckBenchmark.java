@@ -0,0 +1,85 @@
+package tutorial.checks.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+
+/**
+ * Throughput of a full audit (read, parse, walk and check) of the files of each fixture with each shipped
+ * check.
+ *
+ * @author Paulo Merson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckBenchmark {
+
+    @Param({"CheckHtmlActionExtendsHtmlActionSupport", "CheckProcessManagerCallsOpc"})
+    public String check;
+
+    @Param({Fixtures.SMALL, Fixtures.LARGE, Fixtures.DEEP})
+    public String fixture;
+
+    private File directory;
+
+    private List<File> files;
+
+    private Checker checker;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = File.createTempFile("fixtures", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        files = Fixtures.write(fixture, directory);
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        config.addAttribute("charset", "UTF-8");
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        config.addChild(treeWalker);
+        treeWalker.addChild(new DefaultConfiguration("tutorial.checks." + check));
+        checker = new Checker();
+        checker.setModuleClassLoader(CheckBenchmark.class.getClassLoader());
+        checker.configure(config);
+    }
+
+    @TearDown
+    public void tearDown() {
+        checker.destroy();
+        for (File file : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * @return the number of violations, so that the audit is not optimized away.
+     */
+    @Benchmark
+    public int audit() throws Exception {
+        return checker.process(files);
+    }
+
+}
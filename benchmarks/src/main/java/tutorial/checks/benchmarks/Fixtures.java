@@ -0,0 +1,176 @@
+package tutorial.checks.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+
+/**
+ * Source files the benchmarks run on:
+ * <ul>
+ * <li>small: the inputs of the unit tests of the shipped checks, a few dozen lines each;
+ * <li>large: one class with hundreds of fields and methods, with the code the checks look for (imports
+ * of opc, HTMLAction classes, assignments, references to fields and parameters);
+ * <li>deep: blocks nested hundreds of levels and a long expression, the worst case for recursion.
+ * </ul>
+ * The large and deep files are generated, so their size can be changed here.
+ *
+ * @author Paulo Merson
+ */
+final class Fixtures {
+
+    static final String SMALL = "small";
+
+    static final String LARGE = "large";
+
+    static final String DEEP = "deep";
+
+    /** Methods of the large file */
+    private static final int LARGE_METHODS = 500;
+
+    /** Nesting level of the blocks of the deep file */
+    private static final int DEEP_BLOCKS = 300;
+
+    /** Operands of the expression of the deep file; each one adds a level to the tree */
+    private static final int DEEP_OPERANDS = 2000;
+
+    private static final String PACKAGE = "package com.sun.j2ee.blueprints.processmanager.ejb;";
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return the files of a fixture, by name of the class.
+     */
+    static List<String[]> sources(String fixture) throws IOException {
+        List<String[]> sources = new ArrayList<String[]>();
+        if (SMALL.equals(fixture)) {
+            sources.add(new String[] {"SmallProcessManager", resource("/fixtures/SmallProcessManager.java")});
+            sources.add(new String[] {"SmallHtmlAction", resource("/fixtures/SmallHtmlAction.java")});
+        } else if (LARGE.equals(fixture)) {
+            sources.add(new String[] {"LargeProcessManager", large()});
+        } else if (DEEP.equals(fixture)) {
+            sources.add(new String[] {"DeepProcessManager", deep()});
+        } else {
+            throw new IllegalArgumentException("Unknown fixture: " + fixture);
+        }
+        return sources;
+    }
+
+    /**
+     * Writes the files of a fixture in a directory.
+     */
+    static List<File> write(String fixture, File directory) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (String[] source : sources(fixture)) {
+            File file = new File(directory, source[0] + ".java");
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write(source[1]);
+            } finally {
+                writer.close();
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Parses the first file of a fixture.
+     */
+    static DetailAST parse(String fixture) throws IOException, RecognitionException, TokenStreamException {
+        String[] source = sources(fixture).get(0);
+        List<String> lines = new ArrayList<String>();
+        for (String line : source[1].split("\n", -1)) {
+            lines.add(line);
+        }
+        return TreeWalker.parse(new FileContents(FileText.fromLines(new File(source[0] + ".java"), lines)));
+    }
+
+    private static String large() {
+        StringBuilder source = new StringBuilder();
+        source.append(PACKAGE).append("\n\n");
+        source.append("import com.sun.j2ee.blueprints.opc.*;\n");
+        source.append("import com.sun.j2ee.blueprints.opc.invoice.Invoice;\n");
+        source.append("import com.sun.j2ee.blueprints.opc.utils.InfraException;\n");
+        source.append("import java.util.List;\n\n");
+        source.append("public class LargeProcessManager {\n\n");
+        for (int i = 0; i < LARGE_METHODS; i++) {
+            source.append("    private int field").append(i).append(";\n");
+        }
+        for (int i = 0; i < LARGE_METHODS; i++) {
+            source.append("\n    public int method").append(i).append("(int param, List<String> names) {\n");
+            source.append("        int local = param + field").append(i).append(";\n");
+            source.append("        for (int j = 0; j < names.size(); j++) {\n");
+            source.append("            local = local * 31 + names.get(j).length();\n");
+            source.append("            this.field").append(i).append(" = local;\n");
+            source.append("        }\n");
+            source.append("        Invoice invoice = null;\n");
+            source.append("        return local + field").append(i).append(";\n");
+            source.append("    }\n");
+        }
+        for (int i = 0; i < LARGE_METHODS / 10; i++) {
+            source.append("\n    static class Inner").append(i).append("HTMLAction extends HTMLActionSupport {\n");
+            source.append("        private String value = \"").append(i).append("\";\n");
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static String deep() {
+        StringBuilder source = new StringBuilder();
+        source.append(PACKAGE).append("\n\n");
+        source.append("import com.sun.j2ee.blueprints.opc.invoice.Invoice;\n\n");
+        source.append("public class DeepProcessManager {\n\n");
+        source.append("    private int field;\n\n");
+        source.append("    public int method(int param) {\n");
+        for (int i = 0; i < DEEP_BLOCKS; i++) {
+            source.append("{ int local").append(i).append(" = param;\n");
+        }
+        source.append("field = field");
+        for (int i = 0; i < DEEP_OPERANDS; i++) {
+            source.append(" + param");
+        }
+        source.append(";\n");
+        for (int i = 0; i < DEEP_BLOCKS; i++) {
+            source.append("}\n");
+        }
+        source.append("        return field;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static String resource(String name) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Fixture not found: " + name);
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            StringBuilder source = new StringBuilder();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                source.append(line).append('\n');
+            }
+            return source.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+}
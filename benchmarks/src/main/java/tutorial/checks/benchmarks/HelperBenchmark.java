@@ -0,0 +1,129 @@
+package tutorial.checks.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+import tutorial.checks.AstCursor;
+
+/**
+ * Throughput of the helpers of {@link tutorial.checks.CustomCheck} on each fixture. The helpers that build
+ * an index or a symbol table on first use in a file have two benchmarks: the first call in a file
+ * ("FirstCall", index included) and the next calls.
+ *
+ * @author Paulo Merson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelperBenchmark {
+
+    @Param({Fixtures.SMALL, Fixtures.LARGE, Fixtures.DEEP})
+    public String fixture;
+
+    private HelperProbe probe;
+
+    private DetailAST root;
+
+    private DetailAST packageDef;
+
+    private DetailAST classDef;
+
+    /** Last ASSIGN of the class */
+    private DetailAST assign;
+
+    /** Last use of a variable in the class; in the deep fixture, it is in the innermost block */
+    private DetailAST ident;
+
+    @Setup
+    public void setUp() throws Exception {
+        root = Fixtures.parse(fixture);
+        for (DetailAST topLevel = root; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            if (topLevel.getType() == TokenTypes.PACKAGE_DEF) {
+                packageDef = topLevel;
+            } else if (topLevel.getType() == TokenTypes.CLASS_DEF && classDef == null) {
+                classDef = topLevel;
+            }
+        }
+        AstCursor cursor = new AstCursor().reset(classDef);
+        for (DetailAST node = cursor.next(); node != null; node = cursor.next()) {
+            if (node.getType() == TokenTypes.ASSIGN) {
+                assign = node;
+            } else if (node.getType() == TokenTypes.IDENT && isVariableUse(node)) {
+                ident = node;
+            }
+        }
+        probe = new HelperProbe();
+        probe.beginTree(root);
+        // builds the index and the symbol table, for the benchmarks of the next calls
+        probe.callFindAllAstsOfType(classDef, TokenTypes.IDENT);
+        probe.callGetVariableOrParameterDefForIdent(ident);
+    }
+
+    private static boolean isVariableUse(DetailAST node) {
+        int parentType = node.getParent().getType();
+        return parentType == TokenTypes.EXPR || parentType == TokenTypes.PLUS
+                || parentType == TokenTypes.DOT && node.getPreviousSibling() == null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        probe.finishTree(root);
+    }
+
+    @Benchmark
+    public List<DetailAST> findAllAstsOfType() {
+        return probe.callFindAllAstsOfType(classDef, TokenTypes.IDENT);
+    }
+
+    @Benchmark
+    public List<DetailAST> findAllAstsOfTypeFirstCall() {
+        probe.beginTree(root);
+        return probe.callFindAllAstsOfType(classDef, TokenTypes.IDENT);
+    }
+
+    @Benchmark
+    public DetailAST findFirstAstOfType() {
+        return probe.callFindFirstAstOfType(classDef, TokenTypes.LITERAL_RETURN);
+    }
+
+    @Benchmark
+    public String fullyQualifiedPackage() {
+        return probe.callFullyQualifiedPackage(packageDef);
+    }
+
+    @Benchmark
+    public String getVarNameOfAssign() {
+        return probe.callGetVarNameOfAssign(assign);
+    }
+
+    @Benchmark
+    public DetailAST getVariableOrParameterDefForIdent() {
+        return probe.callGetVariableOrParameterDefForIdent(ident);
+    }
+
+    @Benchmark
+    public DetailAST getVariableOrParameterDefForIdentFirstCall() {
+        probe.beginTree(root);
+        return probe.callGetVariableOrParameterDefForIdent(ident);
+    }
+
+}
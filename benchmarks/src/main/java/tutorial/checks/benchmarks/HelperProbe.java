@@ -0,0 +1,41 @@
+package tutorial.checks.benchmarks;
+
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+import tutorial.checks.CustomCheck;
+
+/**
+ * Check that only exposes the protected helpers of {@link CustomCheck} to the benchmarks.
+ *
+ * @author Paulo Merson
+ */
+public class HelperProbe extends CustomCheck {
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[0];
+    }
+
+    public List<DetailAST> callFindAllAstsOfType(DetailAST aAST, int type) {
+        return findAllAstsOfType(aAST, type);
+    }
+
+    public DetailAST callFindFirstAstOfType(DetailAST aAST, int type) {
+        return findFirstAstOfType(aAST, type);
+    }
+
+    public String callFullyQualifiedPackage(DetailAST packageDefOrImportAST) {
+        return fullyQualifiedPackage(packageDefOrImportAST);
+    }
+
+    public String callGetVarNameOfAssign(DetailAST assignToken) {
+        return getVarNameOfAssign(assignToken);
+    }
+
+    public DetailAST callGetVariableOrParameterDefForIdent(DetailAST identToken) {
+        return getVariableOrParameterDefForIdent(identToken);
+    }
+
+}
@@ -0,0 +1,69 @@
+package tutorial.checks;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the current thread, read from the thread allocation counter of the JVM
+ * (com.sun.management.ThreadMXBean, HotSpot and OpenJ9). The difference of two readings is what the
+ * thread allocated in between, whatever was collected since.
+ *
+ * @author Paulo Merson
+ */
+final class AllocationCounter {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    /** Bytes that a reading itself allocates on this JVM, subtracted from each difference */
+    private static final long READING_BYTES = calibrate();
+
+    private AllocationCounter() {
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocationThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!allocationThreads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!allocationThreads.isThreadAllocatedMemoryEnabled()) {
+            allocationThreads.setThreadAllocatedMemoryEnabled(true);
+        }
+        return allocationThreads;
+    }
+
+    private static long calibrate() {
+        if (THREADS == null) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long start = allocatedBytes();
+            min = Math.min(min, allocatedBytes() - start);
+        }
+        return min;
+    }
+
+    static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread; only differences between two readings are
+     * meaningful.
+     */
+    static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return the bytes allocated by the current thread since the given reading, not counting the
+     * readings.
+     */
+    static long allocatedBytesSince(long start) {
+        return Math.max(0, allocatedBytes() - start - READING_BYTES);
+    }
+
+}
@@ -0,0 +1,69 @@
+package tutorial.checks;
+
+import java.util.Arrays;
+
+/**
+ * Bytes allocated by the helpers of a {@link CustomCheck} in the file being checked. A helper called by
+ * another helper is counted in the outer one, so the bytes of different helpers do not overlap.
+ * Installed in the checks by {@link InstrumentedTreeWalker} when allocation accounting is on.
+ *
+ * @author Paulo Merson
+ */
+final class AllocationProfile {
+
+    static final String[] HELPERS = {"fullyQualifiedPackage", "getSuperClassName", "getSimpleTypeNames",
+            "findAllAstsOfType", "findFirstAstOfType", "containsAnnotation", "getVariableOrParameterDefForIdent",
+            "hasAnnotation", "memberHasAnnotation", "getDataFlow"};
+
+    static final int FULLY_QUALIFIED_PACKAGE = 0;
+
+    static final int GET_SUPER_CLASS_NAME = 1;
+
+    static final int GET_SIMPLE_TYPE_NAMES = 2;
+
+    static final int FIND_ALL_ASTS_OF_TYPE = 3;
+
+    static final int FIND_FIRST_AST_OF_TYPE = 4;
+
+    static final int CONTAINS_ANNOTATION = 5;
+
+    static final int GET_VARIABLE_OR_PARAMETER_DEF_FOR_IDENT = 6;
+
+    static final int HAS_ANNOTATION = 7;
+
+    static final int MEMBER_HAS_ANNOTATION = 8;
+
+    static final int GET_DATA_FLOW = 9;
+
+    private final long[] bytes = new long[HELPERS.length];
+
+    /** Helpers being executed; only the outermost one is counted */
+    private int depth;
+
+    /**
+     * @return the reading to pass to {@link #stop}.
+     */
+    long start() {
+        return depth++ == 0 ? AllocationCounter.allocatedBytes() : -1;
+    }
+
+    void stop(int helper, long start) {
+        depth--;
+        if (start >= 0) {
+            bytes[helper] += AllocationCounter.allocatedBytesSince(start);
+        }
+    }
+
+    /**
+     * @return bytes allocated by each helper since the last reset, by index in {@link #HELPERS}.
+     */
+    long[] getBytes() {
+        return bytes;
+    }
+
+    void reset() {
+        Arrays.fill(bytes, 0);
+        depth = 0;
+    }
+
+}
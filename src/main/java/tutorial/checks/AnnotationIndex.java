@@ -0,0 +1,131 @@
+package tutorial.checks;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Index of the annotations of the declarations of one source file, built in one walk of the file.
+ * <p>
+ * Each annotated declaration (type, method, constructor, field, variable, parameter, enum constant or
+ * package) is mapped to the set of its annotation names, and each type to the set of the annotation names
+ * of its members (fields, methods, constructors, enum constants and member types, not their contents).
+ * The names are interned in a {@link NameTable} and the sets are bit sets of the ids, so "has the
+ * declaration @X" and "has a member @X" are a hash lookup and a bit test. An annotation written with a
+ * qualified name (e.g., @javax.ejb.Stateless) is found by its qualified and by its simple name.
+ * <p>
+ * Only the annotations of declarations are indexed, not those in annotation values or in types.
+ *
+ * @author Paulo Merson
+ */
+final class AnnotationIndex {
+
+    private final NameTable names = new NameTable();
+
+    /** Annotation names of each annotated declaration */
+    private final Map<DetailAST, BitSet> declarationAnnotations = new IdentityHashMap<DetailAST, BitSet>();
+
+    /** Annotation names of the members of each type with annotated members */
+    private final Map<DetailAST, BitSet> memberAnnotations = new IdentityHashMap<DetailAST, BitSet>();
+
+    /**
+     * Builds the index of the file that starts at the given root, including all its siblings.
+     */
+    AnnotationIndex(DetailAST rootAST) {
+        AstCursor cursor = new AstCursor();
+        for (DetailAST topLevel = rootAST; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            cursor.reset(topLevel);
+            for (DetailAST node = cursor.next(); node != null; node = cursor.next()) {
+                if (node.getType() == TokenTypes.ANNOTATION) {
+                    add(node);
+                    // annotations in the values of the annotation are not of a declaration
+                    cursor.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void add(DetailAST annotation) {
+        DetailAST declaration = declarationOf(annotation);
+        if (declaration == null) {
+            return;
+        }
+        DetailAST name = annotation.findFirstToken(TokenTypes.AT).getNextSibling();
+        String qualifiedName = CustomCheck.typeNameOf(name);
+        addName(declarationAnnotations, declaration, qualifiedName);
+        DetailAST type = typeOfMember(declaration);
+        if (type != null) {
+            addName(memberAnnotations, type, qualifiedName);
+        }
+        if (name.getType() == TokenTypes.DOT) {
+            String simpleName = name.getLastChild().getText();
+            addName(declarationAnnotations, declaration, simpleName);
+            if (type != null) {
+                addName(memberAnnotations, type, simpleName);
+            }
+        }
+    }
+
+    private void addName(Map<DetailAST, BitSet> sets, DetailAST node, String name) {
+        BitSet set = sets.get(node);
+        if (set == null) {
+            set = new BitSet();
+            sets.put(node, set);
+        }
+        set.set(names.intern(name));
+    }
+
+    /**
+     * @return the declaration whose modifiers (or annotations) contain the annotation, or null.
+     */
+    private static DetailAST declarationOf(DetailAST annotation) {
+        DetailAST parent = annotation.getParent();
+        if (parent == null || (parent.getType() != TokenTypes.MODIFIERS && parent.getType() != TokenTypes.ANNOTATIONS)) {
+            return null;
+        }
+        return parent.getParent();
+    }
+
+    /**
+     * @return the type of which the declaration is a member, or null.
+     */
+    private static DetailAST typeOfMember(DetailAST declaration) {
+        DetailAST block = declaration.getParent();
+        if (block == null || block.getType() != TokenTypes.OBJBLOCK) {
+            return null;
+        }
+        return block.getParent();
+    }
+
+    /**
+     * @param declaration a CLASS_DEF, INTERFACE_DEF, ENUM_DEF, ANNOTATION_DEF, METHOD_DEF, CTOR_DEF,
+     *            VARIABLE_DEF, PARAMETER_DEF, ENUM_CONSTANT_DEF, ANNOTATION_FIELD_DEF or PACKAGE_DEF AST.
+     * @param annotation simple or qualified name of the annotation, without '@'.
+     * @return true if the declaration itself is annotated with the annotation.
+     */
+    boolean hasAnnotation(DetailAST declaration, String annotation) {
+        return contains(declarationAnnotations, declaration, annotation);
+    }
+
+    /**
+     * @param typeDef a CLASS_DEF, INTERFACE_DEF, ENUM_DEF or ANNOTATION_DEF AST.
+     * @param annotation simple or qualified name of the annotation, without '@'.
+     * @return true if a member of the type is annotated with the annotation.
+     */
+    boolean memberHasAnnotation(DetailAST typeDef, String annotation) {
+        return contains(memberAnnotations, typeDef, annotation);
+    }
+
+    private boolean contains(Map<DetailAST, BitSet> sets, DetailAST node, String annotation) {
+        int id = names.find(annotation);
+        if (id < 0) {
+            return false;
+        }
+        BitSet set = sets.get(node);
+        return set != null && set.get(id);
+    }
+
+}
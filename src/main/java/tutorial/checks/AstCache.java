@@ -0,0 +1,180 @@
+package tutorial.checks;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.utils.TokenUtils;
+
+/**
+ * Parsed trees of source files, persisted between runs as {@link FlatAst}s, one file per source in a
+ * directory, named after a hash of the content of the source. The path is not part of the hash: a file
+ * that is renamed, or copied, is not parsed again. The trees do not depend on the checks, so an audit whose
+ * rules changed, but whose sources did not, reads every tree from the cache instead of parsing it.
+ * <p>
+ * Each file is memory-mapped when it is read, and the mapping is released once the tree is copied out of
+ * it, so the file can be replaced or deleted. Layout, big-endian: magic, hash of the token types of the
+ * grammar (a tree written by another version of Checkstyle is not read), then the {@link FlatAst}.
+ * <p>
+ * Each edited revision of a source leaves a file behind. A file read from the cache is touched, so its
+ * modification time is its last use, and {@link #prune} deletes the files not used for a while.
+ *
+ * @author Paulo Merson
+ */
+final class AstCache {
+
+    /** "CKA1": format of the files; change when the layout changes */
+    private static final int MAGIC = 0x434b4131;
+
+    private static final int GRAMMAR = grammarHash();
+
+    private static final int KEY_LENGTH = 16;
+
+    private static final String SUFFIX = ".ast";
+
+    private final File directory;
+
+    /**
+     * @param directory directory of the cache files; created if it does not exist.
+     */
+    AstCache(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create AST cache directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @return the key of a source: a hash of its lines, as decoded with the charset of the audit.
+     */
+    static byte[] keyOf(List<String> lines) {
+        MessageDigest digest = AuditCache.newDigest();
+        try {
+            for (String line : lines) {
+                digest.update(line.getBytes("UTF-8"));
+                digest.update((byte) '\n');
+            }
+        } catch (UnsupportedEncodingException e) {
+            // every Java platform has UTF-8
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest();
+        byte[] key = new byte[KEY_LENGTH];
+        System.arraycopy(hash, 0, key, 0, KEY_LENGTH);
+        return key;
+    }
+
+    /**
+     * @return the tree of the source with the key, or null if it is not in the cache or its file is not
+     *         valid.
+     */
+    FlatAst find(byte[] key) throws IOException {
+        File file = fileOf(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+        FlatAst flat;
+        try {
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != GRAMMAR) {
+                return null;
+            }
+            flat = FlatAst.read(buffer);
+        } catch (IllegalArgumentException e) {
+            return null;
+        } catch (BufferUnderflowException e) {
+            return null;
+        } finally {
+            // the tree is a copy
+            AuditCache.unmap(buffer);
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return flat;
+    }
+
+    /**
+     * Writes the tree of the source with the key. The file is written aside and then renamed, so a reader
+     * (e.g. another thread of {@link IncrementalAudit}) never maps a file that is being written.
+     */
+    void put(byte[] key, FlatAst flat) throws IOException {
+        File file = fileOf(key);
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(GRAMMAR);
+            flat.write(out);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            // another thread may have written the same tree in the meantime
+            if (!temp.delete() || !file.isFile()) {
+                throw new IOException("Unable to write AST cache file " + file);
+            }
+        }
+    }
+
+    /**
+     * Deletes the files not read nor written for longer than the given age, and the files left aside by
+     * writes that did not complete.
+     *
+     * @return number of files deleted.
+     */
+    int prune(long maxAgeMillis) {
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        File[] files = directory.listFiles();
+        int deleted = 0;
+        if (files == null) {
+            return deleted;
+        }
+        for (File file : files) {
+            // another thread may be using or pruning the file: then it is not deleted here
+            if ((file.getName().endsWith(SUFFIX) || file.getName().endsWith(".tmp")) && file.isFile()
+                    && file.lastModified() < oldest && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private File fileOf(byte[] key) {
+        StringBuilder name = new StringBuilder(KEY_LENGTH * 2 + SUFFIX.length());
+        for (byte b : key) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return new File(directory, name.append(SUFFIX).toString());
+    }
+
+    /**
+     * @return a hash of the names and ids of the token types, which change with the grammar.
+     */
+    private static int grammarHash() {
+        int[] types = TokenUtils.getAllTokenIds().clone();
+        Arrays.sort(types);
+        int hash = 0;
+        for (int type : types) {
+            hash = 31 * hash + TokenUtils.getTokenName(type).hashCode();
+            hash = 31 * hash + type;
+        }
+        return hash;
+    }
+
+}
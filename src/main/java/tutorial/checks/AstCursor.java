@@ -0,0 +1,95 @@
+package tutorial.checks;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+/**
+ * Iterative pre-order (document order) traversal of a DetailAST subtree.
+ * <p>
+ * The cursor moves using the parent, first child and next sibling links of the tree, so it needs
+ * neither recursion nor a stack: deeply nested trees (e.g., a long string concatenation) do not cause
+ * StackOverflowError and nothing is allocated per node. A cursor can be reused for any number of
+ * traversals by calling {@link #reset(DetailAST)}. Typical use:
+ *
+ * <pre>
+ * cursor.reset(classDefToken);
+ * for (DetailAST node = cursor.next(); node != null; node = cursor.next()) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author Paulo Merson
+ */
+public final class AstCursor {
+
+    private DetailAST root;
+
+    private DetailAST current;
+
+    private int depth;
+
+    private boolean started;
+
+    private boolean skipChildren;
+
+    /**
+     * Starts a new traversal of the subtree rooted at the given AST. The first call to {@link #next()}
+     * returns the root itself.
+     */
+    public AstCursor reset(DetailAST aAST) {
+        if (aAST == null) {
+            throw new IllegalArgumentException("Parameter aAST must not be null");
+        }
+        root = aAST;
+        current = null;
+        depth = 0;
+        started = false;
+        skipChildren = false;
+        return this;
+    }
+
+    /**
+     * @return the next node of the subtree in document order, or null when the traversal is over.
+     */
+    public DetailAST next() {
+        if (!started) {
+            started = true;
+            current = root;
+            return current;
+        }
+        if (current == null) {
+            return null;
+        }
+        if (!skipChildren && current.getFirstChild() != null) {
+            current = current.getFirstChild();
+            depth++;
+            return current;
+        }
+        skipChildren = false;
+        DetailAST node = current;
+        while (node != root) {
+            if (node.getNextSibling() != null) {
+                current = node.getNextSibling();
+                return current;
+            }
+            node = node.getParent();
+            depth--;
+        }
+        current = null;
+        return null;
+    }
+
+    /**
+     * Makes the next call to {@link #next()} skip the descendants of the current node.
+     */
+    public void skipChildren() {
+        skipChildren = true;
+    }
+
+    /**
+     * @return depth of the current node relative to the root of the traversal (the root has depth 0).
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+}
@@ -0,0 +1,461 @@
+package tutorial.checks;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Violations of each file audited in the last run, persisted between runs and keyed by a hash of the
+ * path and the content of the file. The cache belongs to one fingerprint (see {@link IncrementalAudit}):
+ * when the file was written with another fingerprint, the cache starts empty.
+ * <p>
+ * The file is memory-mapped and only the entries that are looked up are decoded. Layout, big-endian:
+ * <ul>
+ * <li>header: magic, fingerprint (32 bytes), number of entries, number of violations, number of strings;
+ * <li>index: one entry per file sorted by key: key (16 bytes), first violation, number of violations;
+ * <li>violations: line, column, severity, module id, source, message key and message, where the last
+ * four are indexes in the string table (-1 for null);
+ * <li>string table: offset of each string plus the end offset, then the UTF-8 bytes of all strings.
+ * </ul>
+ * Entries looked up or added in this run are written by {@link #save()}; the others are dropped, so the
+ * cache does not grow with files that no longer exist.
+ *
+ * @author Paulo Merson
+ */
+final class AuditCache {
+
+    /** "CKC1": format of the file; change when the layout changes */
+    private static final int MAGIC = 0x434b4331;
+
+    static final int FINGERPRINT_LENGTH = 32;
+
+    static final int KEY_LENGTH = 16;
+
+    private static final int HEADER_LENGTH = 4 + FINGERPRINT_LENGTH + 4 + 4 + 4;
+
+    private static final int INDEX_ENTRY_LENGTH = KEY_LENGTH + 4 + 4;
+
+    private static final int VIOLATION_LENGTH = 7 * 4;
+
+    private static final SeverityLevel[] SEVERITIES = SeverityLevel.values();
+
+    private final File file;
+
+    private final byte[] fingerprint;
+
+    /** Mapped content of the file, or null if the cache started empty */
+    private MappedByteBuffer mapped;
+
+    private int entryCount;
+
+    private int violationsStart;
+
+    private int stringsStart;
+
+    private int stringCount;
+
+    /** Strings of the mapped file already decoded, by index */
+    private String[] strings;
+
+    /** Entries to be saved, sorted by key */
+    private final Map<ByteBuffer, List<CachedViolation>> entries = new TreeMap<ByteBuffer, List<CachedViolation>>();
+
+    private AuditCache(File file, byte[] fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint.clone();
+    }
+
+    /**
+     * Opens the cache in the file. The cache is empty if the file does not exist, is not a cache file or
+     * was written with another fingerprint.
+     */
+    static AuditCache open(File file, byte[] fingerprint) throws IOException {
+        if (fingerprint.length != FINGERPRINT_LENGTH) {
+            throw new IllegalArgumentException("Fingerprint must have " + FINGERPRINT_LENGTH + " bytes");
+        }
+        AuditCache cache = new AuditCache(file, fingerprint);
+        if (file.isFile() && file.length() >= HEADER_LENGTH) {
+            cache.map();
+        }
+        return cache;
+    }
+
+    private void map() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (!isValid(buffer)) {
+                unmap(buffer);
+                return;
+            }
+            buffer.position(4 + FINGERPRINT_LENGTH);
+            entryCount = buffer.getInt();
+            int violationCount = buffer.getInt();
+            stringCount = buffer.getInt();
+            violationsStart = HEADER_LENGTH + entryCount * INDEX_ENTRY_LENGTH;
+            stringsStart = violationsStart + violationCount * VIOLATION_LENGTH;
+            strings = new String[stringCount];
+            mapped = buffer;
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * @return true if the buffer is a cache file of this fingerprint whose counts and string offsets fit in
+     *         the file, so a truncated file is a miss and not an exception.
+     */
+    private boolean isValid(MappedByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) {
+            return false;
+        }
+        byte[] fileFingerprint = new byte[FINGERPRINT_LENGTH];
+        buffer.position(4);
+        buffer.get(fileFingerprint);
+        if (!Arrays.equals(fileFingerprint, fingerprint)) {
+            return false;
+        }
+        long entries = buffer.getInt();
+        long violations = buffer.getInt();
+        long stringTable = buffer.getInt();
+        if (entries < 0 || violations < 0 || stringTable < 0) {
+            return false;
+        }
+        long offsetsStart = HEADER_LENGTH + entries * INDEX_ENTRY_LENGTH + violations * VIOLATION_LENGTH;
+        long bytesStart = offsetsStart + (stringTable + 1) * 4;
+        if (bytesStart > buffer.capacity()) {
+            return false;
+        }
+        // the offsets only grow, so the last one bounds them all
+        int previous = 0;
+        for (long i = 0; i <= stringTable; i++) {
+            int offset = buffer.getInt((int) (offsetsStart + i * 4));
+            if (offset < previous) {
+                return false;
+            }
+            previous = offset;
+        }
+        return bytesStart + previous <= buffer.capacity();
+    }
+
+    /**
+     * Releases a mapping now instead of when the buffer is collected, so the file can be replaced (on
+     * Windows a mapped file cannot be deleted or renamed over). The buffer must not be used afterwards.
+     * Java has no public API for this: it tries sun.misc.Unsafe.invokeCleaner (Java 9 and later), then
+     * the cleaner of the buffer (Java 8 and earlier), and leaves the mapping to the collector if neither
+     * is available.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Exception e) {
+            // not Java 9 or later
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // no way to release it: the collector will
+        }
+    }
+
+    /**
+     * @return the key of a file: a hash of its path and its content.
+     */
+    static byte[] keyOf(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(file.getPath().getBytes("UTF-8"));
+        digest.update((byte) 0);
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return Arrays.copyOf(digest.digest(), KEY_LENGTH);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Looks up the violations of a file. A file found in the cache is kept by the next {@link #save()}.
+     *
+     * @return the violations of the file, or null if the file is not in the cache.
+     */
+    List<CachedViolation> find(byte[] key) {
+        List<CachedViolation> violations = entries.get(ByteBuffer.wrap(key));
+        if (violations == null && mapped != null) {
+            int entry = findEntry(key);
+            if (entry >= 0) {
+                violations = readViolations(entry);
+                entries.put(ByteBuffer.wrap(key.clone()), violations);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Sets the violations of a file, to be written by the next {@link #save()}.
+     */
+    void put(byte[] key, List<CachedViolation> violations) {
+        entries.put(ByteBuffer.wrap(key.clone()), new ArrayList<CachedViolation>(violations));
+    }
+
+    /**
+     * @return number of files in the mapped file.
+     */
+    int size() {
+        return entryCount;
+    }
+
+    /**
+     * Binary search of a key in the index.
+     */
+    private int findEntry(byte[] key) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = HEADER_LENGTH + middle * INDEX_ENTRY_LENGTH;
+            int comparison = 0;
+            for (int i = 0; i < KEY_LENGTH && comparison == 0; i++) {
+                // signed, like ByteBuffer.compareTo, which sorts the entries when they are saved
+                comparison = mapped.get(position + i) - key[i];
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private List<CachedViolation> readViolations(int entry) {
+        int position = HEADER_LENGTH + entry * INDEX_ENTRY_LENGTH + KEY_LENGTH;
+        int first = mapped.getInt(position);
+        int count = mapped.getInt(position + 4);
+        List<CachedViolation> violations = new ArrayList<CachedViolation>(count);
+        for (int i = first; i < first + count; i++) {
+            int start = violationsStart + i * VIOLATION_LENGTH;
+            violations.add(new CachedViolation(mapped.getInt(start), mapped.getInt(start + 4),
+                    SEVERITIES[mapped.getInt(start + 8)], string(mapped.getInt(start + 12)),
+                    string(mapped.getInt(start + 16)), string(mapped.getInt(start + 20)),
+                    string(mapped.getInt(start + 24))));
+        }
+        return violations;
+    }
+
+    private String string(int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (strings[index] == null) {
+            int offsetsEnd = stringsStart + (stringCount + 1) * 4;
+            int start = mapped.getInt(stringsStart + index * 4);
+            int end = mapped.getInt(stringsStart + (index + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = mapped.get(offsetsEnd + start + i);
+            }
+            strings[index] = utf8(bytes);
+        }
+        return strings[index];
+    }
+
+    /**
+     * Writes the entries looked up or added in this run. The file is written aside and then renamed, so
+     * an interrupted run leaves the old cache.
+     */
+    void save() throws IOException {
+        Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+        List<byte[]> stringBytes = new ArrayList<byte[]>();
+        int violationCount = 0;
+        for (List<CachedViolation> violations : entries.values()) {
+            violationCount += violations.size();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.write(fingerprint);
+            out.writeInt(entries.size());
+            out.writeInt(violationCount);
+            // the strings are interned before the index to write their count in the header
+            for (List<CachedViolation> violations : entries.values()) {
+                for (CachedViolation violation : violations) {
+                    intern(violation.moduleId, stringIndexes, stringBytes);
+                    intern(violation.sourceName, stringIndexes, stringBytes);
+                    intern(violation.key, stringIndexes, stringBytes);
+                    intern(violation.message, stringIndexes, stringBytes);
+                }
+            }
+            out.writeInt(stringBytes.size());
+            int first = 0;
+            for (Map.Entry<ByteBuffer, List<CachedViolation>> entry : entries.entrySet()) {
+                out.write(entry.getKey().array());
+                out.writeInt(first);
+                out.writeInt(entry.getValue().size());
+                first += entry.getValue().size();
+            }
+            for (List<CachedViolation> violations : entries.values()) {
+                for (CachedViolation violation : violations) {
+                    out.writeInt(violation.line);
+                    out.writeInt(violation.column);
+                    out.writeInt(violation.severity.ordinal());
+                    out.writeInt(indexOf(violation.moduleId, stringIndexes));
+                    out.writeInt(indexOf(violation.sourceName, stringIndexes));
+                    out.writeInt(indexOf(violation.key, stringIndexes));
+                    out.writeInt(indexOf(violation.message, stringIndexes));
+                }
+            }
+            int offset = 0;
+            for (byte[] bytes : stringBytes) {
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : stringBytes) {
+                out.write(bytes);
+            }
+        } finally {
+            out.close();
+        }
+        // the entries that are kept were decoded by find, so nothing is read from the mapping any more
+        if (mapped != null) {
+            MappedByteBuffer oldMapping = mapped;
+            mapped = null;
+            unmap(oldMapping);
+        }
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            throw new IOException("Unable to replace cache file " + file);
+        }
+    }
+
+    private static void intern(String string, Map<String, Integer> stringIndexes, List<byte[]> stringBytes)
+            throws UnsupportedEncodingException {
+        if (string != null && !stringIndexes.containsKey(string)) {
+            stringIndexes.put(string, stringBytes.size());
+            stringBytes.add(string.getBytes("UTF-8"));
+        }
+    }
+
+    private static int indexOf(String string, Map<String, Integer> stringIndexes) {
+        return string == null ? -1 : stringIndexes.get(string);
+    }
+
+    private static String utf8(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // every Java platform has UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A violation as seen by the listeners: the message is stored already formatted, so replaying it does
+     * not depend on the message bundles of the check.
+     */
+    static final class CachedViolation {
+
+        /** Pattern of the replayed message; the formatted message is its only argument */
+        private static final String REPLAY_PATTERN = "{0}";
+
+        private final int line;
+
+        private final int column;
+
+        private final SeverityLevel severity;
+
+        private final String moduleId;
+
+        private final String sourceName;
+
+        private final String key;
+
+        private final String message;
+
+        CachedViolation(int line, int column, SeverityLevel severity, String moduleId, String sourceName,
+                String key, String message) {
+            this.line = line;
+            this.column = column;
+            this.severity = severity;
+            this.moduleId = moduleId;
+            this.sourceName = sourceName;
+            this.key = key;
+            this.message = message;
+        }
+
+        CachedViolation(LocalizedMessage localizedMessage) {
+            this(localizedMessage.getLineNo(), localizedMessage.getColumnNo(), localizedMessage.getSeverityLevel(),
+                    localizedMessage.getModuleId(), localizedMessage.getSourceName(), localizedMessage.getKey(),
+                    localizedMessage.getMessage());
+        }
+
+        SeverityLevel getSeverity() {
+            return severity;
+        }
+
+        /**
+         * @param classLoader loads the class of the check that logged the violation.
+         */
+        LocalizedMessage toLocalizedMessage(ClassLoader classLoader) {
+            Class<?> source;
+            try {
+                source = Class.forName(sourceName, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                // the checks changed, but the fingerprint did not: still report the violation
+                source = CachedViolation.class;
+            }
+            return new LocalizedMessage(line, column, null, key, new Object[] {message}, severity, moduleId,
+                    source, REPLAY_PATTERN);
+        }
+
+    }
+
+}
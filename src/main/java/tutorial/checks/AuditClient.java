@@ -0,0 +1,104 @@
+package tutorial.checks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends requests to an {@link AuditDaemon}, prints the response and the time the request took. It uses
+ * no checkstyle class, so it starts as fast as the JVM.
+ * <p>
+ * Usage: {@code java tutorial.checks.AuditClient [-port <port>] <files or directories>}, or
+ * {@code java tutorial.checks.AuditClient [-port <port>] -stop}. The exit code is the number of errors,
+ * or -1 if the audit failed.
+ *
+ * @author Paulo Merson
+ */
+public class AuditClient {
+
+    private final int port;
+
+    public AuditClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param arguments lines sent after the command, e.g. the files to check.
+     * @return the lines of the response; the last one is the {@code END} line.
+     */
+    public List<String> send(String command, List<String> arguments) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            writer.println(command);
+            for (String argument : arguments) {
+                writer.println(argument);
+            }
+            writer.println();
+            writer.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            List<String> response = new ArrayList<String>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                response.add(line);
+                if (line.startsWith(AuditDaemon.END + " ")) {
+                    break;
+                }
+            }
+            return response;
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return the number of errors in the {@code END} line of a response, or -1 if the audit failed.
+     */
+    static int errorsOf(List<String> response) {
+        if (response.isEmpty() || !response.get(response.size() - 1).startsWith(AuditDaemon.END + " ")) {
+            return -1;
+        }
+        return Integer.parseInt(response.get(response.size() - 1).split(" ")[1]);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = AuditDaemon.DEFAULT_PORT;
+        String command = AuditDaemon.CHECK;
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("-stop".equals(args[i])) {
+                command = AuditDaemon.STOP;
+            } else {
+                // the daemon may run in another directory
+                paths.add(new File(args[i]).getAbsolutePath());
+            }
+        }
+        long start = System.nanoTime();
+        List<String> response = new AuditClient(port).send(command, paths);
+        long millis = (System.nanoTime() - start) / 1000000;
+        for (String line : response) {
+            if (!line.startsWith(AuditDaemon.END + " ")) {
+                System.out.println(line);
+            }
+        }
+        System.out.flush();
+        String[] end = response.isEmpty() ? new String[0] : response.get(response.size() - 1).split(" ");
+        if (end.length == 4) {
+            System.err.println(end[2] + " files checked, " + end[3] + " files from cache, " + millis + " ms");
+        } else {
+            System.err.println("No response from the audit daemon, " + millis + " ms");
+        }
+        System.exit(errorsOf(response));
+    }
+
+}
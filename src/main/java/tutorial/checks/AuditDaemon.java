@@ -0,0 +1,278 @@
+package tutorial.checks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.AuditEventDefaultFormatter;
+import com.puppycrawl.tools.checkstyle.AuditEventFormatter;
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Long-running audit server for pre-commit hooks and IDEs. It keeps an {@link IncrementalAudit} with its
+ * configured checks between requests, so a request pays neither the start of the JVM nor the loading of
+ * the configuration and the checks, and runs code already compiled by the JIT. The configuration is
+ * loaded again when its file changes, and the checks are configured again (with an empty audit cache)
+ * when the configuration or a file it names, such as a rules file, changes: both are hashed on every
+ * request.
+ * <p>
+ * The server listens on a socket of the loopback interface and serves one request at a time. The
+ * protocol is text, UTF-8, one item per line:
+ * <ul>
+ * <li>request {@code CHECK}, followed by the paths of the files or directories to check and an empty
+ * line. The response is the output of checkstyle's default logger, streamed file by file while the audit
+ * runs, then {@code END <errors> <files checked> <files from cache>};
+ * <li>request {@code STOP}: the server answers {@code END 0 0 0} and stops.
+ * </ul>
+ * When the audit fails, the response has a line {@code ERROR <message>} before {@code END -1 0 0}.
+ * {@link AuditClient} sends requests from the command line.
+ * <p>
+ * Usage: {@code java tutorial.checks.AuditDaemon -c <config> [-cache <file> | -nocache]
+ * [-threads <n>] [-port <port>]}
+ *
+ * @author Paulo Merson
+ */
+public class AuditDaemon {
+
+    public static final int DEFAULT_PORT = 7733;
+
+    static final String CHECK = "CHECK";
+
+    static final String STOP = "STOP";
+
+    static final String ERROR = "ERROR";
+
+    static final String END = "END";
+
+    private final File configFile;
+
+    private final File cacheFile;
+
+    private final int threads;
+
+    private ServerSocket serverSocket;
+
+    private volatile boolean stopped;
+
+    private IncrementalAudit audit;
+
+    /** Modification time of the configuration file when it was loaded */
+    private long configLastModified;
+
+    private Configuration configuration;
+
+    /** Hash of the configuration and the files it names, when the checks of the audit were configured */
+    private byte[] configFingerprint;
+
+    /**
+     * @param cacheFile file of the audit cache, or null to check all files.
+     */
+    public AuditDaemon(File configFile, File cacheFile, int threads) {
+        this.configFile = configFile;
+        this.cacheFile = cacheFile;
+        this.threads = threads;
+    }
+
+    /**
+     * Listens on a port of the loopback interface.
+     *
+     * @param port the port, or 0 for any free port (see {@link #getPort()}).
+     */
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves requests until a {@code STOP} request.
+     */
+    public void serve() throws IOException {
+        try {
+            while (!stopped) {
+                Socket socket = serverSocket.accept();
+                try {
+                    handle(socket);
+                } catch (IOException e) {
+                    // the client went away; serve the next one
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            serverSocket.close();
+            if (audit != null) {
+                audit.destroy();
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+        String command = in.readLine();
+        if (STOP.equals(command)) {
+            stopped = true;
+            writer.println(END + " 0 0 0");
+        } else if (CHECK.equals(command)) {
+            List<File> files = new ArrayList<File>();
+            for (String line = in.readLine(); line != null && line.length() > 0; line = in.readLine()) {
+                IncrementalAudit.addFiles(files, new File(line));
+            }
+            check(files, writer);
+        } else {
+            writer.println(ERROR + " Unknown request: " + command);
+            writer.println(END + " -1 0 0");
+        }
+        writer.flush();
+    }
+
+    private void check(List<File> files, PrintWriter writer) {
+        ResponseLogger logger = new ResponseLogger(writer);
+        try {
+            IncrementalAudit currentAudit = currentAudit();
+            currentAudit.addListener(logger);
+            try {
+                int errors = currentAudit.process(files);
+                writer.println(END + " " + errors + " " + currentAudit.getFilesChecked() + " "
+                        + currentAudit.getFilesFromCache());
+            } finally {
+                currentAudit.removeListener(logger);
+            }
+        } catch (CheckstyleException e) {
+            writeError(writer, e);
+        } catch (IOException e) {
+            writeError(writer, e);
+        } catch (RuntimeException e) {
+            // e.g. a rules file that cannot be read; the daemon keeps serving
+            writeError(writer, e);
+        }
+    }
+
+    private static void writeError(PrintWriter writer, Exception e) {
+        // one line, so that the client can tell it from the END line
+        writer.println(ERROR + " " + String.valueOf(e.getMessage()).replaceAll("[\\r\\n]+", " "));
+        writer.println(END + " -1 0 0");
+    }
+
+    /**
+     * @return the audit of the current configuration, loading the configuration if its file changed and
+     *         configuring the checks again if the configuration or the files it names changed.
+     */
+    private IncrementalAudit currentAudit() throws CheckstyleException, IOException {
+        long lastModified = configFile.lastModified();
+        if (configuration == null || lastModified != configLastModified) {
+            configuration = ConfigurationLoader.loadConfiguration(configFile.getPath(),
+                    new PropertiesExpander(System.getProperties()));
+            configLastModified = lastModified;
+        }
+        byte[] fingerprint = IncrementalAudit.configurationFingerprint(configuration);
+        if (audit == null || !Arrays.equals(fingerprint, configFingerprint)) {
+            IncrementalAudit newAudit = new IncrementalAudit(configuration, cacheFile);
+            newAudit.setThreads(threads);
+            if (audit != null) {
+                audit.destroy();
+            }
+            audit = newAudit;
+            configFingerprint = fingerprint;
+        }
+        return audit;
+    }
+
+    /**
+     * Writes the events in the format of checkstyle's default logger, flushing the response at the end of
+     * each file so that the client gets the violations while the audit runs.
+     */
+    private static final class ResponseLogger implements AuditListener {
+
+        private final AuditEventFormatter formatter = new AuditEventDefaultFormatter();
+
+        private final PrintWriter writer;
+
+        ResponseLogger(PrintWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void auditStarted(AuditEvent event) {
+            writer.println("Starting audit...");
+            writer.flush();
+        }
+
+        @Override
+        public void auditFinished(AuditEvent event) {
+            writer.println("Audit done.");
+            writer.flush();
+        }
+
+        @Override
+        public void fileStarted(AuditEvent event) {
+        }
+
+        @Override
+        public void fileFinished(AuditEvent event) {
+            writer.flush();
+        }
+
+        @Override
+        public void addError(AuditEvent event) {
+            if (event.getSeverityLevel() != SeverityLevel.IGNORE) {
+                writer.println(formatter.format(event));
+            }
+        }
+
+        @Override
+        public void addException(AuditEvent event, Throwable throwable) {
+            writer.println("Error auditing " + event.getFileName());
+            throwable.printStackTrace(writer);
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configFile = null;
+        File cacheFile = new File(IncrementalAudit.DEFAULT_CACHE_FILE);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int port = DEFAULT_PORT;
+        for (int i = 0; i < args.length; i++) {
+            if ("-c".equals(args[i]) && i + 1 < args.length) {
+                configFile = args[++i];
+            } else if ("-cache".equals(args[i]) && i + 1 < args.length) {
+                cacheFile = new File(args[++i]);
+            } else if ("-nocache".equals(args[i])) {
+                cacheFile = null;
+            } else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            }
+        }
+        if (configFile == null) {
+            System.err.println("Usage: java " + AuditDaemon.class.getName()
+                    + " -c <config> [-cache <file> | -nocache] [-threads <n>] [-port <port>]");
+            System.exit(-1);
+        }
+        AuditDaemon daemon = new AuditDaemon(new File(configFile), cacheFile, threads);
+        daemon.start(port);
+        System.err.println("Listening on port " + daemon.getPort());
+        daemon.serve();
+    }
+
+}
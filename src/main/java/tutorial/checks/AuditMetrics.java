@@ -0,0 +1,534 @@
+package tutorial.checks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Timings of an audit collected by {@link InstrumentedTreeWalker}: for each check, a histogram of the time
+ * spent per file in each hook (beginTree, visitToken, leaveToken, finishTree) and in all of them; a
+ * histogram of the parse time per file; and the slowest files, with the time of each check. When allocations
+ * are recorded, also the bytes allocated by the parser, by each hook of each check and by each helper of
+ * {@link CustomCheck}, and the top allocators in total and in the files that allocate the most. Written as
+ * a JSON report and as a Prometheus text-format file.
+ *
+ * @author Paulo Merson
+ */
+final class AuditMetrics {
+
+    static final String[] HOOKS = {"beginTree", "visitToken", "leaveToken", "finishTree"};
+
+    static final int BEGIN_TREE = 0;
+
+    static final int VISIT_TOKEN = 1;
+
+    static final int LEAVE_TOKEN = 2;
+
+    static final int FINISH_TREE = 3;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 1.0};
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final int TOP_ALLOCATORS = 10;
+
+    private static final int TOP_ALLOCATORS_PER_FILE = 5;
+
+    private static final Comparator<FileTiming> BY_TOTAL = new Comparator<FileTiming>() {
+        public int compare(FileTiming a, FileTiming b) {
+            return a.total < b.total ? -1 : a.total > b.total ? 1 : 0;
+        }
+    };
+
+    private final String[] checkNames;
+
+    /** Histograms by check and hook; the last one of each check is the total of the hooks */
+    private final LatencyHistogram[][] checkHistograms;
+
+    private final LatencyHistogram parseHistogram = new LatencyHistogram();
+
+    private final int slowestFileLimit;
+
+    /** Slowest files, the fastest of them at the head */
+    private final PriorityQueue<FileTiming> slowestFiles;
+
+    /** Whether allocations were recorded */
+    private boolean allocations;
+
+    private long parseBytes;
+
+    /** Bytes allocated by check and hook, in all files */
+    private long[][] hookBytes;
+
+    /** Bytes allocated by check and helper, in all files; helpers are called from the hooks */
+    private long[][] helperBytes;
+
+    /** Files that allocate the most, the lightest of them at the head; total is in bytes */
+    private final PriorityQueue<FileTiming> heaviestFiles;
+
+    /** Files skipped without parsing by the prefilter */
+    private int filesSkipped;
+
+    /** Why the AST cache was turned off, or null if it works or is not used */
+    private String astCacheFailure;
+
+    public AuditMetrics(String[] checkNames, int slowestFileLimit) {
+        this.checkNames = checkNames.clone();
+        this.slowestFileLimit = slowestFileLimit;
+        checkHistograms = new LatencyHistogram[checkNames.length][HOOKS.length + 1];
+        for (LatencyHistogram[] histograms : checkHistograms) {
+            for (int hook = 0; hook < histograms.length; hook++) {
+                histograms[hook] = new LatencyHistogram();
+            }
+        }
+        slowestFiles = new PriorityQueue<FileTiming>(Math.max(1, slowestFileLimit), BY_TOTAL);
+        heaviestFiles = new PriorityQueue<FileTiming>(Math.max(1, slowestFileLimit), BY_TOTAL);
+    }
+
+    /**
+     * Records the timings of one file.
+     *
+     * @param hookNanos nanoseconds by check and hook; read, not kept.
+     */
+    public void recordFile(String fileName, long parseNanos, long[][] hookNanos) {
+        parseHistogram.record(parseNanos);
+        long fileTotal = parseNanos;
+        long[] checkTotals = new long[checkNames.length];
+        for (int check = 0; check < checkNames.length; check++) {
+            LatencyHistogram[] histograms = checkHistograms[check];
+            for (int hook = 0; hook < HOOKS.length; hook++) {
+                histograms[hook].record(hookNanos[check][hook]);
+                checkTotals[check] += hookNanos[check][hook];
+            }
+            histograms[HOOKS.length].record(checkTotals[check]);
+            fileTotal += checkTotals[check];
+        }
+        offer(slowestFiles, fileName, parseNanos, checkTotals, fileTotal, null);
+    }
+
+    /**
+     * Records a file that was not parsed because no check could report a violation in it.
+     */
+    public void recordSkippedFile() {
+        filesSkipped++;
+    }
+
+    int getFilesSkipped() {
+        return filesSkipped;
+    }
+
+    /**
+     * Records that the AST cache failed and that the audit goes on without it.
+     */
+    public void recordAstCacheFailure(String message) {
+        if (astCacheFailure == null) {
+            astCacheFailure = message;
+        }
+    }
+
+    /**
+     * @return new metrics with the sum of the given ones, which are of the same checks.
+     */
+    static AuditMetrics sum(List<AuditMetrics> all) {
+        AuditMetrics sum = new AuditMetrics(all.get(0).checkNames, all.get(0).slowestFileLimit);
+        for (AuditMetrics metrics : all) {
+            sum.add(metrics);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds the metrics of another walker with the same checks, e.g. of another thread of
+     * {@link IncrementalAudit}, to these.
+     *
+     * @throws IllegalArgumentException if the other metrics are of other checks.
+     */
+    public void add(AuditMetrics other) {
+        if (!Arrays.equals(checkNames, other.checkNames)) {
+            throw new IllegalArgumentException("Metrics of other checks: " + Arrays.toString(other.checkNames));
+        }
+        parseHistogram.add(other.parseHistogram);
+        for (int check = 0; check < checkNames.length; check++) {
+            for (int hook = 0; hook <= HOOKS.length; hook++) {
+                checkHistograms[check][hook].add(other.checkHistograms[check][hook]);
+            }
+        }
+        for (FileTiming timing : other.slowestFiles) {
+            offer(slowestFiles, timing);
+        }
+        filesSkipped += other.filesSkipped;
+        if (other.astCacheFailure != null) {
+            recordAstCacheFailure(other.astCacheFailure);
+        }
+        if (other.allocations) {
+            if (!allocations) {
+                allocations = true;
+                hookBytes = new long[checkNames.length][HOOKS.length];
+                helperBytes = new long[checkNames.length][AllocationProfile.HELPERS.length];
+            }
+            parseBytes += other.parseBytes;
+            for (int check = 0; check < checkNames.length; check++) {
+                for (int hook = 0; hook < HOOKS.length; hook++) {
+                    hookBytes[check][hook] += other.hookBytes[check][hook];
+                }
+                for (int helper = 0; helper < AllocationProfile.HELPERS.length; helper++) {
+                    helperBytes[check][helper] += other.helperBytes[check][helper];
+                }
+            }
+            for (FileTiming heavy : other.heaviestFiles) {
+                offer(heaviestFiles, heavy);
+            }
+        }
+    }
+
+    /**
+     * Records the bytes allocated in one file.
+     *
+     * @param fileHookBytes bytes by check and hook; read, not kept.
+     * @param fileHelperBytes bytes by check and helper (index in {@link AllocationProfile#HELPERS}); null
+     * for a check that is not a CustomCheck; read, not kept.
+     */
+    public void recordAllocations(String fileName, long fileParseBytes, long[][] fileHookBytes,
+            long[][] fileHelperBytes) {
+        if (!allocations) {
+            allocations = true;
+            hookBytes = new long[checkNames.length][HOOKS.length];
+            helperBytes = new long[checkNames.length][AllocationProfile.HELPERS.length];
+        }
+        parseBytes += fileParseBytes;
+        long fileTotal = fileParseBytes;
+        long[] checkTotals = new long[checkNames.length];
+        for (int check = 0; check < checkNames.length; check++) {
+            for (int hook = 0; hook < HOOKS.length; hook++) {
+                hookBytes[check][hook] += fileHookBytes[check][hook];
+                checkTotals[check] += fileHookBytes[check][hook];
+            }
+            if (fileHelperBytes[check] != null) {
+                for (int helper = 0; helper < AllocationProfile.HELPERS.length; helper++) {
+                    helperBytes[check][helper] += fileHelperBytes[check][helper];
+                }
+            }
+            fileTotal += checkTotals[check];
+        }
+        offer(heaviestFiles, fileName, fileParseBytes, checkTotals, fileTotal,
+                topAllocators(fileParseBytes, fileHookBytes, fileHelperBytes, TOP_ALLOCATORS_PER_FILE));
+    }
+
+    private void offer(PriorityQueue<FileTiming> files, String fileName, long parse, long[] checks, long total,
+            List<Allocator> allocators) {
+        if (slowestFileLimit > 0 && (files.size() < slowestFileLimit || files.peek().total < total)) {
+            offer(files, new FileTiming(fileName, parse, checks, total, allocators));
+        }
+    }
+
+    private void offer(PriorityQueue<FileTiming> files, FileTiming timing) {
+        if (slowestFileLimit > 0 && (files.size() < slowestFileLimit || files.peek().total < timing.total)) {
+            if (files.size() == slowestFileLimit) {
+                files.poll();
+            }
+            files.add(timing);
+        }
+    }
+
+    /**
+     * Splits the bytes into allocators that do not overlap: the parser, the code of each check outside the
+     * helpers (named after the check) and each helper called by each check (check.helper).
+     *
+     * @return the allocators that allocate the most, the heaviest first.
+     */
+    private List<Allocator> topAllocators(long parse, long[][] checkHookBytes, long[][] checkHelperBytes, int limit) {
+        List<Allocator> allocators = new ArrayList<Allocator>();
+        allocators.add(new Allocator("parse", parse));
+        for (int check = 0; check < checkNames.length; check++) {
+            long own = 0;
+            for (long bytes : checkHookBytes[check]) {
+                own += bytes;
+            }
+            if (checkHelperBytes[check] != null) {
+                for (int helper = 0; helper < AllocationProfile.HELPERS.length; helper++) {
+                    own -= checkHelperBytes[check][helper];
+                    allocators.add(new Allocator(checkNames[check] + "." + AllocationProfile.HELPERS[helper],
+                            checkHelperBytes[check][helper]));
+                }
+            }
+            allocators.add(new Allocator(checkNames[check], Math.max(0, own)));
+        }
+        Collections.sort(allocators);
+        List<Allocator> top = new ArrayList<Allocator>(limit);
+        for (Allocator allocator : allocators) {
+            if (top.size() == limit || allocator.bytes == 0) {
+                break;
+            }
+            top.add(allocator);
+        }
+        return top;
+    }
+
+    public long getFileCount() {
+        return parseHistogram.getCount();
+    }
+
+    LatencyHistogram getParseHistogram() {
+        return parseHistogram;
+    }
+
+    /**
+     * @param hook index in {@link #HOOKS}, or HOOKS.length for the total of the hooks.
+     */
+    LatencyHistogram getCheckHistogram(int check, int hook) {
+        return checkHistograms[check][hook];
+    }
+
+    /**
+     * @return the slowest files, the slowest first.
+     */
+    List<FileTiming> getSlowestFiles() {
+        return sortedDescending(slowestFiles);
+    }
+
+    private static List<FileTiming> sortedDescending(PriorityQueue<FileTiming> queue) {
+        List<FileTiming> files = new ArrayList<FileTiming>(queue);
+        Collections.sort(files, Collections.reverseOrder(BY_TOTAL));
+        return files;
+    }
+
+    public void writeJson(File file) throws IOException {
+        Writer out = open(file);
+        try {
+            out.write("{\n  \"files\": " + getFileCount() + ",\n  \"filesSkipped\": " + filesSkipped
+                    + ",\n  \"astCacheFailure\": " + (astCacheFailure == null ? "null" : quote(astCacheFailure))
+                    + ",\n  \"parse\": ");
+            writeJson(out, parseHistogram);
+            out.write(",\n  \"checks\": [");
+            for (int check = 0; check < checkNames.length; check++) {
+                out.write(check == 0 ? "\n" : ",\n");
+                out.write("    {\"check\": " + quote(checkNames[check]) + ", \"total\": ");
+                writeJson(out, checkHistograms[check][HOOKS.length]);
+                for (int hook = 0; hook < HOOKS.length; hook++) {
+                    out.write(", " + quote(HOOKS[hook]) + ": ");
+                    writeJson(out, checkHistograms[check][hook]);
+                }
+                out.write("}");
+            }
+            out.write("\n  ],\n  \"slowestFiles\": [");
+            boolean first = true;
+            for (FileTiming timing : getSlowestFiles()) {
+                out.write(first ? "\n" : ",\n");
+                first = false;
+                out.write("    {\"file\": " + quote(timing.fileName) + ", \"totalNanos\": " + timing.total
+                        + ", \"parseNanos\": " + timing.parse + ", \"checkNanos\": {");
+                for (int check = 0; check < checkNames.length; check++) {
+                    out.write((check == 0 ? "" : ", ") + quote(checkNames[check]) + ": " + timing.checks[check]);
+                }
+                out.write("}}");
+            }
+            out.write("\n  ]");
+            if (allocations) {
+                writeAllocationsJson(out);
+            }
+            out.write("\n}\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeAllocationsJson(Writer out) throws IOException {
+        out.write(",\n  \"allocations\": {\n    \"parseBytes\": " + parseBytes + ",\n    \"checks\": [");
+        for (int check = 0; check < checkNames.length; check++) {
+            out.write(check == 0 ? "\n" : ",\n");
+            long total = 0;
+            for (long bytes : hookBytes[check]) {
+                total += bytes;
+            }
+            out.write("      {\"check\": " + quote(checkNames[check]) + ", \"bytes\": " + total);
+            for (int hook = 0; hook < HOOKS.length; hook++) {
+                out.write(", " + quote(HOOKS[hook]) + ": " + hookBytes[check][hook]);
+            }
+            out.write(", \"helpers\": {");
+            for (int helper = 0; helper < AllocationProfile.HELPERS.length; helper++) {
+                out.write((helper == 0 ? "" : ", ") + quote(AllocationProfile.HELPERS[helper]) + ": "
+                        + helperBytes[check][helper]);
+            }
+            out.write("}}");
+        }
+        out.write("\n    ],\n    \"topAllocators\": ");
+        writeJson(out, topAllocators(parseBytes, hookBytes, helperBytes, TOP_ALLOCATORS));
+        out.write(",\n    \"files\": [");
+        boolean first = true;
+        for (FileTiming heavy : sortedDescending(heaviestFiles)) {
+            out.write(first ? "\n" : ",\n");
+            first = false;
+            out.write("      {\"file\": " + quote(heavy.fileName) + ", \"bytes\": " + heavy.total
+                    + ", \"topAllocators\": ");
+            writeJson(out, heavy.allocators);
+            out.write("}");
+        }
+        out.write("\n    ]\n  }");
+    }
+
+    private static void writeJson(Writer out, List<Allocator> allocators) throws IOException {
+        out.write("[");
+        for (int i = 0; i < allocators.size(); i++) {
+            out.write((i == 0 ? "" : ", ") + "{\"allocator\": " + quote(allocators.get(i).name) + ", \"bytes\": "
+                    + allocators.get(i).bytes + "}");
+        }
+        out.write("]");
+    }
+
+    private static void writeJson(Writer out, LatencyHistogram histogram) throws IOException {
+        out.write("{\"count\": " + histogram.getCount() + ", \"sumNanos\": " + histogram.getSum() + ", \"minNanos\": "
+                + histogram.getMin() + ", \"p50Nanos\": " + histogram.percentile(0.5) + ", \"p90Nanos\": "
+                + histogram.percentile(0.9) + ", \"p99Nanos\": " + histogram.percentile(0.99) + ", \"maxNanos\": "
+                + histogram.getMax() + "}");
+    }
+
+    public void writePrometheus(File file) throws IOException {
+        Writer out = open(file);
+        try {
+            out.write("# HELP checkstyle_files_total Files parsed and checked.\n");
+            out.write("# TYPE checkstyle_files_total counter\n");
+            out.write("checkstyle_files_total " + getFileCount() + "\n");
+            out.write("# HELP checkstyle_files_skipped_total Files skipped without parsing by the prefilter.\n");
+            out.write("# TYPE checkstyle_files_skipped_total counter\n");
+            out.write("checkstyle_files_skipped_total " + filesSkipped + "\n");
+            out.write("# HELP checkstyle_ast_cache_failed Whether the AST cache failed and was turned off.\n");
+            out.write("# TYPE checkstyle_ast_cache_failed gauge\n");
+            out.write("checkstyle_ast_cache_failed " + (astCacheFailure == null ? 0 : 1) + "\n");
+            out.write("# HELP checkstyle_parse_seconds Parse time per file.\n");
+            out.write("# TYPE checkstyle_parse_seconds summary\n");
+            writePrometheus(out, "checkstyle_parse_seconds", "", parseHistogram);
+            out.write("# HELP checkstyle_check_seconds Time per file spent in each hook of each check.\n");
+            out.write("# TYPE checkstyle_check_seconds summary\n");
+            for (int check = 0; check < checkNames.length; check++) {
+                String label = "check=" + quote(checkNames[check]) + ",";
+                for (int hook = 0; hook < HOOKS.length; hook++) {
+                    writePrometheus(out, "checkstyle_check_seconds", label + "hook=" + quote(HOOKS[hook]) + ",",
+                            checkHistograms[check][hook]);
+                }
+            }
+            if (allocations) {
+                writeAllocationsPrometheus(out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeAllocationsPrometheus(Writer out) throws IOException {
+        out.write("# HELP checkstyle_parse_allocated_bytes_total Bytes allocated by the parser.\n");
+        out.write("# TYPE checkstyle_parse_allocated_bytes_total counter\n");
+        out.write("checkstyle_parse_allocated_bytes_total " + parseBytes + "\n");
+        out.write("# HELP checkstyle_check_allocated_bytes_total Bytes allocated in each hook of each check.\n");
+        out.write("# TYPE checkstyle_check_allocated_bytes_total counter\n");
+        for (int check = 0; check < checkNames.length; check++) {
+            for (int hook = 0; hook < HOOKS.length; hook++) {
+                out.write("checkstyle_check_allocated_bytes_total{check=" + quote(checkNames[check]) + ",hook="
+                        + quote(HOOKS[hook]) + "} " + hookBytes[check][hook] + "\n");
+            }
+        }
+        out.write("# HELP checkstyle_helper_allocated_bytes_total Bytes allocated in each helper called by each "
+                + "check.\n");
+        out.write("# TYPE checkstyle_helper_allocated_bytes_total counter\n");
+        for (int check = 0; check < checkNames.length; check++) {
+            for (int helper = 0; helper < AllocationProfile.HELPERS.length; helper++) {
+                out.write("checkstyle_helper_allocated_bytes_total{check=" + quote(checkNames[check]) + ",helper="
+                        + quote(AllocationProfile.HELPERS[helper]) + "} " + helperBytes[check][helper] + "\n");
+            }
+        }
+    }
+
+    /**
+     * @param labels empty, or labels each followed by a comma.
+     */
+    private static void writePrometheus(Writer out, String name, String labels, LatencyHistogram histogram)
+            throws IOException {
+        for (double quantile : QUANTILES) {
+            out.write(name + "{" + labels + "quantile=\"" + quantile + "\"} "
+                    + histogram.percentile(quantile) / NANOS_PER_SECOND + "\n");
+        }
+        String plainLabels = labels.length() == 0 ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        out.write(name + "_sum" + plainLabels + " " + histogram.getSum() / NANOS_PER_SECOND + "\n");
+        out.write(name + "_count" + plainLabels + " " + histogram.getCount() + "\n");
+    }
+
+    private static Writer open(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        return new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    }
+
+    /**
+     * @return the text in double quotes, escaped for JSON and for Prometheus label values.
+     */
+    static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c == '\n') {
+                quoted.append("\\n");
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    static final class FileTiming {
+
+        final String fileName;
+
+        final long parse;
+
+        /** Nanoseconds of each check, all hooks */
+        final long[] checks;
+
+        final long total;
+
+        /** Top allocators of the file, for the files that allocate the most; null for the slowest files */
+        final List<Allocator> allocators;
+
+        FileTiming(String fileName, long parse, long[] checks, long total, List<Allocator> allocators) {
+            this.fileName = fileName;
+            this.parse = parse;
+            this.checks = checks;
+            this.total = total;
+            this.allocators = allocators;
+        }
+
+    }
+
+    static final class Allocator implements Comparable<Allocator> {
+
+        final String name;
+
+        final long bytes;
+
+        Allocator(String name, long bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Heaviest first.
+         */
+        public int compareTo(Allocator other) {
+            return bytes > other.bytes ? -1 : bytes < other.bytes ? 1 : name.compareTo(other.name);
+        }
+
+    }
+
+}
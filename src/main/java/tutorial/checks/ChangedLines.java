@@ -0,0 +1,240 @@
+package tutorial.checks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.Filter;
+
+/**
+ * The files of a change and, for each file, the lines added or modified, read from a unified diff (e.g.
+ * {@code git diff --unified=0}) or given as a list of files, which are changed in full.
+ * <p>
+ * As a {@link Filter}, it accepts the violations on the changed lines of the changed files, the violations
+ * without a line and all the violations of the files that are not in the change, which are checked because
+ * they depend on it.
+ *
+ * @author Paulo Merson
+ */
+public final class ChangedLines implements Filter {
+
+    private static final String NEW_FILE = "+++ ";
+
+    private static final String HUNK = "@@ ";
+
+    /** Changed lines by absolute path; null for a file changed in full, empty for a deleted file */
+    private final Map<String, BitSet> lines = new LinkedHashMap<String, BitSet>();
+
+    private ChangedLines() {
+    }
+
+    /**
+     * @return the files changed in full.
+     */
+    public static ChangedLines ofFiles(Collection<File> files) {
+        ChangedLines changes = new ChangedLines();
+        for (File file : files) {
+            changes.lines.put(file.getAbsolutePath(), null);
+        }
+        return changes;
+    }
+
+    /**
+     * Runs {@code git diff} in the working tree of the directory, comparing it with a revision. The untracked
+     * files that are not ignored, which git diff does not list, are changed in full.
+     *
+     * @param base revision to compare with, e.g. "HEAD" or "origin/master".
+     */
+    public static ChangedLines fromGitDiff(File directory, String base) throws IOException {
+        File root = new File(git(directory, "rev-parse", "--show-toplevel").trim()).getCanonicalFile();
+        String diff = git(directory, "diff", "--unified=0", "--no-color", "--no-ext-diff", "--no-renames", base,
+                "--");
+        ChangedLines changes = parse(new StringReader(diff), root);
+        for (String path : git(root, "ls-files", "--others", "--exclude-standard", "-z").split("\0")) {
+            if (path.length() > 0) {
+                changes.lines.put(new File(root, path).getAbsolutePath(), null);
+            }
+        }
+        return changes;
+    }
+
+    private static String git(File directory, String... args) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).start();
+        process.getOutputStream().close();
+        InputStream in = process.getInputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[65536];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        int status;
+        try {
+            status = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running git", e);
+        }
+        String output = out.toString("UTF-8");
+        if (status != 0) {
+            throw new IOException("git " + args[0] + " failed with status " + status + ": " + output.trim());
+        }
+        return output;
+    }
+
+    /**
+     * Reads a unified diff without context lines.
+     *
+     * @param root directory the paths of the diff are relative to.
+     */
+    static ChangedLines parse(Reader diff, File root) throws IOException {
+        ChangedLines changes = new ChangedLines();
+        BufferedReader reader = new BufferedReader(diff);
+        String oldPath = null;
+        BitSet current = null;
+        // lines of the hunk being read, which may look like headers (e.g. a removed "-- comment")
+        int hunkLines = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (hunkLines > 0) {
+                hunkLines--;
+            } else if (line.startsWith("--- ")) {
+                oldPath = pathOf(line.substring(4));
+            } else if (line.startsWith(NEW_FILE)) {
+                String newPath = pathOf(line.substring(NEW_FILE.length()));
+                // a deleted file has /dev/null as new path: no lines, but still changed
+                String path = newPath == null ? oldPath : newPath;
+                current = null;
+                if (path != null) {
+                    current = new BitSet();
+                    changes.lines.put(new File(root, path).getAbsolutePath(), current);
+                }
+            } else if (line.startsWith(HUNK) && current != null) {
+                hunkLines = addHunk(current, line);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * @return the path without the "a/" or "b/" prefix, or null for /dev/null.
+     */
+    private static String pathOf(String name) {
+        String path = name;
+        if (path.startsWith("\"")) {
+            path = unquote(path);
+        }
+        int tab = path.indexOf('\t');
+        if (tab >= 0) {
+            path = path.substring(0, tab);
+        }
+        if ("/dev/null".equals(path)) {
+            return null;
+        }
+        return path.startsWith("a/") || path.startsWith("b/") ? path.substring(2) : path;
+    }
+
+    /**
+     * Reads a path quoted by git: C escapes, with octal escapes for the bytes of UTF-8 characters.
+     */
+    private static String unquote(String quoted) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 1; i < quoted.length() && quoted.charAt(i) != '"'; i++) {
+            char c = quoted.charAt(i);
+            if (c != '\\' || i + 1 == quoted.length()) {
+                bytes.write(c);
+                continue;
+            }
+            c = quoted.charAt(++i);
+            if (c >= '0' && c <= '7' && i + 2 < quoted.length()) {
+                bytes.write(Integer.parseInt(quoted.substring(i, i + 3), 8));
+                i += 2;
+            } else if (c == 'n') {
+                bytes.write('\n');
+            } else if (c == 't') {
+                bytes.write('\t');
+            } else {
+                bytes.write(c);
+            }
+        }
+        try {
+            return bytes.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds the lines of the new file in a hunk header, "@@ -a,b +c,d @@": d lines from c. A missing count
+     * is 1.
+     *
+     * @return number of lines of the hunk, b + d.
+     */
+    private static int addHunk(BitSet changed, String header) {
+        int minus = header.indexOf('-');
+        int plus = header.indexOf('+');
+        int end = header.indexOf(' ', plus);
+        if (minus < 0 || plus < minus || end < 0) {
+            throw new IllegalArgumentException("Malformed hunk header: " + header);
+        }
+        int start = rangeStart(header.substring(plus + 1, end));
+        int count = rangeCount(header.substring(plus + 1, end));
+        if (count > 0) {
+            changed.set(start, start + count);
+        }
+        return rangeCount(header.substring(minus + 1, plus - 1)) + count;
+    }
+
+    private static int rangeStart(String range) {
+        int comma = range.indexOf(',');
+        return Integer.parseInt(comma < 0 ? range : range.substring(0, comma));
+    }
+
+    private static int rangeCount(String range) {
+        int comma = range.indexOf(',');
+        return comma < 0 ? 1 : Integer.parseInt(range.substring(comma + 1));
+    }
+
+    /**
+     * @return absolute paths of the changed files, including deleted ones.
+     */
+    public Collection<String> getPaths() {
+        return lines.keySet();
+    }
+
+    /**
+     * @return true if the file is in the change and the line was added or modified.
+     */
+    public boolean isChanged(String path, int line) {
+        if (!lines.containsKey(path)) {
+            return false;
+        }
+        BitSet changed = lines.get(path);
+        return changed == null || changed.get(line);
+    }
+
+    @Override
+    public boolean accept(AuditEvent event) {
+        String path = new File(event.getFileName()).getAbsolutePath();
+        return !lines.containsKey(path) || event.getLine() == 0 || isChanged(path, event.getLine());
+    }
+
+}
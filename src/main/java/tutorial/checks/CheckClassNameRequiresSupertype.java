@@ -0,0 +1,91 @@
+package tutorial.checks;
+
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Classes whose name has a given prefix or suffix must extend (or implement) a given supertype. It
+ * generalizes {@link CheckHtmlActionExtendsHtmlActionSupport} to any number of rules, loaded from the
+ * file (or classpath resource) given in property rulesFile. See {@link ClassNameRules} for the format of
+ * the file.
+ * <p>
+ * With property sourcePath, a class also satisfies a rule when the supertype is an indirect one, e.g. the
+ * superclass of its superclass, found in the {@link ClassHierarchyIndex} of the code base.
+ */
+public class CheckClassNameRequiresSupertype extends CustomCheck {
+
+    /** Rules used when property rulesFile is not set */
+    public static final String DEFAULT_RULES_FILE = "tutorial/checks/class_name_rules.txt";
+
+    /** Message pattern; the message of the rule is the argument, so it is not parsed by MessageFormat */
+    private static final String MESSAGE_PATTERN = "{0}";
+
+    private ClassNameRules rules;
+
+    /**
+     * Sets the file (or classpath resource) with the class name rules.
+     */
+    public void setRulesFile(String rulesFile) {
+        rules = ClassNameRules.load(rulesFile);
+    }
+
+    @Override
+    public void init() {
+        if (rules == null) {
+            rules = ClassNameRules.load(DEFAULT_RULES_FILE);
+        }
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[] {TokenTypes.CLASS_DEF};
+    }
+
+    /**
+     * @return the prefixes and suffixes of the rules: only classes whose name has one of them are checked.
+     */
+    @Override
+    public String[] getRequiredLiterals() {
+        return rules.getAffixes();
+    }
+
+    @Override
+    public void visitToken(DetailAST aAST) {
+        if (isPackageIgnored()) {
+            return;
+        }
+        String className = aAST.findFirstToken(TokenTypes.IDENT).getText();
+        List<ClassNameRules.Rule> classRules = rules.rulesFor(className);
+        if (classRules.isEmpty()) {
+            return;
+        }
+        List<String> superclasses = getSimpleTypeNames(aAST.findFirstToken(TokenTypes.EXTENDS_CLAUSE));
+        List<String> interfaces = getSimpleTypeNames(aAST.findFirstToken(TokenTypes.IMPLEMENTS_CLAUSE));
+        for (ClassNameRules.Rule rule : classRules) {
+            List<String> supertypes = rule.isImplementsRequired() ? interfaces : superclasses;
+            if (!endsWithAny(supertypes, rule.getSupertype()) && !inheritsSupertype(aAST, rule.getSupertype())) {
+                log(aAST.getLineNo(), MESSAGE_PATTERN, rule.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return true if, with property sourcePath, an indirect supertype of the class ends with the name.
+     */
+    private boolean inheritsSupertype(DetailAST classDefToken, String supertype) {
+        ClassHierarchyIndex hierarchy = getClassHierarchy();
+        return hierarchy != null && hierarchy.hasSupertypeEndingWith(getQualifiedClassName(classDefToken), supertype);
+    }
+
+    private static boolean endsWithAny(List<String> names, String suffix) {
+        for (String name : names) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -7,13 +7,28 @@ public class CheckHtmlActionExtendsHtmlActionSupport extends CustomCheck {
 
     public static final String CHECK_VIOLATION_MESSAGE = "HTML action classes must extend HTMLActionSupport";
 
+    private static final String HTML_ACTION = "HTMLAction";
+
+    private static final String HTML_ACTION_SUPPORT = "HTMLActionSupport";
+
     @Override
     public int[] getDefaultTokens() {
         return new int[] {TokenTypes.CLASS_DEF};
     }
 
+    /**
+     * @return only classes whose name ends with HTMLAction are checked.
+     */
+    @Override
+    public String[] getRequiredLiterals() {
+        return new String[] {HTML_ACTION};
+    }
+
     @Override
     public void visitToken(DetailAST aAST) {
+        if (isPackageIgnored()) {
+            return;
+        }
         if (aAST.getType() == TokenTypes.CLASS_DEF) {
             visitClassDef(aAST);
         }
@@ -21,7 +36,7 @@ public class CheckHtmlActionExtendsHtmlActionSupport extends CustomCheck {
 
     private void visitClassDef(DetailAST classDefToken) {
         String className = classDefToken.findFirstToken(TokenTypes.IDENT).getText();
-        if (className.endsWith("HTMLAction")) {
+        if (className.endsWith(HTML_ACTION)) {
             boolean extendsOk = extendsHtmlActionSupport(classDefToken);
             if (!extendsOk) {
                 log(classDefToken.getLineNo(), CHECK_VIOLATION_MESSAGE);
@@ -29,15 +44,21 @@ public class CheckHtmlActionExtendsHtmlActionSupport extends CustomCheck {
         }
     }
 
+    /**
+     * @return true if the superclass is HTMLActionSupport or, with property sourcePath, if HTMLActionSupport
+     *         is an indirect supertype.
+     */
     private boolean extendsHtmlActionSupport(DetailAST classDefToken) {
-        DetailAST extendsToken = classDefToken.findFirstToken(TokenTypes.EXTENDS_CLAUSE);
-        if (extendsToken != null) {
-            String superClass = extendsToken.getFirstChild().getText();
-            if (superClass.endsWith("HTMLActionSupport")) {
-                return true;
-            }
+        String superClass = getSuperClassName(classDefToken);
+        if (superClass == null) {
+            return false;
+        }
+        if (superClass.endsWith(HTML_ACTION_SUPPORT)) {
+            return true;
         }
-        return false;
+        ClassHierarchyIndex hierarchy = getClassHierarchy();
+        return hierarchy != null
+                && hierarchy.hasSupertypeEndingWith(getQualifiedClassName(classDefToken), HTML_ACTION_SUPPORT);
     }
 
 }
@@ -0,0 +1,68 @@
+package tutorial.checks;
+
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Classes in a package must not import classes of the packages forbidden by the dependency rules. It
+ * generalizes {@link CheckProcessManagerCallsOpc} to any number of rules, loaded from the file (or
+ * classpath resource) given in property rulesFile. See {@link DependencyRules} for the format of the
+ * file.
+ */
+public class CheckLayerDependencies extends CustomCheck {
+
+    /** Rules used when property rulesFile is not set */
+    public static final String DEFAULT_RULES_FILE = "tutorial/checks/layer_dependencies.txt";
+
+    /** Message pattern; the message of the rule is the argument, so it is not parsed by MessageFormat */
+    private static final String MESSAGE_PATTERN = "{0}";
+
+    private DependencyRules rules;
+
+    /** Rules that apply to the package of the file being checked; null if none */
+    private List<PackageTrie<DependencyRules.Rule>> rulesOfPackage;
+
+    /**
+     * Sets the file (or classpath resource) with the dependency rules.
+     */
+    public void setRulesFile(String rulesFile) {
+        rules = DependencyRules.load(rulesFile);
+    }
+
+    @Override
+    public void init() {
+        if (rules == null) {
+            rules = DependencyRules.load(DEFAULT_RULES_FILE);
+        }
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[] {TokenTypes.PACKAGE_DEF, TokenTypes.IMPORT, TokenTypes.STATIC_IMPORT};
+    }
+
+    @Override
+    public void beginTree(DetailAST rootAST) {
+        super.beginTree(rootAST);
+        // this check object can analyze several source files in a row
+        rulesOfPackage = null;
+    }
+
+    @Override
+    public void visitToken(DetailAST aAST) {
+        if (isPackageIgnored()) {
+            return;
+        }
+        if (aAST.getType() == TokenTypes.PACKAGE_DEF) {
+            rulesOfPackage = rules.rulesFor(aAST);
+        } else if (rulesOfPackage != null) {
+            DependencyRules.Rule rule = DependencyRules.findViolatedRule(rulesOfPackage, aAST);
+            if (rule != null) {
+                log(aAST.getLineNo(), MESSAGE_PATTERN, rule.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+package tutorial.checks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AbstractFileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Checks the dependencies of the whole code base, not one file at a time. While the files are processed,
+ * it records the import edges between packages and between classes in a {@link DependencyGraph}; when
+ * all files are processed, it reports:
+ * <ul>
+ * <li>imports from a package of a lower layer to a package of an upper layer. Layers are given in
+ * property layers as a comma-separated list of package prefixes, from the top layer to the bottom one;
+ * <li>cycles between packages (property packageCycles, default true) and between classes (property
+ * classCycles, default false), found as strongly connected components of the graphs.
+ * </ul>
+ * Each violation is reported at the import where the edge was first seen. This is a file set check: it
+ * goes directly under Checker in the configuration, not under TreeWalker. It reads the imports with a
+ * {@link HeaderLexer}, so it parses a file only when the lexer cannot read its header.
+ */
+public class CheckPackageDependencyGraph extends AbstractFileSetCheck {
+
+    private static final String LAYER_MESSAGE = "Package {0} must not depend on package {1} of an upper layer.";
+
+    private static final String PACKAGE_CYCLE_MESSAGE = "Cycle between packages: {0}.";
+
+    private static final String CLASS_CYCLE_MESSAGE = "Cycle between classes: {0}.";
+
+    /** Layer index of each package prefix; 0 is the top layer */
+    private PackageTrie<Integer> layers = new PackageTrie<Integer>();
+
+    private boolean packageCycles = true;
+
+    private boolean classCycles = false;
+
+    private NameTable files;
+
+    private DependencyGraph packageGraph;
+
+    private DependencyGraph classGraph;
+
+    /** Violations found at the end of the processing, by file name and then line */
+    private final Map<String, Map<Integer, List<Violation>>> violations = new TreeMap<String, Map<Integer, List<Violation>>>();
+
+    /**
+     * Sets the layers, from the top layer to the bottom one. Each layer is a package prefix.
+     */
+    public void setLayers(String... layerPackages) {
+        layers = new PackageTrie<Integer>();
+        int layer = 0;
+        for (String layerPackage : layerPackages) {
+            if (layerPackage.trim().length() > 0) {
+                layers.put(layerPackage.trim(), layer++);
+            }
+        }
+    }
+
+    public void setPackageCycles(boolean packageCycles) {
+        this.packageCycles = packageCycles;
+    }
+
+    public void setClassCycles(boolean classCycles) {
+        this.classCycles = classCycles;
+    }
+
+    @Override
+    public void beginProcessing(String charset) {
+        super.beginProcessing(charset);
+        files = new NameTable();
+        packageGraph = new DependencyGraph();
+        classGraph = new DependencyGraph();
+    }
+
+    @Override
+    protected void processFiltered(File file, List<String> lines) throws CheckstyleException {
+        HeaderLexer header = HeaderLexer.lex(lines);
+        if (header.isComplete()) {
+            int fileId = files.intern(file.getPath());
+            String packageName = header.getPackageName() == null ? "" : header.getPackageName();
+            String className = className(packageName, file);
+            for (int index = 0; index < header.getImportCount(); index++) {
+                addImport(fileId, packageName, className, header.getImportName(index), header.getImportLine(index));
+            }
+            return;
+        }
+        DetailAST rootAST;
+        try {
+            rootAST = TreeWalker.parse(new FileContents(FileText.fromLines(file, lines)));
+        } catch (RecognitionException e) {
+            // parse errors are reported by TreeWalker
+            return;
+        } catch (TokenStreamException e) {
+            return;
+        }
+        int fileId = files.intern(file.getPath());
+        String packageName = "";
+        for (DetailAST topLevel = rootAST; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            if (topLevel.getType() == TokenTypes.PACKAGE_DEF) {
+                packageName = CustomCheck.qualifiedNameOf(topLevel);
+            } else if (topLevel.getType() == TokenTypes.IMPORT || topLevel.getType() == TokenTypes.STATIC_IMPORT) {
+                addImport(fileId, packageName, className(packageName, file), CustomCheck.qualifiedNameOf(topLevel),
+                        topLevel.getLineNo());
+            }
+        }
+    }
+
+    /**
+     * Records the package and class edges of an import.
+     */
+    private void addImport(int fileId, String packageName, String className, String importName, int line) {
+        int classEnd = classNameEnd(importName);
+        String importedPackage = classEnd < 0 ? stripWildcard(importName) : packageOf(importName, classEnd);
+        if (!importedPackage.equals(packageName)) {
+            packageGraph.addEdge(packageGraph.addNode(packageName), packageGraph.addNode(importedPackage), fileId, line);
+        }
+        if (classEnd >= 0) {
+            String importedClass = importName.substring(0, classEnd);
+            if (!importedClass.equals(className)) {
+                classGraph.addEdge(classGraph.addNode(className), classGraph.addNode(importedClass), fileId, line);
+            }
+        }
+    }
+
+    @Override
+    public void finishProcessing() {
+        checkLayers();
+        if (packageCycles) {
+            checkCycles(packageGraph, PACKAGE_CYCLE_MESSAGE);
+        }
+        if (classCycles) {
+            checkCycles(classGraph, CLASS_CYCLE_MESSAGE);
+        }
+        for (Map.Entry<String, Map<Integer, List<Violation>>> fileViolations : violations.entrySet()) {
+            String fileName = fileViolations.getKey();
+            getMessageDispatcher().fireFileStarted(fileName);
+            for (Map.Entry<Integer, List<Violation>> lineViolations : fileViolations.getValue().entrySet()) {
+                for (Violation violation : lineViolations.getValue()) {
+                    log(lineViolations.getKey(), violation.message, violation.args);
+                }
+            }
+            fireErrors(fileName);
+            getMessageDispatcher().fireFileFinished(fileName);
+        }
+        violations.clear();
+        files = null;
+        packageGraph = null;
+        classGraph = null;
+    }
+
+    private void checkLayers() {
+        if (layers.size() == 0) {
+            return;
+        }
+        int[] layerOfNode = new int[packageGraph.nodeCount()];
+        for (int node = 0; node < layerOfNode.length; node++) {
+            Integer layer = layers.findLongestPrefix(packageGraph.nodeName(node));
+            layerOfNode[node] = layer == null ? -1 : layer;
+        }
+        for (int edge = 0; edge < packageGraph.edgeCount(); edge++) {
+            int sourceLayer = layerOfNode[packageGraph.edgeSource(edge)];
+            int targetLayer = layerOfNode[packageGraph.edgeTarget(edge)];
+            if (sourceLayer >= 0 && targetLayer >= 0 && targetLayer < sourceLayer) {
+                addViolation(packageGraph, edge, LAYER_MESSAGE,
+                        packageGraph.nodeName(packageGraph.edgeSource(edge)), packageGraph.nodeName(packageGraph.edgeTarget(edge)));
+            }
+        }
+    }
+
+    /**
+     * Reports each cycle once, at the first edge of the cycle that was seen.
+     */
+    private void checkCycles(DependencyGraph graph, String message) {
+        int[] component = graph.stronglyConnectedComponents();
+        int[] componentSize = new int[graph.nodeCount()];
+        for (int node = 0; node < component.length; node++) {
+            componentSize[component[node]]++;
+        }
+        boolean[] reported = new boolean[graph.nodeCount()];
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int cycle = component[graph.edgeSource(edge)];
+            if (cycle == component[graph.edgeTarget(edge)] && componentSize[cycle] > 1 && !reported[cycle]) {
+                reported[cycle] = true;
+                TreeSet<String> members = new TreeSet<String>();
+                for (int node = 0; node < component.length; node++) {
+                    if (component[node] == cycle) {
+                        members.add(graph.nodeName(node));
+                    }
+                }
+                StringBuilder names = new StringBuilder();
+                for (String member : members) {
+                    names.append(names.length() == 0 ? "" : ", ").append(member);
+                }
+                addViolation(graph, edge, message, names.toString());
+            }
+        }
+    }
+
+    private void addViolation(DependencyGraph graph, int edge, String message, Object... args) {
+        String fileName = files.name(graph.edgeFile(edge));
+        Map<Integer, List<Violation>> fileViolations = violations.get(fileName);
+        if (fileViolations == null) {
+            fileViolations = new TreeMap<Integer, List<Violation>>();
+            violations.put(fileName, fileViolations);
+        }
+        List<Violation> lineViolations = fileViolations.get(graph.edgeLine(edge));
+        if (lineViolations == null) {
+            lineViolations = new ArrayList<Violation>(1);
+            fileViolations.put(graph.edgeLine(edge), lineViolations);
+        }
+        lineViolations.add(new Violation(message, args));
+    }
+
+    /**
+     * @return fully qualified name of the top-level class of the file, by the name of the file.
+     */
+    private static String className(String packageName, File file) {
+        String simpleName = file.getName();
+        int dot = simpleName.lastIndexOf('.');
+        if (dot > 0) {
+            simpleName = simpleName.substring(0, dot);
+        }
+        return packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+    }
+
+    /**
+     * By convention, the first segment of an import starting with an upper case letter is the class:
+     * "a.b.C" and "a.b.C.D" import classes of package "a.b", "a.b.*" imports package "a.b".
+     *
+     * @return the index after the class segment of the import, or -1 if the import has no class.
+     */
+    static int classNameEnd(String importName) {
+        int start = 0;
+        while (start < importName.length()) {
+            int end = importName.indexOf('.', start);
+            if (end < 0) {
+                end = importName.length();
+            }
+            if (Character.isUpperCase(importName.charAt(start))) {
+                return end;
+            }
+            start = end + 1;
+        }
+        return -1;
+    }
+
+    private static String packageOf(String importName, int classEnd) {
+        int lastDot = importName.lastIndexOf('.', classEnd - 1);
+        return lastDot < 0 ? "" : importName.substring(0, lastDot);
+    }
+
+    private static String stripWildcard(String importName) {
+        return importName.endsWith(".*") ? importName.substring(0, importName.length() - 2) : importName;
+    }
+
+    private static final class Violation {
+
+        private final String message;
+
+        private final Object[] args;
+
+        Violation(String message, Object[] args) {
+            this.message = message;
+            this.args = args;
+        }
+
+    }
+
+}
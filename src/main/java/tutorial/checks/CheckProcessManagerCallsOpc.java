@@ -10,6 +10,10 @@ public class CheckProcessManagerCallsOpc extends CustomCheck {
 
     public static final String CHECK_VIOLATION_MESSAGE = "Classes in processmanager should not call classes in opc.";
 
+    static final PackagePrefix PROCESS_MANAGER = PackagePrefix.of("com.sun.j2ee.blueprints.processmanager");
+
+    static final PackagePrefix OPC = PackagePrefix.of("com.sun.j2ee.blueprints.opc");
+
     private boolean inProcessManager;
 
     @Override
@@ -17,21 +21,25 @@ public class CheckProcessManagerCallsOpc extends CustomCheck {
         return new int[] {TokenTypes.PACKAGE_DEF, TokenTypes.IMPORT};
     }
 
+    /**
+     * @return only files in processmanager are checked.
+     */
     @Override
-    public void visitToken(DetailAST aAST) {
+    public String[] getRequiredLiterals() {
+        return new String[] {"processmanager"};
+    }
 
+    @Override
+    public void visitToken(DetailAST aAST) {
+        if (isPackageIgnored()) {
+            return;
+        }
         if (aAST.getType() == TokenTypes.PACKAGE_DEF) {
-            String packageName = fullyQualifiedPackage(aAST);
-            if (packageName != null && packageName.startsWith("com.sun.j2ee.blueprints.processmanager")) {
-                inProcessManager = true;
-            } else {
-                inProcessManager = false;
-            }
+            inProcessManager = PROCESS_MANAGER.matches(aAST);
             // IMPORTANT: must set inProcessManager to either true or false because it's an instance
             // variable and *this* check object can analyze several source files in a row
         } else if (aAST.getType() == TokenTypes.IMPORT && inProcessManager) {
-            String importName = fullyQualifiedPackage(aAST);
-            if (importName.startsWith("com.sun.j2ee.blueprints.opc")) {
+            if (OPC.matches(aAST)) {
                 log(aAST.getLineNo(), CHECK_VIOLATION_MESSAGE);
             }
         }
@@ -0,0 +1,211 @@
+package tutorial.checks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Runs many {@link CustomRule} objects in a single check. The tokens of all rules are merged into one
+ * dispatch table, so each token is sent only to the rules that asked for it, and the facts shared by
+ * the rules (package, imports, current class and superclass) are worked out once per file instead of
+ * once per rule. The rules are given by class name in property rules (comma-separated).
+ */
+public class CheckRuleHost extends CustomCheck {
+
+    /** Rules used when property rules is not set */
+    public static final String[] DEFAULT_RULES = {ProcessManagerCallsOpcRule.class.getName(),
+            HtmlActionExtendsHtmlActionSupportRule.class.getName()};
+
+    /** Tokens the host always needs to work out the file facts */
+    private static final int[] FACT_TOKENS = {TokenTypes.PACKAGE_DEF, TokenTypes.IMPORT, TokenTypes.STATIC_IMPORT,
+            TokenTypes.CLASS_DEF};
+
+    /** Message pattern; the message of the rule is the argument, so it is not parsed by MessageFormat */
+    private static final String MESSAGE_PATTERN = "{0}";
+
+    private static final CustomRule[] NO_RULES = new CustomRule[0];
+
+    private CustomRule[] rules;
+
+    /** Rules interested in each token type, indexed by token type */
+    private CustomRule[][] rulesByToken;
+
+    private final FileFacts facts = new FileFacts();
+
+    /**
+     * Sets the class names of the rules run by this check.
+     */
+    public void setRules(String... ruleClassNames) {
+        List<CustomRule> newRules = new ArrayList<CustomRule>();
+        for (String ruleClassName : ruleClassNames) {
+            if (ruleClassName.trim().length() > 0) {
+                newRules.add(createRule(ruleClassName.trim()));
+            }
+        }
+        setRules(newRules);
+    }
+
+    /**
+     * Sets the rules run by this check and builds the dispatch table.
+     */
+    void setRules(List<CustomRule> newRules) {
+        rules = newRules.toArray(new CustomRule[newRules.size()]);
+        int maxType = 0;
+        for (int type : FACT_TOKENS) {
+            maxType = Math.max(maxType, type);
+        }
+        for (CustomRule rule : rules) {
+            rule.setHost(this);
+            for (int type : rule.getTokens()) {
+                maxType = Math.max(maxType, type);
+            }
+        }
+        List<List<CustomRule>> table = new ArrayList<List<CustomRule>>(maxType + 1);
+        for (int type = 0; type <= maxType; type++) {
+            table.add(new ArrayList<CustomRule>(1));
+        }
+        for (CustomRule rule : rules) {
+            for (int type : rule.getTokens()) {
+                if (!table.get(type).contains(rule)) {
+                    table.get(type).add(rule);
+                }
+            }
+        }
+        rulesByToken = new CustomRule[maxType + 1][];
+        for (int type = 0; type <= maxType; type++) {
+            rulesByToken[type] = table.get(type).isEmpty() ? NO_RULES : table.get(type).toArray(NO_RULES);
+        }
+    }
+
+    private CustomRule createRule(String ruleClassName) {
+        ClassLoader classLoader = getClassLoader() != null ? getClassLoader() : CheckRuleHost.class.getClassLoader();
+        try {
+            Class<?> ruleClass = Class.forName(ruleClassName, true, classLoader);
+            return (CustomRule) ruleClass.getDeclaredConstructor().newInstance();
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(ruleClassName + " is not a " + CustomRule.class.getName(), e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException("Unable to create rule " + ruleClassName, e.getCause());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to create rule " + ruleClassName, e);
+        }
+    }
+
+    @Override
+    public void init() {
+        if (rules == null) {
+            setRules(DEFAULT_RULES);
+        }
+    }
+
+    /**
+     * @return the fact tokens plus the tokens of all the rules.
+     */
+    @Override
+    public int[] getDefaultTokens() {
+        int[] tokens = new int[rulesByToken.length];
+        int i = 0;
+        for (int type = 0; type < rulesByToken.length; type++) {
+            if (rulesByToken[type].length > 0 || isFactToken(type)) {
+                tokens[i++] = type;
+            }
+        }
+        int[] result = new int[i];
+        System.arraycopy(tokens, 0, result, 0, i);
+        return result;
+    }
+
+    private static boolean isFactToken(int type) {
+        for (int factToken : FACT_TOKENS) {
+            if (factToken == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the literals of all the rules, or null if a rule has none.
+     */
+    @Override
+    public String[] getRequiredLiterals() {
+        List<String> literals = new ArrayList<String>();
+        for (CustomRule rule : rules) {
+            String[] ruleLiterals = rule.getRequiredLiterals();
+            if (ruleLiterals == null) {
+                return null;
+            }
+            literals.addAll(Arrays.asList(ruleLiterals));
+        }
+        return literals.toArray(new String[literals.size()]);
+    }
+
+    @Override
+    public void beginTree(DetailAST rootAST) {
+        super.beginTree(rootAST);
+        facts.clear();
+        if (isPackageIgnored()) {
+            return;
+        }
+        for (CustomRule rule : rules) {
+            rule.beginTree(facts);
+        }
+    }
+
+    @Override
+    public void visitToken(DetailAST aAST) {
+        if (isPackageIgnored()) {
+            return;
+        }
+        switch (aAST.getType()) {
+        case TokenTypes.PACKAGE_DEF:
+            facts.setPackageName(fullyQualifiedPackage(aAST));
+            break;
+        case TokenTypes.IMPORT:
+        case TokenTypes.STATIC_IMPORT:
+            facts.addImport(fullyQualifiedPackage(aAST));
+            break;
+        case TokenTypes.CLASS_DEF:
+            List<String> superclasses = getSimpleTypeNames(aAST.findFirstToken(TokenTypes.EXTENDS_CLAUSE));
+            facts.enterClass(aAST.findFirstToken(TokenTypes.IDENT).getText(), superclasses.isEmpty() ? null : superclasses.get(0));
+            break;
+        default:
+            break;
+        }
+        for (CustomRule rule : rulesByToken[aAST.getType()]) {
+            rule.visitToken(aAST, facts);
+        }
+    }
+
+    @Override
+    public void leaveToken(DetailAST aAST) {
+        if (isPackageIgnored()) {
+            return;
+        }
+        for (CustomRule rule : rulesByToken[aAST.getType()]) {
+            rule.leaveToken(aAST, facts);
+        }
+        if (aAST.getType() == TokenTypes.CLASS_DEF) {
+            facts.leaveClass();
+        }
+    }
+
+    @Override
+    public void finishTree(DetailAST rootAST) {
+        if (!isPackageIgnored()) {
+            for (CustomRule rule : rules) {
+                rule.finishTree(facts);
+            }
+        }
+        super.finishTree(rootAST);
+    }
+
+    void logRuleViolation(int line, String message) {
+        log(line, MESSAGE_PATTERN, message);
+    }
+
+}
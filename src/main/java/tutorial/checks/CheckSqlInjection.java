@@ -0,0 +1,83 @@
+package tutorial.checks;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Reports SQL built from request data, or concatenated with a variable, that is passed to a method that
+ * runs or prepares it: Statement.executeQuery, Connection.prepareStatement, Hibernate's Session.createQuery,
+ * etc. The SQL is followed back through the local variables of the method ({@link DataFlow}), so in
+ *
+ * <pre>
+ * String sql = "select * from item where id = " + request.getParameter("id");
+ * statement.executeQuery(sql);
+ * </pre>
+ *
+ * the call to executeQuery is reported. Concatenation of literals and of constants (names in upper case)
+ * is allowed. The methods checked are set in property sinks; the SQL is their first argument.
+ */
+public class CheckSqlInjection extends CustomCheck {
+
+    public static final String REQUEST_MESSAGE = "SQL built from request data is passed to {0}.";
+
+    public static final String CONCATENATION_MESSAGE = "SQL concatenated with a variable is passed to {0}; use bind parameters.";
+
+    /** Methods checked unless property sinks is set */
+    public static final String[] DEFAULT_SINKS = {"execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+            "addBatch", "prepareStatement", "prepareCall", "createQuery", "createSQLQuery", "createNativeQuery"};
+
+    private Set<String> sinks = new HashSet<String>(Arrays.asList(DEFAULT_SINKS));
+
+    /**
+     * Sets the names of the methods whose first argument is SQL.
+     */
+    public void setSinks(String... methods) {
+        sinks = new HashSet<String>();
+        for (String method : methods) {
+            if (method.trim().length() > 0) {
+                sinks.add(method.trim());
+            }
+        }
+    }
+
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[] {TokenTypes.METHOD_CALL};
+    }
+
+    /**
+     * @return only files that call a sink are checked.
+     */
+    @Override
+    public String[] getRequiredLiterals() {
+        return sinks.toArray(new String[sinks.size()]);
+    }
+
+    @Override
+    public void visitToken(DetailAST aAST) {
+        if (isPackageIgnored()) {
+            return;
+        }
+        String method = DataFlow.methodName(aAST);
+        if (!sinks.contains(method)) {
+            return;
+        }
+        DetailAST arguments = aAST.findFirstToken(TokenTypes.ELIST);
+        DetailAST sql = arguments == null ? null : arguments.getFirstChild();
+        DataFlow dataFlow = sql == null ? null : getDataFlow(aAST);
+        if (dataFlow == null) {
+            return;
+        }
+        int value = dataFlow.getValue(sql);
+        if ((value & DataFlow.REQUEST) != 0) {
+            log(aAST.getLineNo(), REQUEST_MESSAGE, method);
+        } else if ((value & DataFlow.CONCATENATED) != 0) {
+            log(aAST.getLineNo(), CONCATENATION_MESSAGE, method);
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package tutorial.checks;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+/**
+ * Reports the nodes matched by structural patterns, so that a rule about the shape of the code is a line
+ * of XML instead of a check with hand-written recursion over the tree. The rules are loaded from the file
+ * (or classpath resource) given in property rulesFile; see {@link StructuralRules} for the format of the
+ * file and {@link StructuralMatcher} for the language of the patterns. The patterns of all rules are
+ * evaluated together in a single walk of each file.
+ */
+public class CheckStructuralRules extends CustomCheck {
+
+    /** Rules used when property rulesFile is not set */
+    public static final String DEFAULT_RULES_FILE = "structural_rules.xml";
+
+    /** Message pattern; the message of the rule is the argument, so it is not parsed by MessageFormat */
+    private static final String MESSAGE_PATTERN = "{0}";
+
+    private StructuralRules rules;
+
+    private final StructuralMatcher.Handler handler = new StructuralMatcher.Handler() {
+        @Override
+        public void matched(int rule, DetailAST node) {
+            log(node.getLineNo(), MESSAGE_PATTERN, rules.getMessage(rule));
+        }
+    };
+
+    /**
+     * Sets the file (or classpath resource) with the structural rules.
+     */
+    public void setRulesFile(String rulesFile) {
+        rules = StructuralRules.load(rulesFile);
+    }
+
+    @Override
+    public void init() {
+        if (rules == null) {
+            rules = StructuralRules.load(DEFAULT_RULES_FILE);
+        }
+    }
+
+    /**
+     * @return no tokens: the matcher walks the whole tree from beginTree.
+     */
+    @Override
+    public int[] getDefaultTokens() {
+        return new int[0];
+    }
+
+    /**
+     * @return a literal of each rule, when every rule compares a name to a value.
+     */
+    @Override
+    public String[] getRequiredLiterals() {
+        return rules.getRequiredLiterals();
+    }
+
+    @Override
+    public void beginTree(DetailAST rootAST) {
+        super.beginTree(rootAST);
+        if (rootAST != null && !isPackageIgnored()) {
+            rules.getMatcher().match(rootAST, handler);
+        }
+    }
+
+}
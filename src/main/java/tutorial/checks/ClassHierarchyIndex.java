@@ -0,0 +1,532 @@
+package tutorial.checks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Supertypes, direct and indirect, of the classes and interfaces declared in the source files of a code
+ * base, so that a check can tell that a class extends a type through a chain of superclasses in other
+ * files.
+ * <p>
+ * The files are read in one pass. The names in the extends and implements clauses are resolved to fully
+ * qualified names with the declarations of the file, its single-type imports and, for the types declared
+ * in the code base, its package and wildcard imports; a name that cannot be resolved (e.g. a class of a
+ * library imported with a wildcard) is kept as written. Names are interned as ints, the supertypes that
+ * come first, and the transitive closure is computed once as a {@link BitSet} of supertype ids per type,
+ * so {@link #isSubtypeOf} is two lookups and a bit test.
+ * <p>
+ * With a cache file, what each file declares is kept between runs; a file whose modification time and
+ * length did not change is not parsed again. The resolution and the closure, which depend on all files,
+ * are computed on every build.
+ * <p>
+ * The index of a source path is shared by the checks of a JVM. A JVM that runs several audits (e.g.
+ * {@link AuditDaemon}, through {@link IncrementalAudit}) calls {@link #beginAudit()} before each one: the
+ * shared index is then checked against the files of the source path when it is first used in the audit,
+ * and rebuilt if a file was added, removed or modified, and an index that an audit did not use is dropped.
+ *
+ * @author Paulo Merson
+ */
+public final class ClassHierarchyIndex {
+
+    /** "CKH1": format of the cache file; change when the layout changes */
+    private static final int MAGIC = 0x434b4831;
+
+    private static final String[] NONE = new String[0];
+
+    private static final BitSet NO_SUPERTYPES = new BitSet(0);
+
+    /** Indexes shared by the checks of a JVM, by source path, charset and cache file */
+    private static final Map<String, ClassHierarchyIndex> SHARED = new HashMap<String, ClassHierarchyIndex>();
+
+    /** Number of the current audit, incremented by {@link #beginAudit()} */
+    private static volatile int audit;
+
+    /** What the files of the index declare, in the order of the files */
+    private List<SourceFile> sources;
+
+    /** Audit in which the shared index was last used */
+    private int lastAudit;
+
+    /** Ids of the supertypes, then of the other types */
+    private final NameTable names = new NameTable();
+
+    /** Number of ids that are supertypes: the ids in the closure are below it */
+    private int supertypeCount;
+
+    /** Ids of the direct and indirect supertypes, by type id */
+    private BitSet[] supertypes;
+
+    /** Supertypes whose name ends with a suffix, by suffix; computed on first use */
+    private final Map<String, BitSet> suffixes = new HashMap<String, BitSet>();
+
+    private int filesParsed;
+
+    private ClassHierarchyIndex() {
+    }
+
+    /**
+     * Starts an audit: drops the shared indexes that the previous audit did not use, and makes the others
+     * check their files on their next use.
+     */
+    static void beginAudit() {
+        synchronized (SHARED) {
+            for (Iterator<ClassHierarchyIndex> i = SHARED.values().iterator(); i.hasNext();) {
+                if (i.next().lastAudit != audit) {
+                    i.remove();
+                }
+            }
+            audit++;
+        }
+    }
+
+    /**
+     * @return the number of the current audit: an index returned by {@link #forSourcePath} in an earlier
+     *         audit may be out of date.
+     */
+    static int currentAudit() {
+        return audit;
+    }
+
+    /**
+     * Returns the index of the java files in the directories, built on the first call for the directories
+     * and shared by the next ones of the same audit.
+     *
+     * @param cacheFile cache of what each file declares, or null for no cache.
+     */
+    static ClassHierarchyIndex forSourcePath(String[] directories, String charset, File cacheFile)
+            throws IOException {
+        String key = Arrays.toString(directories) + '\0' + charset + '\0' + cacheFile;
+        synchronized (SHARED) {
+            ClassHierarchyIndex index = SHARED.get(key);
+            if (index == null || index.lastAudit != audit) {
+                List<File> files = new ArrayList<File>();
+                for (String directory : directories) {
+                    if (directory.trim().length() > 0) {
+                        files.addAll(DiffAudit.javaFiles(new File(directory.trim())));
+                    }
+                }
+                if (index == null || !index.isBuiltFrom(files)) {
+                    index = build(files, charset, cacheFile, index == null ? null : index.sources);
+                    SHARED.put(key, index);
+                }
+                index.lastAudit = audit;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Reads the files, or what they declare from the cache, and computes the hierarchy.
+     *
+     * @param cacheFile cache of what each file declares, or null for no cache.
+     */
+    public static ClassHierarchyIndex build(List<File> files, String charset, File cacheFile) throws IOException {
+        return build(files, charset, cacheFile, null);
+    }
+
+    /**
+     * @param previous what the files of a previous build declared, used instead of the cache file, or null.
+     */
+    private static ClassHierarchyIndex build(List<File> files, String charset, File cacheFile,
+            List<SourceFile> previous) throws IOException {
+        Map<String, SourceFile> cached = new HashMap<String, SourceFile>();
+        if (previous != null) {
+            for (SourceFile source : previous) {
+                cached.put(source.path, source);
+            }
+        } else if (cacheFile != null && cacheFile.isFile()) {
+            cached = load(cacheFile);
+        }
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        List<SourceFile> sources = new ArrayList<SourceFile>(files.size());
+        for (File file : files) {
+            SourceFile source = cached.get(file.getPath());
+            if (source == null || source.lastModified != file.lastModified() || source.length != file.length()) {
+                source = SourceFile.parse(file, charset);
+                index.filesParsed++;
+            }
+            sources.add(source);
+        }
+        if (cacheFile != null) {
+            save(cacheFile, sources);
+        }
+        index.sources = sources;
+        index.link(sources);
+        return index;
+    }
+
+    /**
+     * @return true if the files are those of the index, in the same order, and none was modified since it
+     *         was read.
+     */
+    private boolean isBuiltFrom(List<File> files) {
+        if (files.size() != sources.size()) {
+            return false;
+        }
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            SourceFile source = sources.get(i);
+            if (!source.path.equals(file.getPath()) || source.lastModified != file.lastModified()
+                    || source.length != file.length()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the supertypes of all types, interns the names and computes the closure.
+     */
+    private void link(List<SourceFile> sources) {
+        Set<String> declared = new HashSet<String>();
+        for (SourceFile source : sources) {
+            declared.addAll(Arrays.asList(source.types));
+        }
+        // resolved direct supertypes by type; a type declared in two files has the supertypes of both
+        Map<String, Set<String>> direct = new LinkedHashMap<String, Set<String>>();
+        for (SourceFile source : sources) {
+            for (int i = 0; i < source.types.length; i++) {
+                Set<String> resolved = direct.get(source.types[i]);
+                if (resolved == null) {
+                    resolved = new LinkedHashSet<String>();
+                    direct.put(source.types[i], resolved);
+                }
+                for (String supertype : source.supertypes[i]) {
+                    resolved.add(source.resolve(supertype, declared));
+                }
+            }
+        }
+        for (Set<String> resolved : direct.values()) {
+            for (String supertype : resolved) {
+                names.intern(supertype);
+            }
+        }
+        supertypeCount = names.size();
+        for (String type : direct.keySet()) {
+            names.intern(type);
+        }
+        int[][] directIds = new int[names.size()][];
+        for (Map.Entry<String, Set<String>> entry : direct.entrySet()) {
+            int[] ids = new int[entry.getValue().size()];
+            int i = 0;
+            for (String supertype : entry.getValue()) {
+                ids[i++] = names.find(supertype);
+            }
+            directIds[names.find(entry.getKey())] = ids;
+        }
+        supertypes = new BitSet[names.size()];
+        for (int id = 0; id < supertypes.length; id++) {
+            close(id, directIds, new BitSet());
+        }
+    }
+
+    /**
+     * Computes the supertypes of a type from the supertypes of its direct supertypes. A cycle, which only
+     * broken code has, ends at the type that closes it.
+     */
+    private BitSet close(int id, int[][] directIds, BitSet visiting) {
+        if (supertypes[id] != null) {
+            return supertypes[id];
+        }
+        if (directIds[id] == null) {
+            supertypes[id] = NO_SUPERTYPES;
+            return NO_SUPERTYPES;
+        }
+        if (visiting.get(id)) {
+            return NO_SUPERTYPES;
+        }
+        visiting.set(id);
+        BitSet closure = new BitSet(supertypeCount);
+        for (int supertype : directIds[id]) {
+            closure.set(supertype);
+            closure.or(close(supertype, directIds, visiting));
+        }
+        visiting.clear(id);
+        supertypes[id] = closure;
+        return closure;
+    }
+
+    /**
+     * @param type fully qualified name, with dots for nested types (e.g. "a.b.Outer.Inner").
+     * @param supertype fully qualified name, or the name as written if it was not resolved.
+     * @return true if the supertype is a direct or indirect supertype of the type.
+     */
+    public boolean isSubtypeOf(String type, String supertype) {
+        int id = names.find(type);
+        int supertypeId = names.find(supertype);
+        return id >= 0 && supertypeId >= 0 && supertypeId < supertypeCount && supertypes[id].get(supertypeId);
+    }
+
+    /**
+     * @return true if the name of a direct or indirect supertype of the type ends with the suffix (e.g.
+     * "HTMLActionSupport").
+     */
+    public boolean hasSupertypeEndingWith(String type, String suffix) {
+        int id = names.find(type);
+        return id >= 0 && supertypes[id].intersects(supertypesEndingWith(suffix));
+    }
+
+    private BitSet supertypesEndingWith(String suffix) {
+        synchronized (suffixes) {
+            BitSet matches = suffixes.get(suffix);
+            if (matches == null) {
+                matches = new BitSet(supertypeCount);
+                for (int id = 0; id < supertypeCount; id++) {
+                    if (names.name(id).endsWith(suffix)) {
+                        matches.set(id);
+                    }
+                }
+                suffixes.put(suffix, matches);
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * @return the direct and indirect supertypes of the type; empty if the type is not in the index.
+     */
+    public List<String> getSupertypes(String type) {
+        List<String> result = new ArrayList<String>();
+        int id = names.find(type);
+        if (id >= 0) {
+            for (int supertype = supertypes[id].nextSetBit(0); supertype >= 0; supertype = supertypes[id]
+                    .nextSetBit(supertype + 1)) {
+                result.add(names.name(supertype));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of files parsed by {@link #build}; the others came from the cache.
+     */
+    int getFilesParsed() {
+        return filesParsed;
+    }
+
+    private static Map<String, SourceFile> load(File cacheFile) throws IOException {
+        Map<String, SourceFile> sources = new HashMap<String, SourceFile>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 65536));
+        try {
+            if (in.readInt() != MAGIC) {
+                return sources;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                SourceFile source = new SourceFile(in.readUTF());
+                source.lastModified = in.readLong();
+                source.length = in.readLong();
+                source.packageName = in.readUTF();
+                source.imports = DependencyIndex.readStrings(in);
+                source.wildcards = DependencyIndex.readStrings(in);
+                source.types = DependencyIndex.readStrings(in);
+                source.supertypes = new String[source.types.length][];
+                for (int j = 0; j < source.types.length; j++) {
+                    source.supertypes[j] = DependencyIndex.readStrings(in);
+                }
+                sources.put(source.path, source);
+            }
+        } catch (EOFException e) {
+            // truncated file: every file is parsed
+            sources.clear();
+        } finally {
+            in.close();
+        }
+        return sources;
+    }
+
+    private static void save(File cacheFile, List<SourceFile> sources) throws IOException {
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(sources.size());
+            for (SourceFile source : sources) {
+                out.writeUTF(source.path);
+                out.writeLong(source.lastModified);
+                out.writeLong(source.length);
+                out.writeUTF(source.packageName);
+                DependencyIndex.writeStrings(out, source.imports);
+                DependencyIndex.writeStrings(out, source.wildcards);
+                DependencyIndex.writeStrings(out, source.types);
+                for (String[] typeSupertypes : source.supertypes) {
+                    DependencyIndex.writeStrings(out, typeSupertypes);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (cacheFile.exists() && !cacheFile.delete() || !temp.renameTo(cacheFile)) {
+            throw new IOException("Unable to replace hierarchy cache file " + cacheFile);
+        }
+    }
+
+    /**
+     * What a source file declares: its types, with their supertypes as written, and the names needed to
+     * resolve them.
+     */
+    private static final class SourceFile {
+
+        private final String path;
+
+        private long lastModified;
+
+        private long length;
+
+        /** Package followed by a dot, or empty for the default package */
+        private String packageName = "";
+
+        /** Single-type imports */
+        private String[] imports = NONE;
+
+        /** Packages (or types) imported with a wildcard */
+        private String[] wildcards = NONE;
+
+        /** Fully qualified names of the top-level and member types */
+        private String[] types = NONE;
+
+        /** Names in the extends and implements clauses, as written, by type */
+        private String[][] supertypes = new String[0][];
+
+        SourceFile(String path) {
+            this.path = path;
+        }
+
+        static SourceFile parse(File file, String charset) throws IOException {
+            SourceFile source = new SourceFile(file.getPath());
+            source.lastModified = file.lastModified();
+            source.length = file.length();
+            DetailAST root;
+            try {
+                root = TreeWalker.parse(new FileContents(new FileText(file, charset)));
+            } catch (RecognitionException e) {
+                // no types; the audit reports the parse error
+                return source;
+            } catch (TokenStreamException e) {
+                return source;
+            }
+            List<String> imports = new ArrayList<String>();
+            List<String> wildcards = new ArrayList<String>();
+            List<String> types = new ArrayList<String>();
+            List<String[]> supertypes = new ArrayList<String[]>();
+            for (DetailAST topLevel = root; topLevel != null; topLevel = topLevel.getNextSibling()) {
+                if (topLevel.getType() == TokenTypes.PACKAGE_DEF) {
+                    source.packageName = CustomCheck.qualifiedNameOf(topLevel) + ".";
+                } else if (topLevel.getType() == TokenTypes.IMPORT) {
+                    String importName = CustomCheck.qualifiedNameOf(topLevel);
+                    if (importName.endsWith(".*")) {
+                        wildcards.add(importName.substring(0, importName.length() - 2));
+                    } else {
+                        imports.add(importName);
+                    }
+                } else {
+                    addType(topLevel, source.packageName, types, supertypes);
+                }
+            }
+            source.imports = imports.toArray(NONE);
+            source.wildcards = wildcards.toArray(NONE);
+            source.types = types.toArray(NONE);
+            source.supertypes = supertypes.toArray(new String[supertypes.size()][]);
+            return source;
+        }
+
+        /**
+         * Adds a type definition and its member types.
+         */
+        private static void addType(DetailAST typeDef, String prefix, List<String> types, List<String[]> supertypes) {
+            if (!isTypeDef(typeDef)) {
+                return;
+            }
+            String name = prefix + typeDef.findFirstToken(TokenTypes.IDENT).getText();
+            List<String> names = new ArrayList<String>(1);
+            addTypeNames(names, typeDef.findFirstToken(TokenTypes.EXTENDS_CLAUSE));
+            addTypeNames(names, typeDef.findFirstToken(TokenTypes.IMPLEMENTS_CLAUSE));
+            types.add(name);
+            supertypes.add(names.toArray(NONE));
+            DetailAST body = typeDef.findFirstToken(TokenTypes.OBJBLOCK);
+            for (DetailAST member = body.getFirstChild(); member != null; member = member.getNextSibling()) {
+                addType(member, name + ".", types, supertypes);
+            }
+        }
+
+        private static boolean isTypeDef(DetailAST aAST) {
+            return aAST.getType() == TokenTypes.CLASS_DEF || aAST.getType() == TokenTypes.INTERFACE_DEF
+                    || aAST.getType() == TokenTypes.ENUM_DEF || aAST.getType() == TokenTypes.ANNOTATION_DEF;
+        }
+
+        private static void addTypeNames(List<String> names, DetailAST clause) {
+            if (clause == null) {
+                return;
+            }
+            for (DetailAST type = clause.getFirstChild(); type != null; type = type.getNextSibling()) {
+                if (type.getType() == TokenTypes.IDENT || type.getType() == TokenTypes.DOT) {
+                    names.add(CustomCheck.typeNameOf(type));
+                }
+            }
+        }
+
+        /**
+         * @param name type name as written in the file, simple or qualified.
+         * @param declared types declared in the code base.
+         * @return the fully qualified name, or the name as written if it cannot be resolved.
+         */
+        String resolve(String name, Set<String> declared) {
+            int dot = name.indexOf('.');
+            String first = dot < 0 ? name : name.substring(0, dot);
+            String resolved = resolveSimpleName(first, declared);
+            return resolved == null ? name : resolved + name.substring(first.length());
+        }
+
+        private String resolveSimpleName(String simpleName, Set<String> declared) {
+            String suffix = "." + simpleName;
+            for (String type : types) {
+                if (type.endsWith(suffix) || type.equals(simpleName)) {
+                    return type;
+                }
+            }
+            for (String importName : imports) {
+                if (importName.endsWith(suffix)) {
+                    return importName;
+                }
+            }
+            if (declared.contains(packageName + simpleName)) {
+                return packageName + simpleName;
+            }
+            for (String wildcard : wildcards) {
+                if (declared.contains(wildcard + suffix)) {
+                    return wildcard + suffix;
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
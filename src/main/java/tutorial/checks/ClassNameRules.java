@@ -0,0 +1,157 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rules that require a supertype for the classes whose name has a given prefix or suffix, loaded from
+ * a text file. Each line of the file is a rule, a comment (starting with #) or blank:
+ *
+ * <pre>
+ * suffix HTMLAction extends HTMLActionSupport : HTML action classes must extend HTMLActionSupport
+ * prefix Dao extends DaoGenerico
+ * suffix Bean implements SessionBean
+ * </pre>
+ *
+ * A class whose simple name has the prefix (or suffix) must extend a class (or implement an interface)
+ * whose simple name ends with the given name. The message after ':' is optional.
+ * <p>
+ * Suffix rules are compiled into a trie of reversed suffixes and prefix rules into a trie of prefixes,
+ * so all the rules of a class are found in one scan of its name in each trie, whatever the number of
+ * rules.
+ *
+ * @author Paulo Merson
+ */
+final class ClassNameRules {
+
+    /** A rule of the file */
+    static final class Rule {
+        private final boolean suffix;
+        private final String affix;
+        private final boolean implementsRequired;
+        private final String supertype;
+        private final String message;
+
+        Rule(boolean suffix, String affix, boolean implementsRequired, String supertype, String message) {
+            this.suffix = suffix;
+            this.affix = affix;
+            this.implementsRequired = implementsRequired;
+            this.supertype = supertype;
+            this.message = message;
+        }
+
+        /**
+         * @return true if the class must implement the supertype, false if it must extend it.
+         */
+        boolean isImplementsRequired() {
+            return implementsRequired;
+        }
+
+        /**
+         * @return suffix of the simple name of the required supertype.
+         */
+        String getSupertype() {
+            return supertype;
+        }
+
+        /**
+         * @return the message of the rule or a default message if the rule has none.
+         */
+        String getMessage() {
+            if (message != null) {
+                return message;
+            }
+            return "Classes with " + (suffix ? "suffix " : "prefix ") + affix + " must " +
+                    (implementsRequired ? "implement " : "extend ") + supertype;
+        }
+    }
+
+    private final List<Rule> rules;
+
+    private final NameTrie<Rule> suffixRules = new NameTrie<Rule>(true);
+
+    private final NameTrie<Rule> prefixRules = new NameTrie<Rule>(false);
+
+    ClassNameRules(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<Rule>(rules));
+        for (Rule rule : rules) {
+            if (rule.suffix) {
+                suffixRules.put(rule.affix, rule);
+            } else {
+                prefixRules.put(rule.affix, rule);
+            }
+        }
+    }
+
+    /**
+     * Loads the rules from a file or, if there is no such file, from a resource in the classpath.
+     *
+     * @throws IllegalArgumentException if the rules cannot be read or a line is not a valid rule.
+     */
+    static ClassNameRules load(String location) {
+        List<String> lines = RulesFile.readLines(location);
+        List<Rule> rules = new ArrayList<Rule>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (!RulesFile.isComment(lines.get(i))) {
+                rules.add(parseRule(lines.get(i).trim(), i + 1, location));
+            }
+        }
+        return new ClassNameRules(rules);
+    }
+
+    private static Rule parseRule(String line, int lineNo, String location) {
+        String ruleText = line;
+        String message = null;
+        int colon = line.indexOf(':');
+        if (colon >= 0) {
+            ruleText = line.substring(0, colon).trim();
+            message = line.substring(colon + 1).trim();
+            if (message.length() == 0) {
+                message = null;
+            }
+        }
+        String[] words = ruleText.split("\\s+");
+        if (words.length != 4 || !("suffix".equals(words[0]) || "prefix".equals(words[0])) ||
+                !("extends".equals(words[2]) || "implements".equals(words[2]))) {
+            throw new IllegalArgumentException("Invalid class name rule at line " + lineNo + " of " + location + ": " + line);
+        }
+        return new Rule("suffix".equals(words[0]), words[1], "implements".equals(words[2]), words[3], message);
+    }
+
+    /**
+     * @return all the rules, in the order they were loaded.
+     */
+    List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the prefixes and suffixes of the rules.
+     */
+    String[] getAffixes() {
+        String[] affixes = new String[rules.size()];
+        for (int i = 0; i < affixes.length; i++) {
+            affixes[i] = rules.get(i).affix;
+        }
+        return affixes;
+    }
+
+    /**
+     * @return the rules whose prefix or suffix matches the given class name; empty List if there is none.
+     */
+    List<Rule> rulesFor(String className) {
+        List<Rule> bySuffix = suffixRules.findAll(className);
+        List<Rule> byPrefix = prefixRules.findAll(className);
+        if (byPrefix.isEmpty()) {
+            return bySuffix;
+        }
+        if (bySuffix.isEmpty()) {
+            return byPrefix;
+        }
+        List<Rule> all = new ArrayList<Rule>(bySuffix);
+        all.addAll(byPrefix);
+        return all;
+    }
+
+}
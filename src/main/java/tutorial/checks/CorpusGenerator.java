@@ -0,0 +1,422 @@
+package tutorial.checks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a tree of Java source files to stress the checks at a scale far above the unit test inputs. The
+ * corpus depends only on the properties and the seed, so two runs with the same ones write the same files.
+ * <p>
+ * Known numbers of violations are planted, so that a run on the corpus can also be checked for
+ * correctness:
+ * <ul>
+ * <li>imports of opc classes in processmanager packages, reported by {@link CheckProcessManagerCallsOpc}
+ * and by {@link CheckLayerDependencies} with the default rules;
+ * <li>classes named *HTMLAction that do not extend HTMLActionSupport, reported by
+ * {@link CheckHtmlActionExtendsHtmlActionSupport}.
+ * </ul>
+ * The rest of the corpus has look-alikes that are not violations: opc imports outside processmanager and
+ * HTMLAction classes that extend HTMLActionSupport.
+ * <p>
+ * Usage: {@code java tutorial.checks.CorpusGenerator <directory> [<property>=<value> ...]}, e.g.
+ * {@code files=30000 seed=7}.
+ *
+ * @author Paulo Merson
+ */
+public class CorpusGenerator {
+
+    private static final String BASE_PACKAGE = "com.sun.j2ee.blueprints";
+
+    private static final String PROCESS_MANAGER_PACKAGE = BASE_PACKAGE + ".processmanager.ejb";
+
+    private static final String ACTIONS_PACKAGE = BASE_PACKAGE + ".consumerwebsite.actions";
+
+    /** Packages of the corpus; the first one is processmanager, where opc imports are violations */
+    private static final String[] PACKAGES = {PROCESS_MANAGER_PACKAGE, BASE_PACKAGE + ".processmanager.manager",
+            ACTIONS_PACKAGE, BASE_PACKAGE + ".opc.invoice", BASE_PACKAGE + ".opc.mailer",
+            BASE_PACKAGE + ".waf.controller.web", BASE_PACKAGE + ".customer.ejb", BASE_PACKAGE + ".catalog.dao"};
+
+    private static final String[] OPC_PACKAGES = {BASE_PACKAGE + ".opc", BASE_PACKAGE + ".opc.invoice",
+            BASE_PACKAGE + ".opc.mailer"};
+
+    private static final String[] TYPES = {"int", "long", "String", "boolean"};
+
+    /** One in this many of the classes that are not violations is a compliant HTMLAction class */
+    private static final int COMPLIANT_HTML_ACTION_RATIO = 10;
+
+    private long seed = 1;
+
+    private int files = 100;
+
+    private int classesPerFile = 2;
+
+    private int methodsPerClass = 5;
+
+    private int methodLength = 10;
+
+    private int nestingDepth = 3;
+
+    private int importFanOut = 5;
+
+    private int opcImportViolations = 10;
+
+    private int htmlActionViolations = 10;
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setFiles(int files) {
+        this.files = positive("files", files);
+    }
+
+    public void setClassesPerFile(int classesPerFile) {
+        this.classesPerFile = positive("classesPerFile", classesPerFile);
+    }
+
+    public void setMethodsPerClass(int methodsPerClass) {
+        this.methodsPerClass = notNegative("methodsPerClass", methodsPerClass);
+    }
+
+    /**
+     * Sets the number of statements of each method, not counting the nested blocks.
+     */
+    public void setMethodLength(int methodLength) {
+        this.methodLength = notNegative("methodLength", methodLength);
+    }
+
+    /**
+     * Sets the nesting level of the blocks (if, for, while) of each method.
+     */
+    public void setNestingDepth(int nestingDepth) {
+        this.nestingDepth = notNegative("nestingDepth", nestingDepth);
+    }
+
+    /**
+     * Sets the number of imports of each file, not counting the planted violations. java.util.List is always
+     * imported.
+     */
+    public void setImportFanOut(int importFanOut) {
+        this.importFanOut = notNegative("importFanOut", importFanOut);
+    }
+
+    /**
+     * Sets the number of opc imports planted in processmanager files.
+     */
+    public void setOpcImportViolations(int opcImportViolations) {
+        this.opcImportViolations = notNegative("opcImportViolations", opcImportViolations);
+    }
+
+    /**
+     * Sets the number of HTMLAction classes planted without the HTMLActionSupport superclass.
+     */
+    public void setHtmlActionViolations(int htmlActionViolations) {
+        this.htmlActionViolations = notNegative("htmlActionViolations", htmlActionViolations);
+    }
+
+    private static int positive(String property, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(property + " must be at least 1");
+        }
+        return value;
+    }
+
+    private static int notNegative(String property, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(property + " must not be negative");
+        }
+        return value;
+    }
+
+    /**
+     * Writes the corpus in a directory, one subdirectory per package.
+     */
+    public Corpus generate(File directory) throws IOException {
+        if (htmlActionViolations > files * classesPerFile) {
+            throw new IllegalArgumentException("htmlActionViolations must not exceed files * classesPerFile");
+        }
+        Random random = new Random(seed);
+        String[] packageOfFile = new String[files];
+        List<Integer> processManagerFiles = new ArrayList<Integer>();
+        for (int i = 0; i < files; i++) {
+            // the first file is in processmanager, so that there is a place for the opc imports
+            packageOfFile[i] = i == 0 ? PROCESS_MANAGER_PACKAGE : PACKAGES[random.nextInt(PACKAGES.length)];
+            if (packageOfFile[i].equals(PROCESS_MANAGER_PACKAGE)) {
+                processManagerFiles.add(i);
+            }
+        }
+        int[] opcImportsOfFile = new int[files];
+        for (int i = 0; i < opcImportViolations; i++) {
+            opcImportsOfFile[processManagerFiles.get(random.nextInt(processManagerFiles.size()))]++;
+        }
+        BitSet htmlActionViolationClasses = choose(random, files * classesPerFile, htmlActionViolations);
+        Corpus corpus = new Corpus(opcImportViolations, htmlActionViolations);
+        for (int i = 0; i < files; i++) {
+            FileBuilder source = new FileBuilder(random, i, packageOfFile[i]);
+            source.imports(opcImportsOfFile[i]);
+            for (int c = 0; c < classesPerFile; c++) {
+                source.type(c, htmlActionViolationClasses.get(i * classesPerFile + c));
+            }
+            File packageDirectory = new File(directory, packageOfFile[i].replace('.', File.separatorChar));
+            if (!packageDirectory.isDirectory() && !packageDirectory.mkdirs()) {
+                throw new IOException("Unable to create " + packageDirectory);
+            }
+            File file = new File(packageDirectory, source.publicClassName + ".java");
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write(source.text.toString());
+            } finally {
+                writer.close();
+            }
+            corpus.files.add(file);
+            corpus.lines += source.lines;
+        }
+        return corpus;
+    }
+
+    /**
+     * @return count distinct numbers from 0 to n - 1, chosen at random.
+     */
+    private static BitSet choose(Random random, int n, int count) {
+        List<Integer> numbers = new ArrayList<Integer>(n);
+        for (int i = 0; i < n; i++) {
+            numbers.add(i);
+        }
+        Collections.shuffle(numbers, random);
+        BitSet chosen = new BitSet(n);
+        for (int i = 0; i < count; i++) {
+            chosen.set(numbers.get(i));
+        }
+        return chosen;
+    }
+
+    /**
+     * Text of one file.
+     */
+    private final class FileBuilder {
+
+        private final Random random;
+
+        private final int fileIndex;
+
+        private final String packageName;
+
+        private final StringBuilder text = new StringBuilder();
+
+        /** Name of the first class, which gives the name of the file */
+        private String publicClassName;
+
+        private int lines;
+
+        FileBuilder(Random random, int fileIndex, String packageName) {
+            this.random = random;
+            this.fileIndex = fileIndex;
+            this.packageName = packageName;
+            line("package " + packageName + ";");
+            line("");
+        }
+
+        void imports(int opcImports) {
+            line("import java.util.List;");
+            for (int i = 0; i < opcImports; i++) {
+                line("import " + OPC_PACKAGES[i % OPC_PACKAGES.length] + ".Opc" + fileIndex + "_" + i + ";");
+            }
+            for (int i = 1; i < importFanOut; i++) {
+                String importedPackage = PACKAGES[random.nextInt(PACKAGES.length)];
+                if (importedPackage.startsWith(BASE_PACKAGE + ".opc") && packageName.startsWith(BASE_PACKAGE + ".processmanager")) {
+                    // not a planted violation
+                    importedPackage = BASE_PACKAGE + ".waf.controller.web";
+                }
+                line("import " + importedPackage + ".Imported" + fileIndex + "_" + i + ";");
+            }
+            line("");
+        }
+
+        void type(int classIndex, boolean htmlActionViolation) {
+            String name = "Generated" + fileIndex + "_" + classIndex;
+            String superclass = "";
+            if (htmlActionViolation) {
+                name += "HTMLAction";
+                superclass = " extends BaseAction";
+            } else if (random.nextInt(COMPLIANT_HTML_ACTION_RATIO) == 0) {
+                name += "HTMLAction";
+                superclass = " extends HTMLActionSupport";
+            }
+            if (classIndex == 0) {
+                publicClassName = name;
+                line("public class " + name + superclass + " {");
+            } else {
+                line("class " + name + superclass + " {");
+            }
+            line("");
+            line("    private int counter;");
+            line("");
+            line("    private List<String> names;");
+            for (int m = 0; m < methodsPerClass; m++) {
+                method(m);
+            }
+            line("}");
+            line("");
+        }
+
+        private void method(int methodIndex) {
+            line("");
+            line("    public int method" + methodIndex + "(int param, String text) {");
+            line("        int result = param;");
+            String indent = "        ";
+            for (int depth = 0; depth < nestingDepth; depth++) {
+                switch (random.nextInt(3)) {
+                case 0:
+                    line(indent + "if (result > " + random.nextInt(100) + ") {");
+                    break;
+                case 1:
+                    line(indent + "for (int i" + depth + " = 0; i" + depth + " < param; i" + depth + "++) {");
+                    break;
+                default:
+                    line(indent + "while (result < " + random.nextInt(100) + ") {");
+                    break;
+                }
+                indent += "    ";
+            }
+            for (int s = 0; s < methodLength; s++) {
+                statement(indent, s);
+            }
+            // every loop changes result, so the generated code has no trivially infinite loops
+            line(indent + "result++;");
+            for (int depth = nestingDepth; depth > 0; depth--) {
+                indent = indent.substring(4);
+                line(indent + "}");
+            }
+            line("        return result;");
+            line("    }");
+        }
+
+        private void statement(String indent, int statementIndex) {
+            switch (random.nextInt(4)) {
+            case 0: {
+                String type = TYPES[random.nextInt(TYPES.length)];
+                line(indent + type + " local" + statementIndex + " = " + valueOf(type) + ";");
+                break;
+            }
+            case 1:
+                line(indent + "counter = counter + result * " + random.nextInt(10) + ";");
+                break;
+            case 2:
+                line(indent + "this.counter += text.length();");
+                break;
+            default:
+                line(indent + "result = Math.max(result, names.size());");
+                break;
+            }
+        }
+
+        private String valueOf(String type) {
+            if ("String".equals(type)) {
+                return "text + \"" + random.nextInt(1000) + "\"";
+            } else if ("boolean".equals(type)) {
+                return "result > " + random.nextInt(100);
+            }
+            return "param + " + random.nextInt(1000);
+        }
+
+        private void line(String line) {
+            text.append(line).append('\n');
+            lines++;
+        }
+
+    }
+
+    /**
+     * Files of a generated corpus and the violations planted in them.
+     */
+    public static final class Corpus {
+
+        private final List<File> files = new ArrayList<File>();
+
+        private long lines;
+
+        private final int opcImportViolations;
+
+        private final int htmlActionViolations;
+
+        Corpus(int opcImportViolations, int htmlActionViolations) {
+            this.opcImportViolations = opcImportViolations;
+            this.htmlActionViolations = htmlActionViolations;
+        }
+
+        public List<File> getFiles() {
+            return files;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * @return number of violations of {@link CheckProcessManagerCallsOpc} in the corpus.
+         */
+        public int getOpcImportViolations() {
+            return opcImportViolations;
+        }
+
+        /**
+         * @return number of violations of {@link CheckHtmlActionExtendsHtmlActionSupport} in the corpus.
+         */
+        public int getHtmlActionViolations() {
+            return htmlActionViolations;
+        }
+
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java " + CorpusGenerator.class.getName() + " <directory> [<property>=<value> ...]");
+            System.exit(-1);
+        }
+        CorpusGenerator generator = new CorpusGenerator();
+        for (int i = 1; i < args.length; i++) {
+            String[] property = args[i].split("=", 2);
+            if (property.length != 2) {
+                throw new IllegalArgumentException("Expected <property>=<value>: " + args[i]);
+            }
+            generator.setProperty(property[0], property[1]);
+        }
+        Corpus corpus = generator.generate(new File(args[0]));
+        System.out.println(corpus.getFiles().size() + " files, " + corpus.getLines() + " lines, "
+                + corpus.getOpcImportViolations() + " opc import violations, " + corpus.getHtmlActionViolations()
+                + " HTMLAction violations");
+    }
+
+    private void setProperty(String name, String value) {
+        if ("seed".equals(name)) {
+            setSeed(Long.parseLong(value));
+        } else if ("files".equals(name)) {
+            setFiles(Integer.parseInt(value));
+        } else if ("classesPerFile".equals(name)) {
+            setClassesPerFile(Integer.parseInt(value));
+        } else if ("methodsPerClass".equals(name)) {
+            setMethodsPerClass(Integer.parseInt(value));
+        } else if ("methodLength".equals(name)) {
+            setMethodLength(Integer.parseInt(value));
+        } else if ("nestingDepth".equals(name)) {
+            setNestingDepth(Integer.parseInt(value));
+        } else if ("importFanOut".equals(name)) {
+            setImportFanOut(Integer.parseInt(value));
+        } else if ("opcImportViolations".equals(name)) {
+            setOpcImportViolations(Integer.parseInt(value));
+        } else if ("htmlActionViolations".equals(name)) {
+            setHtmlActionViolations(Integer.parseInt(value));
+        } else {
+            throw new IllegalArgumentException("Unknown property: " + name);
+        }
+    }
+
+}
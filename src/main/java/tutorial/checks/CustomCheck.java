@@ -1,8 +1,13 @@
 package tutorial.checks;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 import com.puppycrawl.tools.checkstyle.api.Check;
 import com.puppycrawl.tools.checkstyle.api.DetailAST;
@@ -16,30 +21,262 @@ import com.puppycrawl.tools.checkstyle.api.TokenTypes;
 public abstract class CustomCheck extends Check {
 
     /**
-     * Regular expression of the packages to ignore in all checks
+     * Packages ignored by all checks unless property packagesToIgnore is set. A file is ignored if its
+     * package is one of these packages or a subpackage.
      */
-    private static final Pattern PACKAGES_TO_IGNORE = Pattern.compile("(br\\.gov\\.tcu\\.contas|br\\.gov\\.tcu\\.econtas" +
-            "|br\\.gov\\.tcu\\.vpost|br\\.gov\\.tcu\\.intmavenflip|br\\.gov\\.tcu\\.vista|br\\.gov\\.tcu\\.tce)");
+    public static final String[] DEFAULT_PACKAGES_TO_IGNORE = {"br.gov.tcu.contas", "br.gov.tcu.econtas",
+            "br.gov.tcu.vpost", "br.gov.tcu.intmavenflip", "br.gov.tcu.vista", "br.gov.tcu.tce"};
+
+    private static final PackageTrie<Boolean> DEFAULT_PACKAGES_TO_IGNORE_TRIE = compilePackagesToIgnore(DEFAULT_PACKAGES_TO_IGNORE);
+
+    /** Packages to ignore in this check, compiled from property packagesToIgnore */
+    private PackageTrie<Boolean> packagesToIgnore = DEFAULT_PACKAGES_TO_IGNORE_TRIE;
 
     /** Variable that is set when the package should be ignored for every check */
     private boolean ignoreThisPackage = false;
 
+    /** Root of the file being checked; set in beginTree and cleared in finishTree */
+    private DetailAST fileRoot;
+
+    /** Index of the nodes of the file being checked by token type; built on first use */
+    private TokenIndex tokenIndex;
+
+    /** Annotations of the declarations of the file being checked; built on first use */
+    private AnnotationIndex annotationIndex;
+
+    /** Symbol tables of the classes of the file being checked, built on first use */
+    private final Map<DetailAST, SymbolTable> symbolTables = new IdentityHashMap<DetailAST, SymbolTable>();
+
+    /** Data flow of the methods of the file being checked, built on first use */
+    private final Map<DetailAST, DataFlow> dataFlows = new IdentityHashMap<DetailAST, DataFlow>();
+
+    /** Cursor reused by the helpers that traverse trees outside the token index */
+    private final AstCursor cursor = new AstCursor();
+
+    /** Bytes allocated by the helpers; null unless allocation accounting is on */
+    private AllocationProfile allocationProfile;
+
+    /** Directories of the code base for the class hierarchy; null unless property sourcePath is set */
+    private String[] sourcePath;
+
+    private String sourceCharset = Charset.defaultCharset().name();
+
+    private File hierarchyCacheFile;
+
+    private ClassHierarchyIndex classHierarchy;
+
+    /** Audit in which classHierarchy was returned by {@link ClassHierarchyIndex#forSourcePath} */
+    private int classHierarchyAudit;
+
+    /**
+     * Sets the packages ignored by this check (property packagesToIgnore in the checkstyle XML, as a
+     * comma-separated list). The default is {@link #DEFAULT_PACKAGES_TO_IGNORE}; an empty value means no
+     * package is ignored.
+     */
+    public void setPackagesToIgnore(String... packages) {
+        packagesToIgnore = compilePackagesToIgnore(packages);
+    }
+
+    private static PackageTrie<Boolean> compilePackagesToIgnore(String... packages) {
+        PackageTrie<Boolean> trie = new PackageTrie<Boolean>();
+        for (String packagePrefix : packages) {
+            if (packagePrefix.trim().length() > 0) {
+                trie.put(packagePrefix, Boolean.TRUE);
+            }
+        }
+        return trie;
+    }
+
+    /**
+     * Sets the directories of the source files of the code base (property sourcePath, comma-separated).
+     * When it is set, checks about supertypes also look at the indirect supertypes, through the
+     * {@link ClassHierarchyIndex} of the files. The index is built when first needed and shared by the
+     * checks with the same source path; it is checked against the files at each audit of
+     * {@link IncrementalAudit}. The results of a file depend on other files, so the cache of
+     * {@link IncrementalAudit} is invalidated by any change to the files of the source path.
+     */
+    public void setSourcePath(String... directories) {
+        sourcePath = directories;
+        classHierarchy = null;
+    }
+
+    /**
+     * Sets the charset of the files in the source path; the default is the default charset of the JVM.
+     */
+    public void setSourceCharset(String sourceCharset) {
+        this.sourceCharset = sourceCharset;
+        classHierarchy = null;
+    }
+
+    /**
+     * Sets the file where the class hierarchy keeps what each file declares between runs.
+     */
+    public void setHierarchyCacheFile(String hierarchyCacheFile) {
+        this.hierarchyCacheFile = new File(hierarchyCacheFile);
+        classHierarchy = null;
+    }
+
+    /**
+     * @return the class hierarchy of the source path, or null if property sourcePath is not set.
+     */
+    protected ClassHierarchyIndex getClassHierarchy() {
+        if (sourcePath != null && (classHierarchy == null
+                || classHierarchyAudit != ClassHierarchyIndex.currentAudit())) {
+            classHierarchyAudit = ClassHierarchyIndex.currentAudit();
+            try {
+                classHierarchy = ClassHierarchyIndex.forSourcePath(sourcePath, sourceCharset, hierarchyCacheFile);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read the source path " + Arrays.toString(sourcePath), e);
+            }
+        }
+        return classHierarchy;
+    }
+
+    /**
+     * @param typeDefToken a CLASS_DEF, INTERFACE_DEF, ENUM_DEF or ANNOTATION_DEF AST.
+     * @return the fully qualified name of the type, with dots for member types (e.g.,
+     *         "com.sun.j2ee.blueprints.Outer.Inner").
+     */
+    protected String getQualifiedClassName(DetailAST typeDefToken) {
+        StringBuilder name = new StringBuilder(typeDefToken.findFirstToken(TokenTypes.IDENT).getText());
+        DetailAST topLevel = typeDefToken;
+        for (DetailAST parent = typeDefToken.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent.getType() == TokenTypes.CLASS_DEF || parent.getType() == TokenTypes.INTERFACE_DEF
+                    || parent.getType() == TokenTypes.ENUM_DEF || parent.getType() == TokenTypes.ANNOTATION_DEF) {
+                name.insert(0, '.').insert(0, parent.findFirstToken(TokenTypes.IDENT).getText());
+            }
+            topLevel = parent;
+        }
+        while (topLevel.getPreviousSibling() != null) {
+            topLevel = topLevel.getPreviousSibling();
+        }
+        if (topLevel.getType() == TokenTypes.PACKAGE_DEF) {
+            name.insert(0, '.').insert(0, qualifiedNameOf(topLevel));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Turns on (or off, with null) the accounting of the bytes allocated by the helpers.
+     */
+    void setAllocationProfile(AllocationProfile allocationProfile) {
+        this.allocationProfile = allocationProfile;
+    }
+
+    private long startHelper() {
+        return allocationProfile == null ? 0 : allocationProfile.start();
+    }
+
+    private void stopHelper(int helper, long start) {
+        if (allocationProfile != null) {
+            allocationProfile.stop(helper, start);
+        }
+    }
+
+    /**
+     * Returns literals of which a file must contain at least one for this check to report a violation in
+     * it, e.g. a part of the class or package names the check looks for. {@link InstrumentedTreeWalker}
+     * with property prefilter does not parse the files that contain none of the literals of any of its
+     * checks. A literal is found anywhere in the text (also in comments), but not across lines nor written
+     * with unicode escapes.
+     * 
+     * @return the literals or null, the default, if the check may report violations in any file.
+     */
+    public String[] getRequiredLiterals() {
+        return null;
+    }
+
+    /**
+     * Decides whether the file is ignored, based on its PACKAGE_DEF.
+     */
+    @Override
+    public void beginTree(DetailAST rootAST) {
+        fileRoot = rootAST;
+        tokenIndex = null;
+        annotationIndex = null;
+        symbolTables.clear();
+        dataFlows.clear();
+        ignoreThisPackage = false;
+        for (DetailAST topLevel = rootAST; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            if (topLevel.getType() == TokenTypes.PACKAGE_DEF) {
+                ignoreThisPackage = packagesToIgnore.size() > 0 && packagesToIgnore.matches(topLevel);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return true if the package of the file being checked is one of the packages to ignore. Subclasses
+     *         should return at once from visitToken and leaveToken when it is true.
+     */
+    protected boolean isPackageIgnored() {
+        return ignoreThisPackage;
+    }
+
+    @Override
+    public void finishTree(DetailAST rootAST) {
+        fileRoot = null;
+        tokenIndex = null;
+        annotationIndex = null;
+        symbolTables.clear();
+        dataFlows.clear();
+    }
+
+    /**
+     * Returns the token index of the file being checked, building it on the first call for the file.
+     * Subclasses that override beginTree or finishTree must call the super implementation.
+     * 
+     * @return the index or null if the given AST is not part of the file being checked (e.g., the
+     *         helper was called outside beginTree/finishTree).
+     */
+    private TokenIndex getTokenIndex(DetailAST aAST) {
+        if (fileRoot == null) {
+            return null;
+        }
+        if (tokenIndex == null) {
+            tokenIndex = new TokenIndex(fileRoot);
+        }
+        if (!tokenIndex.contains(aAST)) {
+            return null;
+        }
+        return tokenIndex;
+    }
+
     /**
      * Returns the fully qualified package in a package definition or import statement.
      * 
-     * @param packageDefOrImportAST an AST of type PACKAGE_DEF or IMPORT
+     * @param packageDefOrImportAST an AST of type PACKAGE_DEF, IMPORT or STATIC_IMPORT
      * @return the fully qualified package name (e.g., "javax.jws.soap") that is in a
      *         package definition statement or an import statement.
      */
     protected String fullyQualifiedPackage(DetailAST packageDefOrImportAST) {
+        long start = startHelper();
+        try {
+            return doFullyQualifiedPackage(packageDefOrImportAST);
+        } finally {
+            stopHelper(AllocationProfile.FULLY_QUALIFIED_PACKAGE, start);
+        }
+    }
+
+    private String doFullyQualifiedPackage(DetailAST packageDefOrImportAST) {
         if (packageDefOrImportAST == null || (packageDefOrImportAST.getType() != TokenTypes.PACKAGE_DEF &&
-                packageDefOrImportAST.getType() != TokenTypes.IMPORT)) {
-            throw new IllegalArgumentException("Parameter packageDefOrImportAST must be a PACKAGE_DEF or IMPORT AST");
+                packageDefOrImportAST.getType() != TokenTypes.IMPORT &&
+                packageDefOrImportAST.getType() != TokenTypes.STATIC_IMPORT)) {
+            throw new IllegalArgumentException("Parameter packageDefOrImportAST must be a PACKAGE_DEF, IMPORT or STATIC_IMPORT AST");
         }
-        DetailAST dot = findFirstAstOfType(packageDefOrImportAST, TokenTypes.DOT);
+        return qualifiedNameOf(packageDefOrImportAST);
+    }
+
+    /**
+     * Same as {@link #fullyQualifiedPackage(DetailAST)}, without checking the type of the parameter, for
+     * the classes in this package that are not checks.
+     */
+    static String qualifiedNameOf(DetailAST packageDefOrImportAST) {
+        // the name is a direct child; annotations of a package definition may have other DOTs
+        DetailAST dot = packageDefOrImportAST.findFirstToken(TokenTypes.DOT);
         if (dot == null) {
             // package name is a single word
-            DetailAST packageName = findFirstAstOfType(packageDefOrImportAST, TokenTypes.IDENT);
+            DetailAST packageName = packageDefOrImportAST.findFirstToken(TokenTypes.IDENT);
             return packageName.getText();
         } else {
             // package name has at least one dot
@@ -51,39 +288,126 @@ public abstract class CustomCheck extends Check {
 
     /**
      * @param classDefToken must be a CLASS_DEF AST.
-     * @return the name of the superclass or null if the class definition does not contain an extends clause
+     * @return the name of the superclass as written, simple or qualified (e.g.,
+     *         "waf.web.html.HTMLActionSupport"), or null if the class definition does not contain an extends
+     *         clause
      */
     protected String getSuperClassName(DetailAST classDefToken) {
-        DetailAST extendsClause = findFirstAstOfType(classDefToken, TokenTypes.EXTENDS_CLAUSE);
+        long start = startHelper();
+        try {
+            return doGetSuperClassName(classDefToken);
+        } finally {
+            stopHelper(AllocationProfile.GET_SUPER_CLASS_NAME, start);
+        }
+    }
+
+    private String doGetSuperClassName(DetailAST classDefToken) {
+        DetailAST extendsClause = classDefToken.findFirstToken(TokenTypes.EXTENDS_CLAUSE);
         if (extendsClause == null) {
             return null;
         }
-        return extendsClause.getFirstChild().getText();
+        return typeNameOf(extendsClause.getFirstChild());
+    }
+
+    /**
+     * @param identOrDot the IDENT or DOT of a type in an extends or implements clause.
+     * @return the name of the type as written, without type arguments (e.g., "java.util.List" for
+     *         "java.util.List&lt;String&gt;").
+     */
+    static String typeNameOf(DetailAST identOrDot) {
+        if (identOrDot.getType() == TokenTypes.IDENT) {
+            return identOrDot.getText();
+        }
+        StringBuilder name = new StringBuilder();
+        fullyQualifiedPackageAux(name, identOrDot);
+        return name.toString();
     }
 
     /**
-     * Recursively traverse an expression tree and return all ASTs matching a specific token type.
+     * Returns the simple names of the types in an extends or implements clause.
+     * 
+     * @param clauseToken an EXTENDS_CLAUSE or IMPLEMENTS_CLAUSE AST; may be null
+     * @return the simple names (e.g., "HTMLActionSupport" for "extends waf.web.html.HTMLActionSupport"); empty
+     *         List if clauseToken is null.
+     */
+    protected List<String> getSimpleTypeNames(DetailAST clauseToken) {
+        long start = startHelper();
+        try {
+            return doGetSimpleTypeNames(clauseToken);
+        } finally {
+            stopHelper(AllocationProfile.GET_SIMPLE_TYPE_NAMES, start);
+        }
+    }
+
+    private List<String> doGetSimpleTypeNames(DetailAST clauseToken) {
+        List<String> names = new ArrayList<String>(1);
+        if (clauseToken == null) {
+            return names;
+        }
+        for (DetailAST type = clauseToken.getFirstChild(); type != null; type = type.getNextSibling()) {
+            if (type.getType() == TokenTypes.IDENT) {
+                names.add(type.getText());
+            } else if (type.getType() == TokenTypes.DOT) {
+                // qualified name: DOT (DOT or IDENT, IDENT), the last IDENT is the simple name
+                DetailAST lastIdent = null;
+                for (DetailAST child = type.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child.getType() == TokenTypes.IDENT) {
+                        lastIdent = child;
+                    }
+                }
+                if (lastIdent != null) {
+                    names.add(lastIdent.getText());
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Return all ASTs below the given AST (in document order) matching a specific token type.
+     * Inside a file being checked it is a lookup in the token index of the file; otherwise the
+     * expression tree is traversed.
      * 
      * @return list of DetailAST objects found; returns empty List if none is found.
      */
     protected List<DetailAST> findAllAstsOfType(DetailAST aAST, int type) {
+        long start = startHelper();
+        try {
+            return doFindAllAstsOfType(aAST, type);
+        } finally {
+            stopHelper(AllocationProfile.FIND_ALL_ASTS_OF_TYPE, start);
+        }
+    }
+
+    private List<DetailAST> doFindAllAstsOfType(DetailAST aAST, int type) {
         if (aAST == null) {
             throw new IllegalArgumentException("Parameter aAST must not be null");
         }
+        TokenIndex index = getTokenIndex(aAST);
+        if (index != null) {
+            return index.findDescendants(aAST, type);
+        }
+        return findAllAstsOfTypeAux(aAST, type);
+    }
+
+    /**
+     * Traverse an expression tree and return all ASTs matching a specific token type.
+     */
+    private List<DetailAST> findAllAstsOfTypeAux(DetailAST aAST, int type) {
         List<DetailAST> children = new ArrayList<DetailAST>();
-        DetailAST child = aAST.getFirstChild();
-        while (child != null) {
-            if (child.getType() == type) {
-                children.add(child);
+        cursor.reset(aAST);
+        cursor.next();
+        for (DetailAST node = cursor.next(); node != null; node = cursor.next()) {
+            if (node.getType() == type) {
+                children.add(node);
             }
-            children.addAll(findAllAstsOfType(child, type));
-            child = child.getNextSibling();
         }
         return children;
     }
 
     /**
-     * Recursively traverse a given AST and return the first AST node matching a specific token type within the given AST.
+     * Return the first AST node matching a specific token type within the given AST. Inside a file being
+     * checked it is a lookup in the token index of the file; otherwise the tree is traversed.
      * This method differs from {@link DetailAST#findFirstToken(int)} in that it searches for the given type
      * in the specified node itself, all children, and indirect descendants (the whole tree), whereas
      * {@link DetailAST#findFirstToken(int)} only searches the direct children.
@@ -93,15 +417,27 @@ public abstract class CustomCheck extends Check {
      * @see DetailAST#findFirstToken(int)
      */
     protected DetailAST findFirstAstOfType(DetailAST aAST, int type) {
+        long start = startHelper();
+        try {
+            return doFindFirstAstOfType(aAST, type);
+        } finally {
+            stopHelper(AllocationProfile.FIND_FIRST_AST_OF_TYPE, start);
+        }
+    }
+
+    private DetailAST doFindFirstAstOfType(DetailAST aAST, int type) {
         DetailAST firstAst = null;
         if (aAST == null) {
             throw new IllegalArgumentException("Parameter aAST must not be null");
         }
-        if (aAST.getType() == type) {
-            firstAst = aAST;
-        } else {
-            for (DetailAST chld = aAST.getFirstChild(); chld != null && firstAst == null; chld = chld.getNextSibling()) {
-                firstAst = findFirstAstOfType(chld, type);
+        TokenIndex index = getTokenIndex(aAST);
+        if (index != null) {
+            return index.findFirst(aAST, type);
+        }
+        cursor.reset(aAST);
+        for (DetailAST node = cursor.next(); node != null && firstAst == null; node = cursor.next()) {
+            if (node.getType() == type) {
+                firstAst = node;
             }
         }
         return firstAst;
@@ -112,7 +448,7 @@ public abstract class CustomCheck extends Check {
      * PACKAGE_DEF or IMPORT token.
      * It builds the fully qualified package name in the StringBuilder parameter.
      */
-    private void fullyQualifiedPackageAux(StringBuilder fullName, DetailAST aAST) {
+    private static void fullyQualifiedPackageAux(StringBuilder fullName, DetailAST aAST) {
         if (aAST.getType() == TokenTypes.IDENT) {
             // end of the recursion.
             fullName.append(aAST.getText());
@@ -120,15 +456,28 @@ public abstract class CustomCheck extends Check {
             // it's a DOT that contains DOTorIDENT followed by IDENT
             DetailAST child = aAST.getFirstChild();
             fullyQualifiedPackageAux(fullName, child);
-            fullName.append("." + child.getNextSibling().getText());
+            fullName.append('.').append(child.getNextSibling().getText());
         }
     }
 
     /**
+     * Returns true if the annotation is anywhere in the subtree: on the class, but also on its members,
+     * their parameters and nested classes. Use {@link #hasAnnotation(DetailAST, String)} or
+     * {@link #memberHasAnnotation(DetailAST, String)} to look at the class or at its members only.
+     * 
      * @param aAST must be a TokenTypes.CLASS_DEF.
      * @param annotation annotation identifier without '@'
      */
     public boolean containsAnnotation(DetailAST aAST, String annotation) {
+        long start = startHelper();
+        try {
+            return doContainsAnnotation(aAST, annotation);
+        } finally {
+            stopHelper(AllocationProfile.CONTAINS_ANNOTATION, start);
+        }
+    }
+
+    private boolean doContainsAnnotation(DetailAST aAST, String annotation) {
         List<DetailAST> annotations = findAllAstsOfType(aAST, TokenTypes.ANNOTATION);
         for (DetailAST an : annotations) {
             DetailAST annotationName = an.findFirstToken(TokenTypes.IDENT);
@@ -139,6 +488,67 @@ public abstract class CustomCheck extends Check {
         return false;
     }
 
+    /**
+     * Returns true if the declaration itself is annotated with the annotation, e.g. a class with
+     * {@code @Entity}; annotations of its members are not considered. The annotations of the file are
+     * indexed once, so the call costs a lookup.
+     * 
+     * @param declaration a type, method, constructor, field, variable, parameter, enum constant or package
+     *            definition of the file being checked.
+     * @param annotation simple or qualified name of the annotation, without '@'
+     */
+    protected boolean hasAnnotation(DetailAST declaration, String annotation) {
+        long start = startHelper();
+        try {
+            return doHasAnnotation(declaration, annotation);
+        } finally {
+            stopHelper(AllocationProfile.HAS_ANNOTATION, start);
+        }
+    }
+
+    private boolean doHasAnnotation(DetailAST declaration, String annotation) {
+        return getAnnotationIndex(declaration).hasAnnotation(declaration, annotation);
+    }
+
+    /**
+     * Returns true if a member of the type (field, method, constructor, enum constant or member type) is
+     * annotated with the annotation, e.g. a field with {@code @OneToMany}. The annotations of the file are
+     * indexed once, so the call costs a lookup.
+     * 
+     * @param typeDefToken a CLASS_DEF, INTERFACE_DEF, ENUM_DEF or ANNOTATION_DEF of the file being checked.
+     * @param annotation simple or qualified name of the annotation, without '@'
+     */
+    protected boolean memberHasAnnotation(DetailAST typeDefToken, String annotation) {
+        long start = startHelper();
+        try {
+            return doMemberHasAnnotation(typeDefToken, annotation);
+        } finally {
+            stopHelper(AllocationProfile.MEMBER_HAS_ANNOTATION, start);
+        }
+    }
+
+    private boolean doMemberHasAnnotation(DetailAST typeDefToken, String annotation) {
+        return getAnnotationIndex(typeDefToken).memberHasAnnotation(typeDefToken, annotation);
+    }
+
+    /**
+     * @return the annotation index of the file being checked, built on the first call for the file; outside
+     *         beginTree/finishTree, an index of the tree of the given AST.
+     */
+    private AnnotationIndex getAnnotationIndex(DetailAST aAST) {
+        if (fileRoot == null) {
+            DetailAST topLevel = aAST;
+            while (topLevel.getParent() != null) {
+                topLevel = topLevel.getParent();
+            }
+            return new AnnotationIndex(topLevel);
+        }
+        if (annotationIndex == null) {
+            annotationIndex = new AnnotationIndex(fileRoot);
+        }
+        return annotationIndex;
+    }
+
     /**
      * Given an ASSIGN token, returns the name of the variable being assigned. The position of the variable IDENT token differs
      * whether the ASSIGN is part of a variable definition (declaration) or not.
@@ -186,99 +596,88 @@ public abstract class CustomCheck extends Check {
 
     /**
      * @return the token (VARIABLE_DEF ou PARAMETER_DEF) where the specified variable (IDENT) was defined.
+     *         Names are resolved in the symbol table of the enclosing class, which is built once per
+     *         class and file.
      * 
      * @param identToken the variable's IDENT
      * 
      * @author Rafael Costa
      */
     protected DetailAST getVariableOrParameterDefForIdent(DetailAST identToken) {
+        long start = startHelper();
+        try {
+            return doGetVariableOrParameterDefForIdent(identToken);
+        } finally {
+            stopHelper(AllocationProfile.GET_VARIABLE_OR_PARAMETER_DEF_FOR_IDENT, start);
+        }
+    }
+
+    private DetailAST doGetVariableOrParameterDefForIdent(DetailAST identToken) {
         if (identToken.getType() != TokenTypes.IDENT) {
             throw new IllegalArgumentException("The type of parameter identToken must be TokenTypes.IDENT");
         }
-        DetailAST varDefToken = null;
-        DetailAST parDefToken = null;
+        DetailAST classDefToken = getClassToken(identToken);
+        if (classDefToken == null) {
+            return null;
+        }
         boolean hasThisPrefix =
                 identToken.getPreviousSibling() != null && identToken.getPreviousSibling().getType() == TokenTypes.LITERAL_THIS;
-        int closestLine = 0;
-        varDefToken = findVariableDefForIdent(identToken, closestLine, hasThisPrefix);
-
-        if (varDefToken != null) {
-            closestLine = varDefToken.getLineNo();
-        }
-        // Walks through PARAMETER_DEF list searching for the var definition
-        if (!hasThisPrefix) {
-            parDefToken = findParameterDefForIdent(identToken, closestLine);
-            if (parDefToken != null) {
-                return parDefToken;
-            }
-        }
-        return varDefToken;
+        return getSymbolTable(classDefToken).resolve(identToken, hasThisPrefix);
     }
 
     /**
-     * Este método busca um token do tipo VARIABLE_DEF que
-     * corresponde ao IDENT de chamada de método passado.
-     * 
-     * @param identToken Token do tipo IDENT da chamada de um método
-     * @param closestLine Número da linha de início
-     * @param isThisCall Boolean que define se a chamada ao método teve um 'this.'
-     * 
-     * @author x05119695116 Rafael Costa
+     * Returns the symbol table of the given class, building it on the first call for the class in the
+     * file being checked.
      */
-
-    private DetailAST findVariableDefForIdent(DetailAST identToken, int closestLine, boolean isThisCall) {
-        DetailAST root = getClassToken(identToken);
-        DetailAST classDefToken = null;
-        DetailAST defToken = null;
-        List<DetailAST> variableDefs = findAllAstsOfType(root, TokenTypes.VARIABLE_DEF);
-        // Percorre a lista de VARIABLE_DEF procurando a definição da variável que chamou o método
-        // (que esteja definida antes da chamada)
-        for (DetailAST current : variableDefs) {
-            if (getScopeOfDef(current).getType() == TokenTypes.CLASS_DEF) {
-                classDefToken = current;
-            }
-            if (getVarNameInVariableOrParameterDef(current).equals(identToken.getText()) &&
-                    current.getLineNo() <= identToken.getLineNo()) {
-                if (!isThisCall && current.getLineNo() > closestLine) {
-                    if (getScopeOfDef(current).getLineNo() == getScopeOfDef(identToken).getLineNo() ||
-                            getScopeOfDef(current).getLineNo() == root.getLineNo()) {
-                        defToken = current;
-                        closestLine = current.getLineNo();
-                    }
-                    // No caso de chamada com 'this.', retorna a primeira definição sob um CLASS_DEF
-                } else {
-                    return classDefToken;
-                }
+    private SymbolTable getSymbolTable(DetailAST classDefToken) {
+        SymbolTable symbolTable = symbolTables.get(classDefToken);
+        if (symbolTable == null) {
+            symbolTable = new SymbolTable(classDefToken);
+            if (fileRoot != null) {
+                symbolTables.put(classDefToken, symbolTable);
             }
         }
-
-        return defToken;
+        return symbolTable;
     }
 
     /**
-     * Este método busca um token do tipo PARAMETER_DEF que
-     * corresponde ao IDENT de chamada de método passado.
-     * 
-     * @param identToken Token do tipo IDENT da chamada de um método
-     * @param closestLine Número da linha de início
+     * Returns the data flow of the method, constructor, initializer or lambda that contains the given AST:
+     * the def-use chains of its local variables and parameters, and whether a value comes from the request
+     * or had a variable concatenated into it. The flow of each method is computed once per file, in one pass
+     * over the method, so checks that follow values back to their defs take time linear in the size of the
+     * file.
      * 
-     * @author x05119695116 Rafael Costa
+     * @return the data flow or null if the AST is in no method, constructor, initializer or lambda (e.g., it
+     *         is in a field initializer).
      */
-    private DetailAST findParameterDefForIdent(DetailAST identToken, int closestLine) {
-        DetailAST root = getClassToken(identToken);
-        DetailAST defToken = null;
-        List<DetailAST> parameterDefs = findAllAstsOfType(root, TokenTypes.PARAMETER_DEF);
-        for (DetailAST current : parameterDefs) {
-            if (getVarNameInVariableOrParameterDef(current).equals(identToken.getText()) &&
-                    current.getLineNo() <= identToken.getLineNo() &&
-                    current.getLineNo() > closestLine &&
-                    getScopeOfDef(current).getLineNo() == getScopeOfDef(identToken).getLineNo()) {
-                defToken = current;
-                closestLine = current.getLineNo();
-            }
+    protected DataFlow getDataFlow(DetailAST aAST) {
+        long start = startHelper();
+        try {
+            return doGetDataFlow(aAST);
+        } finally {
+            stopHelper(AllocationProfile.GET_DATA_FLOW, start);
         }
+    }
 
-        return defToken;
+    private DataFlow doGetDataFlow(DetailAST aAST) {
+        DetailAST unitToken = DataFlow.unitOf(aAST);
+        if (unitToken == null) {
+            return null;
+        }
+        DataFlow dataFlow = dataFlows.get(unitToken);
+        if (dataFlow == null) {
+            DetailAST typeDefToken = unitToken.getParent();
+            while (typeDefToken != null && typeDefToken.getType() != TokenTypes.CLASS_DEF
+                    && typeDefToken.getType() != TokenTypes.ENUM_DEF
+                    && typeDefToken.getType() != TokenTypes.INTERFACE_DEF) {
+                typeDefToken = typeDefToken.getParent();
+            }
+            dataFlow = new DataFlow(unitToken, typeDefToken == null ? null : getSymbolTable(typeDefToken));
+            if (fileRoot != null) {
+                dataFlows.put(unitToken, dataFlow);
+            }
+        }
+        return dataFlow;
     }
 
     /**
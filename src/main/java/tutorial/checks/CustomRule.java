@@ -0,0 +1,122 @@
+package tutorial.checks;
+
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+/**
+ * A rule run by {@link CheckRuleHost}. A rule is like a custom check, but it does not subscribe to
+ * tokens on its own: the host merges the tokens of all its rules, walks each file once, and calls each
+ * rule only for the tokens it asked for. The facts shared by many rules (package, imports, current
+ * class) are given in a {@link FileFacts} object, worked out once per file by the host.
+ * <p>
+ * Subclasses must have a public no-argument constructor.
+ *
+ * @author Paulo Merson
+ */
+public abstract class CustomRule {
+
+    private CheckRuleHost host;
+
+    /**
+     * @return the tokens this rule is interested in; visitToken and leaveToken are called only for them.
+     */
+    public abstract int[] getTokens();
+
+    /**
+     * @return literals of which a file must contain at least one for this rule to report a violation in it;
+     *         null if the rule may report violations in any file.
+     * @see CustomCheck#getRequiredLiterals()
+     */
+    public String[] getRequiredLiterals() {
+        return null;
+    }
+
+    /**
+     * Called before the file is processed.
+     */
+    public void beginTree(FileFacts facts) {
+    }
+
+    public void visitToken(DetailAST aAST, FileFacts facts) {
+    }
+
+    public void leaveToken(DetailAST aAST, FileFacts facts) {
+    }
+
+    /**
+     * Called after the file is processed.
+     */
+    public void finishTree(FileFacts facts) {
+    }
+
+    void setHost(CheckRuleHost host) {
+        this.host = host;
+    }
+
+    /**
+     * Logs a violation of this rule.
+     */
+    protected final void log(int line, String message) {
+        host.logRuleViolation(line, message);
+    }
+
+    /**
+     * @see CustomCheck#findAllAstsOfType(DetailAST, int)
+     */
+    protected final List<DetailAST> findAllAstsOfType(DetailAST aAST, int type) {
+        return host.findAllAstsOfType(aAST, type);
+    }
+
+    /**
+     * @see CustomCheck#findFirstAstOfType(DetailAST, int)
+     */
+    protected final DetailAST findFirstAstOfType(DetailAST aAST, int type) {
+        return host.findFirstAstOfType(aAST, type);
+    }
+
+    /**
+     * @see CustomCheck#hasAnnotation(DetailAST, String)
+     */
+    protected final boolean hasAnnotation(DetailAST declaration, String annotation) {
+        return host.hasAnnotation(declaration, annotation);
+    }
+
+    /**
+     * @see CustomCheck#memberHasAnnotation(DetailAST, String)
+     */
+    protected final boolean memberHasAnnotation(DetailAST typeDefToken, String annotation) {
+        return host.memberHasAnnotation(typeDefToken, annotation);
+    }
+
+    /**
+     * @see CustomCheck#getVariableOrParameterDefForIdent(DetailAST)
+     */
+    protected final DetailAST getVariableOrParameterDefForIdent(DetailAST identToken) {
+        return host.getVariableOrParameterDefForIdent(identToken);
+    }
+
+    /**
+     * @see CustomCheck#getDataFlow(DetailAST)
+     */
+    protected final DataFlow getDataFlow(DetailAST aAST) {
+        return host.getDataFlow(aAST);
+    }
+
+    /**
+     * @return the class hierarchy of the source path of the host, or null if its property sourcePath is not
+     *         set.
+     * @see CustomCheck#getClassHierarchy()
+     */
+    protected final ClassHierarchyIndex getClassHierarchy() {
+        return host.getClassHierarchy();
+    }
+
+    /**
+     * @see CustomCheck#getQualifiedClassName(DetailAST)
+     */
+    protected final String getQualifiedClassName(DetailAST typeDefToken) {
+        return host.getQualifiedClassName(typeDefToken);
+    }
+
+}
@@ -0,0 +1,588 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Intraprocedural data flow of one method, constructor, initializer or lambda: the def-use chains of its
+ * local variables and parameters, and the value of each use, def and call argument.
+ * <p>
+ * A value is a set of bits: {@link #NON_CONSTANT} if it is not known at compile time, {@link #CONCATENATED}
+ * if a non-constant value was concatenated into it (+, +=, append, insert, concat, format) and
+ * {@link #REQUEST} if it comes from the request (getParameter, getHeader, getQueryString...). A value has
+ * the bits of the values it is computed from, so the taint of request data propagates through
+ * assignments, string operations and string builders.
+ * <p>
+ * The flow is computed in one pass over the method in source order, without recursion on the tree. An
+ * assignment in the block that declares the variable replaces its value; an assignment elsewhere (in a
+ * branch or a loop) adds to it. A loop that adds to a variable declared outside it is walked again until
+ * the values stop changing; values only gain bits, so that happens a few times at most. Fields, variables
+ * captured by lambdas and anonymous classes, and results of calls are non-constant values, except names in
+ * upper case, taken as constants.
+ *
+ * @author Paulo Merson
+ */
+public final class DataFlow {
+
+    /** The value is not known at compile time */
+    public static final int NON_CONSTANT = 1;
+
+    /** A non-constant value was concatenated into the value */
+    public static final int CONCATENATED = 2;
+
+    /** The value comes from the request */
+    public static final int REQUEST = 4;
+
+    /** Methods that return data of the request */
+    private static final Set<String> SOURCES = new HashSet<String>(Arrays.asList("getParameter",
+            "getParameterValues", "getParameterMap", "getParameterNames", "getHeader", "getHeaders",
+            "getQueryString", "getPathInfo", "getRequestURI", "getRequestURL", "getCookies", "getInputStream",
+            "getReader"));
+
+    /** Methods whose result is made of the receiver and the arguments, as those of String and StringBuilder */
+    private static final Set<String> TRANSFERS = new HashSet<String>(Arrays.asList("toString", "trim", "intern",
+            "toUpperCase", "toLowerCase", "substring", "replace", "valueOf", "append", "insert", "concat",
+            "format"));
+
+    /** Transfer methods that concatenate the arguments */
+    private static final Set<String> CONCATENATIONS = new HashSet<String>(Arrays.asList("append", "insert",
+            "concat", "format"));
+
+    /** Transfer methods that change the receiver */
+    private static final Set<String> MUTATORS = new HashSet<String>(Arrays.asList("append", "insert"));
+
+    private final DetailAST unitToken;
+
+    /** Symbol table of the type of the unit; null if there is none */
+    private final SymbolTable symbols;
+
+    /** Index of each local variable and parameter, by its VARIABLE_DEF or PARAMETER_DEF */
+    private final Map<DetailAST, Integer> variables = new IdentityHashMap<DetailAST, Integer>();
+
+    private final List<DetailAST> declarations = new ArrayList<DetailAST>();
+
+    /** Defs of each variable, in the order they were first visited */
+    private final List<List<DetailAST>> defs = new ArrayList<List<DetailAST>>();
+
+    /** Position of each def in the defs of its variable */
+    private final Map<DetailAST, Integer> defIndexes = new IdentityHashMap<DetailAST, Integer>();
+
+    /** Value of each variable at the point of the walk */
+    private int[] values = new int[8];
+
+    /** Position of the last def that replaced the value of each variable, at the point of the walk */
+    private int[] lastReplacingDefs = new int[8];
+
+    /** Variable of each use and the range of its defs that reach the use: {variable, first, end} */
+    private final Map<DetailAST, int[]> uses = new IdentityHashMap<DetailAST, int[]>();
+
+    /** Value of each use, def and call argument */
+    private final Map<DetailAST, Integer> observed = new IdentityHashMap<DetailAST, Integer>();
+
+    /** Loops being walked, innermost last, and whether the walk added to a variable declared outside each */
+    private DetailAST[] loops = new DetailAST[4];
+
+    private boolean[] loopsChanged = new boolean[4];
+
+    private int loopCount;
+
+    /** Whether the last walk of a loop, as the root of the walk, added to a variable declared outside it */
+    private boolean rootLoopChanged;
+
+    /**
+     * @param unitToken a METHOD_DEF, CTOR_DEF, LAMBDA, STATIC_INIT or INSTANCE_INIT AST.
+     * @param symbols the symbol table of the type of the unit, or null to take all names as non-local.
+     */
+    DataFlow(DetailAST unitToken, SymbolTable symbols) {
+        if (!isUnit(unitToken)) {
+            throw new IllegalArgumentException("Parameter unitToken must be a method, constructor, initializer or lambda");
+        }
+        this.unitToken = unitToken;
+        this.symbols = symbols;
+        walk(unitToken);
+    }
+
+    /**
+     * @return the method, constructor, initializer or lambda that contains the AST (or is the AST), or null
+     *         if there is none, e.g. for a field initializer.
+     */
+    static DetailAST unitOf(DetailAST aAST) {
+        for (DetailAST token = aAST; token != null; token = token.getParent()) {
+            if (isUnit(token)) {
+                return token;
+            }
+            if (token.getType() == TokenTypes.OBJBLOCK) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isUnit(DetailAST aAST) {
+        switch (aAST.getType()) {
+        case TokenTypes.METHOD_DEF:
+        case TokenTypes.CTOR_DEF:
+        case TokenTypes.LAMBDA:
+        case TokenTypes.STATIC_INIT:
+        case TokenTypes.INSTANCE_INIT:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @return the name of the method called by the METHOD_CALL, or an empty string if it has no name.
+     */
+    static String methodName(DetailAST methodCallToken) {
+        DetailAST name = methodCallToken.getFirstChild();
+        if (name.getType() == TokenTypes.DOT) {
+            name = name.getLastChild();
+        }
+        return name.getType() == TokenTypes.IDENT ? name.getText() : "";
+    }
+
+    /**
+     * @return the method, constructor, initializer or lambda of this data flow.
+     */
+    public DetailAST getUnit() {
+        return unitToken;
+    }
+
+    /**
+     * @return the value of a use of a local variable or parameter (IDENT), of an argument of a call or of a
+     *         new (EXPR of an ELIST) or of a def (VARIABLE_DEF, PARAMETER_DEF, assignment, or METHOD_CALL of
+     *         append or insert); for any other AST, {@link #NON_CONSTANT}.
+     */
+    public int getValue(DetailAST aAST) {
+        Integer value = observed.get(aAST);
+        return value == null ? NON_CONSTANT : value;
+    }
+
+    /**
+     * @return the VARIABLE_DEF or PARAMETER_DEF of the local variable or parameter used by the IDENT, or
+     *         null if the IDENT is not a use of a local variable or parameter of this unit.
+     */
+    public DetailAST getDeclaration(DetailAST identToken) {
+        int[] use = uses.get(identToken);
+        return use == null ? null : declarations.get(use[0]);
+    }
+
+    /**
+     * @return the defs that may reach the use: the last def that replaced the value of the variable before
+     *         the use and the defs that may add to it after that one (in branches, or later in a loop); an
+     *         empty list if the IDENT is not a use of a local variable or parameter of this unit.
+     */
+    public List<DetailAST> getReachingDefs(DetailAST identToken) {
+        int[] use = uses.get(identToken);
+        if (use == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(defs.get(use[0]).subList(use[1], use[2]));
+    }
+
+    /**
+     * Walks the subtree in post-order (children before their parent, in source order), without recursion:
+     * childValues holds, for each depth, the values of the nodes of that depth visited so far under the
+     * same parent.
+     *
+     * @return if the root is a loop, whether the walk added to a variable declared outside it.
+     */
+    private boolean walk(DetailAST root) {
+        int[] childValues = new int[16];
+        DetailAST node = root;
+        int depth = 0;
+        boolean childrenVisited = false;
+        while (true) {
+            if (!childrenVisited) {
+                enter(node);
+                if (node.getFirstChild() != null && !isOpaque(node, root)) {
+                    depth++;
+                    if (depth + 1 >= childValues.length) {
+                        childValues = Arrays.copyOf(childValues, childValues.length * 2);
+                    }
+                    childValues[depth] = 0;
+                    node = node.getFirstChild();
+                    continue;
+                }
+            }
+            int value = leave(node, childrenVisited ? childValues[depth + 1] : 0, root);
+            if (node == root) {
+                return rootLoopChanged;
+            }
+            // the condition of a ?: selects one of the values, but is not part of them
+            if (node.getParent().getType() != TokenTypes.QUESTION || node.getPreviousSibling() != null) {
+                childValues[depth] |= value;
+            }
+            if (node.getNextSibling() != null) {
+                node = node.getNextSibling();
+                childrenVisited = false;
+            } else {
+                node = node.getParent();
+                depth--;
+                childrenVisited = true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the walk does not go into the children of the node: types, modifiers, annotations, and
+     *         nested classes and lambdas, which are units of their own.
+     */
+    private static boolean isOpaque(DetailAST aAST, DetailAST root) {
+        if (aAST == root) {
+            return false;
+        }
+        switch (aAST.getType()) {
+        case TokenTypes.TYPE:
+        case TokenTypes.TYPE_ARGUMENTS:
+        case TokenTypes.TYPE_PARAMETERS:
+        case TokenTypes.MODIFIERS:
+        case TokenTypes.ANNOTATIONS:
+        case TokenTypes.ANNOTATION:
+        case TokenTypes.CLASS_DEF:
+        case TokenTypes.INTERFACE_DEF:
+        case TokenTypes.ENUM_DEF:
+        case TokenTypes.ANNOTATION_DEF:
+        case TokenTypes.OBJBLOCK:
+        case TokenTypes.LAMBDA:
+            return true;
+        default:
+            // the class in a new
+            return aAST.getParent().getType() == TokenTypes.LITERAL_NEW && aAST.getPreviousSibling() == null;
+        }
+    }
+
+    private void enter(DetailAST aAST) {
+        if (isLoop(aAST)) {
+            if (loopCount == loops.length) {
+                loops = Arrays.copyOf(loops, loopCount * 2);
+                loopsChanged = Arrays.copyOf(loopsChanged, loopCount * 2);
+            }
+            loops[loopCount] = aAST;
+            loopsChanged[loopCount] = false;
+            loopCount++;
+        }
+    }
+
+    private static boolean isLoop(DetailAST aAST) {
+        int type = aAST.getType();
+        return type == TokenTypes.LITERAL_FOR || type == TokenTypes.LITERAL_WHILE || type == TokenTypes.LITERAL_DO;
+    }
+
+    /**
+     * Visits the node after its children.
+     *
+     * @param childValue union of the values of the children.
+     * @return the value of the node.
+     */
+    private int leave(DetailAST aAST, int childValue, DetailAST root) {
+        if (isOpaque(aAST, root)) {
+            // a lambda or an anonymous class is a non-constant value; types and modifiers have none
+            return aAST.getType() == TokenTypes.LAMBDA || aAST.getType() == TokenTypes.OBJBLOCK ? NON_CONSTANT : 0;
+        }
+        switch (aAST.getType()) {
+        case TokenTypes.IDENT:
+            return leaveIdent(aAST);
+        case TokenTypes.DOT:
+            return leaveDot(aAST, childValue);
+        case TokenTypes.METHOD_CALL:
+            return leaveMethodCall(aAST, childValue);
+        case TokenTypes.PLUS:
+            return concatenation(childValue);
+        case TokenTypes.LITERAL_THIS:
+        case TokenTypes.LITERAL_SUPER:
+            return NON_CONSTANT;
+        case TokenTypes.EXPR:
+            if (aAST.getParent().getType() == TokenTypes.ELIST) {
+                observe(aAST, childValue);
+            }
+            return childValue;
+        case TokenTypes.VARIABLE_DEF:
+            leaveVariableDef(aAST, childValue);
+            return 0;
+        case TokenTypes.PARAMETER_DEF:
+            define(declare(aAST), aAST, NON_CONSTANT, true);
+            return 0;
+        case TokenTypes.FOR_EACH_CLAUSE:
+            // the variable takes the values of the iterated expression
+            DetailAST variableDef = aAST.findFirstToken(TokenTypes.VARIABLE_DEF);
+            if (variableDef != null) {
+                define(declare(variableDef), variableDef, childValue, true);
+            }
+            return 0;
+        case TokenTypes.ASSIGN:
+        case TokenTypes.PLUS_ASSIGN:
+        case TokenTypes.MINUS_ASSIGN:
+        case TokenTypes.STAR_ASSIGN:
+        case TokenTypes.DIV_ASSIGN:
+        case TokenTypes.MOD_ASSIGN:
+        case TokenTypes.SR_ASSIGN:
+        case TokenTypes.BSR_ASSIGN:
+        case TokenTypes.SL_ASSIGN:
+        case TokenTypes.BAND_ASSIGN:
+        case TokenTypes.BXOR_ASSIGN:
+        case TokenTypes.BOR_ASSIGN:
+            return leaveAssignment(aAST, childValue);
+        case TokenTypes.LITERAL_FOR:
+        case TokenTypes.LITERAL_WHILE:
+        case TokenTypes.LITERAL_DO:
+            loopCount--;
+            boolean changed = loopsChanged[loopCount];
+            if (aAST == root) {
+                rootLoopChanged = changed;
+            } else {
+                while (changed) {
+                    changed = walk(aAST);
+                }
+            }
+            return 0;
+        default:
+            return childValue;
+        }
+    }
+
+    private int leaveIdent(DetailAST identToken) {
+        DetailAST parent = identToken.getParent();
+        boolean first = identToken.getPreviousSibling() == null;
+        switch (parent.getType()) {
+        case TokenTypes.METHOD_CALL:
+            if (first) {
+                // the name of the method
+                return 0;
+            }
+            break;
+        case TokenTypes.DOT:
+            if (!first) {
+                // the name of a member, valued by the DOT
+                return 0;
+            }
+            break;
+        case TokenTypes.ASSIGN:
+            if (first) {
+                // the variable assigned, not a use
+                return 0;
+            }
+            break;
+        case TokenTypes.VARIABLE_DEF:
+        case TokenTypes.PARAMETER_DEF:
+        case TokenTypes.METHOD_DEF:
+        case TokenTypes.CTOR_DEF:
+        case TokenTypes.LABELED_STAT:
+        case TokenTypes.LITERAL_BREAK:
+        case TokenTypes.LITERAL_CONTINUE:
+            return 0;
+        default:
+            break;
+        }
+        Integer variable = localVariable(identToken);
+        if (variable == null) {
+            String name = identToken.getText();
+            if (isConstantName(name) || (parent.getType() == TokenTypes.DOT && Character.isUpperCase(name.charAt(0)))) {
+                // a constant or a class
+                return 0;
+            }
+            return NON_CONSTANT;
+        }
+        int var = variable;
+        int end = defs.get(var).size();
+        int[] use = uses.get(identToken);
+        if (use == null) {
+            uses.put(identToken, new int[] {var, lastReplacingDefs[var], end});
+        } else {
+            // walked again in a loop
+            use[1] = Math.min(use[1], lastReplacingDefs[var]);
+            use[2] = Math.max(use[2], end);
+        }
+        observe(identToken, values[var]);
+        return values[var];
+    }
+
+    private static int leaveDot(DetailAST dotToken, int childValue) {
+        DetailAST parent = dotToken.getParent();
+        if (dotToken.getPreviousSibling() == null
+                && (parent.getType() == TokenTypes.METHOD_CALL || parent.getType() == TokenTypes.DOT)) {
+            // receiver and name of a method, or qualifier of a name
+            return childValue;
+        }
+        DetailAST member = dotToken.getLastChild();
+        if (member.getType() == TokenTypes.IDENT && isConstantName(member.getText())) {
+            return childValue;
+        }
+        return childValue | NON_CONSTANT;
+    }
+
+    private int leaveMethodCall(DetailAST methodCallToken, int childValue) {
+        String name = methodName(methodCallToken);
+        int value = childValue;
+        if (!TRANSFERS.contains(name)) {
+            value |= NON_CONSTANT;
+        }
+        if (SOURCES.contains(name)) {
+            value |= REQUEST;
+        }
+        if (CONCATENATIONS.contains(name)) {
+            value = concatenation(value);
+        }
+        if (MUTATORS.contains(name)) {
+            // the receiver of a chain of appends, e.g. sql in sql.append(a).append(b)
+            DetailAST receiver = receiverOf(methodCallToken);
+            while (receiver != null && receiver.getType() == TokenTypes.METHOD_CALL
+                    && MUTATORS.contains(methodName(receiver))) {
+                receiver = receiverOf(receiver);
+            }
+            int[] use = receiver == null ? null : uses.get(receiver);
+            if (use != null) {
+                define(use[0], methodCallToken, value, false);
+            }
+        }
+        return value;
+    }
+
+    private static DetailAST receiverOf(DetailAST methodCallToken) {
+        DetailAST name = methodCallToken.getFirstChild();
+        return name.getType() == TokenTypes.DOT ? name.getFirstChild() : null;
+    }
+
+    private static int concatenation(int value) {
+        return (value & NON_CONSTANT) != 0 ? value | CONCATENATED : value;
+    }
+
+    private void leaveVariableDef(DetailAST variableDef, int childValue) {
+        int var = declare(variableDef);
+        if (variableDef.findFirstToken(TokenTypes.ASSIGN) != null) {
+            define(var, variableDef, childValue, true);
+        } else {
+            values[var] = 0;
+        }
+    }
+
+    private int leaveAssignment(DetailAST assignToken, int childValue) {
+        if (assignToken.getParent().getType() == TokenTypes.VARIABLE_DEF) {
+            // the initializer of a variable
+            return childValue;
+        }
+        // in a compound assignment, the value of the variable is in childValue, as the first child is a use
+        int value = assignToken.getType() == TokenTypes.PLUS_ASSIGN ? concatenation(childValue) : childValue;
+        DetailAST target = assignToken.getFirstChild();
+        if (target.getType() == TokenTypes.IDENT) {
+            Integer var = localVariable(target);
+            if (var != null) {
+                boolean replaces = assignToken.getType() == TokenTypes.ASSIGN && isInDeclaringBlock(assignToken, var);
+                define(var, assignToken, value, replaces);
+            }
+        } else if (target.getType() == TokenTypes.INDEX_OP && target.getFirstChild().getType() == TokenTypes.IDENT) {
+            // an element of an array
+            Integer var = localVariable(target.getFirstChild());
+            if (var != null) {
+                define(var, assignToken, value, false);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return true if the assignment is a statement of the block that declares the variable, so it is
+     *         executed whenever the uses that follow it in the block are.
+     */
+    private boolean isInDeclaringBlock(DetailAST assignToken, int var) {
+        DetailAST declaration = declarations.get(var);
+        DetailAST statement = assignToken.getParent();
+        return declaration.getType() == TokenTypes.VARIABLE_DEF && statement.getType() == TokenTypes.EXPR
+                && statement.getParent() == declaration.getParent();
+    }
+
+    /**
+     * @return the index of the local variable or parameter of this unit named by the IDENT, or null.
+     */
+    private Integer localVariable(DetailAST identToken) {
+        if (symbols == null) {
+            return null;
+        }
+        DetailAST defToken = symbols.resolve(identToken, false);
+        return defToken == null ? null : variables.get(defToken);
+    }
+
+    /**
+     * @return the index of the variable, adding it on its first visit.
+     */
+    private int declare(DetailAST defToken) {
+        Integer var = variables.get(defToken);
+        if (var == null) {
+            var = declarations.size();
+            variables.put(defToken, var);
+            declarations.add(defToken);
+            defs.add(new ArrayList<DetailAST>(2));
+            if (var == values.length) {
+                values = Arrays.copyOf(values, var * 2);
+                lastReplacingDefs = Arrays.copyOf(lastReplacingDefs, var * 2);
+            }
+        }
+        return var;
+    }
+
+    /**
+     * Records a def of the variable, which replaces its value or adds to it.
+     */
+    private void define(int var, DetailAST defToken, int value, boolean replaces) {
+        Integer index = defIndexes.get(defToken);
+        if (index == null) {
+            List<DetailAST> varDefs = defs.get(var);
+            index = varDefs.size();
+            varDefs.add(defToken);
+            defIndexes.put(defToken, index);
+        }
+        if (replaces) {
+            values[var] = value;
+            lastReplacingDefs[var] = index;
+        } else if ((value & ~values[var]) != 0) {
+            values[var] |= value;
+            DetailAST declaration = declarations.get(var);
+            for (int loop = 0; loop < loopCount; loop++) {
+                if (!isAncestor(loops[loop], declaration)) {
+                    loopsChanged[loop] = true;
+                }
+            }
+        }
+        observe(defToken, value);
+    }
+
+    private boolean isAncestor(DetailAST ancestor, DetailAST aAST) {
+        for (DetailAST token = aAST; token != null && token != unitToken; token = token.getParent()) {
+            if (token == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void observe(DetailAST aAST, int value) {
+        Integer previous = observed.get(aAST);
+        observed.put(aAST, previous == null ? value : previous | value);
+    }
+
+    /**
+     * @return true if the name is in upper case, as the names of constants.
+     */
+    private static boolean isConstantName(String name) {
+        boolean letter = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLowerCase(c)) {
+                return false;
+            }
+            letter |= Character.isLetter(c);
+        }
+        return letter;
+    }
+
+}
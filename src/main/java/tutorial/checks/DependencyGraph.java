@@ -0,0 +1,244 @@
+package tutorial.checks;
+
+import java.util.Arrays;
+
+/**
+ * Directed graph of dependencies between named nodes (packages or classes), stored in primitive int
+ * arrays so that it scales to millions of edges. Node names are interned in a {@link NameTable}. Each
+ * edge remembers where it was first seen (file id and line), to report violations.
+ * <p>
+ * Edges are added in any order and duplicates are ignored. {@link #compact()} then builds the
+ * adjacency lists in compressed form (an offset per node into one array of targets), which is what
+ * {@link #stronglyConnectedComponents()} traverses.
+ *
+ * @author Paulo Merson
+ */
+final class DependencyGraph {
+
+    private static final long EMPTY_SLOT = -1L;
+
+    private final NameTable nodes = new NameTable();
+
+    private int[] sources = new int[1024];
+
+    private int[] targets = new int[1024];
+
+    private int[] files = new int[1024];
+
+    private int[] lines = new int[1024];
+
+    private int edgeCount;
+
+    /** Open-addressing hash set of (source, target) pairs packed in a long, to ignore duplicate edges */
+    private long[] edgeSet = newEdgeSet(2048);
+
+    /** Compressed adjacency lists, built by compact(): successors of node n are in [offsets[n], offsets[n + 1]) */
+    private int[] offsets;
+
+    private int[] successors;
+
+    /**
+     * @return the id of the node with the given name, adding it if needed.
+     */
+    int addNode(String name) {
+        return nodes.intern(name);
+    }
+
+    /**
+     * @return the id of the node with the given name, or -1 if there is no such node.
+     */
+    int findNode(String name) {
+        return nodes.find(name);
+    }
+
+    String nodeName(int node) {
+        return nodes.name(node);
+    }
+
+    int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Adds an edge, unless the graph already has an edge with the same source and target.
+     *
+     * @return true if the edge was added.
+     */
+    boolean addEdge(int source, int target, int file, int line) {
+        if (!addToEdgeSet(((long) source << 32) | (target & 0xffffffffL))) {
+            return false;
+        }
+        if (edgeCount == sources.length) {
+            sources = grow(sources);
+            targets = grow(targets);
+            files = grow(files);
+            lines = grow(lines);
+        }
+        sources[edgeCount] = source;
+        targets[edgeCount] = target;
+        files[edgeCount] = file;
+        lines[edgeCount] = line;
+        edgeCount++;
+        offsets = null;
+        return true;
+    }
+
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    int edgeSource(int edge) {
+        return sources[edge];
+    }
+
+    int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * @return id of the file where the edge was first seen.
+     */
+    int edgeFile(int edge) {
+        return files[edge];
+    }
+
+    /**
+     * @return line of the file where the edge was first seen.
+     */
+    int edgeLine(int edge) {
+        return lines[edge];
+    }
+
+    /**
+     * Builds the compressed adjacency lists. Called automatically when needed.
+     */
+    void compact() {
+        int nodeCount = nodes.size();
+        offsets = new int[nodeCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            offsets[sources[edge] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        successors = new int[edgeCount];
+        int[] next = new int[nodeCount];
+        System.arraycopy(offsets, 0, next, 0, nodeCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            successors[next[sources[edge]]++] = targets[edge];
+        }
+    }
+
+    /**
+     * Finds the strongly connected components of the graph with Tarjan's algorithm, implemented with
+     * explicit stacks so that long dependency chains do not overflow the call stack.
+     *
+     * @return the component of each node, indexed by node id. Two nodes are in a cycle if and only if
+     *         they have the same component.
+     */
+    int[] stronglyConnectedComponents() {
+        if (offsets == null || offsets.length != nodes.size() + 1) {
+            compact();
+        }
+        int nodeCount = nodes.size();
+        int[] component = new int[nodeCount];
+        int[] index = new int[nodeCount];
+        int[] low = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        // simulated call stack: node and position of its next successor to visit
+        int[] callNode = new int[nodeCount];
+        int[] callPos = new int[nodeCount];
+        int callSize = 0;
+        int counter = 1;
+        int components = 0;
+        for (int start = 0; start < nodeCount; start++) {
+            if (index[start] != 0) {
+                continue;
+            }
+            index[start] = low[start] = counter++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+            callNode[callSize] = start;
+            callPos[callSize++] = offsets[start];
+            while (callSize > 0) {
+                int node = callNode[callSize - 1];
+                int pos = callPos[callSize - 1];
+                if (pos < offsets[node + 1]) {
+                    callPos[callSize - 1]++;
+                    int successor = successors[pos];
+                    if (index[successor] == 0) {
+                        index[successor] = low[successor] = counter++;
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        callNode[callSize] = successor;
+                        callPos[callSize++] = offsets[successor];
+                    } else if (onStack[successor]) {
+                        low[node] = Math.min(low[node], index[successor]);
+                    }
+                } else {
+                    callSize--;
+                    if (low[node] == index[node]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            component[member] = components;
+                        } while (member != node);
+                        components++;
+                    }
+                    if (callSize > 0) {
+                        int caller = callNode[callSize - 1];
+                        low[caller] = Math.min(low[caller], low[node]);
+                    }
+                }
+            }
+        }
+        return component;
+    }
+
+    private boolean addToEdgeSet(long key) {
+        if ((edgeCount + 1) * 2 > edgeSet.length) {
+            long[] old = edgeSet;
+            edgeSet = newEdgeSet(old.length * 2);
+            for (long oldKey : old) {
+                if (oldKey != EMPTY_SLOT) {
+                    insert(edgeSet, oldKey);
+                }
+            }
+        }
+        return insert(edgeSet, key);
+    }
+
+    private static boolean insert(long[] set, long key) {
+        int mask = set.length - 1;
+        int slot = (int) (mix(key) & mask);
+        while (set[slot] != EMPTY_SLOT) {
+            if (set[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        set[slot] = key;
+        return true;
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static long[] newEdgeSet(int capacity) {
+        long[] set = new long[capacity];
+        Arrays.fill(set, EMPTY_SLOT);
+        return set;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+}
@@ -0,0 +1,343 @@
+package tutorial.checks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Reverse dependencies of the files of a code base, persisted between runs, so that a change can be
+ * checked together with the files whose violations it may change. For each file it keeps the top-level
+ * types it declares, the classes and packages it imports and the simple names of its supertypes. The
+ * dependents of a changed file are:
+ * <ul>
+ * <li>the files that import one of its types, by name or with a wildcard;
+ * <li>the files with one of its types as supertype, and their subtypes, transitively. Supertypes are
+ * matched by simple name, which may add files but does not miss any.
+ * </ul>
+ * Types that a changed file declared when it was last indexed count too, so the dependents of a type that
+ * was renamed or deleted are found.
+ * <p>
+ * {@link #update} brings the index up to date with the files: a file whose modification time and length
+ * are the same as when it was indexed is not read, a file whose content hash is the same is not parsed.
+ * File layout: magic, number of files, then for each file its path, modification time, length, content
+ * key and the lists of types, imports and supertypes.
+ *
+ * @author Paulo Merson
+ */
+final class DependencyIndex {
+
+    /** "CKD1": format of the file; change when the layout changes */
+    private static final int MAGIC = 0x434b4431;
+
+    private static final String[] NONE = new String[0];
+
+    private final File file;
+
+    /** Entries by path */
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+    /** Types declared by the files that changed in the last update, before the update */
+    private final Map<String, String[]> previousTypes = new HashMap<String, String[]>();
+
+    private int filesParsed;
+
+    private DependencyIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the index in the file. The index is empty if the file does not exist or is not an index.
+     */
+    static DependencyIndex open(File file) throws IOException {
+        DependencyIndex index = new DependencyIndex(file);
+        if (file.isFile()) {
+            index.load();
+        }
+        return index;
+    }
+
+    private void load() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        try {
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry();
+                String path = in.readUTF();
+                entry.lastModified = in.readLong();
+                entry.length = in.readLong();
+                entry.key = new byte[AuditCache.KEY_LENGTH];
+                in.readFully(entry.key);
+                entry.types = readStrings(in);
+                entry.imports = readStrings(in);
+                entry.supertypes = readStrings(in);
+                entries.put(path, entry);
+            }
+        } catch (EOFException e) {
+            // truncated file: starts empty
+            entries.clear();
+        } finally {
+            in.close();
+        }
+    }
+
+    static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    /**
+     * Indexes the files that are new or changed since they were indexed and drops the files that are not
+     * in the list.
+     *
+     * @param charset charset of the files, e.g. "UTF-8".
+     */
+    void update(Collection<File> files, String charset) throws IOException {
+        previousTypes.clear();
+        filesParsed = 0;
+        Set<String> paths = new HashSet<String>();
+        for (File source : files) {
+            String path = source.getPath();
+            paths.add(path);
+            Entry entry = entries.get(path);
+            if (entry != null && entry.lastModified == source.lastModified() && entry.length == source.length()) {
+                continue;
+            }
+            byte[] key = AuditCache.keyOf(source);
+            if (entry == null || !Arrays.equals(entry.key, key)) {
+                if (entry != null) {
+                    previousTypes.put(path, entry.types);
+                }
+                entry = parse(source, charset);
+                entry.key = key;
+                entries.put(path, entry);
+                filesParsed++;
+            }
+            entry.lastModified = source.lastModified();
+            entry.length = source.length();
+        }
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (!paths.contains(entry.getKey())) {
+                previousTypes.put(entry.getKey(), entry.getValue().types);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of files parsed by the last {@link #update}.
+     */
+    int getFilesParsed() {
+        return filesParsed;
+    }
+
+    private static Entry parse(File source, String charset) throws IOException {
+        Entry entry = new Entry();
+        DetailAST root;
+        try {
+            root = TreeWalker.parse(new FileContents(new FileText(source, charset)));
+        } catch (RecognitionException e) {
+            // indexed without dependencies; the audit reports the parse error
+            return entry;
+        } catch (TokenStreamException e) {
+            return entry;
+        }
+        String packageName = "";
+        List<String> types = new ArrayList<String>(1);
+        List<String> imports = new ArrayList<String>();
+        List<String> supertypes = new ArrayList<String>(1);
+        for (DetailAST topLevel = root; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            switch (topLevel.getType()) {
+            case TokenTypes.PACKAGE_DEF:
+                packageName = CustomCheck.qualifiedNameOf(topLevel) + ".";
+                break;
+            case TokenTypes.IMPORT:
+            case TokenTypes.STATIC_IMPORT:
+                imports.add(importedClassOrPackage(CustomCheck.qualifiedNameOf(topLevel)));
+                break;
+            case TokenTypes.CLASS_DEF:
+            case TokenTypes.INTERFACE_DEF:
+            case TokenTypes.ENUM_DEF:
+            case TokenTypes.ANNOTATION_DEF:
+                types.add(packageName + topLevel.findFirstToken(TokenTypes.IDENT).getText());
+                addSimpleNames(supertypes, topLevel.findFirstToken(TokenTypes.EXTENDS_CLAUSE));
+                addSimpleNames(supertypes, topLevel.findFirstToken(TokenTypes.IMPLEMENTS_CLAUSE));
+                break;
+            default:
+                break;
+            }
+        }
+        entry.types = types.toArray(NONE);
+        entry.imports = imports.toArray(NONE);
+        entry.supertypes = supertypes.toArray(NONE);
+        return entry;
+    }
+
+    /**
+     * @return the imported top-level class ("a.b.C" for "a.b.C", "a.b.C.D" and "a.b.C.*") or the imported
+     * package with the wildcard ("a.b.*").
+     */
+    static String importedClassOrPackage(String importName) {
+        int classEnd = CheckPackageDependencyGraph.classNameEnd(importName);
+        return classEnd < 0 ? importName : importName.substring(0, classEnd);
+    }
+
+    private static void addSimpleNames(List<String> names, DetailAST clause) {
+        if (clause == null) {
+            return;
+        }
+        for (DetailAST type = clause.getFirstChild(); type != null; type = type.getNextSibling()) {
+            if (type.getType() == TokenTypes.IDENT) {
+                names.add(type.getText());
+            } else if (type.getType() == TokenTypes.DOT) {
+                names.add(type.getLastChild().getText());
+            }
+        }
+    }
+
+    /**
+     * @param changedPaths paths of the changed files, including deleted ones.
+     * @return paths of the indexed files that depend on the changed files, not including the changed
+     * files themselves.
+     */
+    Set<String> dependentsOf(Collection<String> changedPaths) {
+        Map<String, List<String>> importers = new HashMap<String, List<String>>();
+        Map<String, List<String>> subtypes = new HashMap<String, List<String>>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            for (String importName : entry.getValue().imports) {
+                add(importers, importName, entry.getKey());
+            }
+            for (String supertype : entry.getValue().supertypes) {
+                add(subtypes, supertype, entry.getKey());
+            }
+        }
+        Set<String> dependents = new LinkedHashSet<String>();
+        Set<String> seenTypes = new HashSet<String>();
+        LinkedList<String> types = new LinkedList<String>();
+        for (String path : changedPaths) {
+            Entry entry = entries.get(path);
+            types.addAll(Arrays.asList(entry == null ? NONE : entry.types));
+            if (previousTypes.containsKey(path)) {
+                types.addAll(Arrays.asList(previousTypes.get(path)));
+            }
+        }
+        while (!types.isEmpty()) {
+            String type = types.removeFirst();
+            if (!seenTypes.add(type)) {
+                continue;
+            }
+            int lastDot = type.lastIndexOf('.');
+            addAll(dependents, importers.get(type));
+            if (lastDot > 0) {
+                addAll(dependents, importers.get(type.substring(0, lastDot) + ".*"));
+            }
+            List<String> subtypeFiles = subtypes.get(type.substring(lastDot + 1));
+            if (subtypeFiles != null) {
+                for (String subtypeFile : subtypeFiles) {
+                    dependents.add(subtypeFile);
+                    types.addAll(Arrays.asList(entries.get(subtypeFile).types));
+                }
+            }
+        }
+        dependents.removeAll(changedPaths);
+        return dependents;
+    }
+
+    private static void add(Map<String, List<String>> map, String key, String path) {
+        List<String> paths = map.get(key);
+        if (paths == null) {
+            paths = new ArrayList<String>(1);
+            map.put(key, paths);
+        }
+        paths.add(path);
+    }
+
+    private static void addAll(Set<String> set, List<String> paths) {
+        if (paths != null) {
+            set.addAll(paths);
+        }
+    }
+
+    void save() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().lastModified);
+                out.writeLong(entry.getValue().length);
+                out.write(entry.getValue().key);
+                writeStrings(out, entry.getValue().types);
+                writeStrings(out, entry.getValue().imports);
+                writeStrings(out, entry.getValue().supertypes);
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            throw new IOException("Unable to replace index file " + file);
+        }
+    }
+
+    static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static final class Entry {
+
+        private long lastModified;
+
+        private long length;
+
+        private byte[] key;
+
+        /** Fully qualified names of the top-level types */
+        private String[] types = NONE;
+
+        /** Imported top-level classes and packages with a wildcard */
+        private String[] imports = NONE;
+
+        /** Simple names of the supertypes of the top-level types */
+        private String[] supertypes = NONE;
+
+    }
+
+}
@@ -0,0 +1,207 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+/**
+ * Package dependency rules loaded from a text file. Each line of the file is a rule, a comment (starting
+ * with #) or blank:
+ *
+ * <pre>
+ * forbid com.sun.j2ee.blueprints.processmanager -&gt; com.sun.j2ee.blueprints.opc : Classes in processmanager should not call classes in opc.
+ * allow  com.sun.j2ee.blueprints.processmanager -&gt; com.sun.j2ee.blueprints.opc.utils
+ * </pre>
+ *
+ * A rule applies to the classes in the first package (or its subpackages) and to imports of the
+ * second package (or its subpackages). When several rules apply, the one with the most specific first
+ * package wins and, among those, the one with the most specific second package; thus "allow" rules
+ * express exceptions to "forbid" rules. The message after ':' is optional.
+ * <p>
+ * The rules are compiled into a trie of the first packages where each node has a trie of the second
+ * packages of its rules. The rules of a package are the tries of the longest first package that matches
+ * it and of the shorter first packages that contain that one, most specific first; an import is decided by
+ * the first of them with a second package that matches it. All the tries intern the package segments in
+ * one {@link NameTable}, so a segment of the package definition or of an import is looked up once and then
+ * compared by id. Finding the rules of a file costs the number of segments of its package name, and
+ * checking an import the number of segments of the import times the number of tries; neither builds a
+ * string.
+ *
+ * @author Paulo Merson
+ */
+final class DependencyRules {
+
+    /** A rule of the file */
+    static final class Rule {
+        private final boolean forbidden;
+        private final String fromPackage;
+        private final String toPackage;
+        private final String message;
+
+        Rule(boolean forbidden, String fromPackage, String toPackage, String message) {
+            this.forbidden = forbidden;
+            this.fromPackage = fromPackage;
+            this.toPackage = toPackage;
+            this.message = message;
+        }
+
+        boolean isForbidden() {
+            return forbidden;
+        }
+
+        String getFromPackage() {
+            return fromPackage;
+        }
+
+        String getToPackage() {
+            return toPackage;
+        }
+
+        /**
+         * @return the message of the rule or a default message if the rule has none.
+         */
+        String getMessage() {
+            if (message != null) {
+                return message;
+            }
+            return "Classes in " + fromPackage + " should not depend on classes in " + toPackage + ".";
+        }
+    }
+
+    private static final Comparator<String> BY_LENGTH_DESCENDING = new Comparator<String>() {
+        public int compare(String package1, String package2) {
+            return segments(package2) - segments(package1);
+        }
+    };
+
+    private final List<Rule> rules;
+
+    /**
+     * For each first package: the rules of that package and of the shorter first packages that contain
+     * it, each by second package, most specific first package first
+     */
+    private final PackageTrie<List<PackageTrie<Rule>>> rulesByFromPackage;
+
+    /** Segments of the package names of all the rules */
+    private final NameTable segments = new NameTable();
+
+    DependencyRules(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<Rule>(rules));
+        rulesByFromPackage = new PackageTrie<List<PackageTrie<Rule>>>(segments);
+        // in the order of the file: for the same package pair, the last rule wins
+        Map<String, PackageTrie<Rule>> rulesByToPackage = new HashMap<String, PackageTrie<Rule>>();
+        for (Rule rule : rules) {
+            PackageTrie<Rule> own = rulesByToPackage.get(rule.fromPackage);
+            if (own == null) {
+                own = new PackageTrie<Rule>(segments);
+                rulesByToPackage.put(rule.fromPackage, own);
+            }
+            own.put(rule.toPackage, rule);
+        }
+        List<String> fromPackages = new ArrayList<String>(rulesByToPackage.keySet());
+        Collections.sort(fromPackages, BY_LENGTH_DESCENDING);
+        for (String fromPackage : fromPackages) {
+            List<PackageTrie<Rule>> tries = new ArrayList<PackageTrie<Rule>>();
+            for (String enclosing : fromPackages) {
+                if (isSamePackageOrSubpackage(fromPackage, enclosing)) {
+                    tries.add(rulesByToPackage.get(enclosing));
+                }
+            }
+            rulesByFromPackage.put(fromPackage, Collections.unmodifiableList(tries));
+        }
+    }
+
+    /**
+     * Loads the rules from a file or, if there is no such file, from a resource in the classpath.
+     *
+     * @throws IllegalArgumentException if the rules cannot be read or a line is not a valid rule.
+     */
+    static DependencyRules load(String location) {
+        List<String> lines = RulesFile.readLines(location);
+        List<Rule> rules = new ArrayList<Rule>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (!RulesFile.isComment(lines.get(i))) {
+                rules.add(parseRule(lines.get(i).trim(), i + 1, location));
+            }
+        }
+        return new DependencyRules(rules);
+    }
+
+    private static Rule parseRule(String line, int lineNo, String location) {
+        String ruleText = line;
+        String message = null;
+        int colon = line.indexOf(':');
+        if (colon >= 0) {
+            ruleText = line.substring(0, colon).trim();
+            message = line.substring(colon + 1).trim();
+            if (message.length() == 0) {
+                message = null;
+            }
+        }
+        String[] words = ruleText.split("\\s+");
+        if (words.length != 4 || !"->".equals(words[2]) || !("forbid".equals(words[0]) || "allow".equals(words[0]))) {
+            throw new IllegalArgumentException("Invalid dependency rule at line " + lineNo + " of " + location + ": " + line);
+        }
+        return new Rule("forbid".equals(words[0]), words[1], importedPackage(words[3]), message);
+    }
+
+    /**
+     * @return all the rules, in the order they were loaded.
+     */
+    List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @param packageDef the PACKAGE_DEF of the file.
+     * @return the rules that apply to classes in the package, by imported package, most specific
+     *         package of the classes first; null if no rule applies to the package.
+     */
+    List<PackageTrie<Rule>> rulesFor(DetailAST packageDef) {
+        return rulesByFromPackage.findLongestPrefix(packageDef);
+    }
+
+    /**
+     * @param rulesOfPackage result of {@link #rulesFor(DetailAST)}
+     * @param importAST an IMPORT or STATIC_IMPORT of a class, member or package, possibly ending in ".*"
+     * @return the forbidding rule violated by the import, or null if the import is allowed.
+     */
+    static Rule findViolatedRule(List<PackageTrie<Rule>> rulesOfPackage, DetailAST importAST) {
+        for (PackageTrie<Rule> rulesByToPackage : rulesOfPackage) {
+            // the STAR of a wildcard import matches no segment, so the package of the import is matched
+            Rule rule = rulesByToPackage.findLongestPrefix(importAST);
+            if (rule != null) {
+                return rule.isForbidden() ? rule : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the name without the trailing ".*" of a wildcard import.
+     */
+    private static String importedPackage(String importName) {
+        if (importName.endsWith(".*")) {
+            return importName.substring(0, importName.length() - 2);
+        }
+        return importName;
+    }
+
+    private static boolean isSamePackageOrSubpackage(String packageName, String prefix) {
+        return packageName.equals(prefix) || packageName.startsWith(prefix + ".");
+    }
+
+    private static int segments(String packageName) {
+        int count = 1;
+        for (int i = packageName.indexOf('.'); i >= 0; i = packageName.indexOf('.', i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,198 @@
+package tutorial.checks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.DefaultLogger;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+/**
+ * Runs checkstyle on the files of a change and on the files that depend on them, found in a
+ * {@link DependencyIndex} kept between runs. The change is a local git diff (the working tree compared
+ * with a revision, HEAD by default) or a list of files, one path per line. Deleted files are not checked,
+ * but their dependents are.
+ * <p>
+ * The dependents are the files that import a type of a changed file and the subtypes of its types: the
+ * files whose violations may change with it when a check follows imports or supertypes beyond the file,
+ * like the rules of {@link CheckProcessManagerCallsOpc} and {@link CheckHtmlActionExtendsHtmlActionSupport}
+ * would if they resolved the imported and inherited types. With -changedLines, only the violations on the
+ * added or modified lines of the changed files are reported; the violations of the dependents are all
+ * reported, since they are not on changed lines.
+ * <p>
+ * The files are checked with an {@link IncrementalAudit}, so its cache and threads apply; the dependents
+ * are always checked, not replayed from the cache, since their violations may change although their
+ * content did not.
+ * <p>
+ * Usage: {@code java tutorial.checks.DiffAudit -c <config> [-base <revision> | -changed <file>]
+ * [-changedLines] [-index <file>] [-cache <file> | -nocache] [-threads <n>] [-sarif <file>]
+ * [-jsonl <file>] <directories>}.
+ *
+ * @author Paulo Merson
+ */
+public class DiffAudit {
+
+    public static final String DEFAULT_INDEX_FILE = ".checkstyle-dependents";
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    /**
+     * @param allFiles all files of the code base, with absolute paths.
+     * @param changes the files of the change.
+     * @param index dependencies of all files, up to date.
+     * @return the files to check: the changed files that exist and their dependents, in the order of the
+     * list of all files.
+     */
+    static List<File> selectFiles(List<File> allFiles, ChangedLines changes, DependencyIndex index) {
+        Set<String> selected = new HashSet<String>(changes.getPaths());
+        selected.addAll(index.dependentsOf(changes.getPaths()));
+        List<File> files = new ArrayList<File>();
+        for (File file : allFiles) {
+            if (selected.contains(file.getPath())) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Audits the changed files and their dependents. The dependents are checked even if the audit has them
+     * in its cache: their content did not change, but their violations may have changed with the files they
+     * depend on.
+     *
+     * @param allFiles all files of the code base, with absolute paths.
+     * @param changes the files of the change.
+     * @param index dependencies of all files, up to date.
+     * @return number of violations with severity error.
+     */
+    static int audit(IncrementalAudit audit, List<File> allFiles, ChangedLines changes, DependencyIndex index)
+            throws CheckstyleException, IOException {
+        List<File> files = selectFiles(allFiles, changes, index);
+        Set<String> dependents = new HashSet<String>();
+        for (File file : files) {
+            dependents.add(file.getPath());
+        }
+        dependents.removeAll(changes.getPaths());
+        return audit.process(files, dependents);
+    }
+
+    /**
+     * @return the java files of the directory and its subdirectories, with canonical paths, as git reports
+     * them.
+     */
+    static List<File> javaFiles(File directory) throws IOException {
+        List<File> files = new ArrayList<File>();
+        IncrementalAudit.addFiles(files, directory.getCanonicalFile());
+        List<File> javaFiles = new ArrayList<File>(files.size());
+        for (File file : files) {
+            if (file.getName().endsWith(JAVA_EXTENSION)) {
+                javaFiles.add(file);
+            }
+        }
+        return javaFiles;
+    }
+
+    private static List<File> readFileList(File listFile) throws IOException {
+        List<File> files = new ArrayList<File>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(listFile), "UTF-8"));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.trim().isEmpty()) {
+                    files.add(new File(line.trim()).getCanonicalFile());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return files;
+    }
+
+    /**
+     * @return the charset property of the configuration, or the default charset.
+     */
+    private static String charsetOf(Configuration configuration) throws CheckstyleException {
+        if (Arrays.asList(configuration.getAttributeNames()).contains("charset")) {
+            return configuration.getAttribute("charset");
+        }
+        return Charset.defaultCharset().name();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configFile = null;
+        String base = "HEAD";
+        File changedFile = null;
+        boolean changedLinesOnly = false;
+        File indexFile = new File(DEFAULT_INDEX_FILE);
+        File cacheFile = new File(IncrementalAudit.DEFAULT_CACHE_FILE);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> allFiles = new ArrayList<File>();
+        List<AuditListener> reports = new ArrayList<AuditListener>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-c".equals(args[i]) && i + 1 < args.length) {
+                configFile = args[++i];
+            } else if ("-base".equals(args[i]) && i + 1 < args.length) {
+                base = args[++i];
+            } else if ("-changed".equals(args[i]) && i + 1 < args.length) {
+                changedFile = new File(args[++i]);
+            } else if ("-changedLines".equals(args[i])) {
+                changedLinesOnly = true;
+            } else if ("-index".equals(args[i]) && i + 1 < args.length) {
+                indexFile = new File(args[++i]);
+            } else if ("-cache".equals(args[i]) && i + 1 < args.length) {
+                cacheFile = new File(args[++i]);
+            } else if ("-nocache".equals(args[i])) {
+                cacheFile = null;
+            } else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-sarif".equals(args[i]) && i + 1 < args.length) {
+                reports.add(new StreamingReportListener(new File(args[++i]), StreamingReportListener.SARIF));
+            } else if ("-jsonl".equals(args[i]) && i + 1 < args.length) {
+                reports.add(new StreamingReportListener(new File(args[++i]), StreamingReportListener.JSON_LINES));
+            } else {
+                allFiles.addAll(javaFiles(new File(args[i])));
+            }
+        }
+        if (configFile == null || allFiles.isEmpty()) {
+            System.err.println("Usage: java " + DiffAudit.class.getName()
+                    + " -c <config> [-base <revision> | -changed <file>] [-changedLines] [-index <file>]"
+                    + " [-cache <file> | -nocache] [-threads <n>] [-sarif <file>] [-jsonl <file>] <directories>");
+            System.exit(-1);
+        }
+        Configuration configuration = ConfigurationLoader.loadConfiguration(configFile,
+                new PropertiesExpander(System.getProperties()));
+        ChangedLines changes = changedFile == null ? ChangedLines.fromGitDiff(new File("."), base)
+                : ChangedLines.ofFiles(readFileList(changedFile));
+        DependencyIndex index = DependencyIndex.open(indexFile);
+        index.update(allFiles, charsetOf(configuration));
+        index.save();
+
+        IncrementalAudit audit = new IncrementalAudit(configuration, cacheFile);
+        audit.setThreads(threads);
+        audit.addListener(new DefaultLogger(System.out, false));
+        for (AuditListener report : reports) {
+            audit.addListener(report);
+        }
+        if (changedLinesOnly) {
+            audit.addFilter(changes);
+        }
+        int errors = audit(audit, allFiles, changes, index);
+        audit.destroy();
+        int selected = audit.getFilesChecked() + audit.getFilesFromCache();
+        System.err.println(selected + " of " + allFiles.size() + " files selected, " + audit.getFilesChecked()
+                + " files checked, " + audit.getFilesFromCache() + " files from cache");
+        System.exit(errors);
+    }
+
+}
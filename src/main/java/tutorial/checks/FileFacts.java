@@ -0,0 +1,82 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Facts about the file being checked that many rules need: package, imports and the class being
+ * visited. {@link CheckRuleHost} works them out once per file and gives them to all its rules, so the
+ * rules do not keep this state themselves.
+ * <p>
+ * Facts are updated before the token is dispatched to the rules: at an IMPORT the import is already in
+ * {@link #getImports()}, and at a CLASS_DEF the class is already the current class. The class is removed
+ * after its CLASS_DEF is left.
+ *
+ * @author Paulo Merson
+ */
+public final class FileFacts {
+
+    private String packageName;
+
+    private final List<String> imports = new ArrayList<String>();
+
+    private final List<String> unmodifiableImports = Collections.unmodifiableList(imports);
+
+    /** Names and superclass names of the classes being visited, outermost first */
+    private final List<String[]> classes = new ArrayList<String[]>();
+
+    void clear() {
+        packageName = null;
+        imports.clear();
+        classes.clear();
+    }
+
+    void setPackageName(String packageName) {
+        this.packageName = packageName;
+    }
+
+    void addImport(String importName) {
+        imports.add(importName);
+    }
+
+    void enterClass(String className, String superClassName) {
+        classes.add(new String[] {className, superClassName});
+    }
+
+    void leaveClass() {
+        classes.remove(classes.size() - 1);
+    }
+
+    /**
+     * @return the package of the file (e.g., "com.sun.j2ee.blueprints.processmanager.ejb") or null if the
+     *         file has no package definition.
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * @return the imports of the file seen so far (e.g., "com.sun.j2ee.blueprints.opc.*"), including static
+     *         imports.
+     */
+    public List<String> getImports() {
+        return unmodifiableImports;
+    }
+
+    /**
+     * @return simple name of the class being visited (the innermost one), or null if outside a class.
+     */
+    public String getClassName() {
+        return classes.isEmpty() ? null : classes.get(classes.size() - 1)[0];
+    }
+
+    /**
+     * @return simple name of the superclass of the class being visited, or null if outside a class or if
+     *         the class has no extends clause.
+     */
+    public String getSuperClassName() {
+        return classes.isEmpty() ? null : classes.get(classes.size() - 1)[1];
+    }
+
+}
@@ -0,0 +1,270 @@
+package tutorial.checks;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.TextBlock;
+
+/**
+ * The AST of one source file as parallel arrays of ints, one entry per node in document order (the order
+ * of a walk of the tree): type, parent, first child, next sibling, line, column and text, where the links
+ * are indexes of nodes (-1 for none) and the text is an index in the table of the distinct texts of the
+ * file. The comments reported by the parser are kept as well, so a tree read back replays them into the
+ * {@link FileContents} of the file as the parser would.
+ * <p>
+ * The arrays are written to and read from a {@link ByteBuffer} by {@link AstCache}; {@link #toAST()}
+ * links the nodes into a tree of DetailASTs again, with no lexing or parsing, so the checks and the
+ * helpers of {@link CustomCheck} run on it as on a parsed tree.
+ *
+ * @author Paulo Merson
+ */
+final class FlatAst {
+
+    /** Ints per comment: start line, start column, end line (0 for a single-line comment), end column */
+    private static final int COMMENT_LENGTH = 4;
+
+    private final int[] types;
+
+    private final int[] parents;
+
+    private final int[] firstChildren;
+
+    private final int[] nextSiblings;
+
+    private final int[] lines;
+
+    private final int[] columns;
+
+    private final int[] textIds;
+
+    private final String[] texts;
+
+    private final int[] comments;
+
+    private FlatAst(int nodeCount, String[] texts, int[] comments) {
+        types = new int[nodeCount];
+        parents = new int[nodeCount];
+        firstChildren = new int[nodeCount];
+        nextSiblings = new int[nodeCount];
+        lines = new int[nodeCount];
+        columns = new int[nodeCount];
+        textIds = new int[nodeCount];
+        this.texts = texts;
+        this.comments = comments;
+    }
+
+    /**
+     * Flattens the tree that starts at the given root, including all its siblings, and the comments
+     * reported by the parser in the contents.
+     */
+    static FlatAst of(DetailAST rootAST, FileContents contents) {
+        List<DetailAST> nodes = new ArrayList<DetailAST>();
+        AstCursor cursor = new AstCursor();
+        for (DetailAST topLevel = rootAST; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            cursor.reset(topLevel);
+            for (DetailAST node = cursor.next(); node != null; node = cursor.next()) {
+                nodes.add(node);
+            }
+        }
+        Map<DetailAST, Integer> indexes = new IdentityHashMap<DetailAST, Integer>(nodes.size() * 2);
+        for (int index = 0; index < nodes.size(); index++) {
+            indexes.put(nodes.get(index), index);
+        }
+        int[] textIds = new int[nodes.size()];
+        Map<String, Integer> textIndexes = new HashMap<String, Integer>();
+        List<String> texts = new ArrayList<String>();
+        for (int index = 0; index < textIds.length; index++) {
+            String text = nodes.get(index).getText();
+            Integer textId = textIndexes.get(text);
+            if (textId == null) {
+                textId = texts.size();
+                textIndexes.put(text, textId);
+                texts.add(text);
+            }
+            textIds[index] = textId;
+        }
+        FlatAst flat = new FlatAst(nodes.size(), texts.toArray(new String[texts.size()]), commentsOf(contents));
+        System.arraycopy(textIds, 0, flat.textIds, 0, textIds.length);
+        for (int index = 0; index < nodes.size(); index++) {
+            DetailAST node = nodes.get(index);
+            flat.types[index] = node.getType();
+            flat.parents[index] = indexOf(node.getParent(), indexes);
+            flat.firstChildren[index] = indexOf(node.getFirstChild(), indexes);
+            flat.nextSiblings[index] = indexOf(node.getNextSibling(), indexes);
+            flat.lines[index] = node.getLineNo();
+            flat.columns[index] = node.getColumnNo();
+        }
+        return flat;
+    }
+
+    private static int indexOf(DetailAST node, Map<DetailAST, Integer> indexes) {
+        return node == null ? -1 : indexes.get(node);
+    }
+
+    private static int[] commentsOf(FileContents contents) {
+        List<TextBlock> blocks = new ArrayList<TextBlock>(contents.getCppComments().values());
+        for (List<TextBlock> lineBlocks : contents.getCComments().values()) {
+            blocks.addAll(lineBlocks);
+        }
+        int[] comments = new int[blocks.size() * COMMENT_LENGTH];
+        int position = 0;
+        for (TextBlock block : blocks) {
+            comments[position] = block.getStartLineNo();
+            comments[position + 1] = block.getStartColNo();
+            // a single-line comment ends at the end of its line
+            comments[position + 2] = contents.getCppComments().get(block.getStartLineNo()) == block ? 0
+                    : block.getEndLineNo();
+            comments[position + 3] = block.getEndColNo();
+            position += COMMENT_LENGTH;
+        }
+        return comments;
+    }
+
+    /**
+     * @return number of nodes.
+     */
+    int size() {
+        return types.length;
+    }
+
+    /**
+     * @return the nodes as DetailASTs: the first node, linked to its siblings, children and descendants.
+     */
+    DetailAST toAST() {
+        if (types.length == 0) {
+            return null;
+        }
+        DetailAST[] nodes = new DetailAST[types.length];
+        for (int index = 0; index < nodes.length; index++) {
+            DetailAST node = new DetailAST();
+            node.initialize(types[index], texts[textIds[index]]);
+            node.setLineNo(lines[index]);
+            node.setColumnNo(columns[index]);
+            nodes[index] = node;
+        }
+        // in document order, the parent of a node is set before the node is linked to its child and its
+        // next sibling, which are not linked yet: DetailAST sets their parent without walking sibling chains
+        for (int index = 0; index < nodes.length; index++) {
+            if (firstChildren[index] >= 0) {
+                nodes[index].setFirstChild(nodes[firstChildren[index]]);
+            }
+            if (nextSiblings[index] >= 0) {
+                nodes[index].setNextSibling(nodes[nextSiblings[index]]);
+            }
+        }
+        return nodes[0];
+    }
+
+    /**
+     * Reports the comments of the file to the contents, as the parser does.
+     */
+    void reportComments(FileContents contents) {
+        for (int comment = 0; comment < comments.length; comment += COMMENT_LENGTH) {
+            if (comments[comment + 2] == 0) {
+                contents.reportSingleLineComment("//", comments[comment], comments[comment + 1]);
+            } else {
+                contents.reportBlockComment("/*", comments[comment], comments[comment + 1], comments[comment + 2],
+                        comments[comment + 3]);
+            }
+        }
+    }
+
+    /**
+     * Writes, big-endian: number of nodes, number of comments and number of texts; the seven arrays of the
+     * nodes one after the other; the comments; the offset of each text plus the end offset, then the UTF-8
+     * bytes of all texts.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(types.length);
+        out.writeInt(comments.length / COMMENT_LENGTH);
+        out.writeInt(texts.length);
+        for (int[] array : new int[][] {types, parents, firstChildren, nextSiblings, lines, columns, textIds,
+                comments}) {
+            for (int value : array) {
+                out.writeInt(value);
+            }
+        }
+        byte[][] textBytes = new byte[texts.length][];
+        int offset = 0;
+        for (int index = 0; index < texts.length; index++) {
+            textBytes[index] = texts[index].getBytes("UTF-8");
+            out.writeInt(offset);
+            offset += textBytes[index].length;
+        }
+        out.writeInt(offset);
+        for (byte[] bytes : textBytes) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads what {@link #write} wrote, from the current position of the buffer.
+     *
+     * @throws IllegalArgumentException if the buffer does not hold a valid tree.
+     */
+    static FlatAst read(ByteBuffer buffer) {
+        int nodeCount = buffer.getInt();
+        int commentCount = buffer.getInt();
+        int textCount = buffer.getInt();
+        long length = (7L * nodeCount + (long) COMMENT_LENGTH * commentCount + textCount + 1) * 4;
+        if (nodeCount < 0 || commentCount < 0 || textCount < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Truncated or invalid tree");
+        }
+        FlatAst flat = new FlatAst(nodeCount, new String[textCount], new int[commentCount * COMMENT_LENGTH]);
+        for (int[] array : new int[][] {flat.types, flat.parents, flat.firstChildren, flat.nextSiblings,
+                flat.lines, flat.columns, flat.textIds, flat.comments}) {
+            buffer.asIntBuffer().get(array);
+            buffer.position(buffer.position() + array.length * 4);
+        }
+        int[] offsets = new int[textCount + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + offsets.length * 4);
+        if (offsets[textCount] > buffer.remaining()) {
+            throw new IllegalArgumentException("Truncated or invalid tree");
+        }
+        byte[] bytes = new byte[offsets[textCount]];
+        buffer.get(bytes);
+        for (int index = 0; index < textCount; index++) {
+            flat.texts[index] = utf8(bytes, offsets[index], offsets[index + 1] - offsets[index]);
+        }
+        flat.validate();
+        return flat;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a link or a text id is out of range, so a corrupt file is not
+     *             turned into a broken tree.
+     */
+    private void validate() {
+        for (int index = 0; index < types.length; index++) {
+            // links point forward in document order, except the parent
+            if (parents[index] < -1 || parents[index] >= index || firstChildren[index] < -1
+                    || firstChildren[index] >= types.length || nextSiblings[index] < -1
+                    || nextSiblings[index] >= types.length
+                    || (firstChildren[index] >= 0 && firstChildren[index] <= index)
+                    || (nextSiblings[index] >= 0 && nextSiblings[index] <= index) || textIds[index] < 0
+                    || textIds[index] >= texts.length) {
+                throw new IllegalArgumentException("Invalid node " + index);
+            }
+        }
+    }
+
+    private static String utf8(byte[] bytes, int offset, int length) {
+        try {
+            return new String(bytes, offset, length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // every Java platform has UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
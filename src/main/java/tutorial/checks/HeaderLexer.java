@@ -0,0 +1,357 @@
+package tutorial.checks;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Reads the header of a compilation unit, i.e. its package definition and imports, without parsing the
+ * rest of the file: it lexes the lines up to the first type declaration into a flat stream of tokens (type,
+ * text, line and column in parallel arrays). The names can be read from the stream directly, or as the
+ * PACKAGE_DEF, IMPORT and STATIC_IMPORT ASTs that TreeWalker would build, for the checks whose tokens all
+ * come from the header.
+ * <p>
+ * The header is incomplete when it has something the lexer does not model: an annotation before the
+ * package definition (package-info.java), a unicode escape, an unterminated comment or a syntax error. The
+ * caller must then parse the file.
+ *
+ * @author Paulo Merson
+ */
+final class HeaderLexer {
+
+    /** Words that may start the first type declaration */
+    private static final Set<String> TYPE_DECLARATION_WORDS = new HashSet<String>(Arrays.asList("public",
+            "protected", "private", "abstract", "static", "final", "strictfp", "class", "interface", "enum"));
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final List<String> lines;
+
+    /** Position in the lines, both 0-based */
+    private int line;
+
+    private int column;
+
+    private int[] types = new int[INITIAL_CAPACITY];
+
+    private String[] texts = new String[INITIAL_CAPACITY];
+
+    private int[] lineNos = new int[INITIAL_CAPACITY];
+
+    private int[] columnNos = new int[INITIAL_CAPACITY];
+
+    private int count;
+
+    /** First token of each statement, plus count at the end */
+    private int[] statements = new int[INITIAL_CAPACITY];
+
+    private int statementCount;
+
+    /** Start line, start column, end line and end column of each comment; end line 0 for // comments */
+    private int[] comments = new int[0];
+
+    private int commentCount;
+
+    private boolean complete;
+
+    private HeaderLexer(List<String> lines) {
+        this.lines = lines;
+    }
+
+    static HeaderLexer lex(List<String> lines) {
+        HeaderLexer lexer = new HeaderLexer(lines);
+        lexer.complete = lexer.lexStatements();
+        lexer.statements[lexer.statementCount] = lexer.count;
+        return lexer;
+    }
+
+    /**
+     * @return false if the file must be parsed to read its header.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the package name, or null if the file has no package definition.
+     */
+    String getPackageName() {
+        return statementCount > 0 && types[0] == TokenTypes.PACKAGE_DEF ? nameOf(0) : null;
+    }
+
+    int getImportCount() {
+        return getPackageName() == null ? statementCount : statementCount - 1;
+    }
+
+    /**
+     * @return the imported name as {@link CustomCheck#fullyQualifiedPackage(DetailAST)} returns it (e.g.,
+     *         "java.util.*").
+     */
+    String getImportName(int index) {
+        return nameOf(importStatement(index));
+    }
+
+    int getImportLine(int index) {
+        return lineNos[statements[importStatement(index)]];
+    }
+
+    boolean isStaticImport(int index) {
+        return types[statements[importStatement(index)]] == TokenTypes.STATIC_IMPORT;
+    }
+
+    private int importStatement(int index) {
+        return getPackageName() == null ? index : index + 1;
+    }
+
+    private String nameOf(int statement) {
+        StringBuilder name = new StringBuilder();
+        for (int token = statements[statement] + 1; token < statements[statement + 1] - 1; token++) {
+            if (types[token] != TokenTypes.LITERAL_STATIC) {
+                name.append(texts[token]);
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * @return the PACKAGE_DEF, IMPORT and STATIC_IMPORT ASTs of the header, as siblings, with the structure,
+     *         lines and columns that TreeWalker gives them; null if the header is empty.
+     */
+    DetailAST toAST() {
+        DetailAST first = null;
+        DetailAST previous = null;
+        for (int statement = 0; statement < statementCount; statement++) {
+            int token = statements[statement];
+            DetailAST node = nodeOf(token++);
+            if (node.getType() == TokenTypes.PACKAGE_DEF) {
+                DetailAST annotations = new DetailAST();
+                annotations.initialize(TokenTypes.ANNOTATIONS, "ANNOTATIONS");
+                node.addChild(annotations);
+            } else if (types[token] == TokenTypes.LITERAL_STATIC) {
+                node.addChild(nodeOf(token++));
+            }
+            DetailAST name = nodeOf(token++);
+            while (types[token] == TokenTypes.DOT) {
+                DetailAST dot = nodeOf(token);
+                dot.addChild(name);
+                dot.addChild(nodeOf(token + 1));
+                name = dot;
+                token += 2;
+            }
+            node.addChild(name);
+            node.addChild(nodeOf(token));
+            if (previous == null) {
+                first = node;
+            } else {
+                previous.setNextSibling(node);
+            }
+            previous = node;
+        }
+        return first;
+    }
+
+    /**
+     * Reports the comments of the header to the file contents, as the parser does.
+     */
+    void reportComments(FileContents contents) {
+        for (int comment = 0; comment < commentCount * 4; comment += 4) {
+            if (comments[comment + 2] == 0) {
+                contents.reportSingleLineComment("//", comments[comment], comments[comment + 1]);
+            } else {
+                contents.reportBlockComment("/*", comments[comment], comments[comment + 1], comments[comment + 2],
+                        comments[comment + 3]);
+            }
+        }
+    }
+
+    private DetailAST nodeOf(int token) {
+        DetailAST node = new DetailAST();
+        node.initialize(types[token], texts[token]);
+        node.setLineNo(lineNos[token]);
+        node.setColumnNo(columnNos[token]);
+        return node;
+    }
+
+    /**
+     * @return true if the header ends where a type declaration or the file starts.
+     */
+    private boolean lexStatements() {
+        while (skipBlanks()) {
+            if (line == lines.size()) {
+                return true;
+            }
+            char c = lines.get(line).charAt(column);
+            if (c == ';') {
+                return true;
+            }
+            if (c == '@') {
+                // the annotation of a type; before anything else, maybe of the package
+                return statementCount > 0;
+            }
+            if (!Character.isJavaIdentifierStart(c)) {
+                return false;
+            }
+            int wordLine = line;
+            int wordColumn = column;
+            String word = readIdentifier();
+            if (word.equals("package") && statementCount == 0) {
+                startStatement(TokenTypes.PACKAGE_DEF, word, wordLine, wordColumn);
+                if (!lexName(false)) {
+                    return false;
+                }
+            } else if (word.equals("import")) {
+                startStatement(TokenTypes.IMPORT, word, wordLine, wordColumn);
+                if (!lexImport()) {
+                    return false;
+                }
+            } else {
+                return TYPE_DECLARATION_WORDS.contains(word);
+            }
+        }
+        return false;
+    }
+
+    private boolean lexImport() {
+        if (!skipBlanks() || line == lines.size()) {
+            return false;
+        }
+        int wordLine = line;
+        int wordColumn = column;
+        if (Character.isJavaIdentifierStart(lines.get(line).charAt(column))) {
+            String word = readIdentifier();
+            if (word.equals("static")) {
+                types[count - 1] = TokenTypes.STATIC_IMPORT;
+                addToken(TokenTypes.LITERAL_STATIC, word, wordLine, wordColumn);
+            } else {
+                // first part of the name
+                line = wordLine;
+                column = wordColumn;
+            }
+        }
+        return lexName(true);
+    }
+
+    /**
+     * Lexes a name (with a trailing .* if star is true) and the semicolon after it.
+     */
+    private boolean lexName(boolean star) {
+        while (true) {
+            if (!skipBlanks() || line == lines.size()) {
+                return false;
+            }
+            if (!Character.isJavaIdentifierStart(lines.get(line).charAt(column))) {
+                return false;
+            }
+            int wordLine = line;
+            int wordColumn = column;
+            addToken(TokenTypes.IDENT, readIdentifier(), wordLine, wordColumn);
+            if (!skipBlanks() || line == lines.size()) {
+                return false;
+            }
+            char c = lines.get(line).charAt(column);
+            if (c == ';') {
+                addToken(TokenTypes.SEMI, ";", line, column++);
+                return true;
+            }
+            if (c != '.') {
+                return false;
+            }
+            addToken(TokenTypes.DOT, ".", line, column++);
+            if (star && skipBlanks() && line < lines.size() && lines.get(line).charAt(column) == '*') {
+                addToken(TokenTypes.STAR, "*", line, column++);
+                if (!skipBlanks() || line == lines.size() || lines.get(line).charAt(column) != ';') {
+                    return false;
+                }
+                addToken(TokenTypes.SEMI, ";", line, column++);
+                return true;
+            }
+        }
+    }
+
+    private String readIdentifier() {
+        String text = lines.get(line);
+        int start = column;
+        column++;
+        while (column < text.length() && Character.isJavaIdentifierPart(text.charAt(column))) {
+            column++;
+        }
+        return text.substring(start, column);
+    }
+
+    /**
+     * Skips white space and comments.
+     *
+     * @return false if a comment is not terminated; otherwise the position is at the next token or at
+     *         the end of the lines.
+     */
+    private boolean skipBlanks() {
+        while (line < lines.size()) {
+            String text = lines.get(line);
+            if (column >= text.length()) {
+                line++;
+                column = 0;
+            } else if (Character.isWhitespace(text.charAt(column))) {
+                column++;
+            } else if (text.startsWith("//", column)) {
+                addComment(line + 1, column, 0, 0);
+                line++;
+                column = 0;
+            } else if (text.startsWith("/*", column)) {
+                int startLine = line;
+                int startColumn = column;
+                int end = text.indexOf("*/", column + 2);
+                while (end < 0) {
+                    line++;
+                    if (line == lines.size()) {
+                        return false;
+                    }
+                    end = lines.get(line).indexOf("*/");
+                }
+                column = end + 2;
+                addComment(startLine + 1, startColumn, line + 1, end + 1);
+            } else {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private void addComment(int startLine, int startColumn, int endLine, int endColumn) {
+        if (commentCount * 4 == comments.length) {
+            comments = Arrays.copyOf(comments, Math.max(4, comments.length * 2));
+        }
+        comments[commentCount * 4] = startLine;
+        comments[commentCount * 4 + 1] = startColumn;
+        comments[commentCount * 4 + 2] = endLine;
+        comments[commentCount * 4 + 3] = endColumn;
+        commentCount++;
+    }
+
+    private void startStatement(int type, String text, int tokenLine, int tokenColumn) {
+        if (statementCount + 1 == statements.length) {
+            statements = Arrays.copyOf(statements, statements.length * 2);
+        }
+        statements[statementCount++] = count;
+        addToken(type, text, tokenLine, tokenColumn);
+    }
+
+    private void addToken(int type, String text, int tokenLine, int tokenColumn) {
+        if (count == types.length) {
+            types = Arrays.copyOf(types, count * 2);
+            texts = Arrays.copyOf(texts, count * 2);
+            lineNos = Arrays.copyOf(lineNos, count * 2);
+            columnNos = Arrays.copyOf(columnNos, count * 2);
+        }
+        types[count] = type;
+        texts[count] = text;
+        lineNos[count] = tokenLine + 1;
+        columnNos[count] = tokenColumn;
+        count++;
+    }
+
+}
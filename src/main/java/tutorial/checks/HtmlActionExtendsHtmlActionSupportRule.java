@@ -0,0 +1,43 @@
+package tutorial.checks;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Rule version of {@link CheckHtmlActionExtendsHtmlActionSupport}, to run in {@link CheckRuleHost}. The
+ * class name and superclass come from the file facts; with property sourcePath of the host, the indirect
+ * supertypes come from its class hierarchy.
+ */
+public class HtmlActionExtendsHtmlActionSupportRule extends CustomRule {
+
+    @Override
+    public int[] getTokens() {
+        return new int[] {TokenTypes.CLASS_DEF};
+    }
+
+    @Override
+    public String[] getRequiredLiterals() {
+        return new String[] {"HTMLAction"};
+    }
+
+    @Override
+    public void visitToken(DetailAST aAST, FileFacts facts) {
+        if (facts.getClassName().endsWith("HTMLAction")) {
+            String superClass = facts.getSuperClassName();
+            if (superClass == null || !superClass.endsWith("HTMLActionSupport") && !hasIndirectSupport(aAST)) {
+                log(aAST.getLineNo(), CheckHtmlActionExtendsHtmlActionSupport.CHECK_VIOLATION_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * @return true if HTMLActionSupport is an indirect supertype of the class, in the class hierarchy of
+     *         the host.
+     */
+    private boolean hasIndirectSupport(DetailAST classDefToken) {
+        ClassHierarchyIndex hierarchy = getClassHierarchy();
+        return hierarchy != null
+                && hierarchy.hasSupertypeEndingWith(getQualifiedClassName(classDefToken), "HTMLActionSupport");
+    }
+
+}
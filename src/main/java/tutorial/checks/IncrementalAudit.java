@@ -0,0 +1,904 @@
+package tutorial.checks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.DefaultLogger;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.PackageNamesLoader;
+import com.puppycrawl.tools.checkstyle.PackageObjectFactory;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.FileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.Filter;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Runs checkstyle only on the files that changed since the last run. The violations of each file are
+ * kept in an {@link AuditCache}, keyed by the path and content of the file; a file found in the cache is
+ * neither parsed nor checked, its violations are replayed to the listeners.
+ * <p>
+ * The cache is valid for one fingerprint, a hash of:
+ * <ul>
+ * <li>the configuration: modules, properties and messages, and the content of every property value that
+ * names a file (e.g. the rules file of {@link CheckLayerDependencies});
+ * <li>the classes of the custom checks and of checkstyle (jar or classes directory);
+ * <li>the default locale, which the messages depend on;
+ * <li>the paths, times and lengths of the files in the source paths of the checks, if any (property
+ * sourcePath of {@link CustomCheck}), since the results of such checks depend on other files.
+ * </ul>
+ * Any change to one of these makes every file a miss. Files whose audit threw an exception are not
+ * cached.
+ * <p>
+ * Only the tree walkers ({@link TreeWalker} and {@link InstrumentedTreeWalker}) are cached and split among
+ * threads. The other file set checks of the configuration may look at many files at once, like
+ * {@link CheckPackageDependencyGraph}, so they are run by a checker of their own, once per audit, over all
+ * the files of the list. Their violations are not cached, and are reported after those of the tree walkers
+ * of all files, as checkstyle reports the violations that file set checks find at the end of the audit.
+ * <p>
+ * With more than one thread (property threads), the files to check are split in chunks taken by a pool
+ * of workers. Each worker has its own {@link Checker}, so the checks, which keep the state of the file in
+ * their fields, are confined to one thread. The output does not depend on the number of threads: the
+ * events are replayed in the order of the file list, with the violations of each file in the order the
+ * checker sorts them (line and column). The events of a file are sent as soon as the file and those
+ * before it in the list are done, so a listener such as {@link StreamingReportListener} or the logger of
+ * {@link AuditDaemon} streams them while the audit runs.
+ * <p>
+ * Usage: {@code java tutorial.checks.IncrementalAudit -c <config> [-cache <file> | -nocache]
+ * [-threads <n>] [-sarif <file>] [-jsonl <file>] <files or directories>}; -sarif and -jsonl also write the
+ * violations with a {@link StreamingReportListener}.
+ *
+ * @author Paulo Merson
+ */
+public class IncrementalAudit {
+
+    public static final String DEFAULT_CACHE_FILE = ".checkstyle-cache";
+
+    /** Chunks per thread: enough for the threads to finish together when files take different times */
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    /** Files per chunk, at most */
+    private static final int MAX_CHUNK_SIZE = 64;
+
+    /** Property of {@link CustomCheck} with the directories of the source files */
+    private static final String SOURCE_PATH = "sourcePath";
+
+    /** Property of {@link CustomCheck} with the file the class hierarchy writes during the audit */
+    private static final String HIERARCHY_CACHE_FILE = "hierarchyCacheFile";
+
+    private final Configuration configuration;
+
+    private final File cacheFile;
+
+    private ClassLoader moduleClassLoader = IncrementalAudit.class.getClassLoader();
+
+    private int threads = 1;
+
+    private final List<AuditListener> listeners = new ArrayList<AuditListener>();
+
+    private final List<Filter> filters = new ArrayList<Filter>();
+
+    /** Workers with their configured checkers, created on demand and kept until {@link #destroy()} */
+    private final List<Worker> workers = new ArrayList<Worker>();
+
+    /** Configuration without the file set checks other than the tree walkers; null until the first audit */
+    private Configuration walkerConfiguration;
+
+    /** Configuration without the tree walkers; null if there are no other file set checks */
+    private Configuration fileSetConfiguration;
+
+    /** Checker of fileSetConfiguration, created on demand and kept until {@link #destroy()} */
+    private Worker fileSetWorker;
+
+    /** InstrumentedTreeWalkers of the checkers, created while they are configured */
+    private final List<InstrumentedTreeWalker> instrumentedWalkers = new ArrayList<InstrumentedTreeWalker>();
+
+    /** Fingerprint of the configuration, computed on the first audit */
+    private byte[] fingerprint;
+
+    private int filesFromCache;
+
+    private int filesChecked;
+
+    /**
+     * @param cacheFile file of the cache, or null to check all files without a cache.
+     */
+    public IncrementalAudit(Configuration configuration, File cacheFile) {
+        this.configuration = configuration;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Sets the class loader of the checks.
+     */
+    public void setModuleClassLoader(ClassLoader moduleClassLoader) {
+        this.moduleClassLoader = moduleClassLoader;
+    }
+
+    /**
+     * Sets the number of threads that check the files; the default is 1.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    public void addListener(AuditListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AuditListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Adds a filter of the violations sent to the listeners. Filters are applied when the violations are
+     * replayed, so the cache keeps all the violations of a file whatever the filters.
+     */
+    public void addFilter(Filter filter) {
+        filters.add(filter);
+    }
+
+    /**
+     * Audits the files. The listeners get the events of all files in the order of the list, whether
+     * they were checked or found in the cache; the events of a file are sent as soon as it and the files
+     * before it are done, so a listener can stream them. The checks are configured on the first audit and
+     * reused by the next ones, so the configuration and the files it names (e.g. rules files) are read only
+     * once.
+     *
+     * @return number of violations with severity error, like {@link Checker#process(List)}.
+     */
+    public int process(List<File> files) throws CheckstyleException, IOException {
+        return process(files, Collections.<String>emptySet());
+    }
+
+    /**
+     * Audits the files like {@link #process(List)}, but checks the files of {@code recheckedPaths} even if
+     * they are in the cache: their violations may have changed with other files although their content did
+     * not, like the dependents of a change in {@link DiffAudit}. Their new violations replace the cached
+     * ones.
+     *
+     * @param recheckedPaths paths of files of the list not to look up in the cache.
+     * @return number of violations with severity error, like {@link Checker#process(List)}.
+     */
+    public int process(List<File> files, Collection<String> recheckedPaths) throws CheckstyleException,
+            IOException {
+        if (walkerConfiguration == null) {
+            splitConfiguration();
+        }
+        if (cacheFile != null && fingerprint == null) {
+            fingerprint = fingerprint(configuration);
+        }
+        ClassHierarchyIndex.beginAudit();
+        AuditCache cache = cacheFile == null ? null
+                : AuditCache.open(cacheFile, withSourcePaths(fingerprint, configuration));
+        Map<String, byte[]> keys = new LinkedHashMap<String, byte[]>();
+        Map<String, FileResult> results = new LinkedHashMap<String, FileResult>();
+        List<File> misses = new ArrayList<File>();
+        for (File file : files) {
+            byte[] key = cache == null ? null : keyOf(file);
+            List<AuditCache.CachedViolation> cached = key == null || recheckedPaths.contains(file.getPath()) ? null
+                    : cache.find(key);
+            if (cached == null) {
+                misses.add(file);
+            } else {
+                results.put(file.getPath(), new FileResult(cached));
+            }
+            keys.put(file.getPath(), key);
+        }
+        filesFromCache = files.size() - misses.size();
+        filesChecked = misses.size();
+        Replay replay = new Replay(keys, cache);
+        for (Map.Entry<String, FileResult> result : results.entrySet()) {
+            replay.add(result.getKey(), result.getValue(), false);
+        }
+        check(misses, replay);
+        replay.finishFiles();
+        if (fileSetConfiguration != null) {
+            replay.addFileSetResults(checkFileSet(files));
+        }
+        int errors = replay.finish();
+        if (cache != null) {
+            cache.save();
+        }
+        writeMetrics();
+        return errors;
+    }
+
+    /**
+     * Writes the sum of the metrics of the {@link InstrumentedTreeWalker}s of the workers, for all the
+     * audits so far; the walkers with the same report files go together.
+     */
+    private void writeMetrics() {
+        Map<String, InstrumentedTreeWalker> writers = new LinkedHashMap<String, InstrumentedTreeWalker>();
+        Map<String, List<AuditMetrics>> metricsByReport = new LinkedHashMap<String, List<AuditMetrics>>();
+        for (InstrumentedTreeWalker walker : instrumentedWalkers) {
+            AuditMetrics metrics = walker.getMetrics();
+            if (metrics == null) {
+                continue;
+            }
+            String reportFiles = walker.getReportFiles();
+            if (!writers.containsKey(reportFiles)) {
+                writers.put(reportFiles, walker);
+                metricsByReport.put(reportFiles, new ArrayList<AuditMetrics>());
+            }
+            metricsByReport.get(reportFiles).add(metrics);
+        }
+        for (Map.Entry<String, List<AuditMetrics>> metrics : metricsByReport.entrySet()) {
+            writers.get(metrics.getKey()).writeReports(AuditMetrics.sum(metrics.getValue()));
+        }
+    }
+
+    /**
+     * Destroys the checkers kept between audits.
+     */
+    public void destroy() {
+        instrumentedWalkers.clear();
+        for (Worker worker : workers) {
+            worker.checker.destroy();
+        }
+        workers.clear();
+        if (fileSetWorker != null) {
+            fileSetWorker.checker.destroy();
+            fileSetWorker = null;
+        }
+    }
+
+    /**
+     * @return number of files of the last {@link #process(List)} whose violations came from the cache.
+     */
+    public int getFilesFromCache() {
+        return filesFromCache;
+    }
+
+    /**
+     * @return number of files of the last {@link #process(List)} that were checked.
+     */
+    public int getFilesChecked() {
+        return filesChecked;
+    }
+
+    private static byte[] keyOf(File file) {
+        try {
+            return AuditCache.keyOf(file);
+        } catch (IOException e) {
+            // not cached; the checker reports the error
+            return null;
+        }
+    }
+
+    /**
+     * Runs checkstyle on the files, with one checker per thread, and adds the result of each file to the
+     * replay as soon as the file is done.
+     */
+    private void check(List<File> files, Replay replay) throws CheckstyleException {
+        if (files.isEmpty()) {
+            return;
+        }
+        int chunkSize = Math.max(1, Math.min(MAX_CHUNK_SIZE, files.size() / (threads * CHUNKS_PER_THREAD)));
+        int workerCount = Math.min(threads, (files.size() + chunkSize - 1) / chunkSize);
+        // checkers are configured here, in one thread: configuring is not thread-safe in checkstyle
+        while (workers.size() < Math.max(1, workerCount)) {
+            workers.add(new Worker(createChecker()));
+        }
+        if (workerCount <= 1) {
+            Worker worker = workers.get(0);
+            worker.assign(files, files.size(), new AtomicInteger(), replay);
+            try {
+                worker.call();
+            } finally {
+                worker.takeResults();
+            }
+            return;
+        }
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<Worker> assigned = workers.subList(0, workerCount);
+        for (Worker worker : assigned) {
+            worker.assign(files, chunkSize, nextChunk, replay);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount);
+        try {
+            List<Future<Void>> futures = pool.invokeAll(assigned);
+            for (int i = 0; i < workerCount; i++) {
+                getResult(futures.get(i));
+                assigned.get(i).takeResults();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CheckstyleException("Audit interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void getResult(Future<Void> future) throws CheckstyleException, InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CheckstyleException) {
+                throw (CheckstyleException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new CheckstyleException("Audit failed", e.getCause());
+        }
+    }
+
+    /**
+     * Runs the file set checks other than the tree walkers on all the files, with one checker.
+     *
+     * @return the violations by file name.
+     */
+    private Map<String, FileResult> checkFileSet(List<File> files) throws CheckstyleException {
+        if (fileSetWorker == null) {
+            fileSetWorker = new Worker(createChecker(fileSetConfiguration));
+        }
+        fileSetWorker.assign(files, files.size(), new AtomicInteger(), null);
+        fileSetWorker.call();
+        return fileSetWorker.takeResults();
+    }
+
+    /**
+     * Splits the configuration in one with the tree walkers and one with the other file set checks; both
+     * keep the properties and the modules that are not file set checks (e.g. filters).
+     */
+    private void splitConfiguration() throws CheckstyleException {
+        DefaultConfiguration walkers = copyOf(configuration);
+        DefaultConfiguration fileSet = copyOf(configuration);
+        ModuleFactory factory = new PackageObjectFactory(PackageNamesLoader.getPackageNames(moduleClassLoader),
+                moduleClassLoader);
+        boolean hasFileSetChecks = false;
+        for (Configuration child : configuration.getChildren()) {
+            Object module = factory.createModule(child.getName());
+            if (module instanceof TreeWalker || module instanceof InstrumentedTreeWalker) {
+                walkers.addChild(child);
+            } else if (module instanceof FileSetCheck) {
+                fileSet.addChild(child);
+                hasFileSetChecks = true;
+            } else {
+                walkers.addChild(child);
+                fileSet.addChild(child);
+            }
+        }
+        walkerConfiguration = walkers;
+        fileSetConfiguration = hasFileSetChecks ? fileSet : null;
+    }
+
+    private static DefaultConfiguration copyOf(Configuration configuration) throws CheckstyleException {
+        DefaultConfiguration copy = new DefaultConfiguration(configuration.getName());
+        for (String name : configuration.getAttributeNames()) {
+            copy.addAttribute(name, configuration.getAttribute(name));
+        }
+        for (Map.Entry<String, String> message : configuration.getMessages().entrySet()) {
+            copy.addMessage(message.getKey(), message.getValue());
+        }
+        return copy;
+    }
+
+    private Checker createChecker() throws CheckstyleException {
+        return createChecker(walkerConfiguration);
+    }
+
+    private Checker createChecker(Configuration checkerConfiguration) throws CheckstyleException {
+        Checker checker = new Checker();
+        checker.setModuleClassLoader(moduleClassLoader);
+        final ModuleFactory factory = new PackageObjectFactory(
+                PackageNamesLoader.getPackageNames(moduleClassLoader), moduleClassLoader);
+        // keeps the walkers, to merge their metrics
+        checker.setModuleFactory(new ModuleFactory() {
+            public Object createModule(String name) throws CheckstyleException {
+                Object module = factory.createModule(name);
+                if (module instanceof InstrumentedTreeWalker) {
+                    ((InstrumentedTreeWalker) module).setReportsMerged(true);
+                    instrumentedWalkers.add((InstrumentedTreeWalker) module);
+                }
+                return module;
+            }
+        });
+        checker.configure(checkerConfiguration);
+        return checker;
+    }
+
+    /**
+     * Sends the events of the files to the listeners in the order of the file list, and puts the results
+     * of the checked files in the cache. Results are added from the threads of the workers, so the methods
+     * are synchronized; the listeners are called by one thread at a time.
+     */
+    private final class Replay {
+
+        private final List<String> fileNames;
+
+        private final Map<String, byte[]> keys;
+
+        private final AuditCache cache;
+
+        /** Results of the files of the list that are done but wait for a file before them */
+        private final Map<String, FileResult> pending = new HashMap<String, FileResult>();
+
+        /** Results of files reported by the checks that are not in the list */
+        private final Map<String, FileResult> others = new TreeMap<String, FileResult>();
+
+        /** Index in fileNames of the next file to replay */
+        private int next;
+
+        private int errors;
+
+        Replay(Map<String, byte[]> keys, AuditCache cache) {
+            this.fileNames = new ArrayList<String>(keys.keySet());
+            this.keys = keys;
+            this.cache = cache;
+            AuditEvent auditEvent = new AuditEvent(IncrementalAudit.this);
+            for (AuditListener listener : listeners) {
+                listener.auditStarted(auditEvent);
+            }
+        }
+
+        /**
+         * @param checked true if the file was checked in this audit, false if it came from the cache.
+         */
+        synchronized void add(String fileName, FileResult result, boolean checked) {
+            byte[] key = keys.get(fileName);
+            if (!keys.containsKey(fileName)) {
+                others.put(fileName, result);
+                return;
+            }
+            if (checked && key != null && result.exceptions.isEmpty()) {
+                cache.put(key, result.violations);
+            }
+            pending.put(fileName, result);
+            while (next < fileNames.size() && pending.containsKey(fileNames.get(next))) {
+                replayFile(fileNames.get(next), pending.remove(fileNames.get(next)));
+                next++;
+            }
+        }
+
+        /**
+         * Replays the files that are left when all are checked: files after one that had no events (e.g. an
+         * extension the checker skips), then the files that are not in the list, by name.
+         */
+        synchronized void finishFiles() {
+            for (; next < fileNames.size(); next++) {
+                FileResult result = pending.remove(fileNames.get(next));
+                if (result != null) {
+                    replayFile(fileNames.get(next), result);
+                }
+            }
+            for (Map.Entry<String, FileResult> result : others.entrySet()) {
+                replayFile(result.getKey(), result.getValue());
+            }
+            others.clear();
+        }
+
+        /**
+         * Replays the results of the file set checks, after those of the tree walkers, as checkstyle does for
+         * the violations that file set checks report at the end of the audit: files in the order of the list,
+         * then the others by name.
+         */
+        synchronized void addFileSetResults(Map<String, FileResult> results) {
+            Map<String, FileResult> remaining = new TreeMap<String, FileResult>(results);
+            for (String fileName : fileNames) {
+                FileResult result = remaining.remove(fileName);
+                if (result != null && !result.isEmpty()) {
+                    replayFile(fileName, result);
+                }
+            }
+            for (Map.Entry<String, FileResult> result : remaining.entrySet()) {
+                if (!result.getValue().isEmpty()) {
+                    replayFile(result.getKey(), result.getValue());
+                }
+            }
+        }
+
+        /**
+         * @return number of violations with severity error.
+         */
+        synchronized int finish() {
+            AuditEvent auditEvent = new AuditEvent(IncrementalAudit.this);
+            for (AuditListener listener : listeners) {
+                listener.auditFinished(auditEvent);
+            }
+            return errors;
+        }
+
+        private void replayFile(String fileName, FileResult result) {
+            AuditEvent fileEvent = new AuditEvent(IncrementalAudit.this, fileName);
+            for (AuditListener listener : listeners) {
+                listener.fileStarted(fileEvent);
+            }
+            for (AuditCache.CachedViolation violation : result.violations) {
+                AuditEvent event = new AuditEvent(IncrementalAudit.this, fileName,
+                        violation.toLocalizedMessage(moduleClassLoader));
+                if (!accept(event)) {
+                    continue;
+                }
+                if (violation.getSeverity() == SeverityLevel.ERROR) {
+                    errors++;
+                }
+                for (AuditListener listener : listeners) {
+                    listener.addError(event);
+                }
+            }
+            for (int i = 0; i < result.exceptions.size(); i++) {
+                for (AuditListener listener : listeners) {
+                    listener.addException(result.exceptionEvents.get(i), result.exceptions.get(i));
+                }
+            }
+            for (AuditListener listener : listeners) {
+                listener.fileFinished(fileEvent);
+            }
+        }
+
+    }
+
+    private boolean accept(AuditEvent event) {
+        for (Filter filter : filters) {
+            if (!filter.accept(event)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the fingerprint of the configuration, the checks and the locale.
+     */
+    static byte[] fingerprint(Configuration configuration) throws CheckstyleException, IOException {
+        MessageDigest digest = AuditCache.newDigest();
+        digestConfiguration(digest, configuration);
+        digestCodeSource(digest, CustomCheck.class);
+        digestCodeSource(digest, Checker.class);
+        digestString(digest, Locale.getDefault().toString());
+        return digest.digest();
+    }
+
+    /**
+     * @return the fingerprint, with the paths, times and lengths of the files in the source paths of the
+     *         checks (property sourcePath, see {@link CustomCheck#setSourcePath}) if any: the results of
+     *         these checks for a file depend on the other files, so any change to them makes every file a miss.
+     */
+    static byte[] withSourcePaths(byte[] fingerprint, Configuration configuration)
+            throws CheckstyleException, IOException {
+        Set<String> directories = new TreeSet<String>();
+        addSourcePaths(directories, configuration);
+        if (directories.isEmpty()) {
+            return fingerprint;
+        }
+        MessageDigest digest = AuditCache.newDigest();
+        digest.update(fingerprint);
+        for (String directory : directories) {
+            for (File file : DiffAudit.javaFiles(new File(directory))) {
+                digestString(digest, file.getPath());
+                digestString(digest, String.valueOf(file.lastModified()));
+                digestString(digest, String.valueOf(file.length()));
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void addSourcePaths(Set<String> directories, Configuration configuration)
+            throws CheckstyleException {
+        if (Arrays.asList(configuration.getAttributeNames()).contains(SOURCE_PATH)) {
+            for (String directory : configuration.getAttribute(SOURCE_PATH).split(",")) {
+                if (directory.trim().length() > 0) {
+                    directories.add(directory.trim());
+                }
+            }
+        }
+        for (Configuration child : configuration.getChildren()) {
+            addSourcePaths(directories, child);
+        }
+    }
+
+    /**
+     * @return a hash of the configuration and of the content of the files it names, without the classes
+     *         of the checks; cheap enough to compute on every audit to tell whether rules files changed.
+     */
+    static byte[] configurationFingerprint(Configuration configuration) throws CheckstyleException, IOException {
+        MessageDigest digest = AuditCache.newDigest();
+        digestConfiguration(digest, configuration);
+        return digest.digest();
+    }
+
+    private static void digestConfiguration(MessageDigest digest, Configuration configuration)
+            throws CheckstyleException, IOException {
+        digestString(digest, configuration.getName());
+        String[] names = configuration.getAttributeNames();
+        Arrays.sort(names);
+        for (String name : names) {
+            String value = configuration.getAttribute(name);
+            digestString(digest, name);
+            digestString(digest, value);
+            File file = new File(value);
+            // written by the checks during the audit; what it keeps is digested with the source path
+            if (file.isFile() && !HIERARCHY_CACHE_FILE.equals(name)) {
+                digestFile(digest, file);
+            }
+        }
+        for (Map.Entry<String, String> message : configuration.getMessages().entrySet()) {
+            digestString(digest, message.getKey());
+            digestString(digest, message.getValue());
+        }
+        Configuration[] children = configuration.getChildren();
+        digestString(digest, String.valueOf(children.length));
+        for (Configuration child : children) {
+            digestConfiguration(digest, child);
+        }
+    }
+
+    /**
+     * Digests the jar or the classes directory of a class.
+     */
+    private static void digestCodeSource(MessageDigest digest, Class<?> aClass) throws IOException {
+        CodeSource codeSource = aClass.getProtectionDomain().getCodeSource();
+        URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location == null) {
+            digestString(digest, aClass.getName());
+            return;
+        }
+        File file;
+        try {
+            file = new File(location.toURI());
+        } catch (URISyntaxException e) {
+            file = new File(location.getPath());
+        } catch (IllegalArgumentException e) {
+            // not a file, e.g. nested in another jar
+            digestString(digest, location.toString());
+            return;
+        }
+        digestTree(digest, file);
+    }
+
+    private static void digestTree(MessageDigest digest, File file) throws IOException {
+        digestString(digest, file.getName());
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            Arrays.sort(children);
+            for (File child : children) {
+                digestTree(digest, child);
+            }
+        } else if (file.isFile()) {
+            digestFile(digest, file);
+        }
+    }
+
+    private static void digestFile(MessageDigest digest, File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[65536];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void digestString(MessageDigest digest, String string) throws IOException {
+        digest.update(string.getBytes("UTF-8"));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Checks chunks of the file list with its own checker until there are no chunks left. The checker is
+     * kept between audits.
+     */
+    private static final class Worker implements Callable<Void> {
+
+        private final Checker checker;
+
+        private final Collector collector = new Collector();
+
+        private List<File> files;
+
+        private int chunkSize;
+
+        private AtomicInteger nextChunk;
+
+        Worker(Checker checker) {
+            this.checker = checker;
+            checker.addListener(collector);
+        }
+
+        /**
+         * @param replay where the result of each file goes when the file is done, or null to keep the
+         *            results until {@link #takeResults()}.
+         */
+        void assign(List<File> files, int chunkSize, AtomicInteger nextChunk, Replay replay) {
+            this.files = files;
+            this.chunkSize = chunkSize;
+            this.nextChunk = nextChunk;
+            collector.replay = replay;
+        }
+
+        @Override
+        public Void call() throws CheckstyleException {
+            for (int start = nextChunk.getAndIncrement() * chunkSize; start < files.size(); start = nextChunk
+                    .getAndIncrement() * chunkSize) {
+                checker.process(files.subList(start, Math.min(start + chunkSize, files.size())));
+            }
+            return null;
+        }
+
+        Map<String, FileResult> takeResults() {
+            Map<String, FileResult> results = new LinkedHashMap<String, FileResult>(collector.results);
+            collector.results.clear();
+            collector.replay = null;
+            files = null;
+            return results;
+        }
+
+    }
+
+    /**
+     * Violations and exceptions of a file.
+     */
+    private static final class FileResult {
+
+        private final List<AuditCache.CachedViolation> violations;
+
+        private final List<AuditEvent> exceptionEvents = new ArrayList<AuditEvent>(0);
+
+        private final List<Throwable> exceptions = new ArrayList<Throwable>(0);
+
+        FileResult(List<AuditCache.CachedViolation> violations) {
+            this.violations = violations;
+        }
+
+        boolean isEmpty() {
+            return violations.isEmpty() && exceptions.isEmpty();
+        }
+
+    }
+
+    /**
+     * Keeps the events of the checker, to be cached and replayed.
+     */
+    private static final class Collector implements AuditListener {
+
+        private final Map<String, FileResult> results = new LinkedHashMap<String, FileResult>();
+
+        /** Where the result of a file goes when the file is done; null to keep the results */
+        private Replay replay;
+
+        private FileResult resultOf(String fileName) {
+            FileResult result = results.get(fileName);
+            if (result == null) {
+                result = new FileResult(new ArrayList<AuditCache.CachedViolation>());
+                results.put(fileName, result);
+            }
+            return result;
+        }
+
+        @Override
+        public void auditStarted(AuditEvent event) {
+        }
+
+        @Override
+        public void auditFinished(AuditEvent event) {
+        }
+
+        @Override
+        public void fileStarted(AuditEvent event) {
+            resultOf(event.getFileName());
+        }
+
+        @Override
+        public void fileFinished(AuditEvent event) {
+            if (replay != null) {
+                FileResult result = results.remove(event.getFileName());
+                if (result == null) {
+                    result = new FileResult(new ArrayList<AuditCache.CachedViolation>());
+                }
+                replay.add(event.getFileName(), result, true);
+            }
+        }
+
+        @Override
+        public void addError(AuditEvent event) {
+            resultOf(event.getFileName()).violations.add(new AuditCache.CachedViolation(event.getLocalizedMessage()));
+        }
+
+        @Override
+        public void addException(AuditEvent event, Throwable throwable) {
+            FileResult result = resultOf(event.getFileName());
+            result.exceptionEvents.add(event);
+            result.exceptions.add(throwable);
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configFile = null;
+        File cacheFile = new File(DEFAULT_CACHE_FILE);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> files = new ArrayList<File>();
+        List<AuditListener> reports = new ArrayList<AuditListener>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-c".equals(args[i]) && i + 1 < args.length) {
+                configFile = args[++i];
+            } else if ("-cache".equals(args[i]) && i + 1 < args.length) {
+                cacheFile = new File(args[++i]);
+            } else if ("-nocache".equals(args[i])) {
+                cacheFile = null;
+            } else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-sarif".equals(args[i]) && i + 1 < args.length) {
+                reports.add(new StreamingReportListener(new File(args[++i]), StreamingReportListener.SARIF));
+            } else if ("-jsonl".equals(args[i]) && i + 1 < args.length) {
+                reports.add(new StreamingReportListener(new File(args[++i]), StreamingReportListener.JSON_LINES));
+            } else {
+                addFiles(files, new File(args[i]));
+            }
+        }
+        if (configFile == null || files.isEmpty()) {
+            System.err.println("Usage: java " + IncrementalAudit.class.getName()
+                    + " -c <config> [-cache <file> | -nocache] [-threads <n>] [-sarif <file>] [-jsonl <file>]"
+                    + " <files or directories>");
+            System.exit(-1);
+        }
+        Configuration configuration = ConfigurationLoader.loadConfiguration(configFile,
+                new PropertiesExpander(System.getProperties()));
+        IncrementalAudit audit = new IncrementalAudit(configuration, cacheFile);
+        audit.setThreads(threads);
+        audit.addListener(new DefaultLogger(System.out, false));
+        for (AuditListener report : reports) {
+            audit.addListener(report);
+        }
+        int errors = audit.process(files);
+        audit.destroy();
+        System.err.println(audit.getFilesChecked() + " files checked, " + audit.getFilesFromCache()
+                + " files from cache");
+        System.exit(errors);
+    }
+
+    /**
+     * Adds a file or, if it is a directory, all the files in it and its subdirectories, sorted by name.
+     */
+    static void addFiles(List<File> files, File file) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            Arrays.sort(children);
+            for (File child : children) {
+                addFiles(files, child);
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+}
@@ -0,0 +1,713 @@
+package tutorial.checks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
+import com.puppycrawl.tools.checkstyle.DefaultContext;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
+import com.puppycrawl.tools.checkstyle.api.AbstractFileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.Context;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+import com.puppycrawl.tools.checkstyle.utils.CommonUtils;
+import com.puppycrawl.tools.checkstyle.utils.TokenUtils;
+
+/**
+ * Drop-in replacement for TreeWalker that measures where an audit spends its time: the parse time of each
+ * file and the nanoseconds spent in beginTree, visitToken, leaveToken and finishTree of each check, per
+ * file. The timings are kept in {@link LatencyHistogram}s across the audits of the checker and, at the end
+ * of each audit, written as a JSON report (property reportFile, default checkstyle-metrics.json) and a
+ * Prometheus text-format file (property prometheusFile, default checkstyle-metrics.prom); an empty file
+ * name skips that output. The report also lists the slowest files (property slowestFiles, default 20).
+ * {@link IncrementalAudit}, whose threads each have a walker, writes the sum of their metrics instead.
+ * <p>
+ * With property allocations set to true, it also counts the bytes allocated by the parser, by each hook
+ * of each check and by each helper of {@link CustomCheck}, using the allocation counter of the thread, and
+ * reports the top allocators in total and in the files that allocate the most. Reading the counter costs
+ * about as much as reading the clock, so it is off by default.
+ * <p>
+ * With property prefilter set to true, a file is not parsed when none of the checks could report a
+ * violation in it: every check is a {@link CustomCheck} with {@link CustomCheck#getRequiredLiterals()
+ * required literals} and the file contains none of them. The text of the file is scanned for all the
+ * literals at once by a {@link LiteralMatcher}; the skipped files are counted in the reports. Parse errors
+ * of skipped files are not reported.
+ * <p>
+ * With property headerOnly set to true, when every check visits at least one token, and only PACKAGE_DEF,
+ * IMPORT and STATIC_IMPORT (e.g. {@link CheckProcessManagerCallsOpc}), a file is not parsed: the
+ * {@link HeaderLexer} reads its header up to the first type declaration and the checks walk the ASTs of
+ * the header only. The time of the lexer is reported as parse time. Parse errors after the header are not
+ * reported.
+ * <p>
+ * With property astCache set to a directory, the tree of each file is kept there as a {@link FlatAst}, by
+ * a hash of the content of the file ({@link AstCache}), and read back instead of parsing the file when the
+ * file has not changed; so an audit whose checks or rules changed does not parse the files again. Reading
+ * the tree is reported as parse time. Checks that need the comments in the tree still parse the file. The
+ * files of the cache not used for astCacheMaxAge days (30 by default, 0 for never) are deleted when the
+ * walker is initialized. If the cache fails (e.g. the disk is full), the walker goes on without it and the
+ * failure is in the reports.
+ * <p>
+ * With property enabled set to false, the walker calls no clock and writes nothing, so it costs the same
+ * as TreeWalker. Use it in the configuration in place of TreeWalker:
+ * <pre>
+ * &lt;module name="tutorial.checks.InstrumentedTreeWalker"&gt;
+ *     &lt;module name="tutorial.checks.CheckProcessManagerCallsOpc"/&gt;
+ * &lt;/module&gt;
+ * </pre>
+ * Each instance writes its own reports when its checker finishes processing, so with several checkers
+ * (e.g. {@link IncrementalAudit} with more than one thread) the files of the last one win.
+ *
+ * @author Paulo Merson
+ */
+public final class InstrumentedTreeWalker extends AbstractFileSetCheck {
+
+    private static final int DEFAULT_TAB_WIDTH = 8;
+
+    private static final int DEFAULT_SLOWEST_FILES = 20;
+
+    private static final int MAX_TOKEN_TYPE = maxTokenType();
+
+    private final List<AbstractCheck> checks = new ArrayList<AbstractCheck>();
+
+    /** Token types of each check */
+    private final List<int[]> checkTokens = new ArrayList<int[]>();
+
+    /** Checks of each token type, as indexes into checks; comment checks are in commentChecksByToken */
+    private int[][] checksByToken;
+
+    private int[][] commentChecksByToken;
+
+    private int[] ordinaryCheckIndexes = new int[0];
+
+    private int[] commentCheckIndexes = new int[0];
+
+    private ModuleFactory moduleFactory;
+
+    private ClassLoader classLoader;
+
+    private int tabWidth = DEFAULT_TAB_WIDTH;
+
+    private Context childContext;
+
+    private boolean enabled = true;
+
+    private String reportFile = "checkstyle-metrics.json";
+
+    private String prometheusFile = "checkstyle-metrics.prom";
+
+    /** True if the metrics are written by the caller, with those of other walkers */
+    private boolean reportsMerged;
+
+    private int slowestFiles = DEFAULT_SLOWEST_FILES;
+
+    private AuditMetrics metrics;
+
+    private boolean allocations = false;
+
+    private boolean prefilter = false;
+
+    /** Literals of all the checks; null unless prefilter is on and every check has required literals */
+    private LiteralMatcher requiredLiterals;
+
+    private int filesSkipped;
+
+    private boolean headerOnly = false;
+
+    /** True if headerOnly is on and the checks only visit tokens of the header */
+    private boolean headerChecks;
+
+    private int filesHeaderOnly;
+
+    /** Trees of the files by hash of their content; null unless property astCache is set */
+    private AstCache astCache;
+
+    private int astCacheMaxAge = 30;
+
+    private int filesFromAstCache;
+
+    /** Message of the failure that turned the AST cache off, or null */
+    private String astCacheFailure;
+
+    /** Nanoseconds of the current file, by check and hook; reused from file to file */
+    private long[][] hookNanos;
+
+    private long parseNanos;
+
+    /** Bytes allocated in the current file, by check and hook; null unless allocations is on */
+    private long[][] hookBytes;
+
+    private long parseBytes;
+
+    /** Bytes allocated by the helpers of each check, or null for the checks that are not CustomChecks */
+    private AllocationProfile[] profiles;
+
+    private long[][] helperBytes;
+
+    /** Readings at the start of the current hook */
+    private long startNanos;
+
+    private long startBytes;
+
+    public InstrumentedTreeWalker() {
+        setFileExtensions("java");
+    }
+
+    public void setModuleFactory(ModuleFactory moduleFactory) {
+        this.moduleFactory = moduleFactory;
+    }
+
+    public void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public void setTabWidth(int tabWidth) {
+        this.tabWidth = tabWidth;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Turns on the accounting of the bytes allocated by each check and by each helper of
+     * {@link CustomCheck}, read from the allocation counter of the thread.
+     */
+    public void setAllocations(boolean allocations) {
+        if (allocations && !AllocationCounter.isSupported()) {
+            throw new IllegalArgumentException("This JVM has no thread allocation counter");
+        }
+        this.allocations = allocations;
+    }
+
+    /**
+     * Turns on the skipping of the files that contain none of the required literals of the checks.
+     */
+    public void setPrefilter(boolean prefilter) {
+        this.prefilter = prefilter;
+    }
+
+    /**
+     * Turns on the reading of the header only, without parsing, when the checks only visit the package
+     * definition and the imports.
+     */
+    public void setHeaderOnly(boolean headerOnly) {
+        this.headerOnly = headerOnly;
+    }
+
+    /**
+     * Sets the directory where the trees of the files are cached; an empty name turns the cache off.
+     */
+    public void setAstCache(String directory) {
+        astCache = directory.trim().length() == 0 ? null : new AstCache(new File(directory.trim()));
+    }
+
+    /**
+     * Sets the number of days after which a tree not used is deleted from the AST cache; 0 keeps them all.
+     */
+    public void setAstCacheMaxAge(int days) {
+        astCacheMaxAge = days;
+    }
+
+    public void setReportFile(String reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public void setPrometheusFile(String prometheusFile) {
+        this.prometheusFile = prometheusFile;
+    }
+
+    public void setSlowestFiles(int slowestFiles) {
+        if (slowestFiles < 0) {
+            throw new IllegalArgumentException("slowestFiles must not be negative: " + slowestFiles);
+        }
+        this.slowestFiles = slowestFiles;
+    }
+
+    @Override
+    public void finishLocalSetup() {
+        DefaultContext context = new DefaultContext();
+        context.add("classLoader", classLoader);
+        context.add("messages", getMessageCollector());
+        context.add("severity", getSeverity());
+        context.add("tabWidth", String.valueOf(tabWidth));
+        childContext = context;
+    }
+
+    @Override
+    public void setupChild(Configuration childConf) throws CheckstyleException {
+        String name = childConf.getName();
+        Object module = moduleFactory.createModule(name);
+        if (!(module instanceof AbstractCheck)) {
+            throw new CheckstyleException("InstrumentedTreeWalker is not allowed as a parent of " + name);
+        }
+        AbstractCheck check = (AbstractCheck) module;
+        check.contextualize(childContext);
+        check.configure(childConf);
+        check.init();
+        checkTokens.add(tokensOf(check));
+        checks.add(check);
+    }
+
+    @Override
+    public void init() {
+        List<List<Integer>> byToken = new ArrayList<List<Integer>>();
+        List<List<Integer>> commentByToken = new ArrayList<List<Integer>>();
+        for (int type = 0; type <= MAX_TOKEN_TYPE; type++) {
+            byToken.add(new ArrayList<Integer>(0));
+            commentByToken.add(new ArrayList<Integer>(0));
+        }
+        List<Integer> ordinary = new ArrayList<Integer>();
+        List<Integer> comment = new ArrayList<Integer>();
+        for (int index = 0; index < checks.size(); index++) {
+            AbstractCheck check = checks.get(index);
+            (check.isCommentNodesRequired() ? comment : ordinary).add(index);
+            for (int type : checkTokens.get(index)) {
+                (check.isCommentNodesRequired() ? commentByToken : byToken).get(type).add(index);
+            }
+        }
+        checksByToken = toArrays(byToken);
+        commentChecksByToken = toArrays(commentByToken);
+        ordinaryCheckIndexes = toArray(ordinary);
+        commentCheckIndexes = toArray(comment);
+        requiredLiterals = prefilter ? requiredLiteralsOf(checks) : null;
+        headerChecks = headerOnly && commentCheckIndexes.length == 0 && visitsHeaderOnly(checkTokens);
+        if (astCache != null && astCacheMaxAge > 0) {
+            astCache.prune(TimeUnit.DAYS.toMillis(astCacheMaxAge));
+        }
+    }
+
+    /**
+     * @return true if every check visits tokens, and only PACKAGE_DEF, IMPORT and STATIC_IMPORT; the tokens
+     *         inside them (e.g. DOT and IDENT) also occur after the header, and a check that visits no token
+     *         may look at the whole tree in beginTree or finishTree.
+     */
+    private static boolean visitsHeaderOnly(List<int[]> tokensByCheck) {
+        for (int[] tokens : tokensByCheck) {
+            if (tokens.length == 0) {
+                return false;
+            }
+            for (int type : tokens) {
+                if (type != TokenTypes.PACKAGE_DEF && type != TokenTypes.IMPORT && type != TokenTypes.STATIC_IMPORT) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a matcher of the literals of all the checks, or null if a check may report violations in
+     * any file.
+     */
+    private static LiteralMatcher requiredLiteralsOf(List<AbstractCheck> checks) {
+        List<String> literals = new ArrayList<String>();
+        for (AbstractCheck check : checks) {
+            String[] checkLiterals = check instanceof CustomCheck ? ((CustomCheck) check).getRequiredLiterals() : null;
+            if (checkLiterals == null) {
+                return null;
+            }
+            for (String literal : checkLiterals) {
+                if (literal.length() == 0) {
+                    // found in every file
+                    return null;
+                }
+                literals.add(literal);
+            }
+        }
+        return new LiteralMatcher(literals);
+    }
+
+    /**
+     * @return number of files skipped without parsing since the walker was created.
+     */
+    int getFilesSkipped() {
+        return filesSkipped;
+    }
+
+    /**
+     * @return number of files whose header only was read since the walker was created.
+     */
+    int getFilesHeaderOnly() {
+        return filesHeaderOnly;
+    }
+
+    /**
+     * @return number of files whose tree was read from the AST cache since the walker was created.
+     */
+    int getFilesFromAstCache() {
+        return filesFromAstCache;
+    }
+
+    /**
+     * @return the message of the failure that turned the AST cache off, or null.
+     */
+    String getAstCacheFailure() {
+        return astCacheFailure;
+    }
+
+    /**
+     * @return the configured tokens of the check, which must be acceptable, plus its required tokens; or its
+     * default tokens if none is configured. Same rules as TreeWalker.
+     */
+    private static int[] tokensOf(AbstractCheck check) throws CheckstyleException {
+        if (check.getTokenNames().isEmpty()) {
+            return check.getDefaultTokens();
+        }
+        int[] acceptable = check.getAcceptableTokens().clone();
+        Arrays.sort(acceptable);
+        List<Integer> tokens = new ArrayList<Integer>();
+        for (String tokenName : check.getTokenNames()) {
+            int type = TokenUtils.getTokenId(tokenName);
+            if (Arrays.binarySearch(acceptable, type) < 0) {
+                throw new CheckstyleException(String.format(Locale.ROOT,
+                        "Token \"%s\" was not found in Acceptable tokens list in check %s", tokenName,
+                        check.getClass().getName()));
+            }
+            tokens.add(type);
+        }
+        for (int type : check.getRequiredTokens()) {
+            if (!tokens.contains(type)) {
+                tokens.add(type);
+            }
+        }
+        return toArray(tokens);
+    }
+
+    @Override
+    public void beginProcessing(String charset) {
+        super.beginProcessing(charset);
+        if (enabled) {
+            String[] names = new String[checks.size()];
+            for (int index = 0; index < names.length; index++) {
+                AbstractCheck check = checks.get(index);
+                names[index] = check.getId() != null ? check.getId() : check.getClass().getSimpleName();
+            }
+            if (metrics == null) {
+                metrics = new AuditMetrics(names, slowestFiles);
+                if (astCacheFailure != null) {
+                    metrics.recordAstCacheFailure(astCacheFailure);
+                }
+            }
+            hookNanos = new long[names.length][AuditMetrics.HOOKS.length];
+            if (allocations) {
+                hookBytes = new long[names.length][AuditMetrics.HOOKS.length];
+                helperBytes = new long[names.length][];
+                profiles = new AllocationProfile[names.length];
+                for (int index = 0; index < names.length; index++) {
+                    if (checks.get(index) instanceof CustomCheck) {
+                        profiles[index] = new AllocationProfile();
+                        ((CustomCheck) checks.get(index)).setAllocationProfile(profiles[index]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void processFiltered(File file, List<String> lines) throws CheckstyleException {
+        if (!CommonUtils.matchesFileExtension(file, getFileExtensions())) {
+            return;
+        }
+        if (requiredLiterals != null && !requiredLiterals.matchesAny(lines)) {
+            filesSkipped++;
+            if (metrics != null) {
+                metrics.recordSkippedFile();
+            }
+            return;
+        }
+        FileContents contents = new FileContents(FileText.fromLines(file, lines));
+        try {
+            if (metrics == null) {
+                walk(parse(contents, lines), contents, ordinaryCheckIndexes, checksByToken);
+                if (commentCheckIndexes.length > 0) {
+                    walk(TreeWalker.parseWithComments(contents), contents, commentCheckIndexes, commentChecksByToken);
+                }
+                return;
+            }
+            resetFileCounters();
+            startHook();
+            DetailAST rootAST = parse(contents, lines);
+            stopParse();
+            timedWalk(rootAST, contents, ordinaryCheckIndexes, checksByToken);
+            if (commentCheckIndexes.length > 0) {
+                startHook();
+                rootAST = TreeWalker.parseWithComments(contents);
+                stopParse();
+                timedWalk(rootAST, contents, commentCheckIndexes, commentChecksByToken);
+            }
+            metrics.recordFile(file.getPath(), parseNanos, hookNanos);
+            if (hookBytes != null) {
+                for (int index = 0; index < profiles.length; index++) {
+                    helperBytes[index] = profiles[index] == null ? null : profiles[index].getBytes();
+                }
+                metrics.recordAllocations(file.getPath(), parseBytes, hookBytes, helperBytes);
+            }
+        } catch (RecognitionException e) {
+            throw parseFailure(e, file);
+        } catch (TokenStreamException e) {
+            throw parseFailure(e, file);
+        }
+    }
+
+    /**
+     * @return the AST of the file, or of its header only when the checks need no more; from the AST cache
+     *         when the file is in it.
+     */
+    private DetailAST parse(FileContents contents, List<String> lines) throws RecognitionException,
+            TokenStreamException {
+        if (headerChecks) {
+            HeaderLexer header = HeaderLexer.lex(lines);
+            if (header.isComplete()) {
+                header.reportComments(contents);
+                filesHeaderOnly++;
+                return header.toAST();
+            }
+        }
+        if (astCache == null) {
+            return TreeWalker.parse(contents);
+        }
+        byte[] key = AstCache.keyOf(lines);
+        FlatAst cached;
+        try {
+            cached = astCache.find(key);
+        } catch (IOException e) {
+            disableAstCache(e);
+            return TreeWalker.parse(contents);
+        }
+        if (cached != null) {
+            cached.reportComments(contents);
+            filesFromAstCache++;
+            return cached.toAST();
+        }
+        DetailAST rootAST = TreeWalker.parse(contents);
+        try {
+            astCache.put(key, FlatAst.of(rootAST, contents));
+        } catch (IOException e) {
+            disableAstCache(e);
+        }
+        return rootAST;
+    }
+
+    /**
+     * Goes on without the AST cache after a failure of it, which does not change the results of the audit.
+     */
+    private void disableAstCache(IOException e) {
+        astCacheFailure = e.getMessage();
+        astCache = null;
+        if (metrics != null) {
+            metrics.recordAstCacheFailure(astCacheFailure);
+        }
+    }
+
+    private void resetFileCounters() {
+        parseNanos = 0;
+        parseBytes = 0;
+        for (long[] nanos : hookNanos) {
+            Arrays.fill(nanos, 0);
+        }
+        if (hookBytes != null) {
+            for (long[] bytes : hookBytes) {
+                Arrays.fill(bytes, 0);
+            }
+            for (AllocationProfile profile : profiles) {
+                if (profile != null) {
+                    profile.reset();
+                }
+            }
+        }
+    }
+
+    private void stopParse() {
+        parseNanos += System.nanoTime() - startNanos;
+        if (hookBytes != null) {
+            parseBytes += AllocationCounter.allocatedBytesSince(startBytes);
+        }
+    }
+
+    private static CheckstyleException parseFailure(Exception e, File file) {
+        return new CheckstyleException(String.format(Locale.ROOT, "%s occurred during the analysis of file %s.",
+                e.getClass().getSimpleName(), file.getPath()), e);
+    }
+
+    private void walk(DetailAST rootAST, FileContents contents, int[] walkChecks, int[][] byToken) {
+        for (int index : walkChecks) {
+            AbstractCheck check = checks.get(index);
+            check.setFileContents(contents);
+            check.beginTree(rootAST);
+        }
+        DetailAST node = rootAST;
+        while (node != null) {
+            for (int index : byToken[node.getType()]) {
+                checks.get(index).visitToken(node);
+            }
+            DetailAST next = node.getFirstChild();
+            while (node != null && next == null) {
+                for (int index : byToken[node.getType()]) {
+                    checks.get(index).leaveToken(node);
+                }
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParent();
+                }
+            }
+            node = next;
+        }
+        for (int index : walkChecks) {
+            checks.get(index).finishTree(rootAST);
+        }
+    }
+
+    /**
+     * Same walk as {@link #walk}, adding the time (and the allocated bytes) of each call to hookNanos (and
+     * hookBytes).
+     */
+    private void timedWalk(DetailAST rootAST, FileContents contents, int[] walkChecks, int[][] byToken) {
+        for (int index : walkChecks) {
+            AbstractCheck check = checks.get(index);
+            check.setFileContents(contents);
+            startHook();
+            check.beginTree(rootAST);
+            stopHook(index, AuditMetrics.BEGIN_TREE);
+        }
+        DetailAST node = rootAST;
+        while (node != null) {
+            for (int index : byToken[node.getType()]) {
+                startHook();
+                checks.get(index).visitToken(node);
+                stopHook(index, AuditMetrics.VISIT_TOKEN);
+            }
+            DetailAST next = node.getFirstChild();
+            while (node != null && next == null) {
+                for (int index : byToken[node.getType()]) {
+                    startHook();
+                    checks.get(index).leaveToken(node);
+                    stopHook(index, AuditMetrics.LEAVE_TOKEN);
+                }
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParent();
+                }
+            }
+            node = next;
+        }
+        for (int index : walkChecks) {
+            startHook();
+            checks.get(index).finishTree(rootAST);
+            stopHook(index, AuditMetrics.FINISH_TREE);
+        }
+    }
+
+    private void startHook() {
+        if (hookBytes != null) {
+            startBytes = AllocationCounter.allocatedBytes();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    private void stopHook(int index, int hook) {
+        hookNanos[index][hook] += System.nanoTime() - startNanos;
+        if (hookBytes != null) {
+            hookBytes[index][hook] += AllocationCounter.allocatedBytesSince(startBytes);
+        }
+    }
+
+    @Override
+    public void finishProcessing() {
+        if (metrics != null && !reportsMerged) {
+            writeReports(metrics);
+        }
+        if (profiles != null) {
+            for (int index = 0; index < profiles.length; index++) {
+                if (profiles[index] != null) {
+                    ((CustomCheck) checks.get(index)).setAllocationProfile(null);
+                }
+            }
+        }
+        hookBytes = null;
+        profiles = null;
+    }
+
+    /**
+     * Makes the walker leave the writing of its metrics to the caller, which sums them with the metrics of
+     * other walkers.
+     */
+    void setReportsMerged(boolean reportsMerged) {
+        this.reportsMerged = reportsMerged;
+    }
+
+    /**
+     * @return the metrics of the audits so far, or null if the walker is not enabled.
+     */
+    AuditMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes the metrics to the report files of this walker.
+     */
+    void writeReports(AuditMetrics auditMetrics) {
+        try {
+            if (reportFile.length() > 0) {
+                auditMetrics.writeJson(new File(reportFile));
+            }
+            if (prometheusFile.length() > 0) {
+                auditMetrics.writePrometheus(new File(prometheusFile));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write the metrics of the audit", e);
+        }
+    }
+
+    /**
+     * @return the names of the report files, which identify the walkers whose metrics go together.
+     */
+    String getReportFiles() {
+        return reportFile + File.pathSeparator + prometheusFile;
+    }
+
+    @Override
+    public void destroy() {
+        for (AbstractCheck check : checks) {
+            check.destroy();
+        }
+        super.destroy();
+    }
+
+    private static int maxTokenType() {
+        int max = 0;
+        for (int type : TokenUtils.getAllTokenIds()) {
+            max = Math.max(max, type);
+        }
+        return max;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] arrays = new int[lists.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = toArray(lists.get(i));
+        }
+        return arrays;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+}
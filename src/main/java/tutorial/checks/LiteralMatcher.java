@@ -0,0 +1,162 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Finds whether a text contains any of a set of literals, in one pass over the text whatever the number
+ * of literals: an Aho-Corasick automaton compiled to a table of transitions, so each char costs a column
+ * lookup and an array read. The columns are the distinct chars of the literals; any other char leads back
+ * to the initial state, so it needs no column.
+ *
+ * @author Paulo Merson
+ */
+final class LiteralMatcher {
+
+    private static final int ASCII = 128;
+
+    /** Column of each ASCII char, or -1 if it is in no literal */
+    private final int[] asciiColumns = new int[ASCII];
+
+    /** Non-ASCII chars of the literals, sorted; their columns follow the ASCII ones */
+    private final char[] otherChars;
+
+    private final int asciiCount;
+
+    private final int columns;
+
+    /** Next state by state and column */
+    private final int[] transitions;
+
+    /** States where a literal ends */
+    private final boolean[] accepting;
+
+    /**
+     * @throws IllegalArgumentException if a literal is empty.
+     */
+    LiteralMatcher(Collection<String> literals) {
+        TreeSet<Character> chars = new TreeSet<Character>();
+        for (String literal : literals) {
+            if (literal.length() == 0) {
+                throw new IllegalArgumentException("Literals must not be empty");
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                chars.add(literal.charAt(i));
+            }
+        }
+        Arrays.fill(asciiColumns, -1);
+        List<Character> others = new ArrayList<Character>();
+        for (char c : chars) {
+            if (c < ASCII) {
+                asciiColumns[c] = chars.headSet(c).size();
+            } else {
+                others.add(c);
+            }
+        }
+        asciiCount = chars.size() - others.size();
+        otherChars = new char[others.size()];
+        for (int i = 0; i < otherChars.length; i++) {
+            otherChars[i] = others.get(i);
+        }
+        columns = Math.max(1, chars.size());
+
+        // trie: goto function, -1 where there is no edge
+        List<int[]> trie = new ArrayList<int[]>();
+        List<Boolean> ends = new ArrayList<Boolean>();
+        trie.add(newRow());
+        ends.add(false);
+        for (String literal : literals) {
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int column = columnOf(literal.charAt(i));
+                if (trie.get(state)[column] < 0) {
+                    trie.get(state)[column] = trie.size();
+                    trie.add(newRow());
+                    ends.add(false);
+                }
+                state = trie.get(state)[column];
+            }
+            ends.set(state, true);
+        }
+
+        // breadth-first: the transitions of a state on a missing edge are those of its failure state
+        int states = trie.size();
+        transitions = new int[states * columns];
+        accepting = new boolean[states];
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int column = 0; column < columns; column++) {
+            int next = trie.get(0)[column];
+            transitions[column] = next < 0 ? 0 : next;
+            if (next > 0) {
+                queue[tail++] = next;
+            }
+        }
+        accepting[0] = ends.get(0);
+        while (head < tail) {
+            int state = queue[head++];
+            accepting[state] = ends.get(state) || accepting[failure[state]];
+            for (int column = 0; column < columns; column++) {
+                int next = trie.get(state)[column];
+                int fallback = transitions[failure[state] * columns + column];
+                if (next < 0) {
+                    transitions[state * columns + column] = fallback;
+                } else {
+                    transitions[state * columns + column] = next;
+                    failure[next] = fallback;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[columns];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /**
+     * @return the column of the char, or -1 if it is in no literal.
+     */
+    private int columnOf(char c) {
+        if (c < ASCII) {
+            return asciiColumns[c];
+        }
+        int index = Arrays.binarySearch(otherChars, c);
+        return index < 0 ? -1 : asciiCount + index;
+    }
+
+    /**
+     * @return true if the text contains one of the literals.
+     */
+    boolean matches(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int column = columnOf(text.charAt(i));
+            state = column < 0 ? 0 : transitions[state * columns + column];
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if one of the lines contains one of the literals. A literal is not found across lines.
+     */
+    boolean matchesAny(List<String> lines) {
+        for (String line : lines) {
+            if (matches(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
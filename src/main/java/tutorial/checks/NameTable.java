@@ -0,0 +1,49 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns names (packages, classes, file names) as consecutive int ids, so that large structures can
+ * store ids in primitive arrays instead of references to strings.
+ *
+ * @author Paulo Merson
+ */
+final class NameTable {
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    private final List<String> names = new ArrayList<String>();
+
+    /**
+     * @return the id of the name, adding the name to the table if it is not there.
+     */
+    int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the name or -1 if the name is not in the table.
+     */
+    int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    String name(int id) {
+        return names.get(id);
+    }
+
+    int size() {
+        return names.size();
+    }
+
+}
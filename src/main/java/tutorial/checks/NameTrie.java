@@ -0,0 +1,107 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Character trie that finds, in a single scan of a name, all the prefixes (or all the suffixes) of the
+ * name that were added to the trie. A suffix trie stores the suffixes reversed and scans the name from
+ * the last character backwards.
+ *
+ * @param <V> type of the values associated with each prefix or suffix
+ *
+ * @author Paulo Merson
+ */
+final class NameTrie<V> {
+
+    private static final class Node<V> {
+        /** Sorted characters of the children; same order as children */
+        private char[] keys = new char[0];
+        private List<Node<V>> children = new ArrayList<Node<V>>(0);
+        private List<V> values = Collections.emptyList();
+
+        Node<V> child(char key) {
+            int index = indexOf(key);
+            return index >= 0 ? children.get(index) : null;
+        }
+
+        Node<V> addChild(char key) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                return children.get(index);
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            newKeys[insertAt] = key;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            keys = newKeys;
+            Node<V> child = new Node<V>();
+            children.add(insertAt, child);
+            return child;
+        }
+
+        private int indexOf(char key) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else if (keys[mid] > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    private final Node<V> root = new Node<V>();
+
+    private final boolean suffixes;
+
+    /**
+     * @param suffixes true for a trie of suffixes, false for a trie of prefixes.
+     */
+    NameTrie(boolean suffixes) {
+        this.suffixes = suffixes;
+    }
+
+    void put(String affix, V value) {
+        if (affix == null || affix.length() == 0) {
+            throw new IllegalArgumentException("Prefix or suffix must not be empty");
+        }
+        Node<V> node = root;
+        for (int i = 0; i < affix.length(); i++) {
+            node = node.addChild(affix.charAt(suffixes ? affix.length() - 1 - i : i));
+        }
+        if (node.values.isEmpty()) {
+            node.values = new ArrayList<V>(1);
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * @return the values of all the prefixes (or suffixes) of the name in the trie, shortest first;
+     *         empty List if there is none.
+     */
+    List<V> findAll(String name) {
+        List<V> found = Collections.emptyList();
+        Node<V> node = root;
+        for (int i = 0; i < name.length() && node != null; i++) {
+            node = node.child(name.charAt(suffixes ? name.length() - 1 - i : i));
+            if (node != null && !node.values.isEmpty()) {
+                if (found.isEmpty()) {
+                    found = new ArrayList<V>(node.values);
+                } else {
+                    found.addAll(node.values);
+                }
+            }
+        }
+        return found;
+    }
+
+}
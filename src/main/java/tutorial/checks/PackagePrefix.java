@@ -0,0 +1,144 @@
+package tutorial.checks;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * A package name split in segments beforehand, to test whether a qualified name is in the package
+ * without building the string of the name: the IDENTs of a package definition, import or type are
+ * compared with the segments one by one, as they are in the tree. Like {@link PackageTrie}, the prefix
+ * matches whole segments: "com.sun.j2ee.blueprints.opc" matches "com.sun.j2ee.blueprints.opc" and
+ * "com.sun.j2ee.blueprints.opc.mailer.Mailer", but not "com.sun.j2ee.blueprints.opcx.Dummy". Typical use,
+ * in a check:
+ *
+ * <pre>
+ * private static final PackagePrefix OPC = PackagePrefix.of("com.sun.j2ee.blueprints.opc");
+ * ...
+ * if (OPC.matches(importAST)) {
+ * </pre>
+ *
+ * @author Paulo Merson
+ */
+public final class PackagePrefix {
+
+    private final String packageName;
+
+    private final String[] segments;
+
+    private PackagePrefix(String packageName, String[] segments) {
+        this.packageName = packageName;
+        this.segments = segments;
+    }
+
+    /**
+     * @param packageName package name such as "com.sun.j2ee.blueprints.opc"
+     * @throws IllegalArgumentException if the name is empty or has an empty segment.
+     */
+    public static PackagePrefix of(String packageName) {
+        String name = packageName == null ? "" : packageName.trim();
+        int count = 1;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) == '.') {
+                count++;
+            }
+        }
+        String[] segments = new String[count];
+        int start = 0;
+        for (int segment = 0; segment < count; segment++) {
+            int end = name.indexOf('.', start);
+            segments[segment] = name.substring(start, end < 0 ? name.length() : end).trim();
+            if (segments[segment].length() == 0) {
+                throw new IllegalArgumentException("Invalid package name: " + packageName);
+            }
+            start = end + 1;
+        }
+        return new PackagePrefix(name, segments);
+    }
+
+    /**
+     * @param packageDefImportOrName a PACKAGE_DEF, IMPORT or STATIC_IMPORT, or the IDENT or DOT of a
+     *            qualified name.
+     * @return true if the name is the package or is in the package or its subpackages.
+     */
+    public boolean matches(DetailAST packageDefImportOrName) {
+        DetailAST name = nameOf(packageDefImportOrName);
+        DetailAST ident = firstSegment(name);
+        for (String segment : segments) {
+            if (ident == null || !segment.equals(ident.getText())) {
+                return false;
+            }
+            ident = nextSegment(ident, name);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the qualified name is the package or is in the package or its subpackages.
+     */
+    public boolean matches(String qualifiedName) {
+        int position = 0;
+        for (String segment : segments) {
+            if (position > 0) {
+                if (position >= qualifiedName.length() || qualifiedName.charAt(position) != '.') {
+                    return false;
+                }
+                position++;
+            }
+            if (!qualifiedName.regionMatches(position, segment, 0, segment.length())) {
+                return false;
+            }
+            position += segment.length();
+        }
+        return position == qualifiedName.length() || qualifiedName.charAt(position) == '.';
+    }
+
+    @Override
+    public String toString() {
+        return packageName;
+    }
+
+    /**
+     * @return the IDENT or DOT with the name of a PACKAGE_DEF, IMPORT or STATIC_IMPORT; any other AST
+     *         is returned as is.
+     */
+    static DetailAST nameOf(DetailAST aAST) {
+        int type = aAST.getType();
+        if (type != TokenTypes.PACKAGE_DEF && type != TokenTypes.IMPORT && type != TokenTypes.STATIC_IMPORT) {
+            return aAST;
+        }
+        // the name is a direct child; annotations of a package definition may have other DOTs
+        DetailAST dot = aAST.findFirstToken(TokenTypes.DOT);
+        return dot != null ? dot : aAST.findFirstToken(TokenTypes.IDENT);
+    }
+
+    /**
+     * @return the first IDENT of the IDENT or DOT of a qualified name.
+     */
+    static DetailAST firstSegment(DetailAST name) {
+        DetailAST segment = name;
+        while (segment.getType() == TokenTypes.DOT) {
+            segment = segment.getFirstChild();
+        }
+        return segment;
+    }
+
+    /**
+     * @return the IDENT (or, at the end of a wildcard import, the STAR) that follows the segment in the
+     *         name, or null if the segment is the last one.
+     */
+    static DetailAST nextSegment(DetailAST segment, DetailAST name) {
+        if (segment == name) {
+            return null;
+        }
+        DetailAST dot = segment.getParent();
+        if (segment.getPreviousSibling() == null) {
+            // the first segment: DOT (IDENT, IDENT)
+            return segment.getNextSibling();
+        }
+        if (dot == name) {
+            return null;
+        }
+        return dot.getParent().getFirstChild().getNextSibling();
+    }
+
+}
@@ -0,0 +1,188 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+/**
+ * Trie of package names, one level per package segment. Each package prefix added to the trie can
+ * carry a value. Looking up a package name walks its segments once, so the cost depends on the
+ * length of the name and not on the number of prefixes in the trie.
+ * <p>
+ * Prefixes match whole segments: "com.sun.j2ee.blueprints.opc" matches "com.sun.j2ee.blueprints.opc"
+ * and "com.sun.j2ee.blueprints.opc.mailer", but not "com.sun.j2ee.blueprints.opcx".
+ * <p>
+ * The segments are interned as ids in a {@link NameTable}, which tries built together (e.g., those of a
+ * set of dependency rules) share, and each node keeps the ids of its children sorted. A qualified name in
+ * the tree (the DOT of a package definition or import) is looked up without building its string: each
+ * IDENT is mapped to its id and the ids are followed down the trie.
+ *
+ * @param <V> type of the value associated with each prefix
+ *
+ * @author Paulo Merson
+ */
+final class PackageTrie<V> {
+
+    private static final class Node<V> {
+        /** Sorted ids of the segments of the children; same order as children */
+        private int[] keys = new int[0];
+        private final List<Node<V>> children = new ArrayList<Node<V>>(0);
+        private V value;
+
+        Node<V> child(int key) {
+            int index = indexOf(key);
+            return index >= 0 ? children.get(index) : null;
+        }
+
+        Node<V> addChild(int key) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                return children.get(index);
+            }
+            int insertAt = -index - 1;
+            int[] newKeys = new int[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            newKeys[insertAt] = key;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            keys = newKeys;
+            Node<V> child = new Node<V>();
+            children.add(insertAt, child);
+            return child;
+        }
+
+        private int indexOf(int key) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else if (keys[mid] > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    private final Node<V> root = new Node<V>();
+
+    /** Ids of the segments */
+    private final NameTable segments;
+
+    private int size;
+
+    PackageTrie() {
+        this(new NameTable());
+    }
+
+    /**
+     * @param segments table where the segments are interned, shared with other tries.
+     */
+    PackageTrie(NameTable segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Associates the value with the package prefix, replacing the previous value of the prefix.
+     *
+     * @param packagePrefix package name such as "com.sun.j2ee.blueprints.opc"
+     */
+    void put(String packagePrefix, V value) {
+        if (packagePrefix == null || packagePrefix.trim().length() == 0) {
+            throw new IllegalArgumentException("Package prefix must not be empty");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Value of package prefix " + packagePrefix + " must not be null");
+        }
+        Node<V> node = root;
+        String name = packagePrefix.trim();
+        int start = 0;
+        while (start <= name.length()) {
+            int end = segmentEnd(name, start);
+            node = node.addChild(segments.intern(name.substring(start, end)));
+            start = end + 1;
+        }
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    /**
+     * @return the value of the longest prefix in the trie that matches the given package name, or null
+     *         if no prefix matches.
+     */
+    V findLongestPrefix(String packageName) {
+        V found = null;
+        Node<V> node = root;
+        int start = 0;
+        while (start <= packageName.length()) {
+            int end = segmentEnd(packageName, start);
+            int id = segments.find(packageName.substring(start, end));
+            node = id < 0 ? null : node.child(id);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                found = node.value;
+            }
+            start = end + 1;
+        }
+        return found;
+    }
+
+    /**
+     * @return true if some prefix in the trie matches the given package name.
+     */
+    boolean matches(String packageName) {
+        return findLongestPrefix(packageName) != null;
+    }
+
+    /**
+     * @param packageDefImportOrName a PACKAGE_DEF, IMPORT or STATIC_IMPORT, or the IDENT or DOT of a
+     *            qualified name; the STAR of a wildcard import matches no prefix.
+     * @return the value of the longest prefix in the trie that matches the name, or null if no prefix
+     *         matches.
+     */
+    V findLongestPrefix(DetailAST packageDefImportOrName) {
+        V found = null;
+        Node<V> node = root;
+        DetailAST name = PackagePrefix.nameOf(packageDefImportOrName);
+        for (DetailAST segment = PackagePrefix.firstSegment(name); segment != null;
+                segment = PackagePrefix.nextSegment(segment, name)) {
+            int id = segments.find(segment.getText());
+            node = id < 0 ? null : node.child(id);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                found = node.value;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return true if some prefix in the trie matches the given package definition, import or name.
+     */
+    boolean matches(DetailAST packageDefImportOrName) {
+        return findLongestPrefix(packageDefImportOrName) != null;
+    }
+
+    /**
+     * @return number of prefixes in the trie.
+     */
+    int size() {
+        return size;
+    }
+
+    private static int segmentEnd(String name, int start) {
+        int end = name.indexOf('.', start);
+        return end < 0 ? name.length() : end;
+    }
+
+}
@@ -0,0 +1,32 @@
+package tutorial.checks;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Rule version of {@link CheckProcessManagerCallsOpc}, to run in {@link CheckRuleHost}. It needs no state
+ * of its own: the package of the file comes from the file facts.
+ */
+public class ProcessManagerCallsOpcRule extends CustomRule {
+
+    @Override
+    public int[] getTokens() {
+        return new int[] {TokenTypes.IMPORT};
+    }
+
+    @Override
+    public String[] getRequiredLiterals() {
+        return new String[] {"processmanager"};
+    }
+
+    @Override
+    public void visitToken(DetailAST aAST, FileFacts facts) {
+        String packageName = facts.getPackageName();
+        if (packageName != null && CheckProcessManagerCallsOpc.PROCESS_MANAGER.matches(packageName)) {
+            if (CheckProcessManagerCallsOpc.OPC.matches(aAST)) {
+                log(aAST.getLineNo(), CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package tutorial.checks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the text files with the rules of the configurable checks.
+ *
+ * @author Paulo Merson
+ */
+final class RulesFile {
+
+    private RulesFile() {
+    }
+
+    /**
+     * Reads the lines of a file or, if there is no such file, of a resource in the classpath.
+     *
+     * @return all lines of the file, including blank lines and comments, so that the index of a line is
+     *         its line number minus one.
+     * @throws IllegalArgumentException if the file cannot be read.
+     */
+    static List<String> readLines(String location) {
+        InputStream in = null;
+        try {
+            in = open(location);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            List<String> lines = new ArrayList<String>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read rules from " + location, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Opens a file or, if there is no such file, a resource in the classpath.
+     *
+     * @throws IllegalArgumentException if there is neither a file nor a resource.
+     */
+    static InputStream open(String location) throws IOException {
+        File file = new File(location);
+        if (file.isFile()) {
+            return new FileInputStream(file);
+        }
+        String resource = location.startsWith("/") ? location.substring(1) : location;
+        InputStream in = RulesFile.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalArgumentException("Rules not found: " + location);
+        }
+        return in;
+    }
+
+    /**
+     * @return true if the line has no rule (blank line or comment starting with #).
+     */
+    static boolean isComment(String line) {
+        String trimmed = line.trim();
+        return trimmed.length() == 0 || trimmed.startsWith("#");
+    }
+
+    static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+}
@@ -0,0 +1,437 @@
+package tutorial.checks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.AutomaticBean;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Writes the violations of an audit to a file as they are reported, in SARIF 2.1.0 (property format
+ * "sarif", the default) or JSON Lines, one object per violation (format "jsonl"). Text is escaped and
+ * encoded in UTF-8 straight into one reusable buffer, which is written to a FileChannel when full, so
+ * memory does not grow with the number of violations; only the exceptions, which are rare, are kept until
+ * the end of the audit in SARIF, where they go in the invocation. Violations with severity ignore are not
+ * written.
+ * <p>
+ * It can go under Checker in the configuration (property file), or be added to a checker or an
+ * {@link IncrementalAudit} with addListener. In a configuration run by an IncrementalAudit with more than
+ * one thread, each worker would write the file, so use addListener (options -sarif and -jsonl) instead.
+ * Not thread-safe: the events must come from one thread, as they do from a checker.
+ *
+ * @author Paulo Merson
+ */
+public final class StreamingReportListener extends AutomaticBean implements AuditListener {
+
+    public static final String SARIF = "sarif";
+
+    public static final String JSON_LINES = "jsonl";
+
+    private static final int BUFFER_SIZE = 1 << 18;
+
+    /** Room for the longest encoding of one char, so that a char is never split between two writes */
+    private static final int MAX_CHAR_BYTES = 12;
+
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private static final char REPLACEMENT_CHAR = 0xFFFD;
+
+    private static final byte[] SARIF_HEADER = ascii("{\"version\":\"2.1.0\","
+            + "\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"runs\":[{\"tool\":{\"driver\":"
+            + "{\"name\":\"Checkstyle\",\"informationUri\":\"https://checkstyle.org/\"}},\"results\":[");
+
+    private static final byte[] SARIF_RULE_ID = ascii("{\"ruleId\":\"");
+
+    private static final byte[] SARIF_LEVEL = ascii("\",\"level\":\"");
+
+    private static final byte[] SARIF_MESSAGE = ascii("\",\"message\":{\"text\":\"");
+
+    private static final byte[] SARIF_URI = ascii("\"},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":"
+            + "{\"uri\":\"");
+
+    private static final byte[] SARIF_START_LINE = ascii("\"},\"region\":{\"startLine\":");
+
+    private static final byte[] SARIF_START_COLUMN = ascii(",\"startColumn\":");
+
+    private static final byte[] SARIF_RESULT_END = ascii("}}}]}");
+
+    private static final byte[] SARIF_INVOCATION = ascii("],\"invocations\":[{\"executionSuccessful\":");
+
+    private static final byte[] SARIF_NOTIFICATIONS = ascii(",\"toolExecutionNotifications\":[");
+
+    private static final byte[] SARIF_NOTIFICATION = ascii("{\"level\":\"error\",\"message\":{\"text\":\"");
+
+    private static final byte[] SARIF_NOTIFICATION_URI = ascii("\"},\"locations\":[{\"physicalLocation\":"
+            + "{\"artifactLocation\":{\"uri\":\"");
+
+    private static final byte[] SARIF_NOTIFICATION_END = ascii("\"}}}]}");
+
+    private static final byte[] TRUE = ascii("true");
+
+    private static final byte[] FALSE = ascii("false");
+
+    private static final byte[] SARIF_FOOTER = ascii("]}]}]}\n");
+
+    private static final byte[] FILE_SCHEME = ascii("file://");
+
+    private static final byte[] FILE_SCHEME_DRIVE = ascii("file:///");
+
+    private static final byte[] JSONL_FILE = ascii("{\"file\":\"");
+
+    private static final byte[] JSONL_LINE = ascii("\",\"line\":");
+
+    private static final byte[] JSONL_COLUMN = ascii(",\"column\":");
+
+    private static final byte[] JSONL_SEVERITY = ascii(",\"severity\":\"");
+
+    private static final byte[] JSONL_RULE = ascii("\",\"rule\":\"");
+
+    private static final byte[] JSONL_MESSAGE = ascii("\",\"message\":\"");
+
+    private static final byte[] JSONL_EXCEPTION = ascii("\",\"exception\":\"");
+
+    private static final byte[] JSONL_END = ascii("\"}\n");
+
+    private File file;
+
+    private String format = SARIF;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** Digits of a number, written backwards */
+    private final byte[] digits = new byte[10];
+
+    private FileOutputStream stream;
+
+    private FileChannel channel;
+
+    private boolean firstResult;
+
+    /** File name and text of the exceptions of the audit, for the SARIF invocation */
+    private final List<String[]> exceptions = new ArrayList<String[]>();
+
+    /**
+     * For the configuration; the properties are set by checkstyle.
+     */
+    public StreamingReportListener() {
+    }
+
+    /**
+     * @param format {@link #SARIF} or {@link #JSON_LINES}.
+     */
+    public StreamingReportListener(File file, String format) {
+        this.file = file;
+        setFormat(format);
+    }
+
+    public void setFile(String file) {
+        this.file = new File(file);
+    }
+
+    public void setFormat(String format) {
+        if (!SARIF.equals(format) && !JSON_LINES.equals(format)) {
+            throw new IllegalArgumentException("Format must be " + SARIF + " or " + JSON_LINES + ": " + format);
+        }
+        this.format = format;
+    }
+
+    @Override
+    public void auditStarted(AuditEvent event) {
+        if (file == null) {
+            throw new IllegalStateException("Property file of " + getClass().getSimpleName() + " is not set");
+        }
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            stream = new FileOutputStream(file);
+            channel = stream.getChannel();
+            buffer.clear();
+            exceptions.clear();
+            firstResult = true;
+            if (isSarif()) {
+                put(SARIF_HEADER);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write " + file, e);
+        }
+    }
+
+    @Override
+    public void fileStarted(AuditEvent event) {
+    }
+
+    @Override
+    public void fileFinished(AuditEvent event) {
+    }
+
+    @Override
+    public void addError(AuditEvent event) {
+        SeverityLevel severity = event.getSeverityLevel();
+        if (severity == SeverityLevel.IGNORE) {
+            return;
+        }
+        if (isSarif()) {
+            putSarifResult(event, severity);
+        } else {
+            put(JSONL_FILE);
+            putJsonText(event.getFileName());
+            put(JSONL_LINE);
+            putInt(event.getLine());
+            put(JSONL_COLUMN);
+            putInt(event.getColumn());
+            put(JSONL_SEVERITY);
+            putJsonText(severity.getName());
+            put(JSONL_RULE);
+            putRuleId(event);
+            put(JSONL_MESSAGE);
+            putJsonText(event.getMessage());
+            put(JSONL_END);
+        }
+    }
+
+    private void putSarifResult(AuditEvent event, SeverityLevel severity) {
+        if (!firstResult) {
+            put((byte) ',');
+        }
+        firstResult = false;
+        put(SARIF_RULE_ID);
+        putRuleId(event);
+        put(SARIF_LEVEL);
+        putJsonText(severity == SeverityLevel.ERROR ? "error" : severity == SeverityLevel.WARNING ? "warning" : "note");
+        put(SARIF_MESSAGE);
+        putJsonText(event.getMessage());
+        put(SARIF_URI);
+        putUri(event.getFileName());
+        put(SARIF_START_LINE);
+        // SARIF lines and columns start at 1; checkstyle uses 0 for an unknown column
+        putInt(Math.max(1, event.getLine()));
+        if (event.getColumn() > 0) {
+            put(SARIF_START_COLUMN);
+            putInt(event.getColumn());
+        }
+        put(SARIF_RESULT_END);
+    }
+
+    @Override
+    public void addException(AuditEvent event, Throwable throwable) {
+        String text = throwable.getClass().getName() + ": " + throwable.getMessage();
+        if (isSarif()) {
+            exceptions.add(new String[] {event.getFileName(), text});
+        } else {
+            put(JSONL_FILE);
+            putJsonText(event.getFileName());
+            put(JSONL_EXCEPTION);
+            putJsonText(text);
+            put(JSONL_END);
+        }
+    }
+
+    @Override
+    public void auditFinished(AuditEvent event) {
+        try {
+            if (isSarif()) {
+                put(SARIF_INVOCATION);
+                put(exceptions.isEmpty() ? TRUE : FALSE);
+                put(SARIF_NOTIFICATIONS);
+                for (int i = 0; i < exceptions.size(); i++) {
+                    if (i > 0) {
+                        put((byte) ',');
+                    }
+                    put(SARIF_NOTIFICATION);
+                    putJsonText(exceptions.get(i)[1]);
+                    put(SARIF_NOTIFICATION_URI);
+                    putUri(exceptions.get(i)[0]);
+                    put(SARIF_NOTIFICATION_END);
+                }
+                put(SARIF_FOOTER);
+                exceptions.clear();
+            }
+            flush();
+            stream.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write " + file, e);
+        } finally {
+            stream = null;
+            channel = null;
+        }
+    }
+
+    private boolean isSarif() {
+        return SARIF.equals(format);
+    }
+
+    /**
+     * The module id if there is one, else the simple name of the check class.
+     */
+    private void putRuleId(AuditEvent event) {
+        String id = event.getModuleId();
+        if (id != null) {
+            putJsonText(id, 0, id.length());
+        } else {
+            String source = event.getSourceName();
+            putJsonText(source, source.lastIndexOf('.') + 1, source.length());
+        }
+    }
+
+    private void putJsonText(String text) {
+        if (text == null) {
+            return;
+        }
+        putJsonText(text, 0, text.length());
+    }
+
+    /**
+     * Puts the chars of the text from start to end, escaped for a JSON string and encoded in UTF-8.
+     */
+    private void putJsonText(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            ensureRoom();
+            if (c == '"' || c == '\\') {
+                buffer.put((byte) '\\').put((byte) c);
+            } else if (c == '\n') {
+                buffer.put((byte) '\\').put((byte) 'n');
+            } else if (c == '\r') {
+                buffer.put((byte) '\\').put((byte) 'r');
+            } else if (c == '\t') {
+                buffer.put((byte) '\\').put((byte) 't');
+            } else if (c < ' ') {
+                buffer.put((byte) '\\').put((byte) 'u').put(HEX[c >> 12]).put(HEX[(c >> 8) & 15])
+                        .put(HEX[(c >> 4) & 15]).put(HEX[c & 15]);
+            } else if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                putUtf8(Character.toCodePoint(c, text.charAt(++i)));
+            } else {
+                putUtf8(isSurrogate(c) ? REPLACEMENT_CHAR : c);
+            }
+        }
+    }
+
+    /**
+     * Puts the path as a URI reference: a file URI if the path is absolute, else a relative reference.
+     * Chars other than unreserved ones, '/' and ':' are percent-encoded, so the URI needs no JSON escaping.
+     */
+    private void putUri(String path) {
+        if (path.startsWith("/")) {
+            put(FILE_SCHEME);
+        } else if (path.length() > 2 && path.charAt(1) == ':' && (path.charAt(2) == '\\' || path.charAt(2) == '/')) {
+            put(FILE_SCHEME_DRIVE);
+        }
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            ensureRoom();
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.'
+                    || c == '_' || c == '~' || c == '/' || c == ':') {
+                buffer.put((byte) c);
+            } else if (c == '\\') {
+                buffer.put((byte) '/');
+            } else {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < path.length() && Character.isLowSurrogate(path.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, path.charAt(++i));
+                } else if (isSurrogate(c)) {
+                    codePoint = REPLACEMENT_CHAR;
+                }
+                int position = buffer.position();
+                putUtf8(codePoint);
+                // replaces each byte just put with its percent encoding, from the last one
+                int length = buffer.position() - position;
+                for (int from = length - 1; from >= 0; from--) {
+                    byte b = buffer.get(position + from);
+                    buffer.put(position + 3 * from, (byte) '%');
+                    buffer.put(position + 3 * from + 1, HEX[(b >> 4) & 15]);
+                    buffer.put(position + 3 * from + 2, HEX[b & 15]);
+                }
+                buffer.position(position + 3 * length);
+            }
+        }
+    }
+
+    /**
+     * @return true for a surrogate char; those that are not part of a pair are written as
+     * {@link #REPLACEMENT_CHAR}.
+     */
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    private void putUtf8(int codePoint) {
+        if (codePoint < 0x80) {
+            buffer.put((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            buffer.put((byte) (0xC0 | codePoint >> 6)).put((byte) (0x80 | codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            buffer.put((byte) (0xE0 | codePoint >> 12)).put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                    .put((byte) (0x80 | codePoint & 0x3F));
+        } else {
+            buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                    .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+        }
+    }
+
+    private void putInt(int number) {
+        ensureRoom();
+        long value = number;
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+    }
+
+    private void put(byte b) {
+        ensureRoom();
+        buffer.put(b);
+    }
+
+    private void put(byte[] bytes) {
+        if (buffer.remaining() < bytes.length) {
+            flush();
+        }
+        buffer.put(bytes);
+    }
+
+    private void ensureRoom() {
+        if (buffer.remaining() < MAX_CHAR_BYTES) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write " + file, e);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,628 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+import com.puppycrawl.tools.checkstyle.utils.TokenUtils;
+
+/**
+ * Matches many structural patterns against a tree in a single walk. A pattern is a path of token types in
+ * the style of XPath match patterns; it matches the nodes reached by its last step:
+ *
+ * <pre>
+ * CLASS_DEF[IDENT$='HTMLAction'][!EXTENDS_CLAUSE/*$='HTMLActionSupport']
+ * METHOD_DEF//METHOD_CALL[DOT='System.exit']
+ * </pre>
+ *
+ * <ul>
+ * <li>a step is a token type name or * (any type), followed by predicates in brackets;
+ * <li>A/B means B is a child of A, A//B that B is a descendant of A. A pattern that starts with / matches
+ * from the top-level nodes of the file; otherwise it matches anywhere, as if it started with //;
+ * <li>a predicate is a path from the node, optionally compared to a quoted value with = (equals), ^=
+ * (starts with), $= (ends with) or *= (contains). It holds if a node at the end of the path exists (and
+ * its value matches); ! negates it. The path . is the node itself and a path that starts with // looks
+ * at all the descendants of the node;
+ * <li>the value of a node is its text, except for a DOT of names, whose value is the qualified name (e.g.,
+ * "java.util.List").
+ * </ul>
+ * The patterns are compiled into one automaton. Identical steps are compiled once, paths that start with the
+ * same steps share the states of that prefix, and the steps that leave a state are indexed by token type.
+ * During the walk each node is only tested against the steps that leave the states of its parent (for /)
+ * or of its ancestors (for //) and expect its type, and each distinct step and predicate is evaluated at
+ * most once per node, however many patterns contain it.
+ *
+ * @author Paulo Merson
+ */
+final class StructuralMatcher {
+
+    /** Receives the matches of a walk */
+    interface Handler {
+        void matched(int pattern, DetailAST node);
+    }
+
+    private static final int ANY_TYPE = -1;
+
+    private static final int EXISTS = 0;
+    private static final int EQUALS = 1;
+    private static final int STARTS_WITH = 2;
+    private static final int ENDS_WITH = 3;
+    private static final int CONTAINS = 4;
+
+    private static final String[] OPERATORS = {"", "=", "^=", "$=", "*="};
+
+    private static final Edge[] NO_EDGES = new Edge[0];
+
+    private static final int[] NO_PATTERNS = new int[0];
+
+    private static final int INITIAL_DEPTH = 64;
+
+    /** Test of a node: a token type (or any) and predicates */
+    private static final class Step {
+        private final int id;
+        private final int type;
+        private final Predicate[] predicates;
+
+        Step(int id, int type, Predicate[] predicates) {
+            this.id = id;
+            this.type = type;
+            this.predicates = predicates;
+        }
+    }
+
+    /** Condition on the nodes at the end of a path from the node being tested */
+    private static final class Predicate {
+        private final int id;
+        private final boolean negated;
+        private final boolean[] descendant;
+        private final Step[] path;
+        private final int operator;
+        private final String value;
+
+        Predicate(int id, boolean negated, boolean[] descendant, Step[] path, int operator, String value) {
+            this.id = id;
+            this.negated = negated;
+            this.descendant = descendant;
+            this.path = path;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    private static final class Edge {
+        private final Step step;
+        private final State target;
+
+        Edge(Step step, State target) {
+            this.step = step;
+            this.target = target;
+        }
+    }
+
+    /** State of the automaton: the end of a common prefix of patterns */
+    private static final class State {
+        private final int id;
+        /** Target of each edge, by axis ('/' or '//') and step while the patterns are compiled */
+        private final Map<String, Edge> edges = new LinkedHashMap<String, Edge>();
+        private int[] patterns = NO_PATTERNS;
+        /** Edges to children (index 0) and descendants (index 1), by token type; the last entry is for * */
+        private Edge[][][] edgesByType;
+        private boolean hasDescendantEdges;
+
+        State(int id) {
+            this.id = id;
+        }
+    }
+
+    private final List<State> states = new ArrayList<State>();
+
+    private final Map<String, Step> steps = new HashMap<String, Step>();
+
+    private final Map<String, Predicate> predicates = new HashMap<String, Predicate>();
+
+    /** Longest literal each pattern requires in the source, or null */
+    private final String[] requiredLiterals;
+
+    private final int maxType;
+
+    /** Edge table of the states without edges, e.g. where a pattern ends */
+    private final Edge[][][] noEdgesByType;
+
+    // state of the walk, reused from walk to walk
+
+    /** States of the current path: matched states, then inherited ones (with // edges), of each depth */
+    private State[] pool = new State[INITIAL_DEPTH];
+
+    private int[] frameStart = new int[INITIAL_DEPTH];
+
+    private int[] matchedEnd = new int[INITIAL_DEPTH];
+
+    private int[] frameEnd = new int[INITIAL_DEPTH];
+
+    private final int[] stateStamps;
+
+    private int stateStamp;
+
+    /** Results of the steps and predicates for the current node, valid when the stamp is nodeStamp */
+    private final int[] stepStamps;
+
+    private final boolean[] stepResults;
+
+    private final int[] predicateStamps;
+
+    private final boolean[] predicateResults;
+
+    private int nodeStamp;
+
+    /**
+     * @throws IllegalArgumentException if a pattern is invalid.
+     */
+    StructuralMatcher(List<String> patterns) {
+        int max = 0;
+        for (int type : TokenUtils.getAllTokenIds()) {
+            max = Math.max(max, type);
+        }
+        maxType = max;
+        noEdgesByType = new Edge[2][maxType + 2][];
+        for (Edge[][] byType : noEdgesByType) {
+            Arrays.fill(byType, NO_EDGES);
+        }
+        State root = newState();
+        requiredLiterals = new String[patterns.size()];
+        for (int index = 0; index < patterns.size(); index++) {
+            Parser parser = new Parser(patterns.get(index));
+            State state = root;
+            boolean descendant = !parser.startsWithSlash() || parser.axis();
+            while (true) {
+                Step step = parser.step();
+                requiredLiterals[index] = longer(requiredLiterals[index], requiredLiteralOf(step));
+                String key = (descendant ? "//" : "/") + step.id;
+                Edge edge = state.edges.get(key);
+                if (edge == null) {
+                    edge = new Edge(step, newState());
+                    state.edges.put(key, edge);
+                }
+                state = edge.target;
+                if (parser.atEnd()) {
+                    break;
+                }
+                descendant = parser.axis();
+            }
+            state.patterns = Arrays.copyOf(state.patterns, state.patterns.length + 1);
+            state.patterns[state.patterns.length - 1] = index;
+        }
+        for (State state : states) {
+            compileEdges(state);
+        }
+        stateStamps = new int[states.size()];
+        stepStamps = new int[steps.size()];
+        stepResults = new boolean[steps.size()];
+        predicateStamps = new int[predicates.size()];
+        predicateResults = new boolean[predicates.size()];
+    }
+
+    private State newState() {
+        State state = new State(states.size());
+        states.add(state);
+        return state;
+    }
+
+    private void compileEdges(State state) {
+        if (state.edges.isEmpty()) {
+            state.edgesByType = noEdgesByType;
+            return;
+        }
+        List<List<List<Edge>>> byAxis = new ArrayList<List<List<Edge>>>(2);
+        for (int axis = 0; axis < 2; axis++) {
+            List<List<Edge>> byType = new ArrayList<List<Edge>>(maxType + 2);
+            for (int type = 0; type <= maxType + 1; type++) {
+                byType.add(new ArrayList<Edge>(0));
+            }
+            byAxis.add(byType);
+        }
+        for (Map.Entry<String, Edge> entry : state.edges.entrySet()) {
+            int axis = entry.getKey().startsWith("//") ? 1 : 0;
+            Step step = entry.getValue().step;
+            byAxis.get(axis).get(step.type == ANY_TYPE ? maxType + 1 : step.type).add(entry.getValue());
+            state.hasDescendantEdges |= axis == 1;
+        }
+        state.edgesByType = new Edge[2][maxType + 2][];
+        for (int axis = 0; axis < 2; axis++) {
+            for (int type = 0; type <= maxType + 1; type++) {
+                List<Edge> edges = byAxis.get(axis).get(type);
+                state.edgesByType[axis][type] = edges.isEmpty() ? NO_EDGES : edges.toArray(NO_EDGES);
+            }
+        }
+        state.edges.clear();
+    }
+
+    /**
+     * @return a literal that every file where the pattern matches contains, or null if the pattern has
+     *         none. It is the value of a predicate of the pattern that compares an IDENT, a name or a string
+     *         literal, when the value has no dot.
+     */
+    String getRequiredLiteral(int pattern) {
+        return requiredLiterals[pattern];
+    }
+
+    private static String requiredLiteralOf(Step step) {
+        String literal = null;
+        for (Predicate predicate : step.predicates) {
+            if (!predicate.negated && predicate.operator != EXISTS && predicate.path.length > 0
+                    && predicate.value.length() > 0 && predicate.value.indexOf('.') < 0) {
+                int type = predicate.path[predicate.path.length - 1].type;
+                if (type == TokenTypes.IDENT || type == TokenTypes.DOT || type == TokenTypes.STRING_LITERAL) {
+                    literal = longer(literal, predicate.value);
+                }
+            }
+        }
+        return literal;
+    }
+
+    private static String longer(String a, String b) {
+        return a == null || (b != null && b.length() > a.length()) ? b : a;
+    }
+
+    /**
+     * Walks the tree whose first top-level node is the given one (and the top-level nodes after it), and
+     * reports each node matched by each pattern. Not thread-safe: the matcher reuses its state.
+     */
+    void match(DetailAST firstTopLevel, Handler handler) {
+        frameStart[0] = 0;
+        pool[0] = states.get(0);
+        pool[1] = states.get(0);
+        matchedEnd[0] = 1;
+        frameEnd[0] = 2;
+        DetailAST node = firstTopLevel;
+        int depth = 1;
+        while (node != null) {
+            visit(node, depth, handler);
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+                depth++;
+                continue;
+            }
+            while (depth > 1 && node.getNextSibling() == null) {
+                node = node.getParent();
+                depth--;
+            }
+            node = node.getNextSibling();
+        }
+    }
+
+    private void visit(DetailAST node, int depth, Handler handler) {
+        if (depth + 1 >= frameStart.length) {
+            frameStart = Arrays.copyOf(frameStart, frameStart.length * 2);
+            matchedEnd = Arrays.copyOf(matchedEnd, matchedEnd.length * 2);
+            frameEnd = Arrays.copyOf(frameEnd, frameEnd.length * 2);
+        }
+        int parentStart = frameStart[depth - 1];
+        int parentMatchedEnd = matchedEnd[depth - 1];
+        int parentEnd = frameEnd[depth - 1];
+        int type = node.getType();
+        nodeStamp++;
+        stateStamp++;
+        frameStart[depth] = parentEnd;
+        int top = parentEnd;
+        for (int i = parentStart; i < parentMatchedEnd; i++) {
+            top = follow(pool[i].edgesByType[0][type], node, top);
+            top = follow(pool[i].edgesByType[0][maxType + 1], node, top);
+        }
+        for (int i = parentMatchedEnd; i < parentEnd; i++) {
+            top = follow(pool[i].edgesByType[1][type], node, top);
+            top = follow(pool[i].edgesByType[1][maxType + 1], node, top);
+        }
+        matchedEnd[depth] = top;
+        for (int i = frameStart[depth]; i < top; i++) {
+            for (int pattern : pool[i].patterns) {
+                handler.matched(pattern, node);
+            }
+        }
+        // the states with // edges stay active in the whole subtree
+        stateStamp++;
+        for (int i = parentMatchedEnd; i < parentEnd; i++) {
+            top = push(pool[i], top);
+        }
+        for (int i = frameStart[depth]; i < matchedEnd[depth]; i++) {
+            if (pool[i].hasDescendantEdges) {
+                top = push(pool[i], top);
+            }
+        }
+        frameEnd[depth] = top;
+    }
+
+    private int follow(Edge[] edges, DetailAST node, int top) {
+        for (Edge edge : edges) {
+            if (test(edge.step, node)) {
+                top = push(edge.target, top);
+            }
+        }
+        return top;
+    }
+
+    private int push(State state, int top) {
+        if (stateStamps[state.id] == stateStamp) {
+            return top;
+        }
+        stateStamps[state.id] = stateStamp;
+        if (top == pool.length) {
+            pool = Arrays.copyOf(pool, pool.length * 2);
+        }
+        pool[top] = state;
+        return top + 1;
+    }
+
+    /**
+     * Tests the node being visited, remembering the result of the step and of its predicates.
+     */
+    private boolean test(Step step, DetailAST node) {
+        if (stepStamps[step.id] != nodeStamp) {
+            stepStamps[step.id] = nodeStamp;
+            boolean result = step.type == ANY_TYPE || step.type == node.getType();
+            for (int i = 0; result && i < step.predicates.length; i++) {
+                Predicate predicate = step.predicates[i];
+                if (predicateStamps[predicate.id] != nodeStamp) {
+                    predicateStamps[predicate.id] = nodeStamp;
+                    predicateResults[predicate.id] = holds(predicate, node);
+                }
+                result = predicateResults[predicate.id];
+            }
+            stepResults[step.id] = result;
+        }
+        return stepResults[step.id];
+    }
+
+    /**
+     * Tests a node of a predicate path, which is not the node being visited.
+     */
+    private static boolean testOther(Step step, DetailAST node) {
+        if (step.type != ANY_TYPE && step.type != node.getType()) {
+            return false;
+        }
+        for (Predicate predicate : step.predicates) {
+            if (!holds(predicate, node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean holds(Predicate predicate, DetailAST node) {
+        boolean found = predicate.path.length == 0 ? compare(predicate, node) : exists(predicate, 0, node);
+        return found != predicate.negated;
+    }
+
+    /**
+     * @return true if a node at the end of the rest of the path, from index, exists and has a matching value.
+     */
+    private static boolean exists(Predicate predicate, int index, DetailAST from) {
+        DetailAST candidate = from.getFirstChild();
+        while (candidate != null) {
+            if (testOther(predicate.path[index], candidate) && (index + 1 == predicate.path.length
+                    ? compare(predicate, candidate) : exists(predicate, index + 1, candidate))) {
+                return true;
+            }
+            if (!predicate.descendant[index]) {
+                candidate = candidate.getNextSibling();
+            } else if (candidate.getFirstChild() != null) {
+                candidate = candidate.getFirstChild();
+            } else {
+                while (candidate != from && candidate.getNextSibling() == null) {
+                    candidate = candidate.getParent();
+                }
+                candidate = candidate == from ? null : candidate.getNextSibling();
+            }
+        }
+        return false;
+    }
+
+    private static boolean compare(Predicate predicate, DetailAST node) {
+        if (predicate.operator == EXISTS) {
+            return true;
+        }
+        String value = valueOf(node);
+        switch (predicate.operator) {
+        case EQUALS:
+            return value.equals(predicate.value);
+        case STARTS_WITH:
+            return value.startsWith(predicate.value);
+        case ENDS_WITH:
+            return value.endsWith(predicate.value);
+        default:
+            return value.contains(predicate.value);
+        }
+    }
+
+    /**
+     * @return the text of the node, or the qualified name of a DOT of names.
+     */
+    static String valueOf(DetailAST node) {
+        return node.getType() == TokenTypes.DOT && isName(node) ? CustomCheck.typeNameOf(node) : node.getText();
+    }
+
+    private static boolean isName(DetailAST dot) {
+        DetailAST left = dot.getFirstChild();
+        DetailAST right = left == null ? null : left.getNextSibling();
+        return right != null && right.getType() == TokenTypes.IDENT && right.getNextSibling() == null
+                && (left.getType() == TokenTypes.IDENT || left.getType() == TokenTypes.DOT && isName(left));
+    }
+
+    /**
+     * Recursive descent parser of a pattern; steps and predicates are interned in the matcher.
+     */
+    private final class Parser {
+        private final String pattern;
+        private int position;
+
+        Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        boolean startsWithSlash() {
+            skipSpaces();
+            return position < pattern.length() && pattern.charAt(position) == '/';
+        }
+
+        /**
+         * Reads / or //.
+         *
+         * @return true for //.
+         */
+        boolean axis() {
+            expect('/');
+            if (position < pattern.length() && pattern.charAt(position) == '/') {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean atEnd() {
+            skipSpaces();
+            return position == pattern.length();
+        }
+
+        Step step() {
+            skipSpaces();
+            int type;
+            String typeName;
+            if (position < pattern.length() && pattern.charAt(position) == '*') {
+                position++;
+                type = ANY_TYPE;
+                typeName = "*";
+            } else {
+                int start = position;
+                while (position < pattern.length() && (Character.isLetterOrDigit(pattern.charAt(position))
+                        || pattern.charAt(position) == '_')) {
+                    position++;
+                }
+                typeName = pattern.substring(start, position);
+                if (typeName.length() == 0) {
+                    throw error("token type expected");
+                }
+                try {
+                    type = TokenUtils.getTokenId(typeName);
+                } catch (IllegalArgumentException e) {
+                    position = start;
+                    throw error("unknown token type " + typeName);
+                }
+            }
+            StringBuilder key = new StringBuilder(typeName);
+            List<Predicate> stepPredicates = new ArrayList<Predicate>();
+            while (!atEnd() && pattern.charAt(position) == '[') {
+                position++;
+                Predicate predicate = predicate();
+                expect(']');
+                stepPredicates.add(predicate);
+                key.append("[").append(predicate.id).append("]");
+            }
+            Step step = steps.get(key.toString());
+            if (step == null) {
+                step = new Step(steps.size(), type, stepPredicates.toArray(new Predicate[stepPredicates.size()]));
+                steps.put(key.toString(), step);
+            }
+            return step;
+        }
+
+        private Predicate predicate() {
+            skipSpaces();
+            boolean negated = false;
+            if (position < pattern.length() && pattern.charAt(position) == '!') {
+                negated = true;
+                position++;
+                skipSpaces();
+            }
+            StringBuilder key = new StringBuilder(negated ? "!" : "");
+            List<Step> path = new ArrayList<Step>();
+            List<Boolean> descendant = new ArrayList<Boolean>();
+            if (position < pattern.length() && pattern.charAt(position) == '.') {
+                position++;
+                key.append('.');
+            } else {
+                boolean axis = position < pattern.length() && pattern.charAt(position) == '/' && axis();
+                while (true) {
+                    Step step = step();
+                    path.add(step);
+                    descendant.add(axis);
+                    key.append(axis ? "//" : "/").append(step.id);
+                    skipSpaces();
+                    if (position == pattern.length() || pattern.charAt(position) != '/') {
+                        break;
+                    }
+                    axis = axis();
+                }
+            }
+            int operator = operator();
+            String value = null;
+            if (operator != EXISTS) {
+                value = quoted();
+                key.append(OPERATORS[operator]).append(value.length()).append(':').append(value);
+            }
+            if (path.isEmpty() && operator == EXISTS) {
+                throw error("value expected after .");
+            }
+            Predicate predicate = predicates.get(key.toString());
+            if (predicate == null) {
+                boolean[] axes = new boolean[descendant.size()];
+                for (int i = 0; i < axes.length; i++) {
+                    axes[i] = descendant.get(i);
+                }
+                predicate = new Predicate(predicates.size(), negated, axes, path.toArray(new Step[path.size()]),
+                        operator, value);
+                predicates.put(key.toString(), predicate);
+            }
+            return predicate;
+        }
+
+        private int operator() {
+            skipSpaces();
+            for (int operator = OPERATORS.length - 1; operator > EXISTS; operator--) {
+                if (pattern.startsWith(OPERATORS[operator], position)) {
+                    position += OPERATORS[operator].length();
+                    return operator;
+                }
+            }
+            return EXISTS;
+        }
+
+        private String quoted() {
+            skipSpaces();
+            if (position == pattern.length() || (pattern.charAt(position) != '\'' && pattern.charAt(position) != '"')) {
+                throw error("quoted value expected");
+            }
+            char quote = pattern.charAt(position);
+            int end = pattern.indexOf(quote, position + 1);
+            if (end < 0) {
+                throw error("unterminated value");
+            }
+            String value = pattern.substring(position + 1, end);
+            position = end + 1;
+            return value;
+        }
+
+        private void expect(char c) {
+            skipSpaces();
+            if (position == pattern.length() || pattern.charAt(position) != c) {
+                throw error("'" + c + "' expected");
+            }
+            position++;
+        }
+
+        private void skipSpaces() {
+            while (position < pattern.length() && Character.isWhitespace(pattern.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String problem) {
+            return new IllegalArgumentException("Invalid pattern, " + problem + " at column " + (position + 1)
+                    + ": " + pattern);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package tutorial.checks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Structural rules loaded from an XML file. Each rule has a pattern, in the language of
+ * {@link StructuralMatcher}, and the message reported at the nodes the pattern matches:
+ *
+ * <pre>
+ * &lt;structural-rules&gt;
+ *     &lt;rule pattern="CLASS_DEF[IDENT$='HTMLAction'][!EXTENDS_CLAUSE/*$='HTMLActionSupport']"
+ *         message="HTML action classes must extend HTMLActionSupport." /&gt;
+ * &lt;/structural-rules&gt;
+ * </pre>
+ *
+ * The patterns of all rules are compiled into one matcher, so a file is walked once for all of them.
+ *
+ * @author Paulo Merson
+ */
+final class StructuralRules {
+
+    private final List<String> patterns;
+
+    private final List<String> messages;
+
+    private final StructuralMatcher matcher;
+
+    StructuralRules(List<String> patterns, List<String> messages) {
+        this.patterns = Collections.unmodifiableList(new ArrayList<String>(patterns));
+        this.messages = Collections.unmodifiableList(new ArrayList<String>(messages));
+        matcher = new StructuralMatcher(this.patterns);
+    }
+
+    /**
+     * Loads the rules from a file or, if there is no such file, from a resource in the classpath.
+     *
+     * @throws IllegalArgumentException if the rules cannot be read or a rule is invalid.
+     */
+    static StructuralRules load(String location) {
+        InputStream in = null;
+        try {
+            in = RulesFile.open(location);
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setExpandEntityReferences(false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            NodeList rules = builder.parse(in).getDocumentElement().getElementsByTagName("rule");
+            List<String> patterns = new ArrayList<String>();
+            List<String> messages = new ArrayList<String>();
+            for (int i = 0; i < rules.getLength(); i++) {
+                Element rule = (Element) rules.item(i);
+                String pattern = rule.getAttribute("pattern").trim();
+                String message = rule.getAttribute("message").trim();
+                if (pattern.length() == 0 || message.length() == 0) {
+                    throw new IllegalArgumentException("Rule " + (i + 1) + " of " + location
+                            + " must have a pattern and a message");
+                }
+                patterns.add(pattern);
+                messages.add(message);
+            }
+            return new StructuralRules(patterns, messages);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read rules from " + location, e);
+        } catch (SAXException e) {
+            throw new IllegalArgumentException("Unable to read rules from " + location, e);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            RulesFile.closeQuietly(in);
+        }
+    }
+
+    int size() {
+        return patterns.size();
+    }
+
+    String getPattern(int rule) {
+        return patterns.get(rule);
+    }
+
+    String getMessage(int rule) {
+        return messages.get(rule);
+    }
+
+    StructuralMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * @return a literal required by each rule, or null if a rule requires none.
+     */
+    String[] getRequiredLiterals() {
+        String[] literals = new String[patterns.size()];
+        for (int rule = 0; rule < literals.length; rule++) {
+            literals[rule] = matcher.getRequiredLiteral(rule);
+            if (literals[rule] == null) {
+                return null;
+            }
+        }
+        return literals;
+    }
+
+}
@@ -0,0 +1,170 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+/**
+ * Variables and parameters defined in one class (CLASS_DEF), organized in nested scopes: the class
+ * itself, methods, constructors, lambdas, blocks, for loops and catch clauses. Nested type
+ * definitions are not part of the table; they get their own.
+ * <p>
+ * The table is built in a single pass over the class. Resolving a name then only looks at the scopes
+ * enclosing the name, from the innermost to the class scope.
+ *
+ * @author Paulo Merson
+ */
+final class SymbolTable {
+
+    /** A scope and the VARIABLE_DEF and PARAMETER_DEF tokens defined directly in it */
+    private static final class Scope {
+        private final Scope parent;
+        private final Map<String, List<DetailAST>> defs = new HashMap<String, List<DetailAST>>();
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        void add(String name, DetailAST defToken) {
+            List<DetailAST> sameName = defs.get(name);
+            if (sameName == null) {
+                sameName = new ArrayList<DetailAST>(1);
+                defs.put(name, sameName);
+            }
+            sameName.add(defToken);
+        }
+    }
+
+    private final DetailAST classDefToken;
+
+    private final Scope classScope = new Scope(null);
+
+    /** Scope created by each scope-defining token of the class */
+    private final Map<DetailAST, Scope> scopes = new IdentityHashMap<DetailAST, Scope>();
+
+    /**
+     * @param classDefToken must be a CLASS_DEF AST.
+     */
+    SymbolTable(DetailAST classDefToken) {
+        this.classDefToken = classDefToken;
+        scopes.put(classDefToken, classScope);
+        DetailAST objBlock = classDefToken.findFirstToken(TokenTypes.OBJBLOCK);
+        if (objBlock != null) {
+            addDefs(objBlock);
+        }
+    }
+
+    /**
+     * @return the VARIABLE_DEF or PARAMETER_DEF token where the given IDENT is defined, or null if the
+     *         definition is not in this class. If hasThisPrefix is true, only member variables are
+     *         considered.
+     */
+    DetailAST resolve(DetailAST identToken, boolean hasThisPrefix) {
+        String name = identToken.getText();
+        if (hasThisPrefix) {
+            return lastDefinedBefore(classScope, name, null);
+        }
+        for (Scope scope = enclosingScope(identToken); scope != null; scope = scope.parent) {
+            DetailAST defToken = lastDefinedBefore(scope, name, scope == classScope ? null : identToken);
+            if (defToken != null) {
+                return defToken;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks the body of the class and adds the defs of each node to the scope in effect at the node.
+     */
+    private void addDefs(DetailAST objBlock) {
+        // scope in effect for the children of the node at each depth of the traversal
+        Scope[] scopeAt = new Scope[16];
+        scopeAt[0] = classScope;
+        AstCursor cursor = new AstCursor().reset(objBlock);
+        cursor.next();
+        for (DetailAST node = cursor.next(); node != null; node = cursor.next()) {
+            int depth = cursor.getDepth();
+            int type = node.getType();
+            if (type == TokenTypes.CLASS_DEF || type == TokenTypes.INTERFACE_DEF || type == TokenTypes.ENUM_DEF ||
+                    type == TokenTypes.ANNOTATION_DEF) {
+                // nested type: has its own symbol table
+                cursor.skipChildren();
+                continue;
+            }
+            Scope scope = scopeAt[depth - 1];
+            if (type == TokenTypes.VARIABLE_DEF || type == TokenTypes.PARAMETER_DEF) {
+                DetailAST ident = node.findFirstToken(TokenTypes.IDENT);
+                if (ident != null) {
+                    scope.add(ident.getText(), node);
+                }
+            }
+            if (isScope(node)) {
+                scope = new Scope(scope);
+                scopes.put(node, scope);
+            }
+            if (depth == scopeAt.length) {
+                Scope[] grown = new Scope[scopeAt.length * 2];
+                System.arraycopy(scopeAt, 0, grown, 0, scopeAt.length);
+                scopeAt = grown;
+            }
+            scopeAt[depth] = scope;
+        }
+    }
+
+    private static boolean isScope(DetailAST aAST) {
+        switch (aAST.getType()) {
+        case TokenTypes.METHOD_DEF:
+        case TokenTypes.CTOR_DEF:
+        case TokenTypes.LAMBDA:
+        case TokenTypes.SLIST:
+        case TokenTypes.LITERAL_FOR:
+        case TokenTypes.LITERAL_CATCH:
+        case TokenTypes.OBJBLOCK:
+            // OBJBLOCK here is always the body of an anonymous class (the class OBJBLOCK is not visited)
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private Scope enclosingScope(DetailAST aAST) {
+        for (DetailAST token = aAST.getParent(); token != null; token = token.getParent()) {
+            Scope scope = scopes.get(token);
+            if (scope != null) {
+                return scope;
+            }
+            if (token == classDefToken) {
+                break;
+            }
+        }
+        return classScope;
+    }
+
+    /**
+     * @return the last def of the given name in the scope that is defined before the given token, or
+     *         the first def of the name if before is null.
+     */
+    private static DetailAST lastDefinedBefore(Scope scope, String name, DetailAST before) {
+        List<DetailAST> sameName = scope.defs.get(name);
+        if (sameName == null) {
+            return null;
+        }
+        if (before == null) {
+            return sameName.get(0);
+        }
+        DetailAST result = null;
+        for (DetailAST defToken : sameName) {
+            if (defToken.getLineNo() < before.getLineNo() ||
+                    (defToken.getLineNo() == before.getLineNo() && defToken.getColumnNo() <= before.getColumnNo())) {
+                result = defToken;
+            }
+        }
+        return result;
+    }
+
+}
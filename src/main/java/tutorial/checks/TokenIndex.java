@@ -0,0 +1,188 @@
+package tutorial.checks;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+/**
+ * Index of all the nodes of one source file, grouped by token type.
+ * <p>
+ * Every node gets its position in a pre-order (document order) walk of the file, and the position
+ * of the last node of its subtree. The nodes of a subtree are then exactly the nodes whose position
+ * is in that range, so "all nodes of type X below node N" is a binary search in the list of nodes
+ * of type X instead of a walk of the whole subtree.
+ *
+ * @author Paulo Merson
+ */
+final class TokenIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private static final DetailAST[] NO_NODES = new DetailAST[0];
+
+    /** Pre-order position and position of the last descendant, for each node in the file */
+    private final Map<DetailAST, int[]> ranges = new IdentityHashMap<DetailAST, int[]>();
+
+    /** Nodes of each token type, in document order */
+    private DetailAST[][] nodesByType = new DetailAST[0][];
+
+    /** Pre-order position of each node in nodesByType, same layout */
+    private int[][] positionsByType = new int[0][];
+
+    /** Number of nodes of each token type; the arrays above have room for more while the index is built */
+    private int[] counts = EMPTY;
+
+    /**
+     * Builds the index of the file that starts at the given root. All siblings of the root (the
+     * top-level package, imports and type definitions) are indexed.
+     */
+    TokenIndex(DetailAST rootAST) {
+        int position = 0;
+        AstCursor cursor = new AstCursor();
+        // ranges of the nodes on the path from the top-level node to the current node
+        int[][] open = new int[16][];
+        for (DetailAST topLevel = rootAST; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            int openCount = 0;
+            cursor.reset(topLevel);
+            for (DetailAST node = cursor.next(); node != null; node = cursor.next()) {
+                int depth = cursor.getDepth();
+                while (openCount > depth) {
+                    open[--openCount][1] = position - 1;
+                }
+                if (openCount == open.length) {
+                    int[][] grown = new int[open.length * 2][];
+                    System.arraycopy(open, 0, grown, 0, open.length);
+                    open = grown;
+                }
+                open[openCount++] = add(node, position++);
+            }
+            while (openCount > 0) {
+                open[--openCount][1] = position - 1;
+            }
+        }
+        // the binary searches need arrays without free room at their end
+        for (int type = 0; type < counts.length; type++) {
+            if (positionsByType[type].length > counts[type]) {
+                DetailAST[] typeNodes = new DetailAST[counts[type]];
+                System.arraycopy(nodesByType[type], 0, typeNodes, 0, counts[type]);
+                nodesByType[type] = typeNodes;
+                int[] typePositions = new int[counts[type]];
+                System.arraycopy(positionsByType[type], 0, typePositions, 0, counts[type]);
+                positionsByType[type] = typePositions;
+            }
+        }
+        counts = null;
+    }
+
+    /**
+     * @return true if the given node belongs to the indexed file.
+     */
+    boolean contains(DetailAST aAST) {
+        return ranges.containsKey(aAST);
+    }
+
+    /**
+     * @return all nodes of the given type that are descendants of aAST (aAST itself excluded), in
+     *         document order; empty List if there is none.
+     */
+    List<DetailAST> findDescendants(DetailAST aAST, int type) {
+        int[] range = ranges.get(aAST);
+        int from = firstAtOrAfter(type, range[0] + 1);
+        int to = firstAtOrAfter(type, range[1] + 1);
+        List<DetailAST> result = new ArrayList<DetailAST>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            result.add(nodesByType[type][i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the first node of the given type in the subtree rooted at aAST (aAST itself included),
+     *         or null if there is none.
+     */
+    DetailAST findFirst(DetailAST aAST, int type) {
+        int[] range = ranges.get(aAST);
+        int index = firstAtOrAfter(type, range[0]);
+        if (index < positionsByType(type).length && positionsByType[type][index] <= range[1]) {
+            return nodesByType[type][index];
+        }
+        return null;
+    }
+
+    /**
+     * Adds a node to the index.
+     * 
+     * @return the range of the node; its end is set when the traversal leaves the node.
+     */
+    private int[] add(DetailAST aAST, int position) {
+        int[] range = new int[] {position, position};
+        ranges.put(aAST, range);
+        int type = aAST.getType();
+        if (type >= counts.length) {
+            growTypes(type + 1);
+        }
+        int count = counts[type];
+        if (count == positionsByType[type].length) {
+            int capacity = Math.max(8, count * 2);
+            DetailAST[] typeNodes = new DetailAST[capacity];
+            System.arraycopy(nodesByType[type], 0, typeNodes, 0, count);
+            nodesByType[type] = typeNodes;
+            int[] typePositions = new int[capacity];
+            System.arraycopy(positionsByType[type], 0, typePositions, 0, count);
+            positionsByType[type] = typePositions;
+        }
+        nodesByType[type][count] = aAST;
+        positionsByType[type][count] = position;
+        counts[type] = count + 1;
+        return range;
+    }
+
+    /**
+     * Makes room for the token types below typeCount.
+     */
+    private void growTypes(int typeCount) {
+        int length = Math.max(typeCount, counts.length * 2);
+        DetailAST[][] grownNodes = new DetailAST[length][];
+        int[][] grownPositions = new int[length][];
+        int[] grownCounts = new int[length];
+        System.arraycopy(nodesByType, 0, grownNodes, 0, counts.length);
+        System.arraycopy(positionsByType, 0, grownPositions, 0, counts.length);
+        System.arraycopy(counts, 0, grownCounts, 0, counts.length);
+        for (int type = counts.length; type < length; type++) {
+            grownNodes[type] = NO_NODES;
+            grownPositions[type] = EMPTY;
+        }
+        nodesByType = grownNodes;
+        positionsByType = grownPositions;
+        counts = grownCounts;
+    }
+
+    private int[] positionsByType(int type) {
+        if (type < 0 || type >= positionsByType.length) {
+            return EMPTY;
+        }
+        return positionsByType[type];
+    }
+
+    /**
+     * Binary search: index in positionsByType[type] of the first node whose position is >= position.
+     */
+    private int firstAtOrAfter(int type, int position) {
+        int[] typePositions = positionsByType(type);
+        int low = 0;
+        int high = typePositions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (typePositions[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,128 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditDaemonTest {
+
+    private static final String CONFIG = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE module PUBLIC \"-//Puppy Crawl//DTD Check Configuration 1.3//EN\" "
+            + "\"http://www.puppycrawl.com/dtds/configuration_1_3.dtd\">\n"
+            + "<module name=\"Checker\">\n"
+            + "    <property name=\"charset\" value=\"iso-8859-1\" />\n"
+            + "    <property name=\"severity\" value=\"%s\" />\n"
+            + "    <module name=\"TreeWalker\">\n"
+            + "        <module name=\"tutorial.checks.CheckLayerDependencies\" />\n"
+            + "    </module>\n"
+            + "</module>\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCheckReloadAndStop() throws Exception {
+        File configFile = folder.newFile("custom_checks.xml");
+        writeConfig(configFile, "error");
+        final AuditDaemon daemon = new AuditDaemon(configFile, null, 1);
+        daemon.start(0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Void> serving = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                daemon.serve();
+                return null;
+            }
+        });
+        AuditClient client = new AuditClient(daemon.getPort());
+        List<String> files = Collections.singletonList(
+                new File(getClass().getResource("/InputCheckProcessManagerCallsOpcTest.java").toURI()).getPath());
+
+        List<String> response = client.send(AuditDaemon.CHECK, files);
+        assertEquals(4, AuditClient.errorsOf(response));
+        assertEquals("END 4 1 0", response.get(response.size() - 1));
+        assertTrue(response.toString(), response.contains("Audit done."));
+
+        // the same audit, with checks already configured
+        response = client.send(AuditDaemon.CHECK, files);
+        assertEquals(4, AuditClient.errorsOf(response));
+
+        writeConfig(configFile, "warning");
+        configFile.setLastModified(configFile.lastModified() + 2000);
+        response = client.send(AuditDaemon.CHECK, files);
+        assertEquals("END 0 1 0", response.get(response.size() - 1));
+
+        response = client.send("UNKNOWN", Collections.<String>emptyList());
+        assertEquals(-1, AuditClient.errorsOf(response));
+
+        response = client.send(AuditDaemon.STOP, Collections.<String>emptyList());
+        assertEquals(0, AuditClient.errorsOf(response));
+        serving.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testChangedRulesFileReconfiguresChecks() throws Exception {
+        File rulesFile = folder.newFile("rules.txt");
+        write(rulesFile, "forbid com.sun.j2ee.blueprints.processmanager -> com.sun.j2ee.blueprints.opc\n");
+        File configFile = folder.newFile("custom_checks.xml");
+        write(configFile, String.format(CONFIG, "error").replace("CheckLayerDependencies\" />",
+                "CheckLayerDependencies\">\n<property name=\"rulesFile\" value=\"" + rulesFile.getPath()
+                        + "\" />\n</module>"));
+        final AuditDaemon daemon = new AuditDaemon(configFile, folder.newFile("cache"), 1);
+        daemon.start(0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Void> serving = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                daemon.serve();
+                return null;
+            }
+        });
+        AuditClient client = new AuditClient(daemon.getPort());
+        List<String> files = Collections.singletonList(
+                new File(getClass().getResource("/InputCheckProcessManagerCallsOpcTest.java").toURI()).getPath());
+        assertEquals("END 7 1 0", last(client.send(AuditDaemon.CHECK, files)));
+        assertEquals("END 7 0 1", last(client.send(AuditDaemon.CHECK, files)));
+
+        // the configuration file is the same: the rules are read again, and the cache is not used
+        write(rulesFile, "forbid com.sun.j2ee.blueprints.processmanager -> com.sun.j2ee.blueprints.opc.invoice\n");
+        assertEquals("END 1 1 0", last(client.send(AuditDaemon.CHECK, files)));
+
+        client.send(AuditDaemon.STOP, Collections.<String>emptyList());
+        serving.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+
+    private static String last(List<String> response) {
+        return response.get(response.size() - 1);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    private static void writeConfig(File configFile, String severity) throws IOException {
+        OutputStream out = new FileOutputStream(configFile);
+        out.write(String.format(CONFIG, severity).getBytes("UTF-8"));
+        out.close();
+    }
+
+}
@@ -0,0 +1,44 @@
+package tutorial.checks;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class CheckClassNameRequiresSupertypeTest extends BaseCheckTestSupport {
+
+    @Test
+    public void testDefaultRules() throws Exception {
+        Class check = CheckClassNameRequiresSupertype.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        String expected[] = {
+                "13: " + CheckHtmlActionExtendsHtmlActionSupport.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckHtmlActionExtendsHtmlActionSupportTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testRulesFromFile() throws Exception {
+        Class check = CheckClassNameRequiresSupertype.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        URI uriRules = this.getClass().getResource("/InputCheckClassNameRequiresSupertypeTest.txt").toURI();
+        checkConfig.addAttribute("rulesFile", Paths.get(uriRules).toString());
+        String expected[] = {
+                "6: Classes with prefix Dao must extend DaoGenerico [" + check.getSimpleName() + "]",
+                "12: Classes with suffix Bean must implement SessionBean [" + check.getSimpleName() + "]",
+                "12: Services are session beans [" + check.getSimpleName() + "]",
+                "18: Classes with prefix Dao must extend DaoGenerico [" + check.getSimpleName() + "]",
+                "18: " + CheckHtmlActionExtendsHtmlActionSupport.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckClassNameRequiresSupertypeTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+}
@@ -33,4 +33,38 @@ public class CheckHtmlActionExtendsHtmlActionSupportTest extends BaseCheckTestSu
         verifyAuditDoneWithZeroErrors(checkConfig, filename);
     }
 
+    @Test
+    public void testWhenPackageIsIgnoredByDefault() throws Exception {
+        Class check = CheckHtmlActionExtendsHtmlActionSupport.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        URI uriFile = this.getClass().getResource("/InputCheckHtmlActionExtendsHtmlActionSupportTest3.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+
+        verifyAuditDoneWithZeroErrors(checkConfig, filename);
+    }
+
+    @Test
+    public void testWhenPackageIsIgnoredByConfiguration() throws Exception {
+        Class check = CheckHtmlActionExtendsHtmlActionSupport.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        checkConfig.addAttribute("packagesToIgnore", "com.sun.j2ee.blueprints.opc, com.sun.j2ee.blueprints.consumerwebsite");
+        URI uriFile = this.getClass().getResource("/InputCheckHtmlActionExtendsHtmlActionSupportTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+
+        verifyAuditDoneWithZeroErrors(checkConfig, filename);
+    }
+
+    @Test
+    public void testWhenPackageIsNotIgnored() throws Exception {
+        Class check = CheckHtmlActionExtendsHtmlActionSupport.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        checkConfig.addAttribute("packagesToIgnore", "com.sun.j2ee.blueprints.consumer");
+        String expected[] = {
+                "13: " + CheckHtmlActionExtendsHtmlActionSupport.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckHtmlActionExtendsHtmlActionSupportTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
 }
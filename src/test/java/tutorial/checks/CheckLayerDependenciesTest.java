@@ -0,0 +1,62 @@
+package tutorial.checks;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class CheckLayerDependenciesTest extends BaseCheckTestSupport {
+
+    @Test
+    public void testRulesFromFile() throws Exception {
+        Class check = CheckLayerDependencies.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        URI uriRules = this.getClass().getResource("/InputCheckLayerDependenciesTest.txt").toURI();
+        checkConfig.addAttribute("rulesFile", Paths.get(uriRules).toString());
+        String expected[] = {
+                "3: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "4: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "6: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "10: Classes in com.sun.j2ee.blueprints.processmanager.ejb should not depend on classes in javax.servlet. ["
+                        + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckLayerDependenciesTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testMostSpecificPackageOfClassesWins() throws Exception {
+        Class check = CheckLayerDependencies.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        URI uriRules = this.getClass().getResource("/InputCheckLayerDependenciesSpecificityTest.txt").toURI();
+        checkConfig.addAttribute("rulesFile", Paths.get(uriRules).toString());
+        String expected[] = {
+                "10: Classes in com.sun.j2ee.blueprints.processmanager should not depend on classes in javax. ["
+                        + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckLayerDependenciesTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testDefaultRules() throws Exception {
+        Class check = CheckLayerDependencies.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        String expected[] = {
+                "3: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "4: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "5: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "6: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckProcessManagerCallsOpcTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+}
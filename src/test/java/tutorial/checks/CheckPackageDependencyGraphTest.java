@@ -0,0 +1,103 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class CheckPackageDependencyGraphTest extends BaseCheckTestSupport {
+
+    private static final String SUFFIX = " [" + CheckPackageDependencyGraph.class.getSimpleName() + "]";
+
+    @Test
+    public void testLayersAndCycles() throws Exception {
+        final DefaultConfiguration checkConfig = createCheckConfig(CheckPackageDependencyGraph.class);
+        checkConfig.addAttribute("layers", "com.acme.web, com.acme.service, com.acme.dao");
+        String dao = inputPath("InputDao.java");
+        String controller = inputPath("InputController.java");
+        // violations are reported by file name
+        String expected[] = {
+                controller + ":3: Cycle between packages: com.acme.dao, com.acme.service, com.acme.web." + SUFFIX,
+                dao + ":4: Package com.acme.dao must not depend on package com.acme.web of an upper layer." + SUFFIX
+        };
+        verifyFiles(checkConfig, expected, "InputController.java", "InputService.java", "InputDao.java");
+    }
+
+    @Test
+    public void testClassCycles() throws Exception {
+        final DefaultConfiguration checkConfig = createCheckConfig(CheckPackageDependencyGraph.class);
+        checkConfig.addAttribute("packageCycles", "false");
+        checkConfig.addAttribute("classCycles", "true");
+        String service = inputPath("InputService.java");
+        String expected[] = {
+                service + ":3: Cycle between classes: com.acme.dao.InputDao, com.acme.service.InputService, "
+                        + "com.acme.web.InputController." + SUFFIX
+        };
+        // InputService is processed first, so the cycle is reported at its import
+        verifyFiles(checkConfig, expected, "InputService.java", "InputDao.java", "InputController.java");
+    }
+
+    @Test
+    public void testNoCycleWithoutBackEdge() throws Exception {
+        final DefaultConfiguration checkConfig = createCheckConfig(CheckPackageDependencyGraph.class);
+        checkConfig.addAttribute("layers", "com.acme.web, com.acme.service, com.acme.dao");
+        verifyFiles(checkConfig, new String[0], "InputController.java", "InputService.java");
+    }
+
+    @Test
+    public void testClassNameEnd() {
+        assertEquals("a.b.C".length(), CheckPackageDependencyGraph.classNameEnd("a.b.C"));
+        assertEquals("a.b.C".length(), CheckPackageDependencyGraph.classNameEnd("a.b.C.D"));
+        assertEquals(-1, CheckPackageDependencyGraph.classNameEnd("a.b.*"));
+    }
+
+    private String inputPath(String name) throws Exception {
+        URI uri = this.getClass().getResource("/dependencygraph/" + name).toURI();
+        return Paths.get(uri).toString();
+    }
+
+    /**
+     * The check goes under Checker, not under TreeWalker, so the checker is configured here.
+     */
+    private void verifyFiles(DefaultConfiguration checkConfig, String[] expected, String... names) throws Exception {
+        final DefaultConfiguration dc = new DefaultConfiguration("configuration");
+        dc.addAttribute("charset", "iso-8859-1");
+        dc.addChild(checkConfig);
+        final Checker checker = new Checker();
+        checker.setLocaleCountry(Locale.ENGLISH.getCountry());
+        checker.setLocaleLanguage(Locale.ENGLISH.getLanguage());
+        checker.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        checker.configure(dc);
+        checker.addListener(new BriefLogger(mStream));
+        List<File> files = new ArrayList<File>();
+        for (String name : names) {
+            files.add(new File(inputPath(name)));
+        }
+        int errors = checker.process(files);
+        mStream.flush();
+        String[] actual = mBAOS.toString().split("\\r?\\n");
+        List<String> lines = new ArrayList<String>();
+        for (String line : actual) {
+            if (line.length() > 0) {
+                lines.add(line.startsWith("[ERROR] ") ? line.substring("[ERROR] ".length()) : line);
+            }
+        }
+        assertEquals("unexpected output: " + lines, expected.length, errors);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("error message " + i, expected[i], lines.get(i));
+        }
+        checker.destroy();
+    }
+
+}
@@ -0,0 +1,80 @@
+package tutorial.checks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class CheckRuleHostTest extends BaseCheckTestSupport {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testProcessManagerCallsOpcRule() throws Exception {
+        Class check = CheckRuleHost.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        // same violations as CheckProcessManagerCallsOpc, which also flags imports of opc.utils
+        String expected[] = {
+                "3: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "4: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "5: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "8: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]",
+                "9: " + CheckProcessManagerCallsOpc.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckProcessManagerCallsOpcTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testHtmlActionRule() throws Exception {
+        Class check = CheckRuleHost.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        checkConfig.addAttribute("rules", HtmlActionExtendsHtmlActionSupportRule.class.getName());
+        String expected[] = {
+                "13: " + CheckHtmlActionExtendsHtmlActionSupport.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckHtmlActionExtendsHtmlActionSupportTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testHtmlActionRuleWithSourcePath() throws Exception {
+        File root = folder.getRoot().getCanonicalFile();
+        write(root, "waf/HTMLActionSupport.java", "package waf;\npublic abstract class HTMLActionSupport {\n}\n");
+        write(root, "web/BaseHTMLAction.java", "package web;\nimport waf.HTMLActionSupport;\n"
+                + "public abstract class BaseHTMLAction extends HTMLActionSupport {\n}\n");
+        String filename = write(root, "web/CatalogHTMLAction.java", "package web;\n"
+                + "public class CatalogHTMLAction extends BaseHTMLAction {\n}\n").getPath();
+        Class check = CheckRuleHost.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        checkConfig.addAttribute("rules", HtmlActionExtendsHtmlActionSupportRule.class.getName());
+        checkConfig.addAttribute("packagesToIgnore", "");
+        verify(checkConfig, filename, new String[] {
+                "2: " + CheckHtmlActionExtendsHtmlActionSupport.CHECK_VIOLATION_MESSAGE + " [" + check.getSimpleName() + "]"
+        });
+
+        // the same results as CheckHtmlActionExtendsHtmlActionSupport
+        checkConfig.addAttribute("sourcePath", root.getPath());
+        verifyAuditDoneWithZeroErrors(checkConfig, filename);
+    }
+
+    private static File write(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+        return file;
+    }
+
+}
@@ -0,0 +1,44 @@
+package tutorial.checks;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class CheckSqlInjectionTest extends BaseCheckTestSupport {
+
+    @Test
+    public void testSqlFollowedThroughVariables() throws Exception {
+        Class check = CheckSqlInjection.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        String expected[] = {
+                "16: SQL built from request data is passed to executeQuery. [" + check.getSimpleName() + "]",
+                "20: SQL concatenated with a variable is passed to prepareStatement; use bind parameters. [" + check.getSimpleName() + "]",
+                "28: SQL concatenated with a variable is passed to prepareStatement; use bind parameters. [" + check.getSimpleName() + "]",
+                "42: SQL concatenated with a variable is passed to addBatch; use bind parameters. [" + check.getSimpleName() + "]",
+                "52: SQL concatenated with a variable is passed to createQuery; use bind parameters. [" + check.getSimpleName() + "]",
+                "64: SQL concatenated with a variable is passed to executeQuery; use bind parameters. [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckSqlInjectionTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testSinksProperty() throws Exception {
+        Class check = CheckSqlInjection.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        checkConfig.addAttribute("sinks", "createQuery");
+        String expected[] = {
+                "52: SQL concatenated with a variable is passed to createQuery; use bind parameters. [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckSqlInjectionTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+}
@@ -0,0 +1,123 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class CheckStructuralRulesTest extends BaseCheckTestSupport {
+
+    @Test
+    public void testDefaultRules() throws Exception {
+        Class check = CheckStructuralRules.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        String expected[] = {
+                "13: Classes with suffix HTMLAction must extend HTMLActionSupport. [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckHtmlActionExtendsHtmlActionSupportTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testRulesFromFile() throws Exception {
+        Class check = CheckStructuralRules.class;
+        final DefaultConfiguration checkConfig = createCheckConfig(check);
+        URI uriRules = this.getClass().getResource("/InputCheckStructuralRulesTest.xml").toURI();
+        checkConfig.addAttribute("rulesFile", Paths.get(uriRules).toString());
+        String expected[] = {
+                "9: No System.exit. [" + check.getSimpleName() + "]",
+                "12: SQL built by concatenation. [" + check.getSimpleName() + "]",
+                "16: HTML action classes must extend HTMLActionSupport. [" + check.getSimpleName() + "]",
+                "20: New thread. [" + check.getSimpleName() + "]",
+                "20: No threads in inner classes. [" + check.getSimpleName() + "]"
+        };
+        URI uriFile = this.getClass().getResource("/InputCheckStructuralRulesTest.java").toURI();
+        String filename = Paths.get(uriFile).toString();
+        verify(checkConfig, filename, expected);
+    }
+
+    @Test
+    public void testPatternsMatchedTogetherAsAlone() throws Exception {
+        URI uriFile = this.getClass().getResource("/InputCheckStructuralRulesTest.java").toURI();
+        DetailAST root = TreeWalker.parse(new FileContents(new FileText(new File(uriFile), "UTF-8")));
+        List<String> patterns = new ArrayList<String>();
+        String[] steps = {"CLASS_DEF", "OBJBLOCK", "METHOD_DEF", "SLIST", "*", "EXPR", "METHOD_CALL", "IDENT"};
+        String[] predicates = {"", "[IDENT]", "[!IDENT]", "[IDENT^='C']", "[.$='T']", "[//IDENT*='e']"};
+        for (int i = 0; i < steps.length; i++) {
+            for (String predicate : predicates) {
+                patterns.add(steps[i] + predicate);
+                patterns.add("/CLASS_DEF//" + steps[i] + predicate);
+                patterns.add(steps[i] + predicate + "/" + steps[(i + 1) % steps.length]);
+                patterns.add(steps[i] + "//" + steps[(i + 2) % steps.length] + predicate);
+            }
+        }
+        List<String> together = matches(new StructuralMatcher(patterns), root, patterns);
+        List<String> alone = new ArrayList<String>();
+        for (String pattern : patterns) {
+            alone.addAll(matches(new StructuralMatcher(Collections.singletonList(pattern)), root,
+                    Collections.singletonList(pattern)));
+        }
+        Collections.sort(together);
+        Collections.sort(alone);
+        assertFalse(together.isEmpty());
+        assertEquals(alone, together);
+    }
+
+    @Test
+    public void testInvalidPatterns() {
+        for (String pattern : new String[] {"", "CLASS", "CLASS_DEF[", "CLASS_DEF[IDENT='x]", "CLASS_DEF[.]",
+                "CLASS_DEF]", "CLASS_DEF//", "CLASS_DEF[IDENT=x]"}) {
+            try {
+                new StructuralMatcher(Collections.singletonList(pattern));
+                fail(pattern);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRequiredLiterals() {
+        List<String> patterns = Arrays.asList("CLASS_DEF[IDENT$='HTMLAction'][!EXTENDS_CLAUSE/*$='Support']",
+                "METHOD_CALL[DOT='System.exit']", "PLUS[STRING_LITERAL*='select'][*/IDENT='args']");
+        StructuralMatcher matcher = new StructuralMatcher(patterns);
+        assertEquals("HTMLAction", matcher.getRequiredLiteral(0));
+        assertNull(matcher.getRequiredLiteral(1));
+        assertEquals("select", matcher.getRequiredLiteral(2));
+        assertArrayEquals(new String[] {"HTMLAction", "select"}, new StructuralRules(Arrays.asList(patterns.get(0),
+                patterns.get(2)), Arrays.asList("a", "b")).getRequiredLiterals());
+    }
+
+    private static List<String> matches(StructuralMatcher matcher, DetailAST root, final List<String> patterns) {
+        final List<String> matches = new ArrayList<String>();
+        matcher.match(root, new StructuralMatcher.Handler() {
+            @Override
+            public void matched(int pattern, DetailAST node) {
+                matches.add(patterns.get(pattern) + " " + node.getLineNo() + ":" + node.getColumnNo() + " "
+                        + node.getType());
+            }
+        });
+        return matches;
+    }
+
+}
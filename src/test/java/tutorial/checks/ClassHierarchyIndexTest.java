@@ -0,0 +1,154 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class ClassHierarchyIndexTest extends BaseCheckTestSupport {
+
+    private static final String VIOLATION = CheckHtmlActionExtendsHtmlActionSupport.CHECK_VIOLATION_MESSAGE
+            + " [CheckHtmlActionExtendsHtmlActionSupport]";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().getCanonicalFile();
+        write("waf/HTMLActionSupport.java", "package waf;\npublic abstract class HTMLActionSupport implements HTMLAction {\n}\n");
+        write("waf/HTMLAction.java", "package waf;\npublic interface HTMLAction {\n}\n");
+        write("web/BaseHTMLAction.java", "package web;\nimport waf.HTMLActionSupport;\n"
+                + "public abstract class BaseHTMLAction extends HTMLActionSupport {\n}\n");
+        write("web/CatalogHTMLAction.java", "package web;\nimport java.util.*;\n"
+                + "public class CatalogHTMLAction extends BaseHTMLAction {\n"
+                + "    static class ItemHTMLAction extends CatalogHTMLAction {\n    }\n"
+                + "    static class PageHTMLAction extends ItemHTMLAction implements List<String> {\n    }\n}\n");
+        write("web/QualifiedHTMLAction.java", "package web;\n"
+                + "public class QualifiedHTMLAction extends waf.HTMLActionSupport {\n}\n");
+        write("web/OtherHTMLAction.java", "package web;\npublic class OtherHTMLAction extends Thread {\n}\n");
+        write("web/Cycle.java", "package web;\nclass Cycle extends Loop {\n}\nclass Loop extends Cycle {\n}\n");
+    }
+
+    @Test
+    public void testSupertypes() throws IOException {
+        ClassHierarchyIndex index = ClassHierarchyIndex.build(DiffAudit.javaFiles(root), "UTF-8", null);
+
+        assertTrue(index.isSubtypeOf("web.CatalogHTMLAction", "waf.HTMLActionSupport"));
+        assertTrue(index.isSubtypeOf("web.CatalogHTMLAction", "waf.HTMLAction"));
+        assertTrue(index.isSubtypeOf("web.CatalogHTMLAction.PageHTMLAction", "waf.HTMLActionSupport"));
+        assertTrue(index.isSubtypeOf("web.QualifiedHTMLAction", "waf.HTMLActionSupport"));
+        assertFalse(index.isSubtypeOf("web.OtherHTMLAction", "waf.HTMLActionSupport"));
+        assertFalse(index.isSubtypeOf("waf.HTMLActionSupport", "web.CatalogHTMLAction"));
+        assertFalse(index.isSubtypeOf("web.Unknown", "waf.HTMLActionSupport"));
+        assertEquals(Arrays.asList("waf.HTMLAction", "waf.HTMLActionSupport", "web.BaseHTMLAction",
+                "web.CatalogHTMLAction"), index.getSupertypes("web.CatalogHTMLAction.ItemHTMLAction"));
+        // not declared in the code base, with a wildcard import: kept as written
+        assertTrue(index.isSubtypeOf("web.CatalogHTMLAction.PageHTMLAction", "List"));
+        assertTrue(index.isSubtypeOf("web.OtherHTMLAction", "Thread"));
+        assertTrue(index.hasSupertypeEndingWith("web.CatalogHTMLAction.PageHTMLAction", "HTMLActionSupport"));
+        assertFalse(index.hasSupertypeEndingWith("web.OtherHTMLAction", "HTMLActionSupport"));
+        // broken code
+        assertTrue(index.isSubtypeOf("web.Cycle", "web.Loop"));
+        assertTrue(index.isSubtypeOf("web.Loop", "web.Cycle"));
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        File cacheFile = new File(root, "hierarchy");
+        ClassHierarchyIndex index = ClassHierarchyIndex.build(DiffAudit.javaFiles(root), "UTF-8", cacheFile);
+        assertEquals(7, index.getFilesParsed());
+
+        index = ClassHierarchyIndex.build(DiffAudit.javaFiles(root), "UTF-8", cacheFile);
+        assertEquals(0, index.getFilesParsed());
+        assertTrue(index.isSubtypeOf("web.CatalogHTMLAction", "waf.HTMLActionSupport"));
+
+        File base = write("web/BaseHTMLAction.java", "package web;\npublic abstract class BaseHTMLAction {\n}\n");
+        assertTrue(base.setLastModified(base.lastModified() + 2000));
+        index = ClassHierarchyIndex.build(DiffAudit.javaFiles(root), "UTF-8", cacheFile);
+        assertEquals(1, index.getFilesParsed());
+        assertFalse(index.isSubtypeOf("web.CatalogHTMLAction", "waf.HTMLActionSupport"));
+        assertEquals(Collections.singletonList("web.BaseHTMLAction"), index.getSupertypes("web.CatalogHTMLAction"));
+    }
+
+    @Test
+    public void testSharedIndexIsCheckedAtEachAudit() throws IOException {
+        String[] sourcePath = {root.getPath()};
+        ClassHierarchyIndex.beginAudit();
+        ClassHierarchyIndex index = ClassHierarchyIndex.forSourcePath(sourcePath, "UTF-8", null);
+        assertTrue(index.isSubtypeOf("web.CatalogHTMLAction", "waf.HTMLActionSupport"));
+
+        File base = write("web/BaseHTMLAction.java", "package web;\npublic abstract class BaseHTMLAction {\n}\n");
+        assertTrue(base.setLastModified(base.lastModified() + 2000));
+        assertSame(index, ClassHierarchyIndex.forSourcePath(sourcePath, "UTF-8", null));
+
+        ClassHierarchyIndex.beginAudit();
+        index = ClassHierarchyIndex.forSourcePath(sourcePath, "UTF-8", null);
+        assertEquals(1, index.getFilesParsed());
+        assertFalse(index.isSubtypeOf("web.CatalogHTMLAction", "waf.HTMLActionSupport"));
+
+        ClassHierarchyIndex.beginAudit();
+        assertSame(index, ClassHierarchyIndex.forSourcePath(sourcePath, "UTF-8", null));
+
+        // not used by the previous audit: dropped
+        ClassHierarchyIndex.beginAudit();
+        ClassHierarchyIndex.beginAudit();
+        assertEquals(7, ClassHierarchyIndex.forSourcePath(sourcePath, "UTF-8", null).getFilesParsed());
+    }
+
+    @Test
+    public void testIndirectSuperclassWithoutSourcePath() throws Exception {
+        DefaultConfiguration checkConfig = createCheckConfig(CheckHtmlActionExtendsHtmlActionSupport.class);
+        checkConfig.addAttribute("packagesToIgnore", "");
+        verify(checkConfig, new File(root, "web/CatalogHTMLAction.java").getPath(), new String[] {"3: " + VIOLATION,
+                "4: " + VIOLATION, "6: " + VIOLATION});
+    }
+
+    @Test
+    public void testIndirectSuperclassWithSourcePath() throws Exception {
+        DefaultConfiguration checkConfig = createCheckConfig(CheckHtmlActionExtendsHtmlActionSupport.class);
+        checkConfig.addAttribute("packagesToIgnore", "");
+        checkConfig.addAttribute("sourcePath", root.getPath());
+        verifyAuditDoneWithZeroErrors(checkConfig, new File(root, "web/CatalogHTMLAction.java").getPath());
+    }
+
+    @Test
+    public void testNoSuperclassWithSourcePath() throws Exception {
+        DefaultConfiguration checkConfig = createCheckConfig(CheckHtmlActionExtendsHtmlActionSupport.class);
+        checkConfig.addAttribute("packagesToIgnore", "");
+        checkConfig.addAttribute("sourcePath", root.getPath());
+        verify(checkConfig, new File(root, "web/OtherHTMLAction.java").getPath(), new String[] {"2: " + VIOLATION});
+    }
+
+    @Test
+    public void testQualifiedSuperclass() throws Exception {
+        DefaultConfiguration checkConfig = createCheckConfig(CheckHtmlActionExtendsHtmlActionSupport.class);
+        checkConfig.addAttribute("packagesToIgnore", "");
+        verifyAuditDoneWithZeroErrors(checkConfig, new File(root, "web/QualifiedHTMLAction.java").getPath());
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+        return file;
+    }
+
+}
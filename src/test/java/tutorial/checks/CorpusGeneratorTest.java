@@ -0,0 +1,98 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class CorpusGeneratorTest extends BaseCheckTestSupport {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPlantedViolationsAreReported() throws Exception {
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setFiles(40);
+        generator.setOpcImportViolations(17);
+        generator.setHtmlActionViolations(9);
+        generator.setNestingDepth(4);
+        CorpusGenerator.Corpus corpus = generator.generate(folder.newFolder("corpus"));
+        assertEquals(40, corpus.getFiles().size());
+        assertEquals(17, audit(CheckProcessManagerCallsOpc.class, corpus.getFiles()));
+        assertEquals(17, audit(CheckLayerDependencies.class, corpus.getFiles()));
+        assertEquals(9, audit(CheckHtmlActionExtendsHtmlActionSupport.class, corpus.getFiles()));
+    }
+
+    @Test
+    public void testSameSeedSameCorpus() throws Exception {
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setSeed(42);
+        List<File> first = generator.generate(folder.newFolder("first")).getFiles();
+        List<File> second = generator.generate(folder.newFolder("second")).getFiles();
+        generator.setSeed(43);
+        List<File> other = generator.generate(folder.newFolder("other")).getFiles();
+        assertEquals(first.size(), second.size());
+        boolean sameAsOther = true;
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getName(), second.get(i).getName());
+            assertArrayEquals(read(first.get(i)), read(second.get(i)));
+            sameAsOther &= Arrays.equals(read(first.get(i)), read(other.get(i)));
+        }
+        assertFalse(sameAsOther);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyHtmlActionViolations() throws Exception {
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setFiles(2);
+        generator.setClassesPerFile(1);
+        generator.setHtmlActionViolations(3);
+        generator.generate(folder.getRoot());
+    }
+
+    private int audit(Class<?> check, List<File> files) throws Exception {
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        config.addAttribute("charset", "UTF-8");
+        DefaultConfiguration treeWalker = createCheckConfig(TreeWalker.class);
+        config.addChild(treeWalker);
+        treeWalker.addChild(createCheckConfig(check));
+        Checker checker = new Checker();
+        checker.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        checker.configure(config);
+        try {
+            return checker.process(files);
+        } finally {
+            checker.destroy();
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+}
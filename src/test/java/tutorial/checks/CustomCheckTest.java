@@ -0,0 +1,247 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+public class CustomCheckTest {
+
+    /** Concrete check used to call the helpers of CustomCheck */
+    private static class HelperCheck extends CustomCheck {
+        @Override
+        public int[] getDefaultTokens() {
+            return new int[] {};
+        }
+    }
+
+    private static final int[] TYPES = {TokenTypes.CLASS_DEF, TokenTypes.VARIABLE_DEF, TokenTypes.PARAMETER_DEF,
+            TokenTypes.IDENT, TokenTypes.ANNOTATION, TokenTypes.DOT, TokenTypes.ASSIGN, TokenTypes.LAMBDA};
+
+    @Test
+    public void testTokenIndexMatchesRecursiveSearch() throws Exception {
+        DetailAST root = parse("/InputCustomCheckTest.java");
+        HelperCheck recursive = new HelperCheck();
+        HelperCheck indexed = new HelperCheck();
+        indexed.beginTree(root);
+        for (DetailAST node : allNodes(root)) {
+            for (int type : TYPES) {
+                assertEquals(recursive.findAllAstsOfType(node, type), indexed.findAllAstsOfType(node, type));
+                assertSame(recursive.findFirstAstOfType(node, type), indexed.findFirstAstOfType(node, type));
+            }
+        }
+        indexed.finishTree(root);
+    }
+
+    @Test
+    public void testVariableOrParameterDefForIdent() throws Exception {
+        DetailAST root = parse("/InputCustomCheckTest.java");
+        HelperCheck check = new HelperCheck();
+        check.beginTree(root);
+        // this.name = name;
+        assertDef(check, ident(root, 15, "name", 0), TokenTypes.VARIABLE_DEF, 9);
+        assertDef(check, ident(root, 15, "name", 1), TokenTypes.PARAMETER_DEF, 14);
+        // String local = name + count;
+        assertDef(check, ident(root, 16, "count", 0), TokenTypes.VARIABLE_DEF, 11);
+        // local = local + i; (inside the for loop)
+        assertDef(check, ident(root, 18, "local", 1), TokenTypes.VARIABLE_DEF, 16);
+        assertDef(check, ident(root, 18, "i", 0), TokenTypes.VARIABLE_DEF, 17);
+        // lambda in the constructor uses the constructor parameter
+        assertDef(check, ident(root, 25, "count", 0), TokenTypes.PARAMETER_DEF, 23);
+        // inner class uses its own member variable
+        assertDef(check, ident(root, 33, "name", 0), TokenTypes.VARIABLE_DEF, 29);
+        check.finishTree(root);
+    }
+
+    @Test
+    public void testDeeplyNestedTree() throws Exception {
+        // a + b + c + ... with 100000 operands parses as a left-deep chain of PLUS tokens
+        final int depth = 100000;
+        DetailAST root = new DetailAST();
+        root.setType(TokenTypes.EXPR);
+        DetailAST parent = root;
+        for (int i = 0; i < depth; i++) {
+            DetailAST plus = new DetailAST();
+            plus.setType(TokenTypes.PLUS);
+            parent.addChild(plus);
+            DetailAST literal = new DetailAST();
+            literal.setType(TokenTypes.STRING_LITERAL);
+            plus.addChild(literal);
+            parent = plus;
+        }
+        HelperCheck check = new HelperCheck();
+        assertEquals(depth, check.findAllAstsOfType(root, TokenTypes.STRING_LITERAL).size());
+        assertSame(parent, check.findFirstAstOfType(parent, TokenTypes.PLUS));
+        check.beginTree(root);
+        assertEquals(depth, check.findAllAstsOfType(root, TokenTypes.STRING_LITERAL).size());
+        assertEquals(depth, check.findAllAstsOfType(root, TokenTypes.PLUS).size());
+        check.finishTree(root);
+    }
+
+    @Test
+    public void testAnnotationLookups() throws Exception {
+        DetailAST root = parse("/InputAnnotationIndexTest.java");
+        DetailAST outer = findType(root, TokenTypes.CLASS_DEF, 0);
+        DetailAST inner = findType(root, TokenTypes.CLASS_DEF, 1);
+        DetailAST field = findType(root, TokenTypes.VARIABLE_DEF, 0);
+        DetailAST parameter = findType(root, TokenTypes.PARAMETER_DEF, 0);
+        HelperCheck check = new HelperCheck();
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass builds an index per call, the second one index for the file
+            if (pass == 1) {
+                check.beginTree(root);
+            }
+            assertTrue(check.hasAnnotation(outer, "Entity"));
+            assertTrue(check.hasAnnotation(outer, "Stateless"));
+            assertTrue(check.hasAnnotation(outer, "javax.ejb.Stateless"));
+            assertFalse(check.hasAnnotation(outer, "OneToMany"));
+            assertTrue(check.memberHasAnnotation(outer, "OneToMany"));
+            assertTrue(check.memberHasAnnotation(outer, "Table"));
+            assertFalse(check.memberHasAnnotation(outer, "Entity"));
+            // annotations of parameters, of members of member types and in annotation values
+            assertFalse(check.memberHasAnnotation(outer, "SuppressWarnings"));
+            assertFalse(check.memberHasAnnotation(outer, "Deprecated"));
+            assertFalse(check.memberHasAnnotation(outer, "Index"));
+            assertFalse(check.hasAnnotation(inner, "Index"));
+            assertTrue(check.hasAnnotation(parameter, "SuppressWarnings"));
+            assertTrue(check.hasAnnotation(field, "OneToMany"));
+            assertTrue(check.memberHasAnnotation(inner, "Deprecated"));
+            assertFalse(check.hasAnnotation(outer, "Unknown"));
+        }
+        check.finishTree(root);
+        // containsAnnotation still looks at the whole subtree
+        assertTrue(check.containsAnnotation(outer, "Deprecated"));
+    }
+
+    @Test
+    public void testDataFlow() throws Exception {
+        DetailAST root = parse("/InputCheckSqlInjectionTest.java");
+        HelperCheck check = new HelperCheck();
+        check.beginTree(root);
+        // String sql = "select * from item where id = " + id.trim(); statement.executeQuery(sql);
+        DetailAST sql = ident(root, 16, "sql", 0);
+        DataFlow dataFlow = check.getDataFlow(sql);
+        assertSame(dataFlow, check.getDataFlow(ident(root, 14, "id", 0)));
+        assertEquals(DataFlow.NON_CONSTANT | DataFlow.CONCATENATED | DataFlow.REQUEST, dataFlow.getValue(sql));
+        assertEquals(15, dataFlow.getDeclaration(sql).getLineNo());
+        // the assignment in the declaring block replaces the concatenated value
+        sql = ident(root, 36, "sql", 0);
+        assertEquals(0, check.getDataFlow(sql).getValue(sql));
+        assertDefLines(check.getDataFlow(sql).getReachingDefs(sql), 35);
+        // in a loop, the def that follows the use reaches it too
+        sql = ident(root, 42, "sql", 0);
+        assertEquals(DataFlow.NON_CONSTANT | DataFlow.CONCATENATED, check.getDataFlow(sql).getValue(sql));
+        assertDefLines(check.getDataFlow(sql).getReachingDefs(sql), 40, 43);
+        // the def in a branch adds to the value
+        DetailAST hql = ident(root, 52, "hql", 0);
+        assertDefLines(check.getDataFlow(hql).getReachingDefs(hql), 48, 50);
+        // a parameter and a constant field
+        DetailAST statement = ident(root, 42, "statement", 0);
+        assertDefLines(check.getDataFlow(statement).getReachingDefs(statement), 39);
+        DetailAST table = ident(root, 21, "TABLE", 0);
+        assertNull(check.getDataFlow(table).getDeclaration(table));
+        assertEquals(0, check.getDataFlow(table).getReachingDefs(table).size());
+        assertNull(check.getDataFlow(ident(root, 11, "TABLE", 0)));
+        check.finishTree(root);
+    }
+
+    private static void assertDefLines(List<DetailAST> defs, int... expectedLines) {
+        int[] lines = new int[defs.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = defs.get(i).getLineNo();
+        }
+        assertArrayEquals(expectedLines, lines);
+    }
+
+    @Test
+    public void testPackagePrefixMatchesAsNameString() throws Exception {
+        DetailAST root = parse("/InputCheckLayerDependenciesTest.java");
+        String[] prefixes = {"com", "com.sun.j2ee.blueprints.opc", "com.sun.j2ee.blueprints.opc.utils",
+                "com.sun.j2ee.blueprints.opcx", "com.sun.j2ee.blueprints.op", "javax.servlet.http.HttpServletRequest",
+                "com.sun.j2ee.blueprints.processmanager.ejb.Other"};
+        PackageTrie<String> trie = new PackageTrie<String>();
+        for (String prefix : prefixes) {
+            trie.put(prefix, prefix);
+        }
+        int matches = 0;
+        for (DetailAST topLevel = root; topLevel != null; topLevel = topLevel.getNextSibling()) {
+            if (topLevel.getType() == TokenTypes.CLASS_DEF) {
+                continue;
+            }
+            String name = CustomCheck.qualifiedNameOf(topLevel);
+            for (String prefix : prefixes) {
+                PackagePrefix packagePrefix = PackagePrefix.of(prefix);
+                assertEquals(name + " " + prefix, packagePrefix.matches(name), packagePrefix.matches(topLevel));
+                matches += packagePrefix.matches(topLevel) ? 1 : 0;
+            }
+            String packageName = name.endsWith(".*") ? name.substring(0, name.length() - 2) : name;
+            assertEquals(name, trie.findLongestPrefix(packageName), trie.findLongestPrefix(topLevel));
+        }
+        assertEquals(17, matches);
+        assertTrue(PackagePrefix.of("a.b").matches("a.b.C"));
+        assertFalse(PackagePrefix.of("a.b").matches("a.bc"));
+        assertFalse(PackagePrefix.of("a.b").matches("a"));
+    }
+
+    private static void assertDef(CustomCheck check, DetailAST identToken, int expectedType, int expectedLine) {
+        DetailAST defToken = check.getVariableOrParameterDefForIdent(identToken);
+        assertEquals(expectedType, defToken.getType());
+        assertEquals(expectedLine, defToken.getLineNo());
+    }
+
+    /**
+     * @return the n-th IDENT (starting at 0) with the given text in the given line.
+     */
+    static DetailAST ident(DetailAST root, int line, String text, int n) {
+        for (DetailAST node : allNodes(root)) {
+            if (node.getType() == TokenTypes.IDENT && node.getLineNo() == line && node.getText().equals(text) && n-- == 0) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("IDENT " + text + " not found in line " + line);
+    }
+
+    /**
+     * @return the n-th node (starting at 0) of the given type.
+     */
+    private static DetailAST findType(DetailAST root, int type, int n) {
+        for (DetailAST node : allNodes(root)) {
+            if (node.getType() == type && n-- == 0) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("Node of type " + type + " not found");
+    }
+
+    static DetailAST parse(String resource) throws Exception {
+        URI uriFile = CustomCheckTest.class.getResource(resource).toURI();
+        File file = Paths.get(uriFile).toFile();
+        return TreeWalker.parse(new FileContents(new FileText(file, "UTF-8")));
+    }
+
+    static List<DetailAST> allNodes(DetailAST root) {
+        List<DetailAST> nodes = new ArrayList<DetailAST>();
+        for (DetailAST node = root; node != null; node = node.getNextSibling()) {
+            nodes.add(node);
+            nodes.addAll(allNodes(node.getFirstChild()));
+        }
+        return nodes;
+    }
+
+}
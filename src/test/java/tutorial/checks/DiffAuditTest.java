@@ -0,0 +1,234 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class DiffAuditTest extends BaseCheckTestSupport {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    private File a;
+
+    private File b;
+
+    private File c;
+
+    private File d;
+
+    private File e;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().getCanonicalFile();
+        a = write("p/A.java", "package p;\npublic class A {\n}\n");
+        b = write("q/B.java", "package q;\nimport p.A;\npublic class B extends A {\n}\n");
+        c = write("r/C.java", "package r;\npublic class C extends q.B implements Runnable {\n"
+                + "    public void run() {\n    }\n}\n");
+        d = write("s/D.java", "package s;\nimport p.*;\nimport java.util.List;\nclass D {\n    A a;\n}\n");
+        e = write("s/E.java", "package s;\nimport java.util.Map;\nclass E {\n}\n");
+    }
+
+    @Test
+    public void testDependents() throws IOException {
+        DependencyIndex index = DependencyIndex.open(new File(root, "index"));
+        List<File> allFiles = DiffAudit.javaFiles(root);
+        index.update(allFiles, "UTF-8");
+        assertEquals(5, index.getFilesParsed());
+
+        assertEquals(paths(b, c, d), index.dependentsOf(Collections.singleton(a.getPath())));
+        assertEquals(paths(c), index.dependentsOf(Collections.singleton(b.getPath())));
+        assertEquals(paths(), index.dependentsOf(Collections.singleton(e.getPath())));
+        assertEquals(Arrays.asList(a, b, c, d), DiffAudit.selectFiles(allFiles,
+                ChangedLines.ofFiles(Collections.singleton(a)), index));
+    }
+
+    @Test
+    public void testSavedIndex() throws IOException {
+        File indexFile = new File(root, "index");
+        DependencyIndex index = DependencyIndex.open(indexFile);
+        index.update(DiffAudit.javaFiles(root), "UTF-8");
+        index.save();
+
+        index = DependencyIndex.open(indexFile);
+        index.update(DiffAudit.javaFiles(root), "UTF-8");
+        assertEquals(0, index.getFilesParsed());
+        assertEquals(paths(b, c, d), index.dependentsOf(Collections.singleton(a.getPath())));
+
+        // B no longer extends A; A is renamed: the dependents of the old types are still found
+        write("q/B.java", "package q;\npublic class B {\n}\n");
+        assertTrue(a.delete());
+        File a2 = write("p/A2.java", "package p;\npublic class A2 {\n}\n");
+        index.update(DiffAudit.javaFiles(root), "UTF-8");
+        assertEquals(2, index.getFilesParsed());
+        assertEquals(paths(c, d), index.dependentsOf(Arrays.asList(a.getPath(), a2.getPath(), b.getPath())));
+    }
+
+    @Test
+    public void testUnreadableIndex() throws IOException {
+        File indexFile = new File(root, "index");
+        Files.write(indexFile.toPath(), new byte[] {1, 2, 3});
+        DependencyIndex index = DependencyIndex.open(indexFile);
+        index.update(DiffAudit.javaFiles(root), "UTF-8");
+        assertEquals(5, index.getFilesParsed());
+    }
+
+    @Test
+    public void testGitDiff() throws IOException {
+        String diff = "diff --git a/p/A.java b/p/A.java\n"
+                + "--- a/p/A.java\n"
+                + "+++ b/p/A.java\n"
+                + "@@ -2 +2,2 @@ public class A {\n"
+                + "-public class A {\n"
+                + "+public class A {\n"
+                + "+    int x;\n"
+                + "@@ -5,2 +6,0 @@\n"
+                + "-\n"
+                + "-\n"
+                + "@@ -9,0 +9 @@\n"
+                + "+}\n"
+                + "diff --git a/old/Gone.java b/old/Gone.java\n"
+                + "--- a/old/Gone.java\n"
+                + "+++ /dev/null\n"
+                + "@@ -1,3 +0,0 @@\n"
+                + "-class Gone {\n"
+                + "--- a comment that looks like a header\n"
+                + "-}\n"
+                + "diff --git \"a/s/\\303\\251.java\" \"b/s/\\303\\251.java\"\n"
+                + "--- /dev/null\n"
+                + "+++ \"b/s/\\303\\251.java\"\n"
+                + "@@ -0,0 +1 @@\n"
+                + "+class X {}\n";
+        ChangedLines changes = ChangedLines.parse(new StringReader(diff), root);
+        String gone = new File(root, "old/Gone.java").getPath();
+        String accented = new File(root, "s/\u00e9.java").getPath();
+        assertEquals(Arrays.asList(a.getPath(), gone, accented), new ArrayList<String>(changes.getPaths()));
+        assertFalse(changes.isChanged(a.getPath(), 1));
+        assertTrue(changes.isChanged(a.getPath(), 2));
+        assertTrue(changes.isChanged(a.getPath(), 3));
+        assertFalse(changes.isChanged(a.getPath(), 6));
+        assertTrue(changes.isChanged(a.getPath(), 9));
+        assertFalse(changes.isChanged(gone, 1));
+        assertTrue(changes.isChanged(accented, 1));
+
+        assertTrue(changes.accept(event(a.getPath(), 2)));
+        assertFalse(changes.accept(event(a.getPath(), 4)));
+        assertTrue(changes.accept(event(a.getPath(), 0)));
+        // a dependent: all its violations
+        assertTrue(changes.accept(event(b.getPath(), 4)));
+    }
+
+    @Test
+    public void testDependentsAreCheckedWithCache() throws Exception {
+        write("waf/HTMLActionSupport.java", "package waf;\npublic abstract class HTMLActionSupport {\n}\n");
+        File base = write("web/BaseHTMLAction.java", "package web;\nimport waf.HTMLActionSupport;\n"
+                + "public abstract class BaseHTMLAction extends HTMLActionSupport {\n}\n");
+        write("web/CatalogHTMLAction.java", "package web;\n"
+                + "public class CatalogHTMLAction extends BaseHTMLAction {\n}\n");
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        config.addAttribute("charset", "UTF-8");
+        DefaultConfiguration treeWalker = createCheckConfig(TreeWalker.class);
+        config.addChild(treeWalker);
+        DefaultConfiguration check = createCheckConfig(CheckHtmlActionExtendsHtmlActionSupport.class);
+        check.addAttribute("sourcePath", root.getPath());
+        check.addAttribute("packagesToIgnore", "");
+        treeWalker.addChild(check);
+        File cacheFile = folder.newFile("cache");
+        DependencyIndex index = DependencyIndex.open(new File(folder.getRoot(), "index"));
+        List<File> allFiles = DiffAudit.javaFiles(root);
+        index.update(allFiles, "UTF-8");
+        assertEquals(0, audit(config, cacheFile, allFiles, ChangedLines.ofFiles(allFiles), index));
+
+        // CatalogHTMLAction did not change, but it no longer extends HTMLActionSupport
+        write("web/BaseHTMLAction.java", "package web;\npublic abstract class BaseHTMLAction {\n}\n");
+        index.update(allFiles, "UTF-8");
+        assertEquals(2, audit(config, cacheFile, allFiles, ChangedLines.ofFiles(Collections.singleton(base)), index));
+    }
+
+    private static int audit(Configuration config, File cacheFile, List<File> allFiles, ChangedLines changes,
+            DependencyIndex index) throws CheckstyleException, IOException {
+        IncrementalAudit audit = new IncrementalAudit(config, cacheFile);
+        audit.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        try {
+            return DiffAudit.audit(audit, allFiles, changes, index);
+        } finally {
+            audit.destroy();
+        }
+    }
+
+    @Test
+    public void testGitDiffIncludesUntrackedFiles() throws IOException, InterruptedException {
+        git("init", "-q");
+        write(".gitignore", "ignored/\n");
+        git("add", ".");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial");
+        write("p/A.java", "package p;\npublic class A {\n    int x;\n}\n");
+        File added = write("t/New.java", "package t;\nclass New {\n}\n");
+        write("ignored/Old.java", "class Old {\n}\n");
+
+        ChangedLines changes = ChangedLines.fromGitDiff(root, "HEAD");
+        assertEquals(paths(a, added), new HashSet<String>(changes.getPaths()));
+        assertFalse(changes.isChanged(a.getPath(), 2));
+        assertTrue(changes.isChanged(a.getPath(), 3));
+        assertTrue(changes.isChanged(added.getPath(), 1));
+        assertTrue(changes.isChanged(added.getPath(), 3));
+    }
+
+    private void git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(root).inheritIO().start();
+        assertEquals(0, process.waitFor());
+    }
+
+    private AuditEvent event(String fileName, int line) {
+        LocalizedMessage message = new LocalizedMessage(line, 0, "messages", "key", new Object[] {"text"},
+                SeverityLevel.ERROR, null, CheckProcessManagerCallsOpc.class, "{0}");
+        return new AuditEvent(this, fileName, message);
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+        return file;
+    }
+
+    private static HashSet<String> paths(File... files) {
+        HashSet<String> paths = new HashSet<String>();
+        for (File file : files) {
+            paths.add(file.getPath());
+        }
+        return paths;
+    }
+
+}
@@ -0,0 +1,199 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+import com.puppycrawl.tools.checkstyle.utils.TokenUtils;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class HeaderLexerTest extends BaseCheckTestSupport {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameHeaderAsParser() throws Exception {
+        assertSameHeader("/* c */ package\ta . b;// x", "import static java.util.Map.*;",
+                "\timport  q.R ; /** d", " */", "import s;", "", "public class T {", "    String s = \"import x;\";", "}");
+        assertSameHeader("package a;", "import b.C;", "@Deprecated", "class T {}");
+        assertSameHeader("import java.util.List;", "import static java.lang.Math.max;", "enum E {}");
+        assertSameHeader("// nothing but a class", "final class T {}");
+        assertSameHeader("package a.b.c;");
+        assertSameHeader("package p; import /* x */ java . /* y */ util . * ;; class T {}");
+    }
+
+    @Test
+    public void testNames() {
+        HeaderLexer header = HeaderLexer.lex(Arrays.asList("package a.b;", "import c.D;",
+                "import static e.F.*;", "interface G {}"));
+        assertTrue(header.isComplete());
+        assertEquals("a.b", header.getPackageName());
+        assertEquals(2, header.getImportCount());
+        assertEquals("c.D", header.getImportName(0));
+        assertEquals(2, header.getImportLine(0));
+        assertFalse(header.isStaticImport(0));
+        assertEquals("e.F.*", header.getImportName(1));
+        assertTrue(header.isStaticImport(1));
+
+        header = HeaderLexer.lex(Arrays.asList("import c.D;", "class G {}"));
+        assertNull(header.getPackageName());
+        assertEquals(1, header.getImportCount());
+        assertEquals("c.D", header.getImportName(0));
+    }
+
+    @Test
+    public void testIncompleteHeaders() {
+        // package-info.java
+        assertIncomplete("@Deprecated", "package a;");
+        assertIncomplete("package \\u0061;");
+        assertIncomplete("package a; /* not closed", "class T {}");
+        assertIncomplete("package a.;");
+        assertIncomplete("package a", "class T {}");
+        assertIncomplete("import a.*.b;");
+        assertIncomplete("package a; package b;");
+        assertIncomplete("package a; record R() {}");
+    }
+
+    @Test
+    public void testHeaderOnlyWalker() throws Exception {
+        List<File> files = new ArrayList<File>();
+        files.add(copy("InputCheckLayerDependenciesTest.java"));
+        files.add(copy("InputCustomCheckTest.java"));
+        String rulesFile = Paths.get(getClass().getResource("/InputCheckLayerDependenciesTest.txt").toURI()).toString();
+        String expected = audit(createConfig(createCheckConfig(TreeWalker.class), rulesFile), files);
+        assertTrue(expected, expected.contains("InputCheckLayerDependenciesTest.java:10: "));
+
+        // the body is not parsed, so its syntax error goes unnoticed
+        File broken = new File(folder.getRoot(), "Broken.java");
+        Files.write(broken.toPath(), "package a;\nimport b.C;\nclass Broken {\n    void m( {\n}\n".getBytes("UTF-8"));
+        files.add(broken);
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("headerOnly", "true");
+        walker.addAttribute("enabled", "false");
+        assertEquals(expected, audit(createConfig(walker, rulesFile), files));
+    }
+
+    @Test
+    public void testHeaderOnlyWalkerWithTokenlessCheck() throws Exception {
+        List<File> files = new ArrayList<File>();
+        files.add(copy("InputCheckLayerDependenciesTest.java"));
+        files.add(copy("InputCheckHtmlActionExtendsHtmlActionSupportTest.java"));
+        String rulesFile = Paths.get(getClass().getResource("/InputCheckLayerDependenciesTest.txt").toURI()).toString();
+        DefaultConfiguration treeWalker = createCheckConfig(TreeWalker.class);
+        // visits no token: matches its rules in beginTree
+        treeWalker.addChild(createCheckConfig(CheckStructuralRules.class));
+        String expected = audit(createConfig(treeWalker, rulesFile), files);
+        assertTrue(expected, expected.contains("InputCheckHtmlActionExtendsHtmlActionSupportTest.java:13: "));
+
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("headerOnly", "true");
+        walker.addAttribute("enabled", "false");
+        walker.addChild(createCheckConfig(CheckStructuralRules.class));
+        assertEquals(expected, audit(createConfig(walker, rulesFile), files));
+    }
+
+    private static void assertSameHeader(String... lines) throws Exception {
+        List<String> lineList = Arrays.asList(lines);
+        FileContents parsed = new FileContents(FileText.fromLines(new File("T.java"), lineList));
+        StringBuilder expected = new StringBuilder();
+        List<String> expectedNames = new ArrayList<String>();
+        for (DetailAST topLevel = TreeWalker.parse(parsed); topLevel != null; topLevel = topLevel.getNextSibling()) {
+            if (topLevel.getType() == TokenTypes.PACKAGE_DEF || topLevel.getType() == TokenTypes.IMPORT
+                    || topLevel.getType() == TokenTypes.STATIC_IMPORT) {
+                dump(expected, topLevel, "");
+                expectedNames.add(CustomCheck.qualifiedNameOf(topLevel));
+            }
+        }
+
+        HeaderLexer header = HeaderLexer.lex(lineList);
+        assertTrue(header.isComplete());
+        StringBuilder actual = new StringBuilder();
+        for (DetailAST topLevel = header.toAST(); topLevel != null; topLevel = topLevel.getNextSibling()) {
+            dump(actual, topLevel, "");
+        }
+        assertEquals(expected.toString(), actual.toString());
+        List<String> actualNames = new ArrayList<String>();
+        if (header.getPackageName() != null) {
+            actualNames.add(header.getPackageName());
+        }
+        for (int index = 0; index < header.getImportCount(); index++) {
+            actualNames.add(header.getImportName(index));
+        }
+        assertEquals(expectedNames, actualNames);
+
+        // the comments, all in the header, as the parser reports them
+        FileContents lexed = new FileContents(FileText.fromLines(new File("T.java"), lineList));
+        header.reportComments(lexed);
+        assertEquals(parsed.getCppComments().toString(), lexed.getCppComments().toString());
+        assertEquals(parsed.getCComments().toString(), lexed.getCComments().toString());
+    }
+
+    private static void dump(StringBuilder out, DetailAST node, String indent) {
+        out.append(indent).append(TokenUtils.getTokenName(node.getType())).append(" '").append(node.getText())
+                .append("' ").append(node.getLineNo()).append(':').append(node.getColumnNo()).append('\n');
+        for (DetailAST child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            assertEquals(node, child.getParent());
+            dump(out, child, indent + "  ");
+        }
+    }
+
+    private static void assertIncomplete(String... lines) {
+        assertFalse(Arrays.toString(lines), HeaderLexer.lex(Arrays.asList(lines)).isComplete());
+    }
+
+    private static DefaultConfiguration createConfig(DefaultConfiguration walker, String rulesFile) {
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        config.addAttribute("charset", "iso-8859-1");
+        config.addChild(walker);
+        // CheckProcessManagerCallsOpc would report the same messages, at the same lines, as the rules
+        DefaultConfiguration layers = createCheckConfig(CheckLayerDependencies.class);
+        layers.addAttribute("rulesFile", rulesFile);
+        walker.addChild(layers);
+        return config;
+    }
+
+    private static String audit(DefaultConfiguration config, List<File> files) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IncrementalAudit audit = new IncrementalAudit(config, null);
+        audit.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        audit.addListener(new BriefLogger(output));
+        audit.process(files);
+        audit.destroy();
+        return output.toString();
+    }
+
+    private File copy(String name) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        InputStream in = getClass().getResourceAsStream("/" + name);
+        try {
+            Files.copy(in, file.toPath());
+        } finally {
+            in.close();
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,254 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class IncrementalAuditTest extends BaseCheckTestSupport {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ByteArrayOutputStream output;
+
+    @Test
+    public void testUnchangedFileComesFromCache() throws Exception {
+        File input = copyInput("/InputCheckProcessManagerCallsOpcTest.java");
+        File cacheFile = new File(folder.getRoot(), "cache");
+
+        IncrementalAudit audit = createAudit(createConfig("error"), cacheFile);
+        assertEquals(4, audit.process(Collections.singletonList(input)));
+        assertEquals(1, audit.getFilesChecked());
+        String checkedOutput = takeOutput();
+
+        audit = createAudit(createConfig("error"), cacheFile);
+        assertEquals(4, audit.process(Collections.singletonList(input)));
+        assertEquals(0, audit.getFilesChecked());
+        assertEquals(1, audit.getFilesFromCache());
+        assertEquals(checkedOutput, takeOutput());
+    }
+
+    @Test
+    public void testChangedFileIsChecked() throws Exception {
+        File input = copyInput("/InputCheckProcessManagerCallsOpcTest.java");
+        File cacheFile = new File(folder.getRoot(), "cache");
+        createAudit(createConfig("error"), cacheFile).process(Collections.singletonList(input));
+
+        OutputStream out = new FileOutputStream(input, true);
+        out.write("// changed\n".getBytes("ISO-8859-1"));
+        out.close();
+        IncrementalAudit audit = createAudit(createConfig("error"), cacheFile);
+        assertEquals(4, audit.process(Collections.singletonList(input)));
+        assertEquals(1, audit.getFilesChecked());
+    }
+
+    @Test
+    public void testChangedConfigurationInvalidatesCache() throws Exception {
+        File input = copyInput("/InputCheckProcessManagerCallsOpcTest.java");
+        File cacheFile = new File(folder.getRoot(), "cache");
+        createAudit(createConfig("error"), cacheFile).process(Collections.singletonList(input));
+
+        IncrementalAudit audit = createAudit(createConfig("warning"), cacheFile);
+        assertEquals(0, audit.process(Collections.singletonList(input)));
+        assertEquals(1, audit.getFilesChecked());
+    }
+
+    @Test
+    public void testCacheOfManyFiles() throws Exception {
+        File first = copyInput("/InputCheckProcessManagerCallsOpcTest.java");
+        File second = copyInput("/InputCheckLayerDependenciesTest.java");
+        File third = copyInput("/InputCustomCheckTest.java");
+        File cacheFile = new File(folder.getRoot(), "cache");
+        List<File> files = Arrays.asList(first, second, third);
+        int errors = createAudit(createConfig("error"), cacheFile).process(files);
+        String checkedOutput = takeOutput();
+
+        IncrementalAudit audit = createAudit(createConfig("error"), cacheFile);
+        assertEquals(errors, audit.process(files));
+        assertEquals(3, audit.getFilesFromCache());
+        assertEquals(checkedOutput, takeOutput());
+    }
+
+    @Test
+    public void testTruncatedCacheIsEmpty() throws Exception {
+        File first = copyInput("/InputCheckProcessManagerCallsOpcTest.java");
+        File second = copyInput("/InputCheckLayerDependenciesTest.java");
+        File cacheFile = new File(folder.getRoot(), "cache");
+        List<File> files = Arrays.asList(first, second);
+        int errors = createAudit(createConfig("error"), cacheFile).process(files);
+        String checkedOutput = takeOutput();
+
+        long length = cacheFile.length();
+        for (long truncatedLength : new long[] {length - 1, length / 2, 60}) {
+            RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw");
+            raf.setLength(truncatedLength);
+            raf.close();
+            IncrementalAudit audit = createAudit(createConfig("error"), cacheFile);
+            assertEquals(errors, audit.process(files));
+            assertEquals(0, audit.getFilesFromCache());
+            assertEquals(checkedOutput, takeOutput());
+        }
+        // the cache was rewritten, and replaced each time
+        IncrementalAudit audit = createAudit(createConfig("error"), cacheFile);
+        assertEquals(errors, audit.process(files));
+        assertEquals(2, audit.getFilesFromCache());
+        assertEquals(length, cacheFile.length());
+    }
+
+    @Test
+    public void testParallelOutputMatchesSequential() throws Exception {
+        String[] inputs = {"/InputCheckProcessManagerCallsOpcTest.java", "/InputCheckLayerDependenciesTest.java",
+                "/InputCustomCheckTest.java"};
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 100; i++) {
+            files.add(copyInput(inputs[i % inputs.length], "Input" + i + ".java"));
+        }
+        IncrementalAudit audit = createAudit(createConfig("error"), null);
+        int errors = audit.process(files);
+        String sequentialOutput = takeOutput();
+
+        audit = createAudit(createConfig("error"), null);
+        audit.setThreads(4);
+        assertEquals(errors, audit.process(files));
+        assertEquals(100, audit.getFilesChecked());
+        assertEquals(sequentialOutput, takeOutput());
+    }
+
+    @Test
+    public void testFileSetChecksSeeAllFiles() throws Exception {
+        List<File> files = new ArrayList<File>();
+        for (String name : new String[] {"InputController.java", "InputService.java", "InputDao.java"}) {
+            files.add(copyInput("/dependencygraph/" + name, name));
+        }
+        for (int i = 0; i < 40; i++) {
+            files.add(copyInput("/InputCustomCheckTest.java", "Input" + i + ".java"));
+        }
+        DefaultConfiguration config = createConfig("error");
+        DefaultConfiguration graph = createCheckConfig(CheckPackageDependencyGraph.class);
+        graph.addAttribute("layers", "com.acme.web, com.acme.service, com.acme.dao");
+        config.addChild(graph);
+        File cacheFile = new File(folder.getRoot(), "cache");
+
+        IncrementalAudit audit = createAudit(config, null);
+        int errors = audit.process(files);
+        String sequentialOutput = takeOutput();
+        assertEquals(2, errors);
+        assertTrue(sequentialOutput, sequentialOutput.contains("InputController.java:3: Cycle between packages"));
+        assertTrue(sequentialOutput, sequentialOutput.contains("InputDao.java:4: Package com.acme.dao must not"));
+
+        // in chunks of one file, then from the cache
+        for (int run = 0; run < 2; run++) {
+            audit = createAudit(config, cacheFile);
+            audit.setThreads(4);
+            assertEquals(errors, audit.process(files));
+            assertEquals(sequentialOutput, takeOutput());
+        }
+        assertEquals(files.size(), audit.getFilesFromCache());
+    }
+
+    @Test
+    public void testSourcePathInvalidatesCache() throws Exception {
+        File root = folder.newFolder("src").getCanonicalFile();
+        write(root, "waf/HTMLActionSupport.java", "package waf;\npublic abstract class HTMLActionSupport {\n}\n");
+        write(root, "web/BaseHTMLAction.java", "package web;\nimport waf.HTMLActionSupport;\n"
+                + "public abstract class BaseHTMLAction extends HTMLActionSupport {\n}\n");
+        List<File> files = Collections.singletonList(write(root, "web/CatalogHTMLAction.java", "package web;\n"
+                + "public class CatalogHTMLAction extends BaseHTMLAction {\n}\n"));
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        DefaultConfiguration treeWalker = createCheckConfig(TreeWalker.class);
+        config.addChild(treeWalker);
+        DefaultConfiguration check = createCheckConfig(CheckHtmlActionExtendsHtmlActionSupport.class);
+        check.addAttribute("sourcePath", root.getPath());
+        check.addAttribute("packagesToIgnore", "");
+        check.addAttribute("hierarchyCacheFile", new File(folder.getRoot(), "hierarchy").getPath());
+        treeWalker.addChild(check);
+        File cacheFile = new File(folder.getRoot(), "cache");
+
+        // the hierarchy cache file, written by the first audit, does not invalidate the cache
+        for (int run = 0; run < 2; run++) {
+            IncrementalAudit audit = createAudit(config, cacheFile);
+            assertEquals(0, audit.process(files));
+            assertEquals(run, audit.getFilesFromCache());
+        }
+
+        // CatalogHTMLAction did not change, but it no longer extends HTMLActionSupport
+        write(root, "web/BaseHTMLAction.java", "package web;\npublic abstract class BaseHTMLAction {\n}\n");
+        for (int run = 0; run < 2; run++) {
+            IncrementalAudit audit = createAudit(config, cacheFile);
+            assertEquals(1, audit.process(files));
+            assertEquals(run, audit.getFilesFromCache());
+        }
+    }
+
+    private static File write(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+        return file;
+    }
+
+    private static DefaultConfiguration createConfig(String severity) {
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        config.addAttribute("charset", "iso-8859-1");
+        config.addAttribute("severity", severity);
+        DefaultConfiguration treeWalker = createCheckConfig(TreeWalker.class);
+        config.addChild(treeWalker);
+        treeWalker.addChild(createCheckConfig(CheckLayerDependencies.class));
+        return config;
+    }
+
+    /**
+     * Creates an audit whose output goes to {@link #output}; the logger closes its stream at the end of
+     * the audit, so each audit has a new one.
+     */
+    private IncrementalAudit createAudit(DefaultConfiguration config, File cacheFile) {
+        output = new ByteArrayOutputStream();
+        IncrementalAudit audit = new IncrementalAudit(config, cacheFile);
+        audit.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        audit.addListener(new BriefLogger(output));
+        return audit;
+    }
+
+    private String takeOutput() {
+        return output.toString();
+    }
+
+    private File copyInput(String resource) throws IOException {
+        return copyInput(resource, resource.substring(1));
+    }
+
+    private File copyInput(String resource, String name) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        InputStream in = getClass().getResourceAsStream(resource);
+        OutputStream out = new FileOutputStream(file);
+        byte[] buffer = new byte[4096];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        out.close();
+        return file;
+    }
+
+}
@@ -0,0 +1,367 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.utils.TokenUtils;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class InstrumentedTreeWalkerTest extends BaseCheckTestSupport {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameViolationsAsTreeWalkerAndReports() throws Exception {
+        List<File> files = copyInputs();
+        String expected = audit(createConfig(createCheckConfig(TreeWalker.class)), files);
+
+        File report = new File(folder.getRoot(), "metrics/report.json");
+        File prometheus = new File(folder.getRoot(), "metrics/report.prom");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("reportFile", report.getPath());
+        walker.addAttribute("prometheusFile", prometheus.getPath());
+        walker.addAttribute("slowestFiles", "2");
+        assertEquals(expected, audit(createConfig(walker), files));
+
+        String json = read(report);
+        assertTrue(json, json.contains("\"files\": 3,"));
+        assertTrue(json, json.contains("{\"check\": \"CheckProcessManagerCallsOpc\", \"total\": {\"count\": 3,"));
+        assertTrue(json, json.contains(
+                "{\"check\": \"CheckHtmlActionExtendsHtmlActionSupport\", \"total\": {\"count\": 3,"));
+        assertEquals(2, json.split("\"totalNanos\"").length - 1);
+        String text = read(prometheus);
+        assertTrue(text, text.contains("checkstyle_files_total 3\n"));
+        assertTrue(text, text.contains("checkstyle_parse_seconds_count 3\n"));
+        assertTrue(text, text.contains(
+                "checkstyle_check_seconds_count{check=\"CheckHtmlActionExtendsHtmlActionSupport\",hook=\"visitToken\"} 3\n"));
+        assertTrue(text, text.contains(
+                "checkstyle_check_seconds{check=\"CheckProcessManagerCallsOpc\",hook=\"beginTree\",quantile=\"0.99\"} "));
+    }
+
+    @Test
+    public void testDisabledWritesNoReport() throws Exception {
+        List<File> files = copyInputs();
+        String expected = audit(createConfig(createCheckConfig(TreeWalker.class)), files);
+
+        File report = new File(folder.getRoot(), "report.json");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("enabled", "false");
+        walker.addAttribute("reportFile", report.getPath());
+        walker.addAttribute("prometheusFile", "");
+        assertEquals(expected, audit(createConfig(walker), files));
+        assertFalse(report.exists());
+    }
+
+    @Test
+    public void testPrefilterSkipsFilesWithoutRequiredLiterals() throws Exception {
+        List<File> files = copyInputs();
+        String expected = audit(createConfig(createCheckConfig(TreeWalker.class)), files);
+
+        File report = new File(folder.getRoot(), "report.json");
+        File prometheus = new File(folder.getRoot(), "report.prom");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("prefilter", "true");
+        walker.addAttribute("reportFile", report.getPath());
+        walker.addAttribute("prometheusFile", prometheus.getPath());
+        assertEquals(expected, audit(createConfig(walker), files));
+        // InputCustomCheckTest has no HTMLAction and no processmanager
+        String json = read(report);
+        assertTrue(json, json.contains("\"files\": 2,\n  \"filesSkipped\": 1,"));
+        assertTrue(read(prometheus).contains("checkstyle_files_skipped_total 1\n"));
+
+        // a check without required literals: every file is parsed
+        walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("prefilter", "true");
+        walker.addAttribute("reportFile", report.getPath());
+        walker.addAttribute("prometheusFile", "");
+        DefaultConfiguration config = createConfig(walker);
+        walker.addChild(createCheckConfig(CheckLayerDependencies.class));
+        audit(config, files);
+        assertTrue(read(report).contains("\"files\": 3,\n  \"filesSkipped\": 0,"));
+    }
+
+    @Test
+    public void testAstCacheReplacesParsing() throws Exception {
+        List<File> files = copyInputs();
+        String expected = audit(createConfig(createCheckConfig(TreeWalker.class)), files);
+
+        File directory = new File(folder.getRoot(), "ast");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("enabled", "false");
+        walker.addAttribute("astCache", directory.getPath());
+        assertEquals(expected, audit(createConfig(walker), files));
+        assertEquals(3, directory.list().length);
+        assertEquals(expected, audit(createConfig(walker), files));
+
+        // the trees read back are the parsed ones, with the same comments
+        AstCache cache = new AstCache(directory);
+        for (File file : files) {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1);
+            FileContents parsed = new FileContents(FileText.fromLines(file, lines));
+            StringBuilder expectedTree = new StringBuilder();
+            dump(expectedTree, TreeWalker.parse(parsed), "");
+            FileContents cached = new FileContents(FileText.fromLines(file, lines));
+            FlatAst flat = cache.find(AstCache.keyOf(lines));
+            flat.reportComments(cached);
+            StringBuilder actualTree = new StringBuilder();
+            dump(actualTree, flat.toAST(), "");
+            assertEquals(expectedTree.toString(), actualTree.toString());
+            assertEquals(parsed.getCppComments().toString(), cached.getCppComments().toString());
+            assertEquals(parsed.getCComments().toString(), cached.getCComments().toString());
+        }
+
+        // a file is not parsed while its tree is in the cache: an empty tree hides its violations
+        File opc = files.get(0);
+        List<String> lines = Files.readAllLines(opc.toPath(), StandardCharsets.ISO_8859_1);
+        cache.put(AstCache.keyOf(lines), FlatAst.of(null, new FileContents(FileText.fromLines(opc, lines))));
+        String audited = audit(createConfig(walker), files);
+        assertTrue(expected, expected.contains(opc.getName()));
+        assertFalse(audited, audited.contains(opc.getName()));
+
+        // the sources of corrupt cache files are parsed again
+        for (File cacheFile : directory.listFiles()) {
+            Files.write(cacheFile.toPath(), new byte[] {1, 2, 3});
+        }
+        assertEquals(expected, audit(createConfig(walker), files));
+        assertEquals(expected, audit(createConfig(walker), files));
+    }
+
+    @Test
+    public void testAstCacheFailureFallsBackToParsing() throws Exception {
+        List<File> files = copyInputs();
+        String expected = audit(createConfig(createCheckConfig(TreeWalker.class)), files);
+
+        // a directory in place of each cache file: the trees cannot be written
+        File directory = new File(folder.getRoot(), "ast");
+        AstCache cache = new AstCache(directory);
+        for (File file : files) {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1);
+            cache.put(AstCache.keyOf(lines), FlatAst.of(null, new FileContents(FileText.fromLines(file, lines))));
+        }
+        for (File cacheFile : directory.listFiles()) {
+            assertTrue(cacheFile.delete());
+            assertTrue(new File(cacheFile, "blocker").mkdirs());
+        }
+        File report = new File(folder.getRoot(), "report.json");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("astCache", directory.getPath());
+        walker.addAttribute("reportFile", report.getPath());
+        walker.addAttribute("prometheusFile", "");
+        assertEquals(expected, audit(createConfig(walker), files));
+        String json = read(report);
+        assertTrue(json, json.contains("\"astCacheFailure\": \"Unable to write AST cache file "));
+    }
+
+    @Test
+    public void testAstCachePrunesUnusedTrees() throws Exception {
+        List<File> files = copyInputs();
+        File directory = new File(folder.getRoot(), "ast");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("enabled", "false");
+        walker.addAttribute("astCache", directory.getPath());
+        audit(createConfig(walker), files);
+        File[] cacheFiles = directory.listFiles();
+        assertEquals(3, cacheFiles.length);
+        long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(40);
+        for (File cacheFile : cacheFiles) {
+            assertTrue(cacheFile.setLastModified(old));
+        }
+        File leftOver = new File(directory, "0123.ast456.tmp");
+        assertTrue(leftOver.createNewFile());
+        assertTrue(leftOver.setLastModified(old));
+
+        // a tree read is touched
+        List<String> lines = Files.readAllLines(files.get(0).toPath(), StandardCharsets.ISO_8859_1);
+        AstCache cache = new AstCache(directory);
+        assertTrue(cache.find(AstCache.keyOf(lines)) != null);
+        assertEquals(3, cache.prune(TimeUnit.DAYS.toMillis(30)));
+        assertEquals(1, directory.list().length);
+
+        // the walker prunes when it is initialized
+        assertTrue(leftOver.createNewFile());
+        assertTrue(leftOver.setLastModified(old));
+        walker.addAttribute("astCacheMaxAge", "30");
+        audit(createConfig(walker), files);
+        assertFalse(leftOver.exists());
+        assertEquals(3, directory.list().length);
+    }
+
+    @Test
+    public void testMetricsOfAllWorkersAndAudits() throws Exception {
+        List<File> files = copyInputs();
+        File report = new File(folder.getRoot(), "report.json");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("reportFile", report.getPath());
+        walker.addAttribute("prometheusFile", "");
+        IncrementalAudit audit = new IncrementalAudit(createConfig(walker), null);
+        audit.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        audit.setThreads(3);
+        audit.process(files);
+        assertTrue(read(report).contains("\"files\": 3,"));
+        audit.process(files);
+        audit.destroy();
+        String json = read(report);
+        assertTrue(json, json.contains("\"files\": 6,"));
+        assertTrue(json, json.contains("{\"check\": \"CheckProcessManagerCallsOpc\", \"total\": {\"count\": 6,"));
+    }
+
+    @Test
+    public void testLiteralMatcher() {
+        LiteralMatcher matcher = new LiteralMatcher(Arrays.asList("he", "she", "hers", "abcd", "bcx", "ca\u00e7a"));
+        assertTrue(matcher.matches("ushers"));
+        assertTrue(matcher.matches("abcx"));
+        assertTrue(matcher.matches("a ca\u00e7a"));
+        assertFalse(matcher.matches("abc bc x abd cac\u00e7a"));
+        assertFalse(matcher.matches(""));
+        assertTrue(matcher.matchesAny(Arrays.asList("ab", "cd", "xyzabcd")));
+        assertFalse(matcher.matchesAny(Arrays.asList("ab", "cd")));
+        assertFalse(new LiteralMatcher(new ArrayList<String>()).matches("anything"));
+    }
+
+    @Test
+    public void testAllocations() throws Exception {
+        File report = new File(folder.getRoot(), "report.json");
+        File prometheus = new File(folder.getRoot(), "report.prom");
+        DefaultConfiguration walker = createCheckConfig(InstrumentedTreeWalker.class);
+        walker.addAttribute("allocations", "true");
+        walker.addAttribute("reportFile", report.getPath());
+        walker.addAttribute("prometheusFile", prometheus.getPath());
+        audit(createConfig(walker), copyInputs());
+
+        String json = read(report);
+        assertTrue(json, json.contains("\"allocations\": {"));
+        assertTrue(json, json.matches("(?s).*\"topAllocators\": \\[\\{\"allocator\": \"parse\", \"bytes\": [1-9].*"));
+        assertTrue(json, json.contains("\"helpers\": {\"fullyQualifiedPackage\": "));
+        String text = read(prometheus);
+        assertTrue(text, text.matches("(?s).*\ncheckstyle_parse_allocated_bytes_total [1-9].*"));
+        assertTrue(text, text.contains("checkstyle_helper_allocated_bytes_total{check=\"CheckProcessManagerCallsOpc\","
+                + "helper=\"findAllAstsOfType\"} "));
+    }
+
+    @Test
+    public void testAllocationProfileCountsOutermostHelper() {
+        AllocationProfile profile = new AllocationProfile();
+        long outer = profile.start();
+        long inner = profile.start();
+        byte[] allocated = new byte[1 << 20];
+        profile.stop(AllocationProfile.FIND_FIRST_AST_OF_TYPE, inner);
+        profile.stop(AllocationProfile.GET_SUPER_CLASS_NAME, outer);
+        assertEquals(0, profile.getBytes()[AllocationProfile.FIND_FIRST_AST_OF_TYPE]);
+        assertTrue(profile.getBytes()[AllocationProfile.GET_SUPER_CLASS_NAME] >= allocated.length);
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMin());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500500000, histogram.getSum());
+        // within the precision of the buckets, about 3%
+        assertEquals(500000, histogram.percentile(0.5), 500000 * 0.04);
+        assertEquals(990000, histogram.percentile(0.99), 990000 * 0.04);
+        assertEquals(1000000, histogram.percentile(1));
+        for (long value : new long[] {0, 63, 64, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    /**
+     * The checks have different messages: violations with the same line, column and message are reported
+     * once, by whichever check comes first.
+     */
+    private static DefaultConfiguration createConfig(DefaultConfiguration walker) {
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        config.addAttribute("charset", "iso-8859-1");
+        config.addChild(walker);
+        walker.addChild(createCheckConfig(CheckProcessManagerCallsOpc.class));
+        walker.addChild(createCheckConfig(CheckHtmlActionExtendsHtmlActionSupport.class));
+        return config;
+    }
+
+    private static String audit(DefaultConfiguration config, List<File> files) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IncrementalAudit audit = new IncrementalAudit(config, null);
+        audit.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        audit.addListener(new BriefLogger(output));
+        audit.process(files);
+        audit.destroy();
+        return output.toString();
+    }
+
+    /**
+     * Appends the tree that starts at the node, and its siblings, one node per line.
+     */
+    private static void dump(StringBuilder out, DetailAST node, String indent) {
+        for (DetailAST sibling = node; sibling != null; sibling = sibling.getNextSibling()) {
+            out.append(indent).append(TokenUtils.getTokenName(sibling.getType())).append(" '")
+                    .append(sibling.getText()).append("' ").append(sibling.getLineNo()).append(':')
+                    .append(sibling.getColumnNo()).append('\n');
+            DetailAST child = sibling.getFirstChild();
+            if (child != null) {
+                assertEquals(sibling, child.getParent());
+                assertNull(child.getPreviousSibling());
+                dump(out, child, indent + "  ");
+            }
+            if (sibling.getNextSibling() != null) {
+                assertEquals(sibling, sibling.getNextSibling().getPreviousSibling());
+                assertEquals(sibling.getParent(), sibling.getNextSibling().getParent());
+            }
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    private List<File> copyInputs() throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (String name : new String[] {"InputCheckProcessManagerCallsOpcTest.java",
+                "InputCheckHtmlActionExtendsHtmlActionSupportTest.java", "InputCustomCheckTest.java"}) {
+            File file = new File(folder.getRoot(), name);
+            InputStream in = getClass().getResourceAsStream("/" + name);
+            OutputStream out = new FileOutputStream(file);
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            in.close();
+            out.close();
+            files.add(file);
+        }
+        return files;
+    }
+
+}
@@ -0,0 +1,128 @@
+package tutorial.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+import checkstyle.BaseCheckTestSupport;
+
+public class StreamingReportListenerTest extends BaseCheckTestSupport {
+
+    /** Quotes, backslash, control chars, non-ASCII and a char outside the BMP */
+    private static final String TEXT = "a \"b\" \\ c\n\t\u0001 \u00e9 \uD83D\uDE00";
+
+    private static final String ESCAPED_TEXT = "a \\\"b\\\" \\\\ c\\n\\t\\u0001 \u00e9 \uD83D\uDE00";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testJsonLines() throws Exception {
+        File report = new File(folder.getRoot(), "report.jsonl");
+        StreamingReportListener listener = new StreamingReportListener(report, StreamingReportListener.JSON_LINES);
+        listener.auditStarted(new AuditEvent(this));
+        listener.addError(event("/src/A b.java", 3, 7, SeverityLevel.ERROR, TEXT));
+        listener.addError(event("/src/A b.java", 4, 0, SeverityLevel.IGNORE, "ignored"));
+        listener.addException(new AuditEvent(this, "/src/C.java"), new IllegalStateException("boom"));
+        listener.auditFinished(new AuditEvent(this));
+
+        assertEquals("{\"file\":\"/src/A b.java\",\"line\":3,\"column\":7,\"severity\":\"error\","
+                + "\"rule\":\"CheckProcessManagerCallsOpc\",\"message\":\"" + ESCAPED_TEXT + "\"}\n"
+                + "{\"file\":\"/src/C.java\",\"exception\":\"java.lang.IllegalStateException: boom\"}\n", read(report));
+    }
+
+    @Test
+    public void testSarif() throws Exception {
+        File report = new File(folder.getRoot(), "report.sarif");
+        StreamingReportListener listener = new StreamingReportListener(report, StreamingReportListener.SARIF);
+        listener.auditStarted(new AuditEvent(this));
+        listener.addError(event("/src/A b.java", 3, 7, SeverityLevel.ERROR, TEXT));
+        listener.addError(event("Rel\u00e9.java", 4, 0, SeverityLevel.INFO, "info"));
+        listener.auditFinished(new AuditEvent(this));
+
+        String location = "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":";
+        assertEquals("{\"version\":\"2.1.0\",\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\","
+                + "\"runs\":[{\"tool\":{\"driver\":{\"name\":\"Checkstyle\",\"informationUri\":"
+                + "\"https://checkstyle.org/\"}},\"results\":["
+                + "{\"ruleId\":\"CheckProcessManagerCallsOpc\",\"level\":\"error\",\"message\":{\"text\":\""
+                + ESCAPED_TEXT + "\"}," + location + "\"file:///src/A%20b.java\"},"
+                + "\"region\":{\"startLine\":3,\"startColumn\":7}}}]},"
+                + "{\"ruleId\":\"CheckProcessManagerCallsOpc\",\"level\":\"note\",\"message\":{\"text\":\"info\"},"
+                + location + "\"Rel%C3%A9.java\"},\"region\":{\"startLine\":4}}}]}"
+                + "],\"invocations\":[{\"executionSuccessful\":true,\"toolExecutionNotifications\":[]}]}]}\n",
+                read(report));
+    }
+
+    @Test
+    public void testManyViolationsWithCheckstyle() throws Exception {
+        File input = new File(folder.getRoot(), "InputCheckProcessManagerCallsOpcTest.java");
+        copy("/InputCheckProcessManagerCallsOpcTest.java", input);
+        DefaultConfiguration config = new DefaultConfiguration("configuration");
+        config.addAttribute("charset", "iso-8859-1");
+        DefaultConfiguration treeWalker = createCheckConfig(TreeWalker.class);
+        config.addChild(treeWalker);
+        treeWalker.addChild(createCheckConfig(CheckProcessManagerCallsOpc.class));
+        Checker checker = new Checker();
+        checker.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
+        checker.configure(config);
+        File report = new File(folder.getRoot(), "report.jsonl");
+        StreamingReportListener listener = new StreamingReportListener(report, StreamingReportListener.JSON_LINES);
+        checker.addListener(listener);
+        int errors = checker.process(Collections.singletonList(input));
+        checker.destroy();
+        String[] lines = read(report).split("\n");
+        assertEquals(errors, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{\"file\":\"" + input.getPath() + "\",\"line\":"));
+
+        // many more violations than the buffer holds
+        listener.auditStarted(new AuditEvent(this));
+        for (int i = 0; i < 20000; i++) {
+            listener.addError(event("/src/A.java", i, 1, SeverityLevel.WARNING, TEXT));
+        }
+        listener.auditFinished(new AuditEvent(this));
+        lines = read(report).split("\n");
+        assertEquals(20000, lines.length);
+        assertEquals("{\"file\":\"/src/A.java\",\"line\":19999,\"column\":1,\"severity\":\"warning\","
+                + "\"rule\":\"CheckProcessManagerCallsOpc\",\"message\":\"" + ESCAPED_TEXT + "\"}", lines[19999]);
+    }
+
+    private AuditEvent event(String fileName, int line, int column, SeverityLevel severity, String text) {
+        LocalizedMessage message = new LocalizedMessage(line, column, "messages", "key", new Object[] {text},
+                severity, null, CheckProcessManagerCallsOpc.class, "{0}");
+        return new AuditEvent(this, fileName, message);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    private void copy(String resource, File file) throws IOException {
+        InputStream in = getClass().getResourceAsStream(resource);
+        OutputStream out = new FileOutputStream(file);
+        byte[] buffer = new byte[4096];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        out.close();
+    }
+
+}
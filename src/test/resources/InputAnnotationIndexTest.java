@@ -0,0 +1,21 @@
+package com.sun.j2ee.blueprints.customer;
+
+import javax.persistence.Entity;
+import javax.persistence.OneToMany;
+
+@Entity
+@javax.ejb.Stateless
+public class InputAnnotationIndexTest {
+
+    @OneToMany
+    private java.util.List<String> orders;
+
+    public void setOrders(@SuppressWarnings("unused") java.util.List<String> orders) {
+    }
+
+    @Table(indexes = @Index(name = "id"))
+    class Inner {
+        @Deprecated
+        private int count;
+    }
+}
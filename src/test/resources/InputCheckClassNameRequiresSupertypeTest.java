@@ -0,0 +1,19 @@
+package com.sun.j2ee.blueprints.consumerwebsite.actions;
+
+public class CatalogHTMLAction extends com.sun.j2ee.blueprints.waf.controller.web.html.HTMLActionSupport {  // NOT A VIOLATION
+}
+
+class DaoCustomer {                                                  // VIOLATION
+}
+
+class DaoOrder extends DaoGenerico<Order> {                          // NOT A VIOLATION
+}
+
+class ServicoCatalogBean implements java.io.Serializable {           // 2 VIOLATIONS
+}
+
+class ServicoOrderBean extends Object implements Serializable, javax.ejb.SessionBean {  // NOT A VIOLATION
+}
+
+class DaoHTMLAction {                                                // 2 VIOLATIONS
+}
@@ -0,0 +1,8 @@
+package br.gov.tcu.contas.web.actions;
+
+public class CatalogHTMLAction {          // VIOLATION, BUT PACKAGE IS IGNORED BY DEFAULT
+
+    public void doNothing() {
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.sun.j2ee.blueprints.processmanager.ejb;
+
+import com.sun.j2ee.blueprints.opc.*;                // VIOLATION
+import com.sun.j2ee.blueprints.opc.invoice.Invoice;  // VIOLATION
+import com.sun.j2ee.blueprints.opcx.Dummy;           // NON VIOLATION
+import static com.sun.j2ee.blueprints.opc.JNDINames.NAME; // VIOLATION
+
+import com.sun.j2ee.blueprints.opc.utils.*;                      // NON VIOLATION
+import static com.sun.j2ee.blueprints.opc.utils.InfraException.*; // NON VIOLATION
+import javax.servlet.http.HttpServletRequest;                    // VIOLATION
+import com.sun.j2ee.blueprints.processmanager.manager.ejb.Manager; // NON VIOLATION
+
+public class Dummmy {
+}
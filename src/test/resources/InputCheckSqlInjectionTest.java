@@ -0,0 +1,66 @@
+package com.sun.j2ee.blueprints.catalog.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+import javax.servlet.http.HttpServletRequest;
+
+public class InputCheckSqlInjectionTest {
+
+    private static final String TABLE = "item";
+
+    public void fromRequest(HttpServletRequest request, Statement statement) throws Exception {
+        String id = request.getParameter("id");
+        String sql = "select * from item where id = " + id.trim();
+        statement.executeQuery(sql);
+    }
+
+    public void concatenated(Connection connection, String category) throws Exception {
+        connection.prepareStatement("select * from item where category = '" + category + "'");
+        connection.prepareStatement("select * from " + TABLE + " where category = ?");
+        connection.prepareStatement("select * from " + Constants.TABLE + " where id = ?");
+    }
+
+    public void builder(Connection connection, String order) throws Exception {
+        StringBuilder sql = new StringBuilder("select * from item");
+        sql.append(" order by ").append(order);
+        PreparedStatement ps = connection.prepareStatement(sql.toString());
+        StringBuilder fixed = new StringBuilder("select * from item").append(" order by name");
+        ps = connection.prepareStatement(fixed.toString());
+    }
+
+    public void replaced(Statement statement, String name) throws Exception {
+        String sql = "select * from item where name = '" + name + "'";
+        sql = "select * from item";
+        statement.execute(sql);
+    }
+
+    public void loop(Statement statement, String[] names) throws Exception {
+        String sql = "select * from item";
+        for (int i = 0; i < names.length; i++) {
+            statement.addBatch(sql);
+            sql = sql + " where name = '" + names[i] + "'";
+        }
+    }
+
+    public void hibernate(org.hibernate.Session session, String name, boolean all) {
+        String hql = "from Item";
+        if (!all) {
+            hql += " where name = '" + name + "'";
+        }
+        session.createQuery(hql).list();
+        session.createQuery("from Item where name = :name").setParameter("name", name).list();
+    }
+
+    public void notSql(Executor executor, Runnable task) {
+        executor.execute(task);
+        executor.execute(() -> System.out.println("select " + task));
+    }
+
+    public void orderBy(Statement statement, boolean ascending, String column) throws Exception {
+        String direction = ascending ? "asc" : "desc";
+        statement.executeQuery("select * from item order by name " + direction);
+        statement.executeQuery("select * from item order by " + (ascending ? "name" : column));
+    }
+}
@@ -0,0 +1,23 @@
+package com.sun.j2ee.blueprints.consumerwebsite.actions;
+
+import java.util.List;
+
+public class CatalogHTMLAction extends com.sun.j2ee.blueprints.waf.controller.web.html.HTMLActionSupport {
+
+    public void perform(String[] args) {
+        if (args.length == 0) {
+            System.exit(1);                                        // VIOLATION
+        }
+        Runtime.getRuntime().exit(2);
+        String sql = "select * from orders where id = " + args[0];  // VIOLATION
+    }
+}
+
+class ItemHTMLAction {                                             // VIOLATION
+
+    class Inner {
+        void run() {
+            new Thread().start();                                  // VIOLATION
+        }
+    }
+}
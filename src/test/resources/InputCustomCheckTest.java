@@ -0,0 +1,36 @@
+package com.sun.j2ee.blueprints.consumerwebsite.actions;
+
+import java.util.List;
+import javax.ejb.Stateless;
+
+@Stateless
+public class InputCustomCheckTest extends BaseAction {
+
+    private String name;
+
+    private int count = 10;
+
+    @Deprecated
+    public void setName(String name) {
+        this.name = name;
+        String local = name + count;
+        for (int i = 0; i < count; i++) {
+            local = local + i;
+        }
+        count = local.length();
+    }
+
+    public InputCustomCheckTest(int count) {
+        this.count = count;
+        Runnable r = () -> System.out.println(count);
+    }
+
+    class Inner {
+        private String name;
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
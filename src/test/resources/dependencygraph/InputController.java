@@ -0,0 +1,9 @@
+package com.acme.web;
+
+import com.acme.service.InputService;
+import java.util.List;
+
+public class InputController {
+    private InputService service;
+    private List<String> names;
+}
@@ -0,0 +1,10 @@
+package com.acme.dao;
+
+import java.util.Map;
+import com.acme.web.InputController;
+import com.acme.web.*;
+
+public class InputDao {
+    private InputController controller;
+    private Map<String, String> cache;
+}
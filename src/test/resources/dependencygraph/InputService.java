@@ -0,0 +1,7 @@
+package com.acme.service;
+
+import com.acme.dao.InputDao;
+
+public class InputService {
+    private InputDao dao;
+}